@@ -14,96 +14,144 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.cloudfoundry.client.lib.archive.AbstractApplicationArchiveEntry;
 import org.cloudfoundry.client.lib.archive.ApplicationArchive;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.wst.server.core.IModule;
-import org.eclipse.wst.server.core.model.IModuleFile;
-import org.eclipse.wst.server.core.model.IModuleFolder;
 import org.eclipse.wst.server.core.model.IModuleResource;
 
 /**
  * Base Cloud Foundry client archive that supports IModuleResource and computes
  * sha1 and input stream entries for module resources. Creates an archive entry
  * for every module resource specified in the this archive. Specialised classes
- * must define two entry types to create when a request is made for a module
- * resource: folder and file entries. These entries allow specialised classes to
- * determine how the sha1 and file sizes are computed for each corresponding
- * module resource, and whether they are obtained from cache or not.
+ * must define the file entries to create when a request is made for a module
+ * file. These entries allow specialised classes to determine how the sha1 and
+ * file sizes are computed for each corresponding module resource, and whether
+ * they are obtained from cache or not.
+ * <p/>
+ * Entries are created from a {@link ModuleResourceIndex} each time the
+ * entries are iterated, so that an archive of a large module does not keep an
+ * entry adapter per resource for the whole upload. Adapters that resolve a
+ * sha1 code record it in the index, so that it is not resolved again when the
+ * entries are iterated again.
  * 
  */
 public abstract class AbstractModuleResourceArchive implements ApplicationArchive {
 
+	/**
+	 * Entries to deploy, if they differ from the entries of all the module
+	 * resources. Null if the entries of all module resources are deployed.
+	 */
 	protected List<Entry> entries;
 
 	private final IModule module;
 
 	private final List<IModuleResource> resources;
 
+	private final boolean portableNames;
+
+	private ModuleResourceIndex index;
+
 	protected AbstractModuleResourceArchive(IModule module, List<IModuleResource> resources) {
+		this(module, resources, false);
+	}
+
+	/**
+	 * 
+	 * @param module
+	 * @param resources
+	 * @param portableNames true if entry names are portable path strings, as
+	 * in {@link CloudUtil#getZipRelativeName(IModuleResource)}
+	 */
+	protected AbstractModuleResourceArchive(IModule module, List<IModuleResource> resources, boolean portableNames) {
 		this.module = module;
 		this.resources = resources;
+		this.portableNames = portableNames;
 	}
 
+	/**
+	 * All entries are returned, for both resources that have changed as well
+	 * as those that haven't, as the CF client must first use the entries to
+	 * determine what has changed.
+	 */
 	public Iterable<Entry> getEntries() {
-		if (entries == null) {
-			entries = new ArrayList<ApplicationArchive.Entry>();
-			collectEntriesPriorToDeployment(entries, resources.toArray(new IModuleResource[0]));
+		if (entries != null) {
+			return entries;
 		}
-		return entries;
-	}
+		final ModuleResourceIndex index = getIndex();
+		return new Iterable<Entry>() {
 
-	protected List<IModuleResource> getModuleResources() {
-		return resources;
+			public Iterator<Entry> iterator() {
+				return new Iterator<Entry>() {
+
+					private int next;
+
+					public boolean hasNext() {
+						return next < index.getEntryCount();
+					}
+
+					public Entry next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						return createEntry(index.getEntry(next++));
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
 	/**
-	 * All entries must be collected, for both resources that have changed as
-	 * well as those that haven't, as the CF client must first use that
-	 * collected list of entries to determine what has changed.
-	 * @param entries
-	 * @param resources
+	 * 
+	 * @return index of all module resources, created on first access
 	 */
-	protected void collectEntriesPriorToDeployment(List<Entry> entries, IModuleResource[] members) {
-		if (members == null) {
-			return;
+	protected synchronized ModuleResourceIndex getIndex() {
+		if (index == null) {
+			index = new ModuleResourceIndex(resources.toArray(new IModuleResource[0]), portableNames);
 		}
+		return index;
+	}
 
-		for (IModuleResource resource : members) {
+	protected List<IModuleResource> getModuleResources() {
+		return resources;
+	}
 
-			if (resource instanceof IModuleFile) {
-				ModuleFileEntryAdapter fileAdapter = getFileResourceEntryAdapter((IModuleFile) resource);
-				if (fileAdapter != null) {
-					entries.add(fileAdapter);
-				}
-			}
-			else if (resource instanceof IModuleFolder) {
-				IModuleFolder folder = (IModuleFolder) resource;
-				ModuleFolderEntryAdapter folderAdapter = getModuleFolderAdapter(folder);
-				if (folderAdapter != null) {
-					entries.add(folderAdapter);
-					collectEntriesPriorToDeployment(entries, folder.members());
-				}
-			}
+	/**
+	 * 
+	 * @param entry entry in the index of this archive
+	 * @return new adapter for the given entry
+	 */
+	protected AbstractModuleResourceEntryAdapter createEntry(int entry) {
+		ModuleResourceIndex index = getIndex();
+		if (index.isDirectory(entry)) {
+			return getModuleFolderAdapter(entry);
 		}
+		return getFileResourceEntryAdapter(entry);
 	}
 
-	abstract protected ModuleFolderEntryAdapter getModuleFolderAdapter(IModuleFolder folder);
+	protected ModuleFolderEntryAdapter getModuleFolderAdapter(int entry) {
+		return new ModuleFolderEntryAdapter(entry);
+	}
 
-	abstract protected ModuleFileEntryAdapter getFileResourceEntryAdapter(IModuleFile moduleFile);
+	abstract protected ModuleFileEntryAdapter getFileResourceEntryAdapter(int entry);
 
 	protected IModule getModule() {
 		return module;
 	}
 
-	public abstract class ModuleFolderEntryAdapter extends AbstractModuleResourceEntryAdapter {
+	public class ModuleFolderEntryAdapter extends AbstractModuleResourceEntryAdapter {
 
-		public ModuleFolderEntryAdapter(IModuleFolder moduleResource) {
-			super(moduleResource);
+		public ModuleFolderEntryAdapter(int entry) {
+			super(entry);
 		}
 
 		public boolean isDirectory() {
@@ -129,9 +177,9 @@ public abstract class AbstractModuleResourceArchive implements ApplicationArchiv
 
 		protected final File file;
 
-		public ModuleFileEntryAdapter(IModuleFile moduleResource) {
-			super(moduleResource);
-			file = getFile(moduleResource);
+		public ModuleFileEntryAdapter(int entry) {
+			super(entry);
+			file = getFile(getResource());
 		}
 
 		public boolean isDirectory() {
@@ -180,25 +228,36 @@ public abstract class AbstractModuleResourceArchive implements ApplicationArchiv
 	public abstract class AbstractModuleResourceEntryAdapter extends AbstractApplicationArchiveEntry {
 		private final IModuleResource moduleResource;
 
+		protected final int entry;
+
 		protected String name;
 
 		public static final long UNDEFINED_SIZE = AbstractApplicationArchiveEntry.UNDEFINED_SIZE;
 
-		public AbstractModuleResourceEntryAdapter(IModuleResource moduleResource) {
-			this.moduleResource = moduleResource;
-			name = computeName(moduleResource);
+		/**
+		 * 
+		 * @param entry entry of the module resource in the index of the
+		 * archive
+		 */
+		public AbstractModuleResourceEntryAdapter(int entry) {
+			this.entry = entry;
+			this.moduleResource = getIndex().getResource(entry);
 		}
 
 		public IModuleResource getResource() {
 			return moduleResource;
 		}
 
+		/**
+		 * The name is assembled from the index when first requested.
+		 */
 		public String getName() {
+			if (name == null) {
+				name = getIndex().getName(entry);
+			}
 			return name;
 		}
 
-		abstract protected String computeName(IModuleResource resource);
-
 	}
 
 }
@@ -12,6 +12,7 @@ package org.cloudfoundry.ide.eclipse.internal.server.core;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationStateWaiter.ApplicationCondition;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.wst.server.core.IModule;
@@ -21,6 +22,9 @@ import org.eclipse.wst.server.core.IModule;
  * state. Concrete classes need to specify the operation, like start or stopping
  * the application, as well as the state that the app needs to be in. If an
  * application is already in the expected state, the operation will not perform
+ * <p/>
+ * The wait times out after the given number of attempts multiplied by the
+ * sleep time, but the application state is checked more frequently early on.
  * 
  */
 public abstract class AbstractWaitForStateOperation {
@@ -60,22 +64,22 @@ public abstract class AbstractWaitForStateOperation {
 			if (appModule != null) {
 				IModule module = appModule.getLocalModule();
 				doOperation(cloudServer.getBehaviour(), module, progress);
-				Boolean result = new WaitWithProgressJob(attempts, sleep) {
+				ApplicationCondition inState = new ApplicationCondition() {
 
 					@Override
-					protected boolean internalRunInWait(IProgressMonitor monitor) throws CoreException {
-						CloudApplication updatedCloudApp = cloudServer.getBehaviour().getApplication(appName, monitor);
-
-						return updatedCloudApp != null && isInState(updatedCloudApp.getState());
+					public boolean isSatisfied(CloudApplication application) {
+						return isInState(application.getState());
 					}
 
 					@Override
-					protected boolean shouldRetryOnError(Throwable t) {
+					public boolean retryOnError() {
 						return true;
 					}
 
-				}.run(progress);
-				return result.booleanValue();
+				};
+				CloudApplication application = cloudServer.getBehaviour().waitForApplication(appName, inState,
+						attempts * sleep, progress);
+				return application != null;
 			}
 			return false;
 		}
@@ -20,6 +20,10 @@ import org.eclipse.core.runtime.IProgressMonitor;
  * attempts is reached. If an invalid result is returned at the end of the
  * maximum attempt, and it's due to an error, a CoreException is thrown.
  * <p/>
+ * The waiting period starts at a quarter of the sleep time, and doubles after
+ * each attempt up to twice the sleep time, with some random variation so that
+ * concurrent jobs do not reattempt at the same time.
+ * <p/>
  * A check is also performed on the progress monitor, if it is cancelled before
  * the maximum number of attempts is reached, the operation is cancelled,
  * regardless of whether a valid result was obtained or not.
@@ -64,6 +68,7 @@ public abstract class AbstractWaitWithProgressJob<T> {
 		Throwable lastError = null;
 
 		T result = null;
+		ExponentialBackoff backoff = new ExponentialBackoff(sleepTime / 4, sleepTime * 2);
 		int i = 0;
 		while (i < attempts && !monitor.isCanceled()) {
 			boolean reattempt = false;
@@ -82,11 +87,9 @@ public abstract class AbstractWaitWithProgressJob<T> {
 			}
 
 			if (reattempt) {
-				try {
-					Thread.sleep(sleepTime);
-				}
-				catch (InterruptedException e) {
-					// Ignore and proceed
+				// Stops waiting if the monitor is cancelled while sleeping
+				if (!ExponentialBackoff.sleep(backoff.nextDelay(), monitor)) {
+					break;
 				}
 			}
 			else {
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.cloudfoundry.client.lib.CloudFoundryClient;
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.rest.CloudControllerClient;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Reads byte ranges of the files of application instances as bytes.
+ * <p/>
+ * The Java client only returns file content as text, decoded with the charset
+ * of the response, so the number of bytes that were read cannot be recovered
+ * from the text reliably. The range is therefore requested through the rest
+ * template of the client, with the same URL and authorisation as the client
+ * uses. As the client does not expose its rest template, it is obtained from
+ * the internals of the client, as in {@link PooledHttpTransport}. If the
+ * internals of the client do not match, the content returned by the client is
+ * encoded as ISO-8859-1, the charset the client decodes content with if the
+ * response does not specify one.
+ */
+public class ApplicationFileReader {
+
+	private static final String ISO_8859_1 = "ISO-8859-1";
+
+	private ApplicationFileReader() {
+		// Util class
+	}
+
+	/**
+	 *
+	 * @param operations
+	 * @param appName
+	 * @param instanceIndex
+	 * @param filePath
+	 * @param startPosition
+	 * @param endPosition inclusive
+	 * @return the bytes of the given range, which may be shorter than the
+	 * range at the end of the file. Never null.
+	 */
+	public static byte[] getFile(CloudFoundryOperations operations, String appName, int instanceIndex,
+			String filePath, int startPosition, int endPosition) {
+		Object controllerClient = getControllerClient(operations);
+		if (controllerClient != null) {
+			try {
+				RestTemplate restTemplate = (RestTemplate) invoke(controllerClient, "getRestTemplate");
+				String urlPath = (String) invoke(controllerClient, "getFileUrlPath");
+				String url = (String) invoke(controllerClient, "getUrl", urlPath);
+				Object appId = invoke(controllerClient, "getFileAppId", appName);
+				return restTemplate.execute(url, HttpMethod.GET, new RangeRequestCallback(startPosition,
+						endPosition), new RangeResponseExtractor(startPosition, endPosition), appId, instanceIndex,
+						filePath);
+			}
+			catch (NoSuchMethodException e) {
+				CloudFoundryPlugin.trace("Unable to read file bytes for client of "
+						+ operations.getCloudControllerUrl());
+			}
+			catch (IllegalAccessException e) {
+				CloudFoundryPlugin.logError("Unable to read file bytes for client of "
+						+ operations.getCloudControllerUrl(), e);
+			}
+			catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+
+		String content = operations.getFile(appName, instanceIndex, filePath, startPosition, endPosition);
+		if (content == null) {
+			return new byte[0];
+		}
+		try {
+			return content.getBytes(ISO_8859_1);
+		}
+		catch (UnsupportedEncodingException e) {
+			// Required to be supported by all JVMs
+			throw new IllegalStateException(e);
+		}
+	}
+
+	protected static Object getControllerClient(CloudFoundryOperations operations) {
+		operations = CachingCloudFoundryOperations.unwrap(operations);
+		if (!(operations instanceof CloudFoundryClient)) {
+			return null;
+		}
+		try {
+			return PooledHttpTransport.getFieldValue(operations, CloudControllerClient.class);
+		}
+		catch (IllegalAccessException e) {
+			return null;
+		}
+		catch (SecurityException e) {
+			return null;
+		}
+	}
+
+	protected static Object invoke(Object object, String name, Object... args) throws NoSuchMethodException,
+			IllegalAccessException, InvocationTargetException {
+		for (Class<?> clazz = object.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+			for (Method method : clazz.getDeclaredMethods()) {
+				if (method.getName().equals(name) && method.getParameterTypes().length == args.length) {
+					method.setAccessible(true);
+					return method.invoke(object, args);
+				}
+			}
+		}
+		throw new NoSuchMethodException(name);
+	}
+
+	protected static class RangeRequestCallback implements RequestCallback {
+
+		private final int startPosition;
+
+		private final int endPosition;
+
+		RangeRequestCallback(int startPosition, int endPosition) {
+			this.startPosition = startPosition;
+			this.endPosition = endPosition;
+		}
+
+		public void doWithRequest(ClientHttpRequest request) throws IOException {
+			request.getHeaders().set("Range", "bytes=" + startPosition + "-" + endPosition); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Returns the bytes of the range. Servers that ignore the range return
+	 * the whole file, from which the range is extracted.
+	 */
+	protected static class RangeResponseExtractor implements ResponseExtractor<byte[]> {
+
+		private final int startPosition;
+
+		private final int endPosition;
+
+		RangeResponseExtractor(int startPosition, int endPosition) {
+			this.startPosition = startPosition;
+			this.endPosition = endPosition;
+		}
+
+		public byte[] extractData(ClientHttpResponse response) throws IOException {
+			byte[] bytes = FileCopyUtils.copyToByteArray(response.getBody());
+			if (response.getStatusCode() == HttpStatus.PARTIAL_CONTENT) {
+				return bytes;
+			}
+			int start = Math.min(startPosition, bytes.length);
+			int end = Math.min(endPosition + 1, bytes.length);
+			byte[] range = new byte[end - start];
+			System.arraycopy(bytes, start, range, 0, range.length);
+			return range;
+		}
+	}
+
+}
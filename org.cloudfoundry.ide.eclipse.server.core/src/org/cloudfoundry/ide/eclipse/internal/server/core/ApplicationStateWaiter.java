@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.client.lib.domain.InstanceInfo;
+import org.cloudfoundry.client.lib.domain.InstanceState;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Waits for applications of a server to reach a given state, for example
+ * after an application is uploaded or started.
+ * <p/>
+ * The state of an application is polled with an exponential backoff, so that
+ * applications that reach their state quickly are detected quickly, and those
+ * that take longer do not cause needless requests. Waiters for the same
+ * application share a single status request, instead of each sending their
+ * own. A wait for an application to start fails as soon as all its instances
+ * have crashed, rather than waiting until the timeout.
+ * <p/>
+ * Waits are cancelled through their progress monitor.
+ */
+public class ApplicationStateWaiter {
+
+	private static final long INITIAL_INTERVAL = 500;
+
+	private static final long MAX_INTERVAL = 5 * 1000;
+
+	/**
+	 * Condition that an application must meet for a wait to complete.
+	 */
+	public static abstract class ApplicationCondition {
+
+		/**
+		 *
+		 * @param application current state of the application. Never null.
+		 * @return true if the wait is complete
+		 */
+		public abstract boolean isSatisfied(CloudApplication application);
+
+		/**
+		 *
+		 * @return true if the wait should fail once all the instances of the
+		 * application have crashed
+		 */
+		public boolean failOnCrash() {
+			return false;
+		}
+
+		/**
+		 *
+		 * @return true if the application state should be requested again
+		 * after a failed request, false if the failure should end the wait
+		 */
+		public boolean retryOnError() {
+			return false;
+		}
+	}
+
+	/**
+	 * Condition satisfied once an application is started.
+	 */
+	public static class ApplicationStarted extends ApplicationCondition {
+
+		@Override
+		public boolean isSatisfied(CloudApplication application) {
+			return AppState.STARTED.equals(application.getState());
+		}
+
+		@Override
+		public boolean failOnCrash() {
+			return true;
+		}
+	}
+
+	/**
+	 * State of an application obtained from a single status request.
+	 */
+	protected static class ApplicationStatus {
+
+		final CloudApplication application;
+
+		/** null if instances were not requested */
+		final InstancesInfo instances;
+
+		ApplicationStatus(CloudApplication application, InstancesInfo instances) {
+			this.application = application;
+			this.instances = instances;
+		}
+	}
+
+	/** Status requests in progress, by application and request type */
+	private final RequestCoalescer requests = new RequestCoalescer();
+
+	/**
+	 * Waits until the application meets the given condition, or the timeout
+	 * elapses.
+	 * @param client
+	 * @param appName
+	 * @param condition
+	 * @param timeout in milliseconds
+	 * @param monitor
+	 * @return the application once it meets the condition, or null if the
+	 * timeout elapsed first
+	 * @throws CoreException if the instances of the application crashed and
+	 * the condition fails on crashes, or if the application state could not be
+	 * obtained
+	 * @throws OperationCanceledException if the monitor is cancelled
+	 */
+	public CloudApplication waitFor(CloudFoundryOperations client, String appName, ApplicationCondition condition,
+			long timeout, IProgressMonitor monitor) throws CoreException {
+		long deadline = System.currentTimeMillis() + timeout;
+		ExponentialBackoff backoff = new ExponentialBackoff(INITIAL_INTERVAL, MAX_INTERVAL);
+		RuntimeException lastError = null;
+
+		while (true) {
+			if (monitor != null && monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			try {
+				ApplicationStatus status = getStatus(client, appName, condition.failOnCrash(), monitor);
+				lastError = null;
+				if (status.application != null) {
+					if (condition.isSatisfied(status.application)) {
+						return status.application;
+					}
+					if (condition.failOnCrash() && hasCrashed(status.instances)) {
+						throw new CoreException(CloudFoundryPlugin.getErrorStatus(NLS.bind(
+								"All instances of {0} crashed. Check the application logs for details.", appName)));
+					}
+				}
+			}
+			catch (RuntimeException e) {
+				if (e instanceof OperationCanceledException || !condition.retryOnError()) {
+					throw e;
+				}
+				lastError = e;
+			}
+
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				break;
+			}
+			if (!ExponentialBackoff.sleep(Math.min(backoff.nextDelay(), remaining), monitor)) {
+				throw new OperationCanceledException();
+			}
+		}
+
+		if (lastError != null) {
+			throw new CoreException(CloudFoundryPlugin.getErrorStatus(lastError));
+		}
+		return null;
+	}
+
+	/**
+	 * Requests the status of the application, or joins a request for it that
+	 * is already in progress. The request is sent directly to the server, as
+	 * a cached status would delay detection of state changes.
+	 */
+	protected ApplicationStatus getStatus(CloudFoundryOperations client, final String appName,
+			final boolean withInstances, IProgressMonitor monitor) throws CoreException {
+		final CloudFoundryOperations operations = CachingCloudFoundryOperations.unwrap(client);
+		String key = withInstances ? appName + "#instances" : appName;
+		return requests.run(key, new Callable<ApplicationStatus>() {
+			public ApplicationStatus call() throws Exception {
+				CloudApplication application = operations.getApplication(appName);
+				InstancesInfo instances = null;
+				if (withInstances && application != null && AppState.STARTED.equals(application.getState())
+						&& application.getRunningInstances() < application.getInstances()) {
+					instances = operations.getApplicationInstances(appName);
+				}
+				return new ApplicationStatus(application, instances);
+			}
+		}, monitor);
+	}
+
+	/**
+	 *
+	 * @param instances may be null
+	 * @return true if the application has instances, and all of them crashed
+	 */
+	protected static boolean hasCrashed(InstancesInfo instances) {
+		if (instances == null) {
+			return false;
+		}
+		List<InstanceInfo> infos = instances.getInstances();
+		if (infos == null || infos.isEmpty()) {
+			return false;
+		}
+		for (InstanceInfo info : infos) {
+			InstanceState state = info.getState();
+			if (state != InstanceState.CRASHED && state != InstanceState.FLAPPING) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
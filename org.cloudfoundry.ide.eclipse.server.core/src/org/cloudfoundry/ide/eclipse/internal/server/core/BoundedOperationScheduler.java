@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Runs an operation on a list of elements, with at most a given number of
+ * elements being processed at the same time. Failures for individual elements
+ * do not stop the remaining elements from being processed. Instead the status
+ * for each element is collected in a {@link MultiStatus}.
+ * <p/>
+ * Progress is reported on the calling thread as each element completes.
+ * Operations running on worker threads receive a monitor that only reflects
+ * cancellation of the monitor passed by the caller. If the parallelism limit
+ * is 1, or there is only one element, elements are processed on the calling
+ * thread with the caller's monitor.
+ * <p/>
+ * Once the caller's monitor is cancelled, no further operation is started.
+ * Operations that are already running are allowed to complete in the
+ * background.
+ *
+ * @param <T> type of the elements
+ */
+public abstract class BoundedOperationScheduler<T> {
+
+	/**
+	 * Operation performed on each element. Implementations must be safe to run
+	 * concurrently for different elements.
+	 */
+	public interface Operation<T> {
+
+		public void run(T element, IProgressMonitor monitor) throws CoreException;
+
+	}
+
+	private final int parallelism;
+
+	private final String label;
+
+	/**
+	 *
+	 * @param label used for progress and as the message of the resulting
+	 * multi status
+	 * @param parallelism maximum number of elements processed at the same
+	 * time. Values less than 1 are treated as 1.
+	 */
+	public BoundedOperationScheduler(String label, int parallelism) {
+		this.label = label;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 *
+	 * @param elements
+	 * @param operation
+	 * @param monitor
+	 * @return non-null multi status with a child status for each element.
+	 * Status is OK if all elements were processed successfully.
+	 * @throws OperationCanceledException if the monitor is cancelled. Elements
+	 * already being processed are allowed to complete, and elements that have
+	 * not been started are not processed.
+	 */
+	public MultiStatus run(List<T> elements, final Operation<T> operation, IProgressMonitor monitor) {
+		MultiStatus result = new MultiStatus(CloudFoundryPlugin.PLUGIN_ID, 0, label, null);
+		SubMonitor progress = SubMonitor.convert(monitor, label, elements.size());
+
+		try {
+			int threadCount = Math.min(parallelism, elements.size());
+			if (threadCount <= 1) {
+				for (T element : elements) {
+					if (progress.isCanceled()) {
+						throw new OperationCanceledException();
+					}
+					result.add(runOperation(operation, element, progress.newChild(1)));
+				}
+				return result;
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, label);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+			final IProgressMonitor cancellationMonitor = new CancellationMonitor(progress);
+			List<Future<IStatus>> futures = new ArrayList<Future<IStatus>>(elements.size());
+
+			try {
+				CompletionService<IStatus> completionService = new ExecutorCompletionService<IStatus>(executor);
+				for (final T element : elements) {
+					futures.add(completionService.submit(new Callable<IStatus>() {
+						public IStatus call() throws Exception {
+							// Queued operations may only start after the
+							// caller stopped waiting for them
+							if (cancellationMonitor.isCanceled()) {
+								return new Status(IStatus.CANCEL, CloudFoundryPlugin.PLUGIN_ID, getName(element));
+							}
+							return runOperation(operation, element, cancellationMonitor);
+						}
+					}));
+				}
+
+				int remaining = elements.size();
+				while (remaining > 0) {
+					if (progress.isCanceled()) {
+						throw new OperationCanceledException();
+					}
+					Future<IStatus> completed = completionService.poll(
+							RequestCoalescer.CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+					if (completed == null) {
+						continue;
+					}
+					remaining--;
+					progress.worked(1);
+					try {
+						result.add(completed.get());
+					}
+					catch (ExecutionException e) {
+						if (e.getCause() instanceof OperationCanceledException) {
+							throw (OperationCanceledException) e.getCause();
+						}
+						result.add(CloudFoundryPlugin.getErrorStatus(e.getCause()));
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				throw new OperationCanceledException();
+			}
+			finally {
+				// Operations that have not started are discarded. Do not
+				// interrupt operations that are still running, as interrupting
+				// client requests may leave an element in an inconsistent
+				// state.
+				for (Future<IStatus> future : futures) {
+					future.cancel(false);
+				}
+				executor.shutdown();
+			}
+		}
+		finally {
+			progress.done();
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @param element
+	 * @return name of the element used in its status
+	 */
+	protected abstract String getName(T element);
+
+	protected IStatus runOperation(Operation<T> operation, T element, IProgressMonitor monitor) {
+		String name = getName(element);
+		try {
+			operation.run(element, monitor);
+			return new Status(IStatus.OK, CloudFoundryPlugin.PLUGIN_ID, name);
+		}
+		catch (CoreException e) {
+			IStatus status = e.getStatus();
+			return new MultiStatus(CloudFoundryPlugin.PLUGIN_ID, 0, new IStatus[] { status }, NLS.bind("{0}: {1}",
+					name, status.getMessage()), e);
+		}
+		catch (OperationCanceledException e) {
+			throw e;
+		}
+		catch (RuntimeException e) {
+			return CloudFoundryPlugin.getErrorStatus(NLS.bind("{0}: {1}", name, e.getMessage()), e);
+		}
+	}
+
+	/**
+	 * Monitor passed to operations running on worker threads. Progress
+	 * monitors are not thread safe, so only cancellation is propagated from the
+	 * caller's monitor.
+	 */
+	protected static class CancellationMonitor extends NullProgressMonitor {
+
+		private final IProgressMonitor parent;
+
+		public CancellationMonitor(IProgressMonitor parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || parent.isCanceled();
+		}
+
+	}
+
+}
@@ -0,0 +1,895 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
+
+import org.cloudfoundry.client.lib.CloudCredentials;
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.cloudfoundry.client.lib.RestLogCallback;
+import org.cloudfoundry.client.lib.UploadStatusCallback;
+import org.cloudfoundry.client.lib.archive.ApplicationArchive;
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.DebugMode;
+import org.cloudfoundry.client.lib.domain.CloudDomain;
+import org.cloudfoundry.client.lib.domain.CloudInfo;
+import org.cloudfoundry.client.lib.domain.CloudRoute;
+import org.cloudfoundry.client.lib.domain.CloudService;
+import org.cloudfoundry.client.lib.domain.CloudSpace;
+import org.cloudfoundry.client.lib.domain.CrashesInfo;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
+import org.cloudfoundry.client.lib.domain.ServiceConfiguration;
+import org.cloudfoundry.client.lib.domain.Staging;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Client that caches slow changing data read from the cloud controller, and
+ * delegates all other operations to another client.
+ * <p/>
+ * Each cached read has its own time to live. Concurrent reads of the same data
+ * share a single request to the cloud controller, and failed reads are not
+ * cached. Operations that change data through this client invalidate the
+ * cached data they affect once they complete, whether or not they succeed.
+ * Changes made through other clients, for example by another tool, are only
+ * seen once the cached data expires.
+ * <p/>
+ * Lists and arrays are copied before they are returned, so callers may
+ * modify them. Applications and services are copied as well, as callers
+ * update them locally, for example with the URIs just mapped in the editor.
+ * Other cached values must not be modified by callers.
+ * <p/>
+ * A caller waiting for data that another thread is loading stops waiting if
+ * the monitor set for its thread with {@link #setMonitor(IProgressMonitor)} is
+ * cancelled.
+ *
+ */
+public class CachingCloudFoundryOperations implements CloudFoundryOperations {
+
+	/**
+	 * Applications change state often, so they are only cached long enough to
+	 * share the result between the components that refresh at the same time.
+	 */
+	private static final long APPLICATIONS_TTL = 2 * 1000;
+
+	private static final long SERVICES_TTL = 30 * 1000;
+
+	private static final long CLOUD_INFO_TTL = 60 * 1000;
+
+	/**
+	 * Data that only changes when the cloud controller is reconfigured
+	 */
+	private static final long CONFIGURATION_TTL = 10 * 60 * 1000;
+
+	private static final String APPLICATIONS = "applications";
+
+	private static final String APPLICATION = "application:";
+
+	private static final String SERVICES = "services";
+
+	private static final String SERVICE = "service:";
+
+	private static final String CLOUD_INFO = "info";
+
+	private static final String SERVICE_CONFIGURATIONS = "serviceConfigurations";
+
+	private static final String MEMORY_CHOICES = "memoryChoices";
+
+	private static final String APPLICATION_PLANS = "applicationPlans";
+
+	private static final String DEFAULT_MEMORY = "defaultMemory:";
+
+	private final CloudFoundryOperations delegate;
+
+	private final ConcurrentMap<String, CachedValue<?>> cache = new ConcurrentHashMap<String, CachedValue<?>>();
+
+	private final Object proxyLock = new Object();
+
+	private HttpProxyConfiguration proxyConfiguration;
+
+	private boolean proxyConfigured;
+
+	private final ThreadLocal<IProgressMonitor> monitors = new ThreadLocal<IProgressMonitor>();
+
+	public CachingCloudFoundryOperations(CloudFoundryOperations delegate) {
+		this.delegate = delegate;
+	}
+
+	public CloudFoundryOperations getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 *
+	 * @param operations
+	 * @return the client that performs the requests for the given client.
+	 */
+	public static CloudFoundryOperations unwrap(CloudFoundryOperations operations) {
+		while (operations instanceof CachingCloudFoundryOperations) {
+			operations = ((CachingCloudFoundryOperations) operations).getDelegate();
+		}
+		return operations;
+	}
+
+	/**
+	 * Sets the monitor checked for cancellation while the current thread waits
+	 * for data loaded by another thread.
+	 * @param monitor may be null
+	 * @return the monitor previously set for the current thread, to be
+	 * restored once the caller is done
+	 */
+	public IProgressMonitor setMonitor(IProgressMonitor monitor) {
+		IProgressMonitor previous = monitors.get();
+		if (monitor != null) {
+			monitors.set(monitor);
+		}
+		else {
+			monitors.remove();
+		}
+		return previous;
+	}
+
+	/**
+	 * Discards all cached data. Must be called after data is changed through
+	 * the delegate directly.
+	 */
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	protected void invalidateApplication(String appName) {
+		cache.remove(APPLICATIONS);
+		cache.remove(APPLICATION + appName);
+		// The usage reported by the cloud info includes application memory
+		cache.remove(CLOUD_INFO);
+	}
+
+	protected void invalidateApplications() {
+		cache.remove(APPLICATIONS);
+		cache.remove(CLOUD_INFO);
+		for (String key : cache.keySet()) {
+			if (key.startsWith(APPLICATION)) {
+				cache.remove(key);
+			}
+		}
+	}
+
+	protected void invalidateService(String serviceName) {
+		cache.remove(SERVICES);
+		cache.remove(SERVICE + serviceName);
+		cache.remove(CLOUD_INFO);
+	}
+
+	/**
+	 * Returns the cached value for the given key, or loads it if it is not
+	 * cached or has expired. If the value is already being loaded by another
+	 * thread, waits for that thread to load it.
+	 * @throws OperationCanceledException if the monitor of the current thread
+	 * is cancelled while waiting
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> T get(String key, long ttl, Callable<T> loader) {
+		CachedValue<?> cached = cache.get(key);
+		if (cached != null && cached.isExpired(System.currentTimeMillis())) {
+			cache.remove(key, cached);
+			cached = null;
+		}
+		if (cached == null) {
+			CachedValue<T> created = new CachedValue<T>(loader, ttl);
+			cached = cache.putIfAbsent(key, created);
+			if (cached == null) {
+				cached = created;
+				created.load();
+			}
+		}
+
+		boolean loaded = false;
+		try {
+			T value = (T) cached.get(monitors.get());
+			loaded = true;
+			return value;
+		}
+		catch (CoreException e) {
+			// Loaders only throw the unchecked exceptions of the client
+			throw new IllegalStateException(e);
+		}
+		finally {
+			// Failed reads are not cached
+			if (!loaded && cached.isDone()) {
+				cache.remove(key, cached);
+			}
+		}
+	}
+
+	protected static <T> List<T> copy(List<T> list) {
+		return list != null ? new ArrayList<T>(list) : null;
+	}
+
+	protected static List<CloudApplication> copyApplications(List<CloudApplication> applications) {
+		if (applications == null) {
+			return null;
+		}
+		List<CloudApplication> copies = new ArrayList<CloudApplication>(applications.size());
+		for (CloudApplication application : applications) {
+			copies.add(copy(application));
+		}
+		return copies;
+	}
+
+	protected static CloudApplication copy(CloudApplication application) {
+		if (application == null) {
+			return null;
+		}
+		CloudApplication copy = new CloudApplication(application.getMeta(), application.getName());
+		Staging staging = application.getStaging();
+		if (staging != null) {
+			Staging stagingCopy = new Staging(staging.getRuntime(), staging.getFramework());
+			stagingCopy.setCommand(staging.getCommand());
+			copy.setStaging(stagingCopy);
+		}
+		if (application.getResources() != null) {
+			copy.setResources(new HashMap<String, Integer>(application.getResources()));
+		}
+		copy.setInstances(application.getInstances());
+		copy.setRunningInstances(application.getRunningInstances());
+		copy.setUris(copy(application.getUris()));
+		copy.setServices(copy(application.getServices()));
+		copy.setPlan(application.getPlan());
+		copy.setState(application.getState());
+		copy.setDebug(application.getDebug());
+		// Not set with setEnv, which rejects settings without a value
+		if (application.getEnv() != null) {
+			copy.getEnv().addAll(application.getEnv());
+		}
+		return copy;
+	}
+
+	protected static List<CloudService> copyServices(List<CloudService> services) {
+		if (services == null) {
+			return null;
+		}
+		List<CloudService> copies = new ArrayList<CloudService>(services.size());
+		for (CloudService service : services) {
+			copies.add(copy(service));
+		}
+		return copies;
+	}
+
+	protected static CloudService copy(CloudService service) {
+		if (service == null) {
+			return null;
+		}
+		CloudService copy = new CloudService(service.getMeta(), service.getName());
+		copy.setVersion(service.getVersion());
+		copy.setProvider(service.getProvider());
+		copy.setTier(service.getTier());
+		copy.setType(service.getType());
+		copy.setVendor(service.getVendor());
+		copy.setLabel(service.getLabel());
+		copy.setPlan(service.getPlan());
+		if (service.getOptions() != null) {
+			copy.getOptions().putAll(service.getOptions());
+		}
+		return copy;
+	}
+
+	static class CachedValue<T> {
+
+		private final FutureTask<T> task;
+
+		private final long ttl;
+
+		private volatile long expiry = Long.MAX_VALUE;
+
+		CachedValue(Callable<T> loader, long ttl) {
+			this.task = new FutureTask<T>(loader);
+			this.ttl = ttl;
+		}
+
+		void load() {
+			task.run();
+			expiry = System.currentTimeMillis() + ttl;
+		}
+
+		T get(IProgressMonitor monitor) throws CoreException {
+			return RequestCoalescer.getResult(task, monitor);
+		}
+
+		boolean isDone() {
+			return task.isDone();
+		}
+
+		boolean isExpired(long time) {
+			return isDone() && time >= expiry;
+		}
+	}
+
+	// Cached reads
+
+	public CloudInfo getCloudInfo() {
+		return get(CLOUD_INFO, CLOUD_INFO_TTL, new Callable<CloudInfo>() {
+			public CloudInfo call() throws Exception {
+				return delegate.getCloudInfo();
+			}
+		});
+	}
+
+	public List<String> getApplicationPlans() {
+		return copy(get(APPLICATION_PLANS, CONFIGURATION_TTL, new Callable<List<String>>() {
+			public List<String> call() throws Exception {
+				return delegate.getApplicationPlans();
+			}
+		}));
+	}
+
+	public List<CloudApplication> getApplications() {
+		return copyApplications(get(APPLICATIONS, APPLICATIONS_TTL, new Callable<List<CloudApplication>>() {
+			public List<CloudApplication> call() throws Exception {
+				return delegate.getApplications();
+			}
+		}));
+	}
+
+	public CloudApplication getApplication(final String appName) {
+		return copy(get(APPLICATION + appName, APPLICATIONS_TTL, new Callable<CloudApplication>() {
+			public CloudApplication call() throws Exception {
+				return delegate.getApplication(appName);
+			}
+		}));
+	}
+
+	public int[] getApplicationMemoryChoices() {
+		int[] choices = get(MEMORY_CHOICES, CONFIGURATION_TTL, new Callable<int[]>() {
+			public int[] call() throws Exception {
+				return delegate.getApplicationMemoryChoices();
+			}
+		});
+		return choices != null ? choices.clone() : null;
+	}
+
+	public int getDefaultApplicationMemory(final String framework) {
+		return get(DEFAULT_MEMORY + framework, CONFIGURATION_TTL, new Callable<Integer>() {
+			public Integer call() throws Exception {
+				return delegate.getDefaultApplicationMemory(framework);
+			}
+		});
+	}
+
+	public List<CloudService> getServices() {
+		return copyServices(get(SERVICES, SERVICES_TTL, new Callable<List<CloudService>>() {
+			public List<CloudService> call() throws Exception {
+				return delegate.getServices();
+			}
+		}));
+	}
+
+	public CloudService getService(final String service) {
+		return copy(get(SERVICE + service, SERVICES_TTL, new Callable<CloudService>() {
+			public CloudService call() throws Exception {
+				return delegate.getService(service);
+			}
+		}));
+	}
+
+	public List<ServiceConfiguration> getServiceConfigurations() {
+		return copy(get(SERVICE_CONFIGURATIONS, CONFIGURATION_TTL, new Callable<List<ServiceConfiguration>>() {
+			public List<ServiceConfiguration> call() throws Exception {
+				return delegate.getServiceConfigurations();
+			}
+		}));
+	}
+
+	// Uncached reads
+
+	public URL getCloudControllerUrl() {
+		return delegate.getCloudControllerUrl();
+	}
+
+	public boolean supportsSpaces() {
+		return delegate.supportsSpaces();
+	}
+
+	public List<CloudSpace> getSpaces() {
+		return delegate.getSpaces();
+	}
+
+	public ApplicationStats getApplicationStats(String appName) {
+		return delegate.getApplicationStats(appName);
+	}
+
+	public Map<String, String> getLogs(String appName) {
+		return delegate.getLogs(appName);
+	}
+
+	public Map<String, String> getCrashLogs(String appName) {
+		return delegate.getCrashLogs(appName);
+	}
+
+	public String getFile(String appName, int instanceIndex, String filePath) {
+		return delegate.getFile(appName, instanceIndex, filePath);
+	}
+
+	public String getFile(String appName, int instanceIndex, String filePath, int startPosition) {
+		return delegate.getFile(appName, instanceIndex, filePath, startPosition);
+	}
+
+	public String getFile(String appName, int instanceIndex, String filePath, int startPosition, int endPosition) {
+		return delegate.getFile(appName, instanceIndex, filePath, startPosition, endPosition);
+	}
+
+	public String getFileTail(String appName, int instanceIndex, String filePath, int length) {
+		return delegate.getFileTail(appName, instanceIndex, filePath, length);
+	}
+
+	public InstancesInfo getApplicationInstances(String appName) {
+		return delegate.getApplicationInstances(appName);
+	}
+
+	public CrashesInfo getCrashes(String appName) {
+		return delegate.getCrashes(appName);
+	}
+
+	public List<CloudDomain> getDomainsForOrg() {
+		return delegate.getDomainsForOrg();
+	}
+
+	public List<CloudDomain> getDomains() {
+		return delegate.getDomains();
+	}
+
+	public List<CloudRoute> getRoutes(String domainName) {
+		return delegate.getRoutes(domainName);
+	}
+
+	public void registerRestLogListener(RestLogCallback callBack) {
+		delegate.registerRestLogListener(callBack);
+	}
+
+	public void unRegisterRestLogListener(RestLogCallback callBack) {
+		delegate.unRegisterRestLogListener(callBack);
+	}
+
+	// Account and session changes, which may change all data visible to the
+	// client
+
+	public void register(String email, String password) {
+		try {
+			delegate.register(email, password);
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public void updatePassword(String newPassword) {
+		try {
+			delegate.updatePassword(newPassword);
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public void updatePassword(CloudCredentials credentials, String newPassword) {
+		try {
+			delegate.updatePassword(credentials, newPassword);
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public void unregister() {
+		try {
+			delegate.unregister();
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public String login() {
+		try {
+			return delegate.login();
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public void logout() {
+		try {
+			delegate.logout();
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * The proxy configuration is updated before every request, so it is only
+	 * passed on to the delegate if it changed. A different proxy does not
+	 * change the data read through it, so cached data is kept.
+	 */
+	public void updateHttpProxyConfiguration(HttpProxyConfiguration httpProxyConfiguration) {
+		synchronized (proxyLock) {
+			if (proxyConfigured && isSameProxy(proxyConfiguration, httpProxyConfiguration)) {
+				return;
+			}
+			delegate.updateHttpProxyConfiguration(httpProxyConfiguration);
+			proxyConfiguration = httpProxyConfiguration;
+			proxyConfigured = true;
+		}
+	}
+
+	protected static boolean isSameProxy(HttpProxyConfiguration proxy, HttpProxyConfiguration otherProxy) {
+		if (proxy == null || otherProxy == null) {
+			return proxy == otherProxy;
+		}
+		return proxy.getProxyPort() == otherProxy.getProxyPort()
+				&& (proxy.getProxyHost() != null ? proxy.getProxyHost().equals(otherProxy.getProxyHost())
+						: otherProxy.getProxyHost() == null);
+	}
+
+	// Application changes
+
+	public void createApplication(String appName, Staging staging, int memory, List<String> uris,
+			List<String> serviceNames, String checkExists) {
+		try {
+			delegate.createApplication(appName, staging, memory, uris, serviceNames, checkExists);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void createApplication(String appName, Staging staging, int memory, List<String> uris,
+			List<String> serviceNames, boolean checkExists) {
+		try {
+			delegate.createApplication(appName, staging, memory, uris, serviceNames, checkExists);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void createApplication(String appName, Staging staging, int memory, List<String> uris,
+			List<String> serviceNames) {
+		try {
+			delegate.createApplication(appName, staging, memory, uris, serviceNames);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void createApplication(String appName, Staging staging, int memory, List<String> uris,
+			List<String> serviceNames, String checkExists, boolean force) {
+		try {
+			delegate.createApplication(appName, staging, memory, uris, serviceNames, checkExists, force);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void createApplication(String appName, String framework, int memory, List<String> uris,
+			List<String> serviceNames) {
+		try {
+			delegate.createApplication(appName, framework, memory, uris, serviceNames);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void createApplication(String appName, String framework, int memory, List<String> uris,
+			List<String> serviceNames, boolean checkExists) {
+		try {
+			delegate.createApplication(appName, framework, memory, uris, serviceNames, checkExists);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void uploadApplication(String appName, String file) throws IOException {
+		try {
+			delegate.uploadApplication(appName, file);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void uploadApplication(String appName, File file) throws IOException {
+		try {
+			delegate.uploadApplication(appName, file);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void uploadApplication(String appName, File file, UploadStatusCallback callback) throws IOException {
+		try {
+			delegate.uploadApplication(appName, file, callback);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void uploadApplication(String appName, ApplicationArchive archive) throws IOException {
+		try {
+			delegate.uploadApplication(appName, archive);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void uploadApplication(String appName, ApplicationArchive archive, UploadStatusCallback callback)
+			throws IOException {
+		try {
+			delegate.uploadApplication(appName, archive, callback);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void startApplication(String appName) {
+		try {
+			delegate.startApplication(appName);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void debugApplication(String appName, DebugMode mode) {
+		try {
+			delegate.debugApplication(appName, mode);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void stopApplication(String appName) {
+		try {
+			delegate.stopApplication(appName);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void restartApplication(String appName) {
+		try {
+			delegate.restartApplication(appName);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void deleteApplication(String appName) {
+		try {
+			delegate.deleteApplication(appName);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void deleteAllApplications() {
+		try {
+			delegate.deleteAllApplications();
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public void updateApplicationMemory(String appName, int memory) {
+		try {
+			delegate.updateApplicationMemory(appName, memory);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void updateApplicationInstances(String appName, int instances) {
+		try {
+			delegate.updateApplicationInstances(appName, instances);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void updateApplicationServices(String appName, List<String> services) {
+		try {
+			delegate.updateApplicationServices(appName, services);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void updateApplicationStaging(String appName, Staging staging) {
+		try {
+			delegate.updateApplicationStaging(appName, staging);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void updateApplicationUris(String appName, List<String> uris) {
+		try {
+			delegate.updateApplicationUris(appName, uris);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void updateApplicationEnv(String appName, Map<String, String> env) {
+		try {
+			delegate.updateApplicationEnv(appName, env);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void updateApplicationEnv(String appName, List<String> env) {
+		try {
+			delegate.updateApplicationEnv(appName, env);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void updateApplicationPlan(String appName, String applicationPlan) {
+		try {
+			delegate.updateApplicationPlan(appName, applicationPlan);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void rename(String appName, String newName) {
+		try {
+			delegate.rename(appName, newName);
+		}
+		finally {
+			invalidateApplication(appName);
+			invalidateApplication(newName);
+		}
+	}
+
+	// Service changes
+
+	public void createService(CloudService service) {
+		try {
+			delegate.createService(service);
+		}
+		finally {
+			invalidateService(service.getName());
+		}
+	}
+
+	public void deleteService(String service) {
+		try {
+			delegate.deleteService(service);
+		}
+		finally {
+			invalidateService(service);
+			// Applications list the services bound to them
+			invalidateApplications();
+		}
+	}
+
+	public void deleteAllServices() {
+		try {
+			delegate.deleteAllServices();
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	public void bindService(String appName, String serviceName) {
+		try {
+			delegate.bindService(appName, serviceName);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	public void unbindService(String appName, String serviceName) {
+		try {
+			delegate.unbindService(appName, serviceName);
+		}
+		finally {
+			invalidateApplication(appName);
+		}
+	}
+
+	// Domain and route changes, which may change the URIs of applications
+
+	public void addDomain(String domainName) {
+		try {
+			delegate.addDomain(domainName);
+		}
+		finally {
+			invalidateApplications();
+		}
+	}
+
+	public void removeDomain(String domainName) {
+		try {
+			delegate.removeDomain(domainName);
+		}
+		finally {
+			invalidateApplications();
+		}
+	}
+
+	public void deleteDomain(String domainName) {
+		try {
+			delegate.deleteDomain(domainName);
+		}
+		finally {
+			invalidateApplications();
+		}
+	}
+
+	public void addRoute(String host, String domainName) {
+		try {
+			delegate.addRoute(host, domainName);
+		}
+		finally {
+			invalidateApplications();
+		}
+	}
+
+	public void deleteRoute(String host, String domainName) {
+		try {
+			delegate.deleteRoute(host, domainName);
+		}
+		finally {
+			invalidateApplications();
+		}
+	}
+
+}
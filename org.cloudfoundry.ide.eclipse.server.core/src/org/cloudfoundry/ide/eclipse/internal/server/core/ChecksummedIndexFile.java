@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary index file of the plugin, which starts with a magic number and a
+ * format version, and ends with a CRC32 checksum of its content. An index with
+ * another magic number or version, a checksum mismatch or any other read error
+ * is discarded.
+ * <p/>
+ * An index is first written to a temporary file in the same folder, which
+ * then replaces the index. Where a file cannot be renamed over an existing
+ * file, the index is deleted before the temporary file is renamed, so an
+ * interrupted save may leave no index, which reads as empty, but never a
+ * partially written one.
+ */
+public class ChecksummedIndexFile {
+
+	/**
+	 * Reads the content of an index, between its version and its checksum.
+	 */
+	public interface ContentReader {
+
+		void read(DataInputStream in) throws IOException;
+
+	}
+
+	/**
+	 * Writes the content of an index, between its version and its checksum.
+	 */
+	public interface ContentWriter {
+
+		void write(DataOutputStream out) throws IOException;
+
+	}
+
+	private final File file;
+
+	private final int magic;
+
+	private final int version;
+
+	private final String description;
+
+	/**
+	 *
+	 * @param file
+	 * @param magic identifies the kind of index
+	 * @param version version of the format of the content
+	 * @param description of the index, for error messages
+	 */
+	public ChecksummedIndexFile(File file, int magic, int version, String description) {
+		this.file = file;
+		this.magic = magic;
+		this.version = version;
+		this.description = description;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Reads the index. An index that cannot be read is deleted.
+	 * @param reader
+	 * @return true if the index exists and its content was read and matches
+	 * its checksum. If false, whatever the reader read must be discarded.
+	 */
+	public boolean read(ContentReader reader) {
+		if (!file.exists()) {
+			return false;
+		}
+		boolean valid = false;
+		DataInputStream rawIn = null;
+		try {
+			rawIn = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			CheckedInputStream checkedIn = new CheckedInputStream(rawIn, new CRC32());
+			DataInputStream in = new DataInputStream(checkedIn);
+
+			if (in.readInt() != magic || in.readInt() != version) {
+				CloudFoundryPlugin.trace("Discarding " + description + " with unknown format: " + file);
+			}
+			else {
+				reader.read(in);
+				long expectedChecksum = checkedIn.getChecksum().getValue();
+				valid = rawIn.readLong() == expectedChecksum;
+				if (!valid) {
+					CloudFoundryPlugin.logError("Discarding corrupt " + description + ": " + file);
+				}
+			}
+		}
+		catch (IOException e) {
+			CloudFoundryPlugin.logError("Failed to read " + description + " " + file, e);
+		}
+		finally {
+			close(rawIn);
+		}
+
+		if (!valid) {
+			file.delete();
+		}
+		return valid;
+	}
+
+	/**
+	 * Writes the index.
+	 * @param writer
+	 * @return true if the index was replaced
+	 */
+	public boolean write(ContentWriter writer) {
+		File tempFile = null;
+		DataOutputStream rawOut = null;
+		boolean written = false;
+		try {
+			file.getParentFile().mkdirs();
+			// Unique, as an index may be shared by several workspaces
+			tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+
+			rawOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			CheckedOutputStream checkedOut = new CheckedOutputStream(rawOut, new CRC32());
+			DataOutputStream out = new DataOutputStream(checkedOut);
+
+			out.writeInt(magic);
+			out.writeInt(version);
+			writer.write(out);
+			out.flush();
+			rawOut.writeLong(checkedOut.getChecksum().getValue());
+			rawOut.close();
+			rawOut = null;
+
+			written = tempFile.renameTo(file);
+			if (!written && file.delete()) {
+				written = tempFile.renameTo(file);
+			}
+			if (!written) {
+				CloudFoundryPlugin.logError("Failed to replace " + description + " " + file);
+			}
+		}
+		catch (IOException e) {
+			CloudFoundryPlugin.logError("Failed to write " + description + " " + file, e);
+		}
+		finally {
+			close(rawOut);
+			if (!written && tempFile != null) {
+				tempFile.delete();
+			}
+		}
+		return written;
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			}
+			catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+}
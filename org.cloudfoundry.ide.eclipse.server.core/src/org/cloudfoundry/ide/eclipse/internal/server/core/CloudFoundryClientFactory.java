@@ -41,6 +41,8 @@ public class CloudFoundryClientFactory {
 	// services
 	public static final String SPRING_IDE_UAA_BUNDLE_SYMBOLIC_NAME = "org.springframework.ide.eclipse.uaa";
 
+	private PooledHttpTransport httpTransport;
+
 	public CloudFoundryOperations getCloudFoundryOperations(boolean isUAAIDEAvailable, String userName,
 			String password, URL url) {
 		return getCloudFoundryOperations(isUAAIDEAvailable, getCredentials(userName, password), url);
@@ -54,7 +56,8 @@ public class CloudFoundryClientFactory {
 	public CloudFoundryOperations getCloudFoundryOperations(boolean isUAAIDEAvailable, CloudCredentials credentials,
 			URL url, CloudSpace session) {
 		if (isUAAIDEAvailable) {
-			return new UaaAwareCloudFoundryClientAccessor().getCloudFoundryOperations(credentials, url, session);
+			return usePooledConnections(
+					new UaaAwareCloudFoundryClientAccessor().getCloudFoundryOperations(credentials, url, session), url);
 		}
 		else {
 			return getCloudFoundryOperations(credentials, url, session);
@@ -66,6 +69,19 @@ public class CloudFoundryClientFactory {
 		return getCloudFoundryOperations(credentials, url, null);
 	}
 
+	/**
+	 * Wraps a client that is used for the lifetime of a server connection, so
+	 * that slow changing data requested repeatedly by different components is
+	 * cached and shared.
+	 * @param operations
+	 * @return caching client for the given client, or null if the client is
+	 * null
+	 * @see CachingCloudFoundryOperations
+	 */
+	public CloudFoundryOperations getCachingCloudFoundryOperations(CloudFoundryOperations operations) {
+		return operations != null ? new CachingCloudFoundryOperations(operations) : null;
+	}
+
 	protected static CloudCredentials getCredentials(String userName, String password) {
 		return new CloudCredentials(userName, password);
 	}
@@ -73,13 +89,51 @@ public class CloudFoundryClientFactory {
 	public CloudFoundryOperations getCloudFoundryOperations(String cloudControllerUrl) throws MalformedURLException {
 		URL url = new URL(cloudControllerUrl);
 		HttpProxyConfiguration proxyConfiguration = getProxy(url);
-		return new CloudFoundryClient(url, proxyConfiguration);
+		return usePooledConnections(new CloudFoundryClient(url, proxyConfiguration), url);
 	}
 
 	public CloudFoundryOperations getCloudFoundryOperations(CloudCredentials credentials, URL url, CloudSpace session) {
 		HttpProxyConfiguration proxyConfiguration = getProxy(url);
-		return session != null ? new CloudFoundryClient(credentials, url, proxyConfiguration, session)
-				: new CloudFoundryClient(credentials, url, proxyConfiguration);
+		return usePooledConnections(session != null ? new CloudFoundryClient(credentials, url, proxyConfiguration,
+				session) : new CloudFoundryClient(credentials, url, proxyConfiguration), url);
+	}
+
+	/**
+	 * Configures the given client to reuse connections that are kept open to
+	 * the cloud controller, shared with all other clients created by this
+	 * factory.
+	 * @param operations may be null
+	 * @param url of the cloud controller
+	 * @return the given client
+	 * @see PooledHttpTransport
+	 */
+	protected CloudFoundryOperations usePooledConnections(CloudFoundryOperations operations, URL url) {
+		if (operations != null) {
+			getHttpTransport().configure(operations, getProxy(url));
+		}
+		return operations;
+	}
+
+	protected synchronized PooledHttpTransport getHttpTransport() {
+		if (httpTransport == null) {
+			CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+			httpTransport = plugin != null ? new PooledHttpTransport(plugin.getHttpConnectTimeout(),
+					plugin.getHttpReadTimeout(), plugin.getHttpMaxConnectionsPerHost()) : new PooledHttpTransport(
+					CloudFoundryPlugin.DEFAULT_HTTP_CONNECT_TIMEOUT_PREFERENCE_VAL,
+					CloudFoundryPlugin.DEFAULT_HTTP_READ_TIMEOUT_PREFERENCE_VAL,
+					CloudFoundryPlugin.DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST_PREFERENCE_VAL);
+		}
+		return httpTransport;
+	}
+
+	/**
+	 * Closes the connections kept open by clients created by this factory.
+	 */
+	public synchronized void dispose() {
+		if (httpTransport != null) {
+			httpTransport.shutdown();
+			httpTransport = null;
+		}
 	}
 
 	static class UaaAwareCloudFoundryClientAccessor {
@@ -10,15 +10,19 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
+import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.cloudfoundry.client.lib.CloudCredentials;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.domain.CloudSpace;
+import org.cloudfoundry.ide.eclipse.internal.server.core.standalone.StandaloneMembersCache;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelCache;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelDescriptor;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelRuntime;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.PredefinedServiceCommands;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelServiceCommandStore;
 import org.eclipse.core.net.proxy.IProxyService;
@@ -33,8 +37,11 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.wst.server.core.IServer;
+import org.eclipse.wst.server.core.ServerCore;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.prefs.BackingStoreException;
@@ -167,26 +174,76 @@ public class CloudFoundryPlugin extends Plugin {
 
 	public static final boolean DEFAULT_INCREMENTAL_PUBLISH_PREFERENCE_VAL = true;
 
+	public static final String STREAM_PARTIAL_UPLOAD_PREFERENCE = PLUGIN_ID + ".publish.incremental.stream";
+
+	public static final boolean DEFAULT_STREAM_PARTIAL_UPLOAD_PREFERENCE_VAL = true;
+
+	public static final String PUBLISH_PARALLELISM_PREFERENCE = PLUGIN_ID + ".publish.parallelism";
+
+	public static final int DEFAULT_PUBLISH_PARALLELISM_PREFERENCE_VAL = 4;
+
+	public static final String SHA1_THREAD_COUNT_PREFERENCE = PLUGIN_ID + ".publish.sha1.threads";
+
+	/**
+	 * A value of 0 or less uses one thread per available processor.
+	 */
+	public static final int DEFAULT_SHA1_THREAD_COUNT_PREFERENCE_VAL = 0;
+
+	public static final String HTTP_CONNECT_TIMEOUT_PREFERENCE = PLUGIN_ID + ".http.connect.timeout";
+
+	public static final int DEFAULT_HTTP_CONNECT_TIMEOUT_PREFERENCE_VAL = 30 * 1000;
+
+	public static final String HTTP_READ_TIMEOUT_PREFERENCE = PLUGIN_ID + ".http.read.timeout";
+
+	/**
+	 * No timeout, as some controller operations take a long time to respond.
+	 */
+	public static final int DEFAULT_HTTP_READ_TIMEOUT_PREFERENCE_VAL = 0;
+
+	public static final String HTTP_MAX_CONNECTIONS_PER_HOST_PREFERENCE = PLUGIN_ID + ".http.connections.host";
+
+	public static final int DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST_PREFERENCE_VAL = 8;
+
 	private static CloudFoundryCallback callback;
 
 	private static ModuleCache moduleCache;
 
+	private static StandaloneMembersCache standaloneMembersCache;
+
+	private static ModuleJarCache moduleJarCache;
+
 	private static CloudFoundryPlugin plugin;
 
 	private static IProxyService proxyService;
 
 	private DeployedResourceCache sha1Cache = new DeployedResourceCache();
 
+	private DeployedResourceCacheStore sha1CacheStore;
+
+	private Job sha1CacheSaveJob;
+
+	private ContentFingerprintStore contentFingerprintStore;
+
+	private ContentFingerprintWarmer contentFingerprintWarmer;
+
+	private PublishProfileStore publishProfileStore;
+
 	private InstanceScope INSTANCE_SCOPE = new InstanceScope();
 
 	private static CaldecottTunnelCache caldecottCache = new CaldecottTunnelCache();
 
+	private static CaldecottTunnelRuntime caldecottRuntime = new CaldecottTunnelRuntime();
+
 	private TunnelServiceCommandStore serviceCommandsStore;
 
 	public static CaldecottTunnelCache getCaldecottTunnelCache() {
 		return caldecottCache;
 	}
 
+	public static CaldecottTunnelRuntime getCaldecottTunnelRuntime() {
+		return caldecottRuntime;
+	}
+
 	public static synchronized CloudFoundryCallback getCallback() {
 		if (callback == null) {
 			callback = ExtensionPointReader.readExtension();
@@ -213,14 +270,198 @@ public class CloudFoundryPlugin extends Plugin {
 				DEFAULT_INCREMENTAL_PUBLISH_PREFERENCE_VAL);
 	}
 
+	public synchronized void setStreamPartialUpload(boolean streamPartialUpload) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putBoolean(STREAM_PARTIAL_UPLOAD_PREFERENCE, streamPartialUpload);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if changed resources in an incremental publish should be
+	 * streamed to the server directly from the workspace, rather than first
+	 * assembled into a temporary partial war file.
+	 */
+	public synchronized boolean getStreamPartialUpload() {
+		return getPreferences().getBoolean(STREAM_PARTIAL_UPLOAD_PREFERENCE,
+				DEFAULT_STREAM_PARTIAL_UPLOAD_PREFERENCE_VAL);
+	}
+
+	public synchronized void setPublishParallelism(int parallelism) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putInt(PUBLISH_PARALLELISM_PREFERENCE, parallelism);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+	}
+
+	/**
+	 * 
+	 * @return maximum number of modules deployed at the same time when a
+	 * server is published. Always at least 1.
+	 */
+	public synchronized int getPublishParallelism() {
+		int parallelism = getPreferences().getInt(PUBLISH_PARALLELISM_PREFERENCE,
+				DEFAULT_PUBLISH_PARALLELISM_PREFERENCE_VAL);
+		return parallelism > 0 ? parallelism : 1;
+	}
+
+	public synchronized void setSha1ThreadCount(int threadCount) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putInt(SHA1_THREAD_COUNT_PREFERENCE, threadCount);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+	}
+
+	/**
+	 * 
+	 * @return maximum number of threads used to compute sha1 codes of
+	 * resources prior to publishing. Always at least 1.
+	 */
+	public synchronized int getSha1ThreadCount() {
+		int threadCount = getPreferences().getInt(SHA1_THREAD_COUNT_PREFERENCE,
+				DEFAULT_SHA1_THREAD_COUNT_PREFERENCE_VAL);
+		return threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * 
+	 * @return timeout in milliseconds to connect to a cloud controller. 0 for
+	 * no timeout.
+	 */
+	public synchronized int getHttpConnectTimeout() {
+		return Math.max(0, getPreferences().getInt(HTTP_CONNECT_TIMEOUT_PREFERENCE,
+				DEFAULT_HTTP_CONNECT_TIMEOUT_PREFERENCE_VAL));
+	}
+
+	/**
+	 * 
+	 * @return timeout in milliseconds for a response from a cloud controller.
+	 * 0 for no timeout.
+	 */
+	public synchronized int getHttpReadTimeout() {
+		return Math.max(0, getPreferences().getInt(HTTP_READ_TIMEOUT_PREFERENCE,
+				DEFAULT_HTTP_READ_TIMEOUT_PREFERENCE_VAL));
+	}
+
+	/**
+	 * 
+	 * @return maximum number of pooled connections to each cloud controller.
+	 * Always at least 1.
+	 */
+	public synchronized int getHttpMaxConnectionsPerHost() {
+		int connections = getPreferences().getInt(HTTP_MAX_CONNECTIONS_PER_HOST_PREFERENCE,
+				DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST_PREFERENCE_VAL);
+		return connections > 0 ? connections : 1;
+	}
+
 	public IEclipsePreferences getPreferences() {
 		return INSTANCE_SCOPE.getNode(PLUGIN_ID);
 	}
 
+	/**
+	 * Returns the sha1 cache for deployed resources. Entries persisted in a
+	 * previous session are loaded from the plugin state location on first
+	 * access.
+	 * @return non-null deployed resources cache
+	 */
 	public synchronized DeployedResourceCache getDeployedResourcesCache() {
+		if (sha1CacheStore == null) {
+			sha1CacheStore = new DeployedResourceCacheStore(getStateLocation().append(
+					DeployedResourceCacheStore.INDEX_FILE_NAME).toFile());
+			sha1CacheStore.load(sha1Cache);
+		}
 		return sha1Cache;
 	}
 
+	/**
+	 * Returns the sha1 codes of local files, shared by all applications and
+	 * servers.
+	 * @return non-null content fingerprint store
+	 */
+	public synchronized ContentFingerprintStore getContentFingerprintStore() {
+		if (contentFingerprintStore == null) {
+			contentFingerprintStore = new ContentFingerprintStore(getStateLocation().append(
+					ContentFingerprintStore.INDEX_FILE_NAME).toFile(),
+					ContentFingerprintStore.getDefaultRepositoryIndexFile());
+		}
+		return contentFingerprintStore;
+	}
+
+	/**
+	 * Returns the profiles of recent publishes of applications. Profiles are
+	 * kept in the plugin state location.
+	 * @return non-null publish profile store
+	 */
+	public synchronized PublishProfileStore getPublishProfileStore() {
+		if (publishProfileStore == null) {
+			publishProfileStore = new PublishProfileStore(getStateLocation().append(
+					PublishProfileStore.INDEX_FILE_NAME).toFile());
+
+			// Drop profiles of servers deleted while the plugin was inactive
+			List<String> serverIds = new ArrayList<String>();
+			for (IServer server : ServerCore.getServers()) {
+				serverIds.add(server.getId());
+			}
+			publishProfileStore.retainServers(serverIds);
+		}
+		return publishProfileStore;
+	}
+
+	/**
+	 * Persists the deployed resources cache and the content fingerprint store
+	 * in a background job, if they have changed since they were last saved.
+	 * Requests made while a save is pending are merged into the pending save.
+	 */
+	public synchronized void saveDeployedResourcesCache() {
+		boolean sha1CacheDirty = sha1CacheStore != null && sha1Cache.isDirty();
+		boolean fingerprintsDirty = contentFingerprintStore != null && contentFingerprintStore.isDirty();
+		if (!sha1CacheDirty && !fingerprintsDirty) {
+			return;
+		}
+		if (sha1CacheSaveJob == null) {
+			sha1CacheSaveJob = new Job("Saving deployed resources cache") {
+
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					DeployedResourceCacheStore store = getDeployedResourcesCacheStore();
+					if (store != null && sha1Cache.isDirty()) {
+						store.save(sha1Cache);
+					}
+					ContentFingerprintStore fingerprints = getContentFingerprintStoreIfCreated();
+					if (fingerprints != null && fingerprints.isDirty()) {
+						fingerprints.save();
+					}
+					return Status.OK_STATUS;
+				}
+
+			};
+			sha1CacheSaveJob.setSystem(true);
+			sha1CacheSaveJob.setPriority(Job.DECORATE);
+		}
+		sha1CacheSaveJob.schedule();
+	}
+
+	private synchronized DeployedResourceCacheStore getDeployedResourcesCacheStore() {
+		return sha1CacheStore;
+	}
+
+	private synchronized ContentFingerprintStore getContentFingerprintStoreIfCreated() {
+		return contentFingerprintStore;
+	}
+
 	public static synchronized void setCallback(CloudFoundryCallback callback) {
 		CloudFoundryPlugin.callback = callback;
 	}
@@ -236,6 +477,35 @@ public class CloudFoundryPlugin extends Plugin {
 		return moduleCache;
 	}
 
+	public static synchronized StandaloneMembersCache getStandaloneMembersCache() {
+		if (standaloneMembersCache == null) {
+			standaloneMembersCache = new StandaloneMembersCache();
+		}
+		return standaloneMembersCache;
+	}
+
+	/**
+	 * Returns the cache of jars assembled from child modules. Jars are kept in
+	 * the plugin state location, so that they are reused across sessions, and
+	 * jars of modules that have not been used for
+	 * {@link ModuleJarCache#MAX_UNUSED_AGE} are deleted when the cache is
+	 * created.
+	 */
+	public static synchronized ModuleJarCache getModuleJarCache() {
+		if (moduleJarCache == null) {
+			File directory = null;
+			if (plugin != null) {
+				directory = plugin.getStateLocation().append("moduleJars").toFile();
+			}
+			else {
+				directory = new File(System.getProperty("java.io.tmpdir"), PLUGIN_ID + ".moduleJars");
+			}
+			moduleJarCache = new ModuleJarCache(directory);
+			moduleJarCache.prune(ModuleJarCache.MAX_UNUSED_AGE);
+		}
+		return moduleJarCache;
+	}
+
 	public synchronized TunnelServiceCommandStore getTunnelCommandsStore() {
 		if (serviceCommandsStore == null) {
 			serviceCommandsStore = new TunnelServiceCommandStore(new PredefinedServiceCommands());
@@ -316,10 +586,50 @@ public class CloudFoundryPlugin extends Plugin {
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+
+		// Hashes files changed by builds before the application is published
+		contentFingerprintWarmer = new ContentFingerprintWarmer(getContentFingerprintStore());
+		contentFingerprintWarmer.start();
 	}
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		if (contentFingerprintWarmer != null) {
+			contentFingerprintWarmer.dispose();
+			contentFingerprintWarmer = null;
+		}
+
+		synchronized (this) {
+			if (sha1CacheSaveJob != null) {
+				sha1CacheSaveJob.cancel();
+			}
+			if (sha1CacheStore != null && sha1Cache.isDirty()) {
+				sha1CacheStore.save(sha1Cache);
+			}
+			if (contentFingerprintStore != null && contentFingerprintStore.isDirty()) {
+				contentFingerprintStore.save();
+			}
+		}
+
+		synchronized (CloudFoundryPlugin.class) {
+			if (moduleCache != null) {
+				moduleCache.dispose();
+				moduleCache = null;
+			}
+			if (standaloneMembersCache != null) {
+				standaloneMembersCache.dispose();
+				standaloneMembersCache = null;
+			}
+		}
+
+		synchronized (this) {
+			if (factory != null) {
+				factory.dispose();
+			}
+		}
+
+		caldecottRuntime.shutdown();
+
 		if (tracker != null) {
 			tracker.close();
 			tracker = null;
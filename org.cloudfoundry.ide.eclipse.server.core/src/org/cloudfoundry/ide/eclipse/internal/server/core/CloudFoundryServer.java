@@ -533,6 +533,31 @@ public class CloudFoundryServer extends ServerDelegate {
 		}
 	}
 
+	/**
+	 * 
+	 * @return hash of the modules of this server, whether they are mapped to
+	 * deployed applications, and their module and publish state. Combined with
+	 * a hash of the applications on the server, it determines whether
+	 * {@link #updateModules(Map)} would change anything.
+	 */
+	synchronized int getModulesFingerprint() {
+		Server server = (Server) getServer();
+		int fingerprint = 0;
+		for (IModule module : server.getModules()) {
+			ApplicationModule appModule = getApplication(module);
+			int hash = module.getId().hashCode();
+			hash = 31 * hash + (getData().isUndeployed(module) ? 1 : 0);
+			hash = 31 * hash + (appModule.getApplication() != null ? 1 : 0);
+			// States set outside of an update, for example after a failed
+			// operation, are restored by the next update
+			IModule[] modules = new IModule[] { module };
+			hash = 31 * hash + server.getModuleState(modules);
+			hash = 31 * hash + server.getModulePublishState(modules);
+			fingerprint += hash;
+		}
+		return fingerprint;
+	}
+
 	private void deleteModules(final Set<IModule> deletedModules) {
 		Job deleteJob = new Job("Update Modules") {
 			@Override
@@ -17,26 +17,39 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipFile;
 
 import org.cloudfoundry.client.lib.CloudCredentials;
 import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.UploadStatusCallback;
 import org.cloudfoundry.client.lib.archive.ApplicationArchive;
+import org.cloudfoundry.client.lib.archive.ZipApplicationArchive;
 import org.cloudfoundry.client.lib.domain.ApplicationStats;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
 import org.cloudfoundry.client.lib.domain.CloudInfo;
 import org.cloudfoundry.client.lib.domain.CloudService;
+import org.cloudfoundry.client.lib.domain.InstanceInfo;
+import org.cloudfoundry.client.lib.domain.InstanceStats;
 import org.cloudfoundry.client.lib.domain.InstancesInfo;
 import org.cloudfoundry.client.lib.domain.ServiceConfiguration;
 import org.cloudfoundry.client.lib.domain.Staging;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationStateWaiter.ApplicationCondition;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationStateWaiter.ApplicationStarted;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryCallback.DeploymentDescriptor;
+import org.cloudfoundry.ide.eclipse.internal.server.core.DeployedResourceCache.CachedDeployedApplication;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PublishProfile.Phase;
 import org.cloudfoundry.ide.eclipse.internal.server.core.debug.CloudFoundryProperties;
 import org.cloudfoundry.ide.eclipse.internal.server.core.debug.DebugCommandBuilder;
 import org.cloudfoundry.ide.eclipse.internal.server.core.debug.DebugModeType;
@@ -48,6 +61,7 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
@@ -96,17 +110,36 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 	private static final long UPLOAD_TIMEOUT = 60 * 1000;
 
-	private CloudFoundryOperations client;
+	private volatile CloudFoundryOperations client;
+
+	/**
+	 * Guards the creation of the client. Requests that find an existing
+	 * client do not acquire it.
+	 */
+	private final Object clientLock = new Object();
+
+	/**
+	 * Requests in flight that concurrent identical requests join
+	 */
+	private final RequestCoalescer coalescer = new RequestCoalescer();
+
+	private final ApplicationStateWaiter stateWaiter = new ApplicationStateWaiter();
 
 	private RefreshJob refreshJob;
 
+	/**
+	 * Hash of the applications and modules as of the last update of the
+	 * modules, or null if the modules must be updated on the next refresh.
+	 */
+	private volatile Integer applicationsFingerprint;
+
 	private Boolean supportsSpaces = null;
 
 	private DebugSupportCheck isDebugModeSupported = DebugSupportCheck.UNCHECKED;
 
-	private List<CloudInfo.Runtime> runtimes = null;
+	private volatile List<CloudInfo.Runtime> runtimes = null;
 
-	private List<ApplicationPlan> applicationPlans;
+	private volatile List<ApplicationPlan> applicationPlans;
 
 	private IServerListener serverListener = new IServerListener() {
 
@@ -194,68 +227,152 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		CloudFoundryPlugin.getDefault().fireServicesUpdated(getCloudFoundryServer());
 	}
 
+	/**
+	 * Deletes the applications of the given modules. The applications are
+	 * deleted concurrently, bounded by the publish parallelism preference, and
+	 * a failure to delete one application does not prevent the others from
+	 * being deleted. If requested, the services bound to the deleted
+	 * applications are deleted once all applications have been processed,
+	 * after a single confirmation.
+	 * <p/>
+	 * If the monitor is cancelled, applications that are being deleted are
+	 * deleted and removed from the caches, applications that are not yet being
+	 * deleted are left unchanged, and no service is deleted.
+	 * @param modules
+	 * @param deleteServices
+	 * @param monitor
+	 * @throws CoreException if any application failed to be deleted. The
+	 * status contains a child status for each application.
+	 * @throws OperationCanceledException if the monitor is cancelled
+	 */
 	public void deleteModules(final IModule[] modules, final boolean deleteServices, IProgressMonitor monitor)
 			throws CoreException {
 		final CloudFoundryServer cloudServer = getCloudFoundryServer();
 		new RequestWithRefreshCallBack<Void>() {
 			@Override
-			protected Void doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+			protected Void doRun(final CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				progress.setWorkRemaining(100);
+
+				// Fix for STS-2416: Get the CloudApplications from the client
+				// again, as the CloudApplication associated with the WTP
+				// ApplicationModule may be out of date and have an out of date
+				// list of services. The list is fetched once for all modules.
+				final Map<String, CloudApplication> applicationsByName = new HashMap<String, CloudApplication>();
+				for (CloudApplication application : client.getApplications()) {
+					applicationsByName.put(application.getName(), application);
+				}
+				progress.worked(10);
+
+				List<IModule[]> toDelete = new ArrayList<IModule[]>(modules.length);
 				for (IModule module : modules) {
-					final ApplicationModule appModule = cloudServer.getApplication(module);
-
-					List<String> servicesToDelete = new ArrayList<String>();
-
-					List<CloudApplication> applications = client.getApplications();
-
-					for (CloudApplication application : applications) {
-						if (application.getName().equals(appModule.getApplicationId())) {
-							// Fix for STS-2416: Get the CloudApplication from
-							// the client again, as the CloudApplication
-							// associate with the WTP ApplicationModule may be
-							// out of date and have an out of date list of
-							// services.
-							List<String> actualServices = application.getServices();
-							if (actualServices != null) {
-								servicesToDelete.addAll(actualServices);
+					ApplicationModule appModule = cloudServer.getApplication(module);
+					// Close any Caldecott tunnels before deleting the
+					// Caldecott app, and before other apps are deleted
+					// concurrently
+					if (TunnelBehaviour.isCaldecottApp(appModule.getApplicationId())
+							&& applicationsByName.containsKey(appModule.getApplicationId())) {
+						new TunnelBehaviour(cloudServer).stopAndDeleteAllTunnels(progress.newChild(10));
+					}
+					toDelete.add(new IModule[] { module });
+				}
+				progress.setWorkRemaining(80);
+
+				final Set<String> servicesToDelete = Collections.synchronizedSet(new LinkedHashSet<String>());
+				ModuleOperationScheduler scheduler = new ModuleOperationScheduler("Deleting applications",
+						CloudFoundryPlugin.getDefault().getPublishParallelism());
+				MultiStatus status = scheduler.run(toDelete, new ModuleOperationScheduler.ModuleOperation() {
+					public void run(IModule[] module, IProgressMonitor monitor) throws CoreException {
+						ApplicationModule appModule = cloudServer.getApplication(module[0]);
+						CloudApplication application = applicationsByName.get(appModule.getApplicationId());
+						if (application != null) {
+							try {
+								client.deleteApplication(application.getName());
 							}
-
-							// Close any Caldecott tunnels before deleting app
-							if (TunnelBehaviour.isCaldecottApp(appModule.getApplicationId())) {
-								// Delete all tunnels if the Caldecott app is
-								// removed
-								new TunnelBehaviour(cloudServer).stopAndDeleteAllTunnels(progress);
+							catch (RestClientException e) {
+								CoreException coreException = CloudUtil.toCoreException(e);
+								// Already deleted by someone else
+								if (!CloudUtil.isNotFoundException(coreException)) {
+									throw coreException;
+								}
 							}
+							if (application.getServices() != null) {
+								servicesToDelete.addAll(application.getServices());
+							}
+						}
 
-							client.deleteApplication(appModule.getApplicationId());
-
-							break;
+						cloudServer.removeApplication(appModule);
+						CloudFoundryPlugin.getDefault().getDeployedResourcesCache()
+								.removeApplication(
+										new CachedDeployedApplication(cloudServer.getServer().getId(), appModule
+												.getApplicationId()));
+						CloudFoundryPlugin.getDefault().getPublishProfileStore()
+								.remove(cloudServer.getServer().getId(), appModule.getApplicationId());
+						// Jars of child modules are shared by all applications
+						// containing the module
+						for (IModule child : cloudServer.getServer().getChildModules(module, monitor)) {
+							if (!CloudServerUtil.isChildModule(child, module[0], monitor)) {
+								CloudFoundryPlugin.getModuleJarCache().removeModule(child.getId());
+							}
 						}
+						appModule.setLastDeploymentInfo(null);
+						appModule.setCloudApplication(null);
 					}
-					cloudServer.removeApplication(appModule);
-					appModule.setLastDeploymentInfo(null);
-					appModule.setCloudApplication(null);
+				}, progress.newChild(70));
 
-					if (deleteServices && !servicesToDelete.isEmpty()) {
-						CloudFoundryPlugin.getCallback().deleteServices(servicesToDelete, cloudServer);
-						CloudFoundryPlugin.getDefault().fireServicesUpdated(cloudServer);
-					}
+				if (deleteServices && !servicesToDelete.isEmpty()) {
+					CloudFoundryPlugin.getCallback().deleteServices(new ArrayList<String>(servicesToDelete),
+							cloudServer);
+					CloudFoundryPlugin.getDefault().fireServicesUpdated(cloudServer);
+				}
 
+				if (!status.isOK()) {
+					MultiStatus failures = getFailures(status, "Failed to delete applications");
+					CloudFoundryPlugin.logError(failures);
+					throw new CoreException(failures);
 				}
 				return null;
 			}
 		}.run(monitor);
 	}
 
+	/**
+	 * Deletes the given services, and any tunnels to them. Services are
+	 * deleted concurrently, and a failure to delete one service does not
+	 * prevent the others from being deleted. If the monitor is cancelled,
+	 * services that are not yet being deleted are left unchanged.
+	 * @param services
+	 * @param monitor
+	 * @throws CoreException if any service failed to be deleted
+	 * @throws OperationCanceledException if the monitor is cancelled
+	 */
 	public void deleteServices(final List<String> services, IProgressMonitor monitor) throws CoreException {
 		new Request<Void>("Deleting services") {
 			@Override
-			protected Void doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
-				TunnelBehaviour handler = new TunnelBehaviour(getCloudFoundryServer());
-				for (String service : services) {
-					client.deleteService(service);
+			protected Void doRun(final CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				final TunnelBehaviour handler = new TunnelBehaviour(getCloudFoundryServer());
+				BoundedOperationScheduler<String> scheduler = new BoundedOperationScheduler<String>(
+						"Deleting services", CloudFoundryPlugin.getDefault().getPublishParallelism()) {
+					@Override
+					protected String getName(String service) {
+						return service;
+					}
+				};
+				MultiStatus status = scheduler.run(services, new BoundedOperationScheduler.Operation<String>() {
+					public void run(String service, IProgressMonitor monitor) throws CoreException {
+						try {
+							client.deleteService(service);
+						}
+						catch (RestClientException e) {
+							throw CloudUtil.toCoreException(e);
+						}
+
+						// Also delete any existing Tunnels
+						handler.stopAndDeleteCaldecottTunnel(service, monitor);
+					}
+				}, progress);
 
-					// Also delete any existing Tunnels
-					handler.stopAndDeleteCaldecottTunnel(service, progress);
+				if (!status.isOK()) {
+					throw new CoreException(getFailures(status, "Failed to delete services"));
 				}
 				return null;
 			}
@@ -269,7 +386,8 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	}
 
 	private CloudApplication doDeployApplication(CloudFoundryOperations client, final ApplicationModule appModule,
-			final DeploymentDescriptor descriptor, IProgressMonitor monitor) throws CoreException {
+			final DeploymentDescriptor descriptor, PublishProfile profile, IProgressMonitor monitor)
+			throws CoreException {
 		Assert.isNotNull(descriptor.applicationInfo);
 
 		ApplicationInfo applicationInfo = descriptor.applicationInfo;
@@ -323,33 +441,58 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			File warFile = applicationInfo.getWarFile();
 
 			if (warFile != null) {
-				client.uploadApplication(applicationId, warFile);
+				// Uploaded as an archive, as the client does for war files,
+				// so that the size of matched files can be recorded
+				ZipFile zipFile = new ZipFile(warFile);
+				try {
+					ApplicationArchive archive = new ZipApplicationArchive(zipFile);
+					uploadApplication(client, applicationId, archive, new PublishProfileCallback(profile, archive, null));
+				}
+				finally {
+					zipFile.close();
+				}
 			}
 			else {
 				ApplicationArchive archive = descriptor.applicationArchive;
 				if (archive instanceof ModuleResourceApplicationArchive) {
 					final ModuleResourceApplicationArchive moduleArchive = (ModuleResourceApplicationArchive) archive;
-					client.uploadApplication(applicationId, archive, new UploadStatusCallback() {
 
-						public void onProcessMatchedResources(int length) {
+					// Compute sha1 codes in parallel before the client
+					// requests them one at a time for resource matching
+					profile.start(Phase.HASHING);
+					moduleArchive.computeDeployedResourceEntries(monitor);
+					profile.stop(Phase.HASHING);
 
-						}
+					uploadApplication(client, applicationId, archive, new PublishProfileCallback(profile, archive,
+							new UploadStatusCallback() {
 
-						public void onMatchedFileNames(Set<String> matchedFileNames) {
-							moduleArchive.generatePartialWarFile(matchedFileNames);
-						}
+								public void onProcessMatchedResources(int length) {
 
-						public void onCheckResources() {
+								}
 
-						}
-					});
+								public void onMatchedFileNames(Set<String> matchedFileNames) {
+									moduleArchive.generatePartialWarFile(matchedFileNames);
+								}
 
-					// Once the application has run, do a clean up of the sha1
-					// cache for deleted resources
+								public void onCheckResources() {
+
+								}
+							}));
+
+					// Once the application has run, persist the sha1 cache so
+					// that unchanged resources need not be rehashed in a later
+					// session. Entries for deleted resources have already been
+					// removed when the partial war was generated.
+					CloudFoundryPlugin.getDefault().saveDeployedResourcesCache();
 
 				}
 				else {
-					client.uploadApplication(applicationId, archive);
+					uploadApplication(client, applicationId, archive, new PublishProfileCallback(profile, archive, null));
+
+					// Persist the sha1 codes of the files of standalone
+					// applications, so that shared dependencies are not
+					// hashed again
+					CloudFoundryPlugin.getDefault().saveDeployedResourcesCache();
 				}
 			}
 
@@ -359,13 +502,19 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 					"Failed to deploy application from {0}", applicationInfo.getWarFile()), e));
 		}
 
+		CloudApplication application = waitForUpload(client, applicationId, monitor);
+		appModule.setCloudApplication(application);
+		return application;
+	}
+
+	private void uploadApplication(CloudFoundryOperations client, String applicationId, ApplicationArchive archive,
+			PublishProfileCallback callback) throws IOException {
+		callback.uploadStarted();
 		try {
-			CloudApplication application = waitForUpload(client, applicationId, monitor);
-			appModule.setCloudApplication(application);
-			return application;
+			client.uploadApplication(applicationId, archive, callback);
 		}
-		catch (InterruptedException e) {
-			throw new OperationCanceledException();
+		finally {
+			callback.uploadFinished();
 		}
 	}
 
@@ -400,6 +549,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		server.setServerState(IServer.STATE_STOPPING);
 
 		setRefreshInterval(-1);
+		applicationsFingerprint = null;
 
 		CloudFoundryServer cloudServer = getCloudFoundryServer();
 
@@ -458,7 +608,8 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 	public ApplicationStats getApplicationStats(final String applicationId, IProgressMonitor monitor)
 			throws CoreException {
-		return new Request<ApplicationStats>(NLS.bind("Getting application statistics for {0}", applicationId)) {
+		return new CoalescedRequest<ApplicationStats>(NLS.bind("Getting application statistics for {0}",
+				applicationId), "getApplicationStats:" + applicationId) {
 			@Override
 			protected ApplicationStats doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				// Wait until app has started for v2
@@ -467,6 +618,11 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				}
 				return client.getApplicationStats(applicationId);
 			}
+
+			@Override
+			protected ApplicationStats copy(ApplicationStats stats) {
+				return stats != null ? new ApplicationStats(new ArrayList<InstanceStats>(stats.getRecords())) : null;
+			}
 		}.run(monitor);
 	}
 
@@ -494,8 +650,30 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		return false;
 	}
 
+	/**
+	 * Waits until the application meets the given condition, or the timeout
+	 * elapses.
+	 * @param appName
+	 * @param condition
+	 * @param timeout in milliseconds
+	 * @param monitor
+	 * @return the application, or null if the timeout elapsed before the
+	 * application met the condition
+	 * @throws CoreException
+	 */
+	public CloudApplication waitForApplication(final String appName, final ApplicationCondition condition,
+			final long timeout, IProgressMonitor monitor) throws CoreException {
+		return new Request<CloudApplication>() {
+			@Override
+			protected CloudApplication doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				return stateWaiter.waitFor(client, appName, condition, timeout, progress);
+			}
+		}.run(monitor);
+	}
+
 	public InstancesInfo getInstancesInfo(final String applicationId, IProgressMonitor monitor) throws CoreException {
-		return new Request<InstancesInfo>(NLS.bind("Getting application statistics for {0}", applicationId)) {
+		return new CoalescedRequest<InstancesInfo>(NLS.bind("Getting application statistics for {0}", applicationId),
+				"getInstancesInfo:" + applicationId) {
 			@Override
 			protected InstancesInfo doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				if (client.supportsSpaces()) {
@@ -503,6 +681,22 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				}
 				return client.getApplicationInstances(applicationId);
 			}
+
+			@Override
+			protected InstancesInfo copy(InstancesInfo info) {
+				if (info == null) {
+					return null;
+				}
+				// Instances are immutable, but the list is not, and can only be
+				// replaced through a subclass
+				final List<InstanceInfo> instances = new ArrayList<InstanceInfo>(info.getInstances());
+				return new InstancesInfo(Collections.<Map<String, Object>> emptyList()) {
+					@Override
+					public List<InstanceInfo> getInstances() {
+						return instances;
+					}
+				};
+			}
 		}.run(monitor);
 	}
 
@@ -526,7 +720,38 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		}.run(monitor);
 	}
 
+	/**
+	 * Retrieves the given byte range of a file. The end position is
+	 * inclusive.
+	 */
+	public String getFile(final String applicationId, final int instanceIndex, final String filePath,
+			final int startPosition, final int endPosition, IProgressMonitor monitor) throws CoreException {
+		return new Request<String>("Retrieving file") {
+			@Override
+			protected String doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				return client.getFile(applicationId, instanceIndex, filePath, startPosition, endPosition);
+			}
+		}.run(monitor);
+	}
+
+	/**
+	 * Retrieves the bytes of the given byte range of a file. The end position
+	 * is inclusive.
+	 * @see ApplicationFileReader
+	 */
+	public byte[] getFileBytes(final String applicationId, final int instanceIndex, final String filePath,
+			final int startPosition, final int endPosition, IProgressMonitor monitor) throws CoreException {
+		return new Request<byte[]>("Retrieving file") {
+			@Override
+			protected byte[] doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				return ApplicationFileReader.getFile(client, applicationId, instanceIndex, filePath, startPosition,
+						endPosition);
+			}
+		}.run(monitor);
+	}
+
 	public int[] getApplicationMemoryChoices() {
+		CloudFoundryOperations client = this.client;
 		if (client != null) {
 			return client.getApplicationMemoryChoices();
 		}
@@ -598,6 +823,31 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		setRefreshInterval(DEFAULT_INTERVAL);
 	}
 
+	/**
+	 * Refreshes the modules for the automatic refresh job. Unlike
+	 * {@link #refreshModules(IProgressMonitor)}, this does not reset the
+	 * refresh interval, and only notifies listeners if the applications on
+	 * the server changed.
+	 * @param monitor
+	 * @return true if the applications changed since the last refresh
+	 * @throws CoreException
+	 */
+	public boolean refreshApplications(IProgressMonitor monitor) throws CoreException {
+		final CloudFoundryServer cloudServer = getCloudFoundryServer();
+
+		boolean changed = new Request<Boolean>() {
+			@Override
+			protected Boolean doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				return doRefreshModules(cloudServer, client, false, progress);
+			}
+		}.run(monitor);
+
+		if (changed) {
+			CloudFoundryPlugin.getDefault().fireServerRefreshed(cloudServer);
+		}
+		return changed;
+	}
+
 	/**
 	 * This method is API used by CloudFoundry Code.
 	 */
@@ -633,6 +883,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 	public void resetClient() {
 		client = null;
+		applicationsFingerprint = null;
 	}
 
 	protected DeploymentDescriptor getDeploymentDescriptor(IModule[] modules, IProgressMonitor monitor)
@@ -1059,22 +1310,35 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	 * client operations. If credentials are not used, as in the case when only
 	 * a URL is present for a server, null must be passed for the credentials.
 	 */
-	public synchronized CloudFoundryOperations getClient(CloudCredentials credentials, IProgressMonitor monitor)
+	public CloudFoundryOperations getClient(CloudCredentials credentials, IProgressMonitor monitor)
 			throws CoreException {
-		if (client == null) {
+		CloudFoundryOperations current = client;
+		if (current != null) {
+			return current;
+		}
+		synchronized (clientLock) {
+			current = client;
+			if (current != null) {
+				return current;
+			}
+
 			CloudFoundrySpace cloudSpace = new CloudSpaceServerLookup(getCloudFoundryServer(), credentials)
 					.getCloudSpace(monitor);
 
+			CloudFoundryOperations operations;
 			if (credentials != null) {
-				client = createClient(getCloudFoundryServer().getUrl(), credentials, cloudSpace);
+				operations = createClient(getCloudFoundryServer().getUrl(), credentials, cloudSpace);
 			}
 			else {
 				String userName = getCloudFoundryServer().getUsername();
 				String password = getCloudFoundryServer().getPassword();
-				client = createClient(getCloudFoundryServer().getUrl(), userName, password, cloudSpace);
+				operations = createClient(getCloudFoundryServer().getUrl(), userName, password, cloudSpace);
 			}
+			current = CloudFoundryPlugin.getDefault().getCloudFoundryClientFactory()
+					.getCachingCloudFoundryOperations(operations);
+			client = current;
+			return current;
 		}
-		return client;
 	}
 
 	/**
@@ -1084,7 +1348,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	 * @return
 	 * @throws CoreException
 	 */
-	public synchronized CloudFoundryOperations getClient(IProgressMonitor monitor) throws CoreException {
+	public CloudFoundryOperations getClient(IProgressMonitor monitor) throws CoreException {
 		return getClient((CloudCredentials) null, monitor);
 	}
 
@@ -1099,7 +1363,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		return true;
 	}
 
-	private void setRefreshInterval(long interval) {
+	private synchronized void setRefreshInterval(long interval) {
 		if (refreshJob == null) {
 			try {
 				refreshJob = new RefreshJob(getCloudFoundryServer());
@@ -1117,45 +1381,90 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		refreshJob.reschedule();
 	}
 
+	/**
+	 * Waits until the application is started, or all its instances crashed.
+	 * @return true if the application started, false if the wait timed out
+	 * @throws CoreException if the instances of the application crashed
+	 * @throws OperationCanceledException if the monitor is cancelled
+	 */
 	private boolean waitForStart(CloudFoundryOperations client, String deploymentId, IProgressMonitor monitor)
-			throws InterruptedException {
-		long timeLeft = DEPLOYMENT_TIMEOUT;
-		while (timeLeft > 0) {
-			CloudApplication deploymentDetails = client.getApplication(deploymentId);
-			if (AppState.STARTED.equals(deploymentDetails.getState()) && isApplicationReady(deploymentDetails)) {
-				return true;
+			throws CoreException {
+		ApplicationCondition started = new ApplicationStarted() {
+			@Override
+			public boolean isSatisfied(CloudApplication application) {
+				return super.isSatisfied(application) && isApplicationReady(application);
 			}
-			Thread.sleep(SHORT_INTERVAL);
-			timeLeft -= SHORT_INTERVAL;
-		}
-		return false;
+		};
+		return stateWaiter.waitFor(client, deploymentId, started, DEPLOYMENT_TIMEOUT, monitor) != null;
 	}
 
-	private CloudApplication waitForUpload(CloudFoundryOperations client, String applicationId, IProgressMonitor monitor)
-			throws InterruptedException {
-		long timeLeft = UPLOAD_TIMEOUT;
-		while (timeLeft > 0) {
-			CloudApplication application = client.getApplication(applicationId);
-			if (applicationId.equals(application.getName())) {
-				return application;
+	private CloudApplication waitForUpload(CloudFoundryOperations client, final String applicationId,
+			IProgressMonitor monitor) throws CoreException {
+		ApplicationCondition uploaded = new ApplicationCondition() {
+			@Override
+			public boolean isSatisfied(CloudApplication application) {
+				return applicationId.equals(application.getName());
 			}
-			Thread.sleep(SHORT_INTERVAL);
-			timeLeft -= SHORT_INTERVAL;
-		}
-		return null;
+		};
+		return stateWaiter.waitFor(client, applicationId, uploaded, UPLOAD_TIMEOUT, monitor);
 	}
 
-	protected void doRefreshModules(final CloudFoundryServer cloudServer, CloudFoundryOperations client,
+	/**
+	 * Updates the modules from the applications on the server.
+	 * @return true if the modules were updated
+	 */
+	protected boolean doRefreshModules(final CloudFoundryServer cloudServer, CloudFoundryOperations client,
 			IProgressMonitor progress) throws CoreException {
+		return doRefreshModules(cloudServer, client, true, progress);
+	}
+
+	/**
+	 * Updates the modules from the applications on the server. Unless forced,
+	 * the update is skipped if neither the applications nor the local modules
+	 * changed since the last update, to avoid needless module state changes
+	 * on automatic refreshes.
+	 * @param force true if the modules should be updated even if nothing
+	 * appears to have changed
+	 * @return true if the modules were updated
+	 */
+	protected boolean doRefreshModules(final CloudFoundryServer cloudServer, CloudFoundryOperations client,
+			boolean force, IProgressMonitor progress) throws CoreException {
 		// update applications and deployments from server
 		Map<String, CloudApplication> applicationByName = new LinkedHashMap<String, CloudApplication>();
 
 		List<CloudApplication> applications = client.getApplications();
+		int fingerprint = 0;
 		for (CloudApplication application : applications) {
 			applicationByName.put(application.getName(), application);
+			fingerprint += getFingerprint(application);
+		}
+
+		Integer lastFingerprint = applicationsFingerprint;
+		if (!force && lastFingerprint != null
+				&& lastFingerprint.intValue() == fingerprint + cloudServer.getModulesFingerprint()) {
+			return false;
 		}
 
 		cloudServer.updateModules(applicationByName);
+
+		// Modules may have been created or removed by the update
+		applicationsFingerprint = fingerprint + cloudServer.getModulesFingerprint();
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param application
+	 * @return hash of the application properties that are reflected in the
+	 * module state
+	 */
+	protected static int getFingerprint(CloudApplication application) {
+		Staging staging = application.getStaging();
+		return Arrays.hashCode(new Object[] { application.getName(), application.getState(),
+				application.getInstances(), application.getRunningInstances(), application.getMemory(),
+				application.getUris(), application.getServices(), application.getEnv(), application.getDebug(),
+				application.getResources(), staging != null ? staging.getFramework() : null,
+				staging != null ? staging.getRuntime() : null, staging != null ? staging.getCommand() : null });
 	}
 
 	@Override
@@ -1168,26 +1477,30 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	public IStatus publish(int kind, IProgressMonitor monitor) {
 		try {
 			if (kind == IServer.PUBLISH_CLEAN) {
-				List<IModule[]> allModules = getAllModules();
-				for (IModule[] module : allModules) {
+				List<IModule[]> toPublish = new ArrayList<IModule[]>();
+				for (IModule[] module : getAllModules()) {
 					if (!module[0].isExternal()) {
-						deployOrStartModule(module, false, monitor);
+						toPublish.add(module);
 					}
 				}
-				return Status.OK_STATUS;
+				return publishModules(toPublish, monitor);
 			}
 			else if (kind == IServer.PUBLISH_INCREMENTAL) {
-				List<IModule[]> allModules = getAllModules();
-				for (IModule[] module : allModules) {
+				List<IModule[]> toPublish = new ArrayList<IModule[]>();
+				for (IModule[] module : getAllModules()) {
 					CloudApplication app = getCloudFoundryServer().getApplication(module[0]).getApplication();
 					if (app != null) {
 						int publishState = getServer().getModulePublishState(module);
 						if (publishState != IServer.PUBLISH_STATE_NONE) {
-							deployOrStartModule(module, false, monitor);
+							toPublish.add(module);
 						}
 					}
 				}
-				((Server) getServer()).setServerPublishState(IServer.PUBLISH_STATE_NONE);
+				IStatus status = publishModules(toPublish, monitor);
+				if (status.isOK()) {
+					((Server) getServer()).setServerPublishState(IServer.PUBLISH_STATE_NONE);
+				}
+				return status;
 			}
 		}
 		catch (CoreException e) {
@@ -1200,6 +1513,109 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		// return super.publish(kind, monitor);
 	}
 
+	/**
+	 * Deploys or starts the given modules, running up to
+	 * {@link CloudFoundryPlugin#getPublishParallelism()} deployments at the
+	 * same time. A failure to deploy one module does not prevent the remaining
+	 * modules from being deployed.
+	 * <p/>
+	 * Credentials and the deployment descriptors of all modules are obtained
+	 * on the calling thread before any module is deployed, as they may prompt
+	 * the user, and the server publish state is updated once all modules have
+	 * been processed.
+	 * @param modules
+	 * @param monitor
+	 * @return OK status if all modules were deployed, or a multi status with
+	 * the failures otherwise
+	 * @throws CoreException if the credentials of the server are missing
+	 */
+	protected IStatus publishModules(List<IModule[]> modules, IProgressMonitor monitor) throws CoreException {
+		SubMonitor progress = SubMonitor.convert(monitor, "Publishing modules", 100);
+		CloudFoundryServer cloudServer = getCloudFoundryServer();
+		if (!modules.isEmpty() && !hasCredentials(cloudServer)) {
+			CloudFoundryPlugin.getCallback().getCredentials(cloudServer);
+			// Deployments must not prompt concurrently
+			if (!hasCredentials(cloudServer)) {
+				throw new CoreException(CloudFoundryPlugin.getErrorStatus(NLS.bind(
+						"Unable to publish to {0} without credentials", cloudServer.getServer().getName())));
+			}
+		}
+
+		final Map<IModule[], DeploymentDescriptor> descriptors = new IdentityHashMap<IModule[], DeploymentDescriptor>();
+		final Map<IModule[], CoreException> preparationFailures = new IdentityHashMap<IModule[], CoreException>();
+		SubMonitor preparationProgress = progress.newChild(10).setWorkRemaining(modules.size());
+		for (IModule[] module : modules) {
+			try {
+				descriptors.put(module, getDeploymentDescriptor(module, preparationProgress.newChild(1)));
+			}
+			catch (CoreException e) {
+				preparationFailures.put(module, e);
+			}
+		}
+
+		ModuleOperationScheduler scheduler = new ModuleOperationScheduler("Publishing modules", CloudFoundryPlugin
+				.getDefault().getPublishParallelism());
+
+		MultiStatus status = scheduler.run(modules, new ModuleOperationScheduler.ModuleOperation() {
+
+			public void run(IModule[] module, IProgressMonitor monitor) throws CoreException {
+				CoreException preparationFailure = preparationFailures.get(module);
+				if (preparationFailure != null) {
+					throw preparationFailure;
+				}
+				DeploymentDescriptor descriptor = descriptors.get(module);
+				descriptor.isIncrementalPublish = false;
+				new StartOrDeployAction(false, module, descriptor, false).deployModule(monitor);
+			}
+
+		}, progress.newChild(90));
+
+		updateServerPublishState();
+
+		if (!status.isOK()) {
+			MultiStatus failures = getFailures(status, "Fail to publish to server");
+			CloudFoundryPlugin.logError(failures);
+			return failures;
+		}
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Marks the server as published if none of its modules need to be
+	 * published.
+	 */
+	protected synchronized void updateServerPublishState() {
+		Server server = (Server) getServer();
+		boolean allSynched = true;
+		for (IModule serverModule : server.getModules()) {
+			int modulePublishState = server.getModulePublishState(new IModule[] { serverModule });
+			if (modulePublishState == IServer.PUBLISH_STATE_INCREMENTAL
+					|| modulePublishState == IServer.PUBLISH_STATE_FULL) {
+				allSynched = false;
+			}
+		}
+		if (allSynched) {
+			server.setServerPublishState(IServer.PUBLISH_STATE_NONE);
+		}
+	}
+
+	/**
+	 *
+	 * @param status result of a {@link BoundedOperationScheduler}
+	 * @param message
+	 * @return multi status with the children of the given status that are not
+	 * OK
+	 */
+	protected static MultiStatus getFailures(MultiStatus status, String message) {
+		MultiStatus failures = new MultiStatus(CloudFoundryPlugin.PLUGIN_ID, 0, message, null);
+		for (IStatus child : status.getChildren()) {
+			if (!child.isOK()) {
+				failures.add(child);
+			}
+		}
+		return failures;
+	}
+
 	@Override
 	protected void publishModule(int kind, int deltaKind, IModule[] module, IProgressMonitor monitor)
 			throws CoreException {
@@ -1408,35 +1824,10 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		}
 	}
 
-	// public static class RequestFactory extends
-	// CommonsClientHttpRequestFactory {
-	//
-	// private HttpClient client;
-	//
-	// /**
-	// * For testing.
-	// */
-	// public static boolean proxyEnabled = true;
-	//
-	// public RequestFactory(HttpClient client) {
-	// super(client);
-	// this.client = client;
-	// }
-	//
-	// public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod)
-	// throws IOException {
-	// IProxyData[] proxy =
-	// CloudFoundryPlugin.getDefault().getProxyService().select(uri);
-	// if (proxyEnabled && proxy != null && proxy.length > 0) {
-	// client.getHostConfiguration().setProxy(proxy[0].getHost(),
-	// proxy[0].getPort());
-	// }else {
-	// client.getHostConfiguration().setProxyHost(null);
-	// }
-	// return super.createRequest(uri, httpMethod);
-	// }
-	//
-	// }
+	protected static boolean hasCredentials(CloudFoundryServer cloudServer) {
+		return cloudServer.getUsername() != null && cloudServer.getUsername().length() > 0
+				&& cloudServer.getPassword() != null && cloudServer.getPassword().length() > 0;
+	}
 
 	/**
 	 * A request checks server state prior to performing a server operation via
@@ -1472,8 +1863,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		public T run(IProgressMonitor monitor) throws CoreException {
 			CloudFoundryServer cloudServer = getCloudFoundryServer();
 
-			if (cloudServer.getUsername() == null || cloudServer.getUsername().length() == 0
-					|| cloudServer.getPassword() == null || cloudServer.getPassword().length() == 0) {
+			if (!hasCredentials(cloudServer)) {
 				CloudFoundryPlugin.getCallback().getCredentials(cloudServer);
 			}
 
@@ -1486,8 +1876,15 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 			T result;
 			boolean succeeded = false;
+			CachingCloudFoundryOperations cachingClient = null;
+			IProgressMonitor previousMonitor = null;
 			try {
 				CloudFoundryOperations client = getClient(subProgress);
+				if (client instanceof CachingCloudFoundryOperations) {
+					// Waiting for data read by other requests can be cancelled
+					cachingClient = (CachingCloudFoundryOperations) client;
+					previousMonitor = cachingClient.setMonitor(subProgress);
+				}
 				String cloudURL = getCloudFoundryServer() != null ? getCloudFoundryServer().getUrl() : null;
 
 				CloudFoundryOperationsHandler handler = new CloudFoundryOperationsHandler(client, cloudURL);
@@ -1514,20 +1911,23 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				// if the server supports debugging.
 				requestAllowDebug(client);
 
-				// Check runtimes as well once per server behaviour instance
+				// Check runtimes as well once per server behaviour instance.
+				// The list is only published once complete, as requests may
+				// run concurrently.
 				if (runtimes == null) {
-					runtimes = new ArrayList<CloudInfo.Runtime>();
+					List<CloudInfo.Runtime> loadedRuntimes = new ArrayList<CloudInfo.Runtime>();
 
 					Collection<CloudInfo.Runtime> clientRuntimes = client.getCloudInfo().getRuntimes();
 					if (clientRuntimes != null) {
-						runtimes.addAll(clientRuntimes);
+						loadedRuntimes.addAll(clientRuntimes);
 					}
+					runtimes = loadedRuntimes;
 				}
 
 				// Get application plans once per server behaviour instance as
 				// they should not change while the instance is used
 				if (applicationPlans == null) {
-					applicationPlans = new ArrayList<ApplicationPlan>(0);
+					List<ApplicationPlan> loadedPlans = new ArrayList<ApplicationPlan>(0);
 
 					// Only retrieve applications plans for V2 servers
 					if (client.supportsSpaces() && client.getApplicationPlans() != null) {
@@ -1537,16 +1937,20 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 						// plan
 						for (ApplicationPlan appPlan : ApplicationPlan.values()) {
 							if (actualPlans.contains(appPlan.name())) {
-								applicationPlans.add(appPlan);
+								loadedPlans.add(appPlan);
 							}
 						}
 					}
+					applicationPlans = loadedPlans;
 				}
 			}
 			catch (RestClientException e) {
 				throw CloudUtil.toCoreException(e);
 			}
 			finally {
+				if (cachingClient != null) {
+					cachingClient.setMonitor(previousMonitor);
+				}
 				if (!succeeded) {
 					if (server.getServerState() == IServer.STATE_STARTING) {
 						server.setServerState(IServer.STATE_STOPPED);
@@ -1567,6 +1971,41 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 	}
 
+	/**
+	 * Read request that concurrent callers with the same key join, so that
+	 * they share a single call to the client. The key must identify the
+	 * operation and its arguments. Only for reads that the client does not
+	 * cache, as {@link CachingCloudFoundryOperations} already shares cached
+	 * reads. Each caller receives its own copy of the shared result.
+	 * @see RequestCoalescer
+	 */
+	abstract class CoalescedRequest<T> extends Request<T> {
+
+		private final String key;
+
+		public CoalescedRequest(String label, String key) {
+			super(label);
+			Assert.isNotNull(key);
+			this.key = key;
+		}
+
+		@Override
+		public T run(final IProgressMonitor monitor) throws CoreException {
+			return copy(coalescer.run(key, new Callable<T>() {
+				public T call() throws Exception {
+					return CoalescedRequest.super.run(monitor);
+				}
+			}, monitor));
+		}
+
+		/**
+		 *
+		 * @param result shared result, may be null
+		 * @return a copy of the result that the caller may modify
+		 */
+		protected abstract T copy(T result);
+	}
+
 	/**
 	 * Runs a client request, and then performs a refresh after 1 second
 	 * interval
@@ -1636,9 +2075,25 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 		final protected boolean waitForDeployment;
 
+		final protected boolean updateServerPublishState;
+
 		public StartOrDeployAction(boolean waitForDeployment, IModule[] modules, DeploymentDescriptor descriptor) {
+			this(waitForDeployment, modules, descriptor, true);
+		}
+
+		/**
+		 *
+		 * @param waitForDeployment
+		 * @param modules
+		 * @param descriptor
+		 * @param updateServerPublishState false if the caller updates the
+		 * server publish state once several modules have been deployed
+		 */
+		public StartOrDeployAction(boolean waitForDeployment, IModule[] modules, DeploymentDescriptor descriptor,
+				boolean updateServerPublishState) {
 			super(modules, descriptor);
 			this.waitForDeployment = waitForDeployment;
+			this.updateServerPublishState = updateServerPublishState;
 		}
 
 		protected ApplicationModule performDeployment(IProgressMonitor monitor, final DeploymentDescriptor descriptor)
@@ -1671,6 +2126,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 						boolean started = false;
 						final String applicationId = descriptor.applicationInfo.getAppName();
+						PublishProfile profile = null;
 
 						if (modules[0].isExternal()) {
 							restartOrDebugApplicationInClient(applicationId, client, descriptor.deploymentMode);
@@ -1678,6 +2134,8 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 							started = true;
 						}
 						else {
+							profile = new PublishProfile();
+							profile.start(Phase.ASSEMBLY);
 							if (isStandalone(descriptor, cloudModule)) {
 
 								// Get the module resources for the standalone
@@ -1722,26 +2180,16 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 								descriptor.applicationInfo.setWarFile(warFile);
 
 							}
+							profile.stop(Phase.ASSEMBLY);
 
 							// Tell webtools the module has been published
 							setModulePublishState(modules, IServer.PUBLISH_STATE_NONE);
 
-							// update server publish status
-							IModule[] serverModules = server.getModules();
-							boolean allSynched = true;
-							for (IModule serverModule : serverModules) {
-								int modulePublishState = server.getModulePublishState(new IModule[] { serverModule });
-								if (modulePublishState == IServer.PUBLISH_STATE_INCREMENTAL
-										|| modulePublishState == IServer.PUBLISH_STATE_FULL) {
-									allSynched = false;
-
-								}
-							}
-							if (allSynched) {
-								server.setServerPublishState(IServer.PUBLISH_STATE_NONE);
+							if (updateServerPublishState) {
+								updateServerPublishState();
 							}
 
-							doDeployApplication(client, cloudModule, descriptor, progress);
+							doDeployApplication(client, cloudModule, descriptor, profile, progress);
 							CloudFoundryPlugin.trace("Application " + applicationId + " deployed");
 
 							cloudServer.tagAsDeployed(module);
@@ -1749,7 +2197,12 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 							// start application in either regular or debug mode
 							if (descriptor.deploymentMode != null) {
 								CloudFoundryPlugin.trace("Application " + applicationId + " starting");
+
+								// The application is staged before the start
+								// request completes
+								profile.start(Phase.STAGING);
 								restartOrDebugApplicationInClient(applicationId, client, descriptor.deploymentMode);
+								profile.stop(Phase.STAGING);
 								started = true;
 							}
 							else {
@@ -1758,7 +2211,13 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 						}
 
 						if (started) {
-							refreshAfterDeployment(started, client, cloudModule, cloudServer, applicationId, progress);
+							refreshAfterDeployment(started, client, cloudModule, cloudServer, applicationId, profile,
+									progress);
+						}
+
+						if (profile != null) {
+							CloudFoundryPlugin.getDefault().getPublishProfileStore()
+									.add(cloudServer.getServer().getId(), applicationId, profile);
 						}
 
 						return started;
@@ -1792,7 +2251,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		IModuleResourceDelta[] deltas = getPublishedResourceDelta(modules);
 		List<IModuleResource> changedResources = getChangedResources(deltas);
 		ApplicationArchive moduleArchive = new ModuleResourceApplicationArchive(Arrays.asList(allResources),
-				changedResources, modules[0], descriptor.applicationInfo.getAppName());
+				changedResources, modules[0], getServer().getId(), descriptor.applicationInfo.getAppName());
 
 		descriptor.applicationArchive = moduleArchive;
 
@@ -1801,15 +2260,26 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	protected void refreshAfterDeployment(boolean waitForDeployment, CloudFoundryOperations client,
 			ApplicationModule cloudModule, CloudFoundryServer cloudServer, String applicationId,
 			IProgressMonitor progress) throws CoreException {
+		refreshAfterDeployment(waitForDeployment, client, cloudModule, cloudServer, applicationId, null, progress);
+	}
+
+	/**
+	 * @param profile records the time spent waiting for the application to
+	 * start. May be null.
+	 */
+	protected void refreshAfterDeployment(boolean waitForDeployment, CloudFoundryOperations client,
+			ApplicationModule cloudModule, CloudFoundryServer cloudServer, String applicationId,
+			PublishProfile profile, IProgressMonitor progress) throws CoreException {
 		if (waitForDeployment) {
-			try {
-				if (!waitForStart(client, cloudModule.getApplicationId(), progress)) {
-					throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, NLS.bind(
-							"Deployment of {0} timed out", cloudModule.getName())));
-				}
+			if (profile != null) {
+				profile.start(Phase.START);
+			}
+			if (!waitForStart(client, cloudModule.getApplicationId(), progress)) {
+				throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, NLS.bind(
+						"Deployment of {0} timed out", cloudModule.getName())));
 			}
-			catch (InterruptedException e) {
-				throw new OperationCanceledException();
+			if (profile != null) {
+				profile.stop(Phase.START);
 			}
 
 			CloudFoundryPlugin.trace("Application " + applicationId + " started");
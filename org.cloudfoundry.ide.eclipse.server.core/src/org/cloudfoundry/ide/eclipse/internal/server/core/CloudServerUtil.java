@@ -15,6 +15,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.wst.server.core.IModule;
 import org.eclipse.wst.server.core.IServer;
 import org.eclipse.wst.server.core.ServerCore;
 
@@ -72,4 +74,33 @@ public class CloudServerUtil {
 		return cfServer;
 	}
 
+	/**
+	 * Determines whether a module is a child of an application on any Cloud
+	 * Foundry server, other than the given application.
+	 * @param child
+	 * @param excludedModule application that is not checked, for example
+	 * because it is being deleted
+	 * @param monitor
+	 * @return true if another application contains the module
+	 */
+	public static boolean isChildModule(IModule child, IModule excludedModule, IProgressMonitor monitor) {
+		for (CloudFoundryServer cfServer : getCloudServers()) {
+			IServer server = cfServer.getServer();
+			for (IModule module : server.getModules()) {
+				if (module.equals(excludedModule)) {
+					continue;
+				}
+				IModule[] children = server.getChildModules(new IModule[] { module }, monitor);
+				if (children != null) {
+					for (IModule otherChild : children) {
+						if (otherChild.getId().equals(child.getId())) {
+							return true;
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
 }
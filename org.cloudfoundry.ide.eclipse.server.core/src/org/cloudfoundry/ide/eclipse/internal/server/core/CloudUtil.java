@@ -12,26 +12,20 @@ package org.cloudfoundry.ide.eclipse.internal.server.core;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.domain.CloudService;
 import org.cloudfoundry.ide.eclipse.internal.server.core.standalone.StandaloneFacetHandler;
-import org.eclipse.core.resources.IContainer;
-import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -54,7 +48,6 @@ import org.eclipse.wst.server.core.internal.Messages;
 import org.eclipse.wst.server.core.internal.ProgressUtil;
 import org.eclipse.wst.server.core.internal.Server;
 import org.eclipse.wst.server.core.internal.ServerPlugin;
-import org.eclipse.wst.server.core.model.IModuleFile;
 import org.eclipse.wst.server.core.model.IModuleFolder;
 import org.eclipse.wst.server.core.model.IModuleResource;
 import org.eclipse.wst.server.core.util.ModuleFile;
@@ -138,6 +131,7 @@ public class CloudUtil {
 
 	public static File createWarFile(IModule[] modules, Server server, IProgressMonitor monitor) throws CoreException {
 		List<IStatus> result = new ArrayList<IStatus>();
+		List<File> moduleJars = new ArrayList<File>();
 		try {
 			File tempFile = getTempFolder(modules[0]);
 			// tempFile needs to be in the same location as the war file
@@ -182,18 +176,20 @@ public class CloudUtil {
 							resources.add(new ModuleFile(jarFile, jarFile.getName(), jarPath));
 						}
 						else {
-							// other modules are assembled into a jar
+							// other modules are assembled into a jar, which is
+							// reused while the module does not change
 							if (childUri == null) {
 								childUri = "WEB-INF/lib/" + child.getName() + ".jar";
 							}
 							IPath jarPath = new Path(childUri);
-							File jarFile = new File(tempFile, jarPath.lastSegment());
+							String jarName = jarPath.lastSegment();
 							jarPath = jarPath.removeLastSegments(1);
 
 							IModuleResource[] mr = server.getResources(new IModule[] { child });
-							IStatus[] status = helper.publishZip(mr, new Path(jarFile.getAbsolutePath()), monitor);
-							merge(result, status);
-							resources.add(new ModuleFile(jarFile, jarFile.getName(), jarPath));
+							File jarFile = CloudFoundryPlugin.getModuleJarCache().getJar(child.getId(),
+									childUri, mr);
+							moduleJars.add(jarFile);
+							resources.add(new ModuleFile(jarFile, jarName, jarPath));
 						}
 					}
 				}
@@ -204,8 +200,9 @@ public class CloudUtil {
 				newResources.add(processModuleResource(mr));
 			}
 
-			IStatus[] status = helper.publishZip(newResources.toArray(new IModuleResource[0]),
-					new Path(targetFile.getAbsolutePath()), monitor);
+			// Assembled reproducibly, so that an unchanged application
+			// produces the same war
+			IStatus[] status = publishZip(newResources, targetFile, null, true, monitor);
 			merge(result, status);
 			throwException(result, NLS.bind("Publishing of ''{0}'' failed", modules[0].getName()));
 
@@ -215,6 +212,12 @@ public class CloudUtil {
 			throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, NLS.bind(
 					"Failed to create war file: {0}", e.getMessage()), e));
 		}
+		finally {
+			// The jars have been copied into the war
+			for (File moduleJar : moduleJars) {
+				CloudFoundryPlugin.getModuleJarCache().release(moduleJar);
+			}
+		}
 
 	}
 
@@ -370,13 +373,28 @@ public class CloudUtil {
 
 	public static IStatus[] publishZip(List<IModuleResource> allResources, File tempFile,
 			Set<IModuleResource> filterInFiles, IProgressMonitor monitor) {
+		return publishZip(allResources, tempFile, filterInFiles, false, monitor);
+	}
+
+	/**
+	 *
+	 * @param allResources
+	 * @param tempFile
+	 * @param filterInFiles files to add, or null to add all files
+	 * @param reproducible true if entries should be sorted and have a fixed
+	 * time, so that the same resources produce the same archive
+	 * @param monitor
+	 * @return error statuses, or an empty array if the archive was created
+	 */
+	public static IStatus[] publishZip(List<IModuleResource> allResources, File tempFile,
+			Set<IModuleResource> filterInFiles, boolean reproducible, IProgressMonitor monitor) {
 
 		monitor = ProgressUtil.getMonitorFor(monitor);
 
 		try {
 			BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(tempFile));
 			ZipOutputStream zout = new ZipOutputStream(bout);
-			addZipEntries(zout, allResources, filterInFiles);
+			new ModuleResourceZipWriter(zout, reproducible).addEntries(allResources, filterInFiles);
 			zout.close();
 
 		}
@@ -395,10 +413,6 @@ public class CloudUtil {
 		return EMPTY_STATUS;
 	}
 
-	private static final int BUFFER = 65536;
-
-	private static byte[] buf = new byte[BUFFER];
-
 	public static String getZipRelativeName(IModuleResource resource) {
 		IPath path = resource.getModuleRelativePath().append(resource.getName());
 		String entryPath = path.toPortableString();
@@ -410,83 +424,6 @@ public class CloudUtil {
 
 	}
 
-	private static void addZipEntries(ZipOutputStream out, List<IModuleResource> allResources,
-			Set<IModuleResource> filterInFiles) throws Exception {
-		if (allResources == null)
-			return;
-
-		for (IModuleResource resource : allResources) {
-			if (resource instanceof IModuleFolder) {
-
-				IModuleResource[] folderResources = ((IModuleFolder) resource).members();
-
-				String entryPath = getZipRelativeName(resource);
-
-				ZipEntry zipEntry = new ZipEntry(entryPath);
-
-				long timeStamp = 0;
-				IContainer folder = (IContainer) resource.getAdapter(IContainer.class);
-				if (folder != null) {
-					timeStamp = folder.getLocalTimeStamp();
-				}
-
-				if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
-					zipEntry.setTime(timeStamp);
-				}
-
-				out.putNextEntry(zipEntry);
-				out.closeEntry();
-
-				addZipEntries(out, Arrays.asList(folderResources), filterInFiles);
-				continue;
-			}
-
-			IModuleFile moduleFile = (IModuleFile) resource;
-			// Only add files that are in the filterInList
-			if (!filterInFiles.contains(moduleFile)) {
-				continue;
-			}
-
-			String entryPath = getZipRelativeName(resource);
-
-			ZipEntry zipEntry = new ZipEntry(entryPath);
-
-			InputStream input = null;
-			long timeStamp = 0;
-			IFile iFile = (IFile) moduleFile.getAdapter(IFile.class);
-			if (iFile != null) {
-				timeStamp = iFile.getLocalTimeStamp();
-				input = iFile.getContents();
-			}
-			else {
-				File file = (File) moduleFile.getAdapter(File.class);
-				timeStamp = file.lastModified();
-				input = new FileInputStream(file);
-			}
-
-			if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
-				zipEntry.setTime(timeStamp);
-			}
-
-			out.putNextEntry(zipEntry);
-
-			try {
-				int n = 0;
-				while (n > -1) {
-					n = input.read(buf);
-					if (n > 0) {
-						out.write(buf, 0, n);
-					}
-				}
-			}
-			finally {
-				input.close();
-			}
-
-			out.closeEntry();
-		}
-	}
-
 	private static boolean isLiftLibrary(IClasspathEntry entry) {
 		if (entry.getPath() != null) {
 			String name = entry.getPath().lastSegment();
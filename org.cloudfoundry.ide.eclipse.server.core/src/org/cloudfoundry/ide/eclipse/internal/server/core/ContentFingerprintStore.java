@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFile.ContentReader;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFile.ContentWriter;
+
+/**
+ * Content addressed store of sha1 codes of local files, shared by all
+ * applications and servers. A file is identified by its canonical path, and
+ * its sha1 is reused as long as its size and last modified time do not
+ * change. Unlike the {@link DeployedResourceCache}, which is partitioned by
+ * application, a library shared by several applications is only hashed once.
+ * <p/>
+ * Files in a local Maven, Ivy or Gradle repository are never modified once
+ * installed, so their entries are kept in a separate index that is shared by
+ * all workspaces, and such artifacts are hashed once per machine. Entries of
+ * other files are kept in an index in the plugin state location.
+ * <p/>
+ * Both indices are {@link ChecksummedIndexFile}s, and are discarded if they
+ * cannot be read. The number of entries in
+ * each index is bounded, and the least recently used entries are discarded
+ * first.
+ */
+public class ContentFingerprintStore {
+
+	public static final String INDEX_FILE_NAME = "contentFingerprints.idx";
+
+	public static final String REPOSITORY_INDEX_FILE_NAME = "repositoryFingerprints.idx";
+
+	private static final int MAGIC = 0xCFD5A200;
+
+	private static final int VERSION = 1;
+
+	private static final int MAX_ENTRIES = 50000;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * sha1 code of a file, and the size and last modified time of the file it
+	 * was computed from.
+	 */
+	public static class Fingerprint {
+
+		private final byte[] sha1;
+
+		private final long size;
+
+		private final long lastModified;
+
+		public Fingerprint(byte[] sha1, long size, long lastModified) {
+			this.sha1 = sha1;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		public byte[] getSha1() {
+			return sha1;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public boolean matches(long size, long lastModified) {
+			return this.size == size && this.lastModified == lastModified;
+		}
+	}
+
+	private static class Index {
+
+		final ChecksummedIndexFile file;
+
+		final Map<String, Fingerprint> entries = new LinkedHashMap<String, Fingerprint>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Fingerprint> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+
+		boolean loaded;
+
+		boolean dirty;
+
+		Index(File file) {
+			this.file = new ChecksummedIndexFile(file, MAGIC, VERSION, "content fingerprint index");
+		}
+	}
+
+	private final Index workspaceIndex;
+
+	private final Index repositoryIndex;
+
+	private final List<String> repositoryLocations;
+
+	/**
+	 *
+	 * @param indexFile index of files that may change
+	 * @param repositoryIndexFile index of files in local artifact
+	 * repositories, shared by all workspaces
+	 */
+	public ContentFingerprintStore(File indexFile, File repositoryIndexFile) {
+		this(indexFile, repositoryIndexFile, getDefaultRepositoryLocations());
+	}
+
+	/**
+	 *
+	 * @param indexFile index of files that may change
+	 * @param repositoryIndexFile index of files in the given repositories
+	 * @param repositoryLocations canonical paths of folders containing
+	 * artifacts that are never modified
+	 */
+	public ContentFingerprintStore(File indexFile, File repositoryIndexFile, List<String> repositoryLocations) {
+		this.workspaceIndex = new Index(indexFile);
+		this.repositoryIndex = new Index(repositoryIndexFile);
+		this.repositoryLocations = new ArrayList<String>(repositoryLocations);
+	}
+
+	/**
+	 *
+	 * @return index of artifacts in local repositories, shared by all
+	 * workspaces of the current user
+	 */
+	public static File getDefaultRepositoryIndexFile() {
+		return new File(System.getProperty("user.home"), ".cloudfoundry" + File.separator + "eclipse"
+				+ File.separator + REPOSITORY_INDEX_FILE_NAME);
+	}
+
+	/**
+	 *
+	 * @return canonical paths of the local Maven, Ivy and Gradle repositories
+	 * of the current user
+	 */
+	public static List<String> getDefaultRepositoryLocations() {
+		List<String> locations = new ArrayList<String>();
+		String home = System.getProperty("user.home");
+		if (home != null) {
+			addLocation(locations, new File(home, ".m2" + File.separator + "repository"));
+			addLocation(locations, new File(home, ".ivy2" + File.separator + "cache"));
+			addLocation(locations, new File(home, ".gradle" + File.separator + "caches"));
+		}
+		String mavenRepository = System.getProperty("maven.repo.local");
+		if (mavenRepository != null) {
+			addLocation(locations, new File(mavenRepository));
+		}
+		return locations;
+	}
+
+	private static void addLocation(List<String> locations, File folder) {
+		try {
+			locations.add(folder.getCanonicalPath());
+		}
+		catch (IOException e) {
+			// Not a usable location
+		}
+	}
+
+	/**
+	 * Returns the sha1 code of the given file, computing it only if the file
+	 * was not hashed before, or changed since.
+	 * @param file
+	 * @return fingerprint of the current content of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public Fingerprint getFingerprint(File file) throws IOException {
+		String path = file.getCanonicalPath();
+		Index index = getIndex(path);
+
+		// Read before computing the sha1, so that a concurrent modification
+		// results in a mismatch on the next request rather than a stale sha1
+		long size = file.length();
+		long lastModified = file.lastModified();
+
+		synchronized (this) {
+			load(index);
+			Fingerprint fingerprint = index.entries.get(path);
+			if (fingerprint != null && fingerprint.matches(size, lastModified)) {
+				return fingerprint;
+			}
+		}
+
+		// Computed outside the lock, so that files can be hashed in parallel
+		Fingerprint fingerprint = new Fingerprint(computeSha1(file), size, lastModified);
+		synchronized (this) {
+			index.entries.put(path, fingerprint);
+			index.dirty = true;
+		}
+		return fingerprint;
+	}
+
+	/**
+	 *
+	 * @param canonicalPath
+	 * @return true if the file is in a local artifact repository, and is
+	 * never modified
+	 */
+	public boolean isRepositoryArtifact(String canonicalPath) {
+		for (String location : repositoryLocations) {
+			if (canonicalPath.startsWith(location) && canonicalPath.length() > location.length()
+					&& canonicalPath.charAt(location.length()) == File.separatorChar) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Index getIndex(String canonicalPath) {
+		return isRepositoryArtifact(canonicalPath) ? repositoryIndex : workspaceIndex;
+	}
+
+	public synchronized boolean isDirty() {
+		return workspaceIndex.dirty || repositoryIndex.dirty;
+	}
+
+	/**
+	 * Writes the indices that changed since they were loaded or saved.
+	 */
+	public synchronized void save() {
+		save(workspaceIndex);
+		save(repositoryIndex);
+	}
+
+	protected static byte[] computeSha1(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// Not reached, SHA-1 is always supported
+			throw new IllegalStateException(e);
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		finally {
+			in.close();
+		}
+		return digest.digest();
+	}
+
+	private void load(Index index) {
+		if (index.loaded) {
+			return;
+		}
+		index.loaded = true;
+
+		final Map<String, Fingerprint> entries = new LinkedHashMap<String, Fingerprint>();
+		boolean valid = index.file.read(new ContentReader() {
+			public void read(DataInputStream in) throws IOException {
+				int count = in.readInt();
+				if (count < 0) {
+					throw new IOException("Invalid entry count: " + count);
+				}
+				for (int i = 0; i < count; i++) {
+					String path = in.readUTF();
+					long size = in.readLong();
+					long lastModified = in.readLong();
+					byte[] sha1 = new byte[in.readUnsignedShort()];
+					in.readFully(sha1);
+					entries.put(path, new Fingerprint(sha1, size, lastModified));
+				}
+			}
+		});
+		if (!valid) {
+			return;
+		}
+		// Entries requested before loading are more recent
+		Map<String, Fingerprint> requested = new LinkedHashMap<String, Fingerprint>(index.entries);
+		index.entries.clear();
+		index.entries.putAll(entries);
+		index.entries.putAll(requested);
+	}
+
+	private void save(final Index index) {
+		if (!index.dirty) {
+			return;
+		}
+		boolean written = index.file.write(new ContentWriter() {
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(index.entries.size());
+				// Written from least to most recently used, so that the order
+				// is restored on load
+				for (Map.Entry<String, Fingerprint> entry : index.entries.entrySet()) {
+					Fingerprint fingerprint = entry.getValue();
+					out.writeUTF(entry.getKey());
+					out.writeLong(fingerprint.getSize());
+					out.writeLong(fingerprint.getLastModified());
+					out.writeShort(fingerprint.getSha1().length);
+					out.write(fingerprint.getSha1());
+				}
+			}
+		});
+		if (written) {
+			index.dirty = false;
+		}
+	}
+
+}
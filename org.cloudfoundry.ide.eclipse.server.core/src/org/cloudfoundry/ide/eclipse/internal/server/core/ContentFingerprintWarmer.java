@@ -0,0 +1,466 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.IServer;
+import org.eclipse.wst.server.core.IServerLifecycleListener;
+import org.eclipse.wst.server.core.ServerCore;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.model.ModuleDelegate;
+
+/**
+ * Computes the sha1 codes of files changed by a workspace build in the
+ * background, so that resource matching can start as soon as an application
+ * is published, without hashing changed files first.
+ * <p/>
+ * Only files that are published are hashed: the members of the modules
+ * deployed to a Cloud Foundry server and of their child modules, and the Java
+ * output folders of their projects. The build notification only records the
+ * files that changed. The folders that contain published files are computed
+ * by the background job, once, and again after servers are changed or
+ * refreshed, or after the classpath or deployment assembly of a deployed
+ * project changes. Files are hashed at low priority, and the sha1 codes are
+ * kept in the {@link ContentFingerprintStore}, from which archive entries
+ * obtain them when the application is published.
+ */
+public class ContentFingerprintWarmer implements IResourceChangeListener {
+
+	/**
+	 * Delay before hashing changed files, so that files changed by
+	 * consecutive builds are only hashed once
+	 */
+	private static final long SCHEDULE_DELAY = 1000;
+
+	private static final int CONTENT_CHANGES = IResourceDelta.CONTENT | IResourceDelta.REPLACED;
+
+	/**
+	 * Project files that change the members of a module, relative to the
+	 * project
+	 */
+	private static final IPath[] MODULE_SETTINGS = new IPath[] { new Path(".classpath"), //$NON-NLS-1$
+			new Path(".settings/org.eclipse.wst.common.component") }; //$NON-NLS-1$
+
+	private final ContentFingerprintStore store;
+
+	/** Files to hash. Guards {@link #changed} as well. */
+	private final Set<File> pending = new LinkedHashSet<File>();
+
+	/**
+	 * Files changed by builds, by workspace path, that have not been matched
+	 * against the published paths yet
+	 */
+	private final Map<IPath, File> changed = new LinkedHashMap<IPath, File>();
+
+	private final Job job;
+
+	/**
+	 * Workspace paths of the folders and files that are published, by
+	 * project name. Null if they need to be computed again.
+	 */
+	private volatile Map<String, List<IPath>> publishedPaths;
+
+	/** Incremented when the published paths are invalidated */
+	private final AtomicInteger invalidations = new AtomicInteger();
+
+	private final IServerLifecycleListener serverListener = new IServerLifecycleListener() {
+
+		public void serverAdded(IServer server) {
+			invalidate();
+		}
+
+		public void serverChanged(IServer server) {
+			// Modules are added to and removed from saved servers
+			invalidate();
+		}
+
+		public void serverRemoved(IServer server) {
+			invalidate();
+		}
+	};
+
+	private final CloudServerListener cloudServerListener = new CloudServerListener() {
+
+		public void serverChanged(CloudServerEvent event) {
+			// Refreshes notify listeners when applications are deployed or
+			// deleted
+			if (event.getType() != CloudServerEvent.EVENT_UPDATE_INSTANCES
+					&& event.getType() != CloudServerEvent.EVENT_UPDATE_SERVICES
+					&& event.getType() != CloudServerEvent.EVENT_UPDATE_PASSWORD) {
+				invalidate();
+			}
+		}
+	};
+
+	public ContentFingerprintWarmer(ContentFingerprintStore store) {
+		this.store = store;
+		job = new Job("Computing checksums of changed resources") {
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				Map<IPath, File> changedFiles = takeChanged();
+				if (!changedFiles.isEmpty()) {
+					List<File> publishedFiles = getPublishedFiles(changedFiles, getPublishedPaths());
+					synchronized (pending) {
+						pending.addAll(publishedFiles);
+					}
+				}
+
+				File file;
+				while ((file = nextPending()) != null) {
+					if (monitor.isCanceled()) {
+						return Status.CANCEL_STATUS;
+					}
+					// Deleted files are skipped
+					if (file.isFile()) {
+						try {
+							ContentFingerprintWarmer.this.store.getFingerprint(file);
+						}
+						catch (IOException e) {
+							CloudFoundryPlugin.trace("Failed to fingerprint " + file + ": " + e.getMessage());
+						}
+					}
+				}
+				return Status.OK_STATUS;
+			}
+
+		};
+		job.setSystem(true);
+		job.setPriority(Job.DECORATE);
+	}
+
+	public void start() {
+		ServerCore.addServerLifecycleListener(serverListener);
+		CloudFoundryPlugin.getDefault().addServerListener(cloudServerListener);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_BUILD);
+	}
+
+	public void dispose() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+		ServerCore.removeServerLifecycleListener(serverListener);
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		if (plugin != null) {
+			plugin.removeServerListener(cloudServerListener);
+		}
+		synchronized (pending) {
+			pending.clear();
+			changed.clear();
+		}
+		job.cancel();
+	}
+
+	/**
+	 * Records the files changed by a build, which are matched against the
+	 * published paths in the background, as computing the published paths
+	 * requires the members of all deployed modules.
+	 */
+	public void resourceChanged(IResourceChangeEvent event) {
+		IResourceDelta delta = event.getDelta();
+		if (delta == null) {
+			return;
+		}
+		IResourceDelta[] projectDeltas = delta.getAffectedChildren();
+		for (IResourceDelta projectDelta : projectDeltas) {
+			if (changesModules(projectDelta)) {
+				invalidate();
+				break;
+			}
+		}
+
+		// Nothing is published
+		Map<String, List<IPath>> paths = publishedPaths;
+		if (paths != null && paths.isEmpty()) {
+			return;
+		}
+
+		Map<IPath, File> changedFiles = new LinkedHashMap<IPath, File>();
+		for (IResourceDelta projectDelta : projectDeltas) {
+			collectChangedFiles(projectDelta, changedFiles);
+		}
+		if (changedFiles.isEmpty()) {
+			return;
+		}
+		synchronized (pending) {
+			changed.putAll(changedFiles);
+		}
+		job.schedule(SCHEDULE_DELAY);
+	}
+
+	/**
+	 * Discards the published paths, which are computed again on the next
+	 * build.
+	 */
+	public void invalidate() {
+		invalidations.incrementAndGet();
+		publishedPaths = null;
+	}
+
+	/**
+	 * Schedules the given files to be hashed in the background.
+	 * @param files
+	 */
+	public void warm(Collection<File> files) {
+		if (files.isEmpty()) {
+			return;
+		}
+		synchronized (pending) {
+			pending.addAll(files);
+		}
+		job.schedule(SCHEDULE_DELAY);
+	}
+
+	/**
+	 * Waits until the scheduled files have been hashed.
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		job.join();
+	}
+
+	private Map<IPath, File> takeChanged() {
+		synchronized (pending) {
+			Map<IPath, File> changedFiles = new LinkedHashMap<IPath, File>(changed);
+			changed.clear();
+			return changedFiles;
+		}
+	}
+
+	private File nextPending() {
+		synchronized (pending) {
+			Iterator<File> it = pending.iterator();
+			if (!it.hasNext()) {
+				return null;
+			}
+			File file = it.next();
+			it.remove();
+			return file;
+		}
+	}
+
+	protected Map<String, List<IPath>> getPublishedPaths() {
+		Map<String, List<IPath>> paths = publishedPaths;
+		if (paths == null) {
+			int invalidation = invalidations.get();
+			paths = computePublishedPaths();
+			// Not kept if invalidated while being computed
+			if (invalidation == invalidations.get()) {
+				publishedPaths = paths;
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 *
+	 * @return workspace paths of the published folders and files of the
+	 * modules deployed to Cloud Foundry servers and of their child modules, by
+	 * project name
+	 */
+	protected Map<String, List<IPath>> computePublishedPaths() {
+		Map<String, List<IPath>> paths = new HashMap<String, List<IPath>>();
+		for (CloudFoundryServer cloudServer : CloudServerUtil.getCloudServers()) {
+			for (ApplicationModule appModule : cloudServer.getApplications()) {
+				if (appModule.isExternal() || appModule.getApplication() == null) {
+					continue;
+				}
+				IModule module = appModule.getLocalModule();
+				addPublishedPaths(paths, module);
+				IModule[] children = cloudServer.getServer().getChildModules(new IModule[] { module }, null);
+				if (children != null) {
+					for (IModule child : children) {
+						addPublishedPaths(paths, child);
+					}
+				}
+			}
+		}
+		return paths;
+	}
+
+	private static void addPublishedPaths(Map<String, List<IPath>> paths, IModule module) {
+		if (module == null || module.getProject() == null || paths.containsKey(module.getProject().getName())) {
+			return;
+		}
+		IProject project = module.getProject();
+		List<IPath> projectPaths = new ArrayList<IPath>();
+		paths.put(project.getName(), projectPaths);
+
+		ModuleDelegate delegate = (ModuleDelegate) module.loadAdapter(ModuleDelegate.class, null);
+		if (delegate != null) {
+			try {
+				addPublishedPaths(projectPaths, delegate.members());
+			}
+			catch (CoreException e) {
+				CloudFoundryPlugin.logError(e);
+			}
+		}
+
+		IJavaProject javaProject = JavaCore.create(project);
+		if (javaProject.exists()) {
+			try {
+				projectPaths.add(javaProject.getOutputLocation());
+				for (IClasspathEntry entry : javaProject.getRawClasspath()) {
+					if (entry.getEntryKind() == IClasspathEntry.CPE_SOURCE && entry.getOutputLocation() != null) {
+						projectPaths.add(entry.getOutputLocation());
+					}
+				}
+			}
+			catch (JavaModelException e) {
+				CloudFoundryPlugin.logError(e);
+			}
+		}
+	}
+
+	/**
+	 * Adds the workspace paths of the given module resources. Folders that
+	 * map to a workspace folder are added as a whole, while the members of
+	 * other folders are added individually.
+	 */
+	private static void addPublishedPaths(List<IPath> paths, IModuleResource[] resources) {
+		for (IModuleResource resource : resources) {
+			if (resource instanceof IModuleFolder) {
+				IContainer container = (IContainer) resource.getAdapter(IContainer.class);
+				if (container != null) {
+					paths.add(container.getFullPath());
+				}
+				else {
+					addPublishedPaths(paths, ((IModuleFolder) resource).members());
+				}
+			}
+			else if (resource instanceof IModuleFile) {
+				IFile file = (IFile) resource.getAdapter(IFile.class);
+				if (file != null) {
+					paths.add(file.getFullPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param projectDelta
+	 * @return true if the delta may change the members of modules of the
+	 * project
+	 */
+	protected static boolean changesModules(IResourceDelta projectDelta) {
+		if (projectDelta.getKind() != IResourceDelta.CHANGED
+				|| (projectDelta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION)) != 0) {
+			return true;
+		}
+		for (IPath setting : MODULE_SETTINGS) {
+			if (projectDelta.findMember(setting) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param path workspace path of a resource
+	 * @param publishedPaths
+	 * @param file whether the resource is a file
+	 * @return true if the resource is published, or contains published
+	 * resources
+	 */
+	protected static boolean isPublished(IPath path, List<IPath> publishedPaths, boolean file) {
+		for (IPath publishedPath : publishedPaths) {
+			if (publishedPath.isPrefixOf(path) || (!file && path.isPrefixOf(publishedPath))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param changedFiles files by workspace path
+	 * @param publishedPaths
+	 * @return the files that are published
+	 */
+	protected static List<File> getPublishedFiles(Map<IPath, File> changedFiles,
+			Map<String, List<IPath>> publishedPaths) {
+		List<File> files = new ArrayList<File>();
+		for (Map.Entry<IPath, File> changedFile : changedFiles.entrySet()) {
+			IPath path = changedFile.getKey();
+			List<IPath> projectPaths = path.segmentCount() > 0 ? publishedPaths.get(path.segment(0)) : null;
+			if (projectPaths != null && isPublished(path, projectPaths, true)) {
+				files.add(changedFile.getValue());
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Collects the files that were added or whose content changed.
+	 * @param projectDelta
+	 * @param files files by workspace path
+	 */
+	protected static void collectChangedFiles(IResourceDelta projectDelta, final Map<IPath, File> files) {
+		try {
+			projectDelta.accept(new IResourceDeltaVisitor() {
+
+				public boolean visit(IResourceDelta delta) throws CoreException {
+					IResource resource = delta.getResource();
+					if (resource.getType() != IResource.FILE) {
+						return true;
+					}
+					if (delta.getKind() == IResourceDelta.ADDED
+							|| (delta.getKind() == IResourceDelta.CHANGED && (delta.getFlags() & CONTENT_CHANGES) != 0)) {
+						IPath location = resource.getLocation();
+						if (location != null) {
+							files.put(resource.getFullPath(), location.toFile());
+						}
+					}
+					return false;
+				}
+			});
+		}
+		catch (CoreException e) {
+			CloudFoundryPlugin.logError(e);
+		}
+	}
+
+}
@@ -10,26 +10,37 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Cache for sha1 hash entries and file sizes for incremental publishing of
  * deployed resources. This avoid recalculating hash entries for resources that
  * have not changed in the server. A server poll may still required to obtain a
  * list of unchanged resources.
+ * <p/>
+ * Entries that record the size and last modified time of the file they were
+ * computed from can be validated against the local file without rehashing it,
+ * which allows the cache to be persisted across sessions via
+ * {@link DeployedResourceCacheStore}.
  * 
  */
 public class DeployedResourceCache {
 	private final Map<CachedDeployedApplication, Map<String, DeployedResourceEntry>> cacheMap = new HashMap<CachedDeployedApplication, Map<String, DeployedResourceEntry>>();
 
+	private final Map<CachedDeployedApplication, Long> lastAccessed = new HashMap<CachedDeployedApplication, Long>();
+
+	private boolean dirty = false;
+
 	public synchronized void add(CachedDeployedApplication applicationID, DeployedResourceEntry entry) {
-		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
-		if (appEntries == null) {
-			appEntries = new HashMap<String, DeployedResourceCache.DeployedResourceEntry>();
-			cacheMap.put(applicationID, appEntries);
-		}
+		Map<String, DeployedResourceEntry> appEntries = getApplicationEntries(applicationID);
 		appEntries.put(entry.getZipRelativeFileName(), entry);
+		lastAccessed.put(applicationID, System.currentTimeMillis());
+		dirty = true;
 	}
 
 	public synchronized DeployedResourceEntry getEntry(CachedDeployedApplication applicationID,
@@ -39,19 +50,167 @@ public class DeployedResourceCache {
 		return appEntries != null ? appEntries.get(zipRelativeFileName) : null;
 	}
 
+	/**
+	 * Removes all cached entries for the given application, for example when
+	 * the application is deleted from the server.
+	 * @param applicationID
+	 */
+	public synchronized void removeApplication(CachedDeployedApplication applicationID) {
+		if (cacheMap.remove(applicationID) != null) {
+			dirty = true;
+		}
+		lastAccessed.remove(applicationID);
+	}
+
+	/**
+	 * Removes any entries for the given application whose zip relative names
+	 * are not in the given set. Used after a publish to discard entries for
+	 * resources that no longer exist in the module.
+	 * @param applicationID
+	 * @param zipRelativeFileNames names of resources that are still part of
+	 * the application
+	 */
+	public synchronized void retainEntries(CachedDeployedApplication applicationID, Set<String> zipRelativeFileNames) {
+		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
+		if (appEntries == null) {
+			return;
+		}
+		if (appEntries.keySet().retainAll(zipRelativeFileNames)) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Compaction pass that removes applications that have not been published
+	 * within the given period, so that entries for deleted or renamed
+	 * applications do not accumulate in the persisted cache.
+	 * @param maxAge in milliseconds
+	 * @return number of applications removed
+	 */
+	public synchronized int compact(long maxAge) {
+		long expiry = System.currentTimeMillis() - maxAge;
+		int removed = 0;
+		for (Iterator<CachedDeployedApplication> it = cacheMap.keySet().iterator(); it.hasNext();) {
+			CachedDeployedApplication app = it.next();
+			Long accessed = lastAccessed.get(app);
+			if (accessed == null || accessed.longValue() < expiry) {
+				it.remove();
+				lastAccessed.remove(app);
+				removed++;
+			}
+		}
+		if (removed > 0) {
+			dirty = true;
+		}
+		return removed;
+	}
+
+	/**
+	 * 
+	 * @return true if entries have been added or removed since the cache was
+	 * last loaded or saved.
+	 */
+	public synchronized boolean isDirty() {
+		return dirty;
+	}
+
+	synchronized void setDirty(boolean dirty) {
+		this.dirty = dirty;
+	}
+
+	synchronized List<CachedDeployedApplication> getApplications() {
+		return new ArrayList<CachedDeployedApplication>(cacheMap.keySet());
+	}
+
+	synchronized List<DeployedResourceEntry> getEntries(CachedDeployedApplication applicationID) {
+		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
+		return appEntries != null ? new ArrayList<DeployedResourceEntry>(appEntries.values())
+				: new ArrayList<DeployedResourceEntry>(0);
+	}
+
+	synchronized long getLastAccessed(CachedDeployedApplication applicationID) {
+		Long accessed = lastAccessed.get(applicationID);
+		return accessed != null ? accessed.longValue() : 0;
+	}
+
+	/**
+	 * Restores entries for an application from a persisted store without
+	 * marking the cache as dirty.
+	 */
+	synchronized void restore(CachedDeployedApplication applicationID, long accessed,
+			List<DeployedResourceEntry> entries) {
+		Map<String, DeployedResourceEntry> appEntries = getApplicationEntries(applicationID);
+		for (DeployedResourceEntry entry : entries) {
+			appEntries.put(entry.getZipRelativeFileName(), entry);
+		}
+		lastAccessed.put(applicationID, accessed);
+	}
+
+	private Map<String, DeployedResourceEntry> getApplicationEntries(CachedDeployedApplication applicationID) {
+		Map<String, DeployedResourceEntry> appEntries = cacheMap.get(applicationID);
+		if (appEntries == null) {
+			appEntries = new HashMap<String, DeployedResourceCache.DeployedResourceEntry>();
+			cacheMap.put(applicationID, appEntries);
+		}
+		return appEntries;
+	}
+
 	public static class DeployedResourceEntry {
+
+		public static final long UNDEFINED_TIMESTAMP = -1;
+
 		private final byte[] sha1;
 
 		private final long fileSize;
 
+		private final long lastModified;
+
 		private final String zipRelativeFileName;
 
 		public DeployedResourceEntry(byte[] sha1, long fileSize, String zipRelativeFileName) {
+			this(sha1, fileSize, UNDEFINED_TIMESTAMP, zipRelativeFileName);
+		}
+
+		/**
+		 * 
+		 * @param sha1
+		 * @param fileSize
+		 * @param lastModified last modified time of the local file from which
+		 * the sha1 was computed. Allows the entry to be validated against the
+		 * local file without recomputing the sha1.
+		 * @param zipRelativeFileName
+		 */
+		public DeployedResourceEntry(byte[] sha1, long fileSize, long lastModified, String zipRelativeFileName) {
 			this.sha1 = sha1;
 			this.fileSize = fileSize;
+			this.lastModified = lastModified;
 			this.zipRelativeFileName = zipRelativeFileName;
 		}
 
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * 
+		 * @return true if the entry records the size and last modified time of
+		 * the file it was computed from.
+		 */
+		public boolean hasFingerprint() {
+			return lastModified != UNDEFINED_TIMESTAMP;
+		}
+
+		/**
+		 * 
+		 * @param size
+		 * @param lastModified
+		 * @return true if the entry has a fingerprint that matches the given
+		 * file size and last modified time.
+		 */
+		public boolean matches(long size, long lastModified) {
+			return hasFingerprint() && this.fileSize == size && this.lastModified == lastModified;
+		}
+
 		public String getZipRelativeFileName() {
 			return zipRelativeFileName;
 		}
@@ -72,12 +231,25 @@ public class DeployedResourceCache {
 	 */
 	public static class CachedDeployedApplication {
 
+		private final String serverId;
+
 		private final String appName;
 
-		public CachedDeployedApplication(String appName) {
+		/**
+		 *
+		 * @param serverId id of the server the application is deployed to, as
+		 * applications of different servers may have the same name
+		 * @param appName
+		 */
+		public CachedDeployedApplication(String serverId, String appName) {
+			this.serverId = serverId;
 			this.appName = appName;
 		}
 
+		public String getServerId() {
+			return serverId;
+		}
+
 		public String getAppName() {
 			return appName;
 		}
@@ -85,6 +257,7 @@ public class DeployedResourceCache {
 		public int hashCode() {
 			final int prime = 31;
 			int result = 1;
+			result = prime * result + ((serverId == null) ? 0 : serverId.hashCode());
 			result = prime * result + ((appName == null) ? 0 : appName.hashCode());
 			return result;
 		}
@@ -101,6 +274,14 @@ public class DeployedResourceCache {
 				return false;
 			}
 			CachedDeployedApplication other = (CachedDeployedApplication) obj;
+			if (serverId == null) {
+				if (other.serverId != null) {
+					return false;
+				}
+			}
+			else if (!serverId.equals(other.serverId)) {
+				return false;
+			}
 			if (appName == null) {
 				if (other.appName != null) {
 					return false;
@@ -113,7 +294,7 @@ public class DeployedResourceCache {
 		}
 
 		public String toString() {
-			return appName.toString();
+			return serverId + '/' + appName;
 		}
 
 	}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFile.ContentReader;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFile.ContentWriter;
+import org.cloudfoundry.ide.eclipse.internal.server.core.DeployedResourceCache.CachedDeployedApplication;
+import org.cloudfoundry.ide.eclipse.internal.server.core.DeployedResourceCache.DeployedResourceEntry;
+
+/**
+ * Persists a {@link DeployedResourceCache} to a binary index file, so that
+ * sha1 codes of unchanged resources need not be recomputed after a restart.
+ * Each entry is keyed by server, application and zip relative name, and records the
+ * size and last modified time of the local file it was computed from.
+ * <p/>
+ * The index is a {@link ChecksummedIndexFile}, and the cache starts empty if
+ * the index cannot be read. Applications that have not been published within
+ * {@link #MAX_APPLICATION_AGE} are compacted out of the cache when it is
+ * loaded.
+ *
+ */
+public class DeployedResourceCacheStore {
+
+	public static final String INDEX_FILE_NAME = "deployedResources.idx";
+
+	private static final int MAGIC = 0xCFD5A100;
+
+	private static final int VERSION = 2;
+
+	/**
+	 * 30 days
+	 */
+	public static final long MAX_APPLICATION_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private final ChecksummedIndexFile indexFile;
+
+	public DeployedResourceCacheStore(File indexFile) {
+		this.indexFile = new ChecksummedIndexFile(indexFile, MAGIC, VERSION, "deployed resources index");
+	}
+
+	public File getIndexFile() {
+		return indexFile.getFile();
+	}
+
+	/**
+	 * Loads persisted entries into the given cache, and compacts entries for
+	 * applications that have not been published recently. If the index file
+	 * is missing, of a different version or corrupt, the cache is left
+	 * unchanged and the corrupt index is deleted.
+	 * @param cache
+	 */
+	public synchronized void load(DeployedResourceCache cache) {
+		final List<CachedDeployedApplication> apps = new ArrayList<CachedDeployedApplication>();
+		final List<Long> accessTimes = new ArrayList<Long>();
+		final List<List<DeployedResourceEntry>> appEntries = new ArrayList<List<DeployedResourceEntry>>();
+
+		boolean valid = indexFile.read(new ContentReader() {
+			public void read(DataInputStream in) throws IOException {
+				int appCount = in.readInt();
+				for (int i = 0; i < appCount; i++) {
+					String serverId = in.readUTF();
+					apps.add(new CachedDeployedApplication(serverId, in.readUTF()));
+					accessTimes.add(in.readLong());
+
+					int entryCount = in.readInt();
+					if (entryCount < 0) {
+						throw new IOException("Invalid entry count: " + entryCount);
+					}
+					List<DeployedResourceEntry> entries = new ArrayList<DeployedResourceEntry>();
+					for (int j = 0; j < entryCount; j++) {
+						String name = in.readUTF();
+						long size = in.readLong();
+						long lastModified = in.readLong();
+						byte[] sha1 = new byte[in.readUnsignedShort()];
+						in.readFully(sha1);
+						entries.add(new DeployedResourceEntry(sha1, size, lastModified, name));
+					}
+					appEntries.add(entries);
+				}
+			}
+		});
+		if (!valid) {
+			return;
+		}
+
+		for (int i = 0; i < apps.size(); i++) {
+			cache.restore(apps.get(i), accessTimes.get(i), appEntries.get(i));
+		}
+		cache.setDirty(false);
+		cache.compact(MAX_APPLICATION_AGE);
+	}
+
+	/**
+	 * Writes entries with a known fingerprint to the index file.
+	 * @param cache
+	 */
+	public synchronized void save(final DeployedResourceCache cache) {
+		// Clear the flag before taking the snapshot, so that any entry added
+		// while writing is persisted on the next save
+		cache.setDirty(false);
+
+		boolean written = indexFile.write(new ContentWriter() {
+			public void write(DataOutputStream out) throws IOException {
+				List<CachedDeployedApplication> apps = cache.getApplications();
+				out.writeInt(apps.size());
+				for (CachedDeployedApplication app : apps) {
+					out.writeUTF(app.getServerId());
+					out.writeUTF(app.getAppName());
+					out.writeLong(cache.getLastAccessed(app));
+
+					List<DeployedResourceEntry> entries = new ArrayList<DeployedResourceEntry>();
+					for (DeployedResourceEntry entry : cache.getEntries(app)) {
+						// Entries without a fingerprint cannot be validated
+						// against the local file in a later session
+						if (entry.hasFingerprint() && entry.getSha1() != null) {
+							entries.add(entry);
+						}
+					}
+
+					out.writeInt(entries.size());
+					for (DeployedResourceEntry entry : entries) {
+						out.writeUTF(entry.getZipRelativeFileName());
+						out.writeLong(entry.getFileSize());
+						out.writeLong(entry.getLastModified());
+						out.writeShort(entry.getSha1().length);
+						out.write(entry.getSha1());
+					}
+				}
+			}
+		});
+		if (!written) {
+			cache.setDirty(true);
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.Random;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Computes delays between attempts of an operation that is retried until it
+ * succeeds. Delays start short, so that an operation that completes quickly
+ * is not waited on longer than needed, and double after each attempt up to a
+ * maximum, so that slow operations are not polled needlessly often. Each delay
+ * is randomly shortened by up to half, so that several waiters started at the
+ * same time do not all poll at the same time.
+ * <p/>
+ * Not thread safe. Each waiter should use its own instance.
+ */
+public class ExponentialBackoff {
+
+	private static final Random RANDOM = new Random();
+
+	private final long maxDelay;
+
+	private long delay;
+
+	/**
+	 *
+	 * @param initialDelay delay before the second attempt, in milliseconds
+	 * @param maxDelay maximum delay between attempts, in milliseconds
+	 */
+	public ExponentialBackoff(long initialDelay, long maxDelay) {
+		this.delay = Math.max(1, initialDelay);
+		this.maxDelay = Math.max(this.delay, maxDelay);
+	}
+
+	/**
+	 *
+	 * @return delay before the next attempt, in milliseconds
+	 */
+	public long nextDelay() {
+		long current = delay;
+		delay = Math.min(maxDelay, delay * 2);
+		long jitter = (long) (RANDOM.nextDouble() * (current / 2));
+		return current - jitter;
+	}
+
+	/**
+	 * Sleeps for the given delay, waking up regularly to check whether the
+	 * monitor was cancelled.
+	 * @param delay in milliseconds
+	 * @param monitor may be null
+	 * @return true if the full delay elapsed, false if the monitor was
+	 * cancelled or the thread interrupted while sleeping
+	 */
+	public static boolean sleep(long delay, IProgressMonitor monitor) {
+		long end = System.currentTimeMillis() + delay;
+		long remaining = delay;
+		while (remaining > 0) {
+			if (monitor != null && monitor.isCanceled()) {
+				return false;
+			}
+			try {
+				Thread.sleep(Math.min(remaining, RequestCoalescer.CANCELLATION_CHECK_INTERVAL));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			remaining = end - System.currentTimeMillis();
+		}
+		return monitor == null || !monitor.isCanceled();
+	}
+
+}
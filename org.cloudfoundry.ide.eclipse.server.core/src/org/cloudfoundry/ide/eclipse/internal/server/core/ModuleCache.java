@@ -14,13 +14,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.wst.server.core.IModule;
@@ -33,14 +36,53 @@ import org.osgi.service.prefs.BackingStoreException;
  * Manages the cloud state of the modules. This can not be managed in the server
  * or behavior delegate since those get disposed every time a working copy is
  * saved.
+ * <p/>
+ * Modules are indexed by module name and application id. The mapping of local
+ * module ids to application ids is read from the preferences once, and changes
+ * are written back by a background job after a short delay, so that updating
+ * many modules results in a single preference flush.
  * @author Steffen Pingel
  */
 public class ModuleCache {
 
+	/**
+	 * Delay after a mapping change before the mappings are persisted. Further
+	 * changes within this delay are persisted together.
+	 */
+	private static final long MAPPING_WRITE_DELAY = 1000;
+
 	public static class ServerData {
 
 		private final List<ApplicationModule> applications = new ArrayList<ApplicationModule>();
 
+		private final Map<String, ApplicationModule> modulesByName = new HashMap<String, ApplicationModule>();
+
+		private final Map<String, ApplicationModule> modulesByApplicationId = new HashMap<String, ApplicationModule>();
+
+		/**
+		 * Application id under which each module is indexed, used to update
+		 * the index when the application id of a module changes.
+		 */
+		private final Map<ApplicationModule, String> indexedApplicationIds = new IdentityHashMap<ApplicationModule, String>();
+
+		/**
+		 * Local module id to application id mapping. Loaded from the
+		 * preferences on first access.
+		 */
+		private Map<String, String> moduleIdToApplicationId;
+
+		private boolean mappingDirty;
+
+		private final Object mappingWriteLock = new Object();
+
+		private final Job mappingWriter = new Job("Save application mappings") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				flushMapping();
+				return Status.OK_STATUS;
+			}
+		};
+
 		/** Cached password in case secure store fails. */
 		private String password;
 
@@ -49,7 +91,7 @@ public class ModuleCache {
 		/**
 		 * Modules added in this session.
 		 */
-		private final List<IModule> undeployedModules = new ArrayList<IModule>();
+		private final Set<IModule> undeployedModules = new HashSet<IModule>();
 
 		private final Map<String, RepublishModule> automaticRepublishModules = new HashMap<String, RepublishModule>();
 
@@ -57,10 +99,14 @@ public class ModuleCache {
 
 		ServerData(IServer server) {
 			this.server = server;
+			mappingWriter.setSystem(true);
 		}
 
 		public synchronized void clear() {
 			applications.clear();
+			modulesByName.clear();
+			modulesByApplicationId.clear();
+			indexedApplicationIds.clear();
 		}
 
 		public synchronized ApplicationModule createModule(CloudApplication application) {
@@ -71,10 +117,18 @@ public class ModuleCache {
 		}
 
 		public synchronized void updateModule(ApplicationModule module) {
+			// The application id of the module may have changed
+			if (indexedApplicationIds.containsKey(module)) {
+				unindexApplicationId(module);
+				indexApplicationId(module);
+			}
+
 			Map<String, String> mapping = getModuleIdToApplicationId();
 			if (module.getLocalModule() != null) {
-				mapping.put(module.getLocalModule().getId(), module.getApplicationId());
-				setMapping(mapping);
+				String previous = mapping.put(module.getLocalModule().getId(), module.getApplicationId());
+				if (!module.getApplicationId().equals(previous)) {
+					mappingChanged();
+				}
 			}
 		}
 
@@ -91,11 +145,15 @@ public class ModuleCache {
 		}
 
 		public synchronized void remove(ApplicationModule module) {
-			applications.remove(module);
+			int index = applications.indexOf(module);
+			if (index >= 0) {
+				unindex(applications.remove(index));
+			}
 			Map<String, String> mapping = getModuleIdToApplicationId();
 			if (module.getLocalModule() != null) {
-				mapping.remove(module.getLocalModule().getId());
-				setMapping(mapping);
+				if (mapping.remove(module.getLocalModule().getId()) != null) {
+					mappingChanged();
+				}
 			}
 		}
 
@@ -111,7 +169,7 @@ public class ModuleCache {
 					}
 				}
 				if (mappingModified) {
-					setMapping(mapping);
+					mappingChanged();
 				}
 			}
 		}
@@ -138,6 +196,48 @@ public class ModuleCache {
 
 		private void add(ApplicationModule module) {
 			applications.add(module);
+			// Lookups return the first module added for a name or
+			// application id
+			if (!modulesByName.containsKey(module.getName())) {
+				modulesByName.put(module.getName(), module);
+			}
+			indexApplicationId(module);
+		}
+
+		private void indexApplicationId(ApplicationModule module) {
+			String applicationId = module.getApplicationId();
+			indexedApplicationIds.put(module, applicationId);
+			if (!modulesByApplicationId.containsKey(applicationId)) {
+				modulesByApplicationId.put(applicationId, module);
+			}
+		}
+
+		private void unindexApplicationId(ApplicationModule module) {
+			String applicationId = indexedApplicationIds.remove(module);
+			if (applicationId != null && modulesByApplicationId.get(applicationId) == module) {
+				modulesByApplicationId.remove(applicationId);
+				// Fall back to another module with the same application id
+				for (ApplicationModule other : applications) {
+					if (applicationId.equals(indexedApplicationIds.get(other))) {
+						modulesByApplicationId.put(applicationId, other);
+						break;
+					}
+				}
+			}
+		}
+
+		private void unindex(ApplicationModule module) {
+			unindexApplicationId(module);
+			if (modulesByName.get(module.getName()) == module) {
+				modulesByName.remove(module.getName());
+				// Fall back to another module with the same name
+				for (ApplicationModule other : applications) {
+					if (module.getName().equals(other.getName())) {
+						modulesByName.put(other.getName(), other);
+						break;
+					}
+				}
+			}
 		}
 
 		private String convertMapToString(Map<String, String> map) {
@@ -167,50 +267,77 @@ public class ModuleCache {
 		}
 
 		private Map<String, String> getModuleIdToApplicationId() {
-			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
-			String string = node.get(KEY_MODULE_MAPPING_LIST + ":" + getServerId(), "");
-			return convertStringToMap(string);
+			if (moduleIdToApplicationId == null) {
+				IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
+				String string = node.get(KEY_MODULE_MAPPING_LIST + ":" + getServerId(), "");
+				moduleIdToApplicationId = convertStringToMap(string);
+			}
+			return moduleIdToApplicationId;
 		}
 
 		private ApplicationModule getModuleByApplicationId(String applicationId) {
-			for (ApplicationModule module : applications) {
-				if (applicationId.equals(module.getApplicationId())) {
-					return module;
-				}
-			}
-			return null;
+			return modulesByApplicationId.get(applicationId);
 		}
 
 		private ApplicationModule getModuleByModuleName(String moduleName) {
-			for (ApplicationModule module : applications) {
-				if (moduleName.equals(module.getName())) {
-					return module;
-				}
-			}
-			return null;
+			return modulesByName.get(moduleName);
 		}
 
 		private String getServerId() {
 			return server.getAttribute(CloudFoundryServer.PROP_SERVER_ID, (String) null);
 		}
 
-		private void setMapping(Map<String, String> list) {
-			String string = convertMapToString(list);
-			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
-			CloudFoundryPlugin.trace("Updated mapping: " + string);
-			node.put(KEY_MODULE_MAPPING_LIST + ":" + getServerId(), string);
-			try {
-				node.flush();
-			}
-			catch (BackingStoreException e) {
-				CloudFoundryPlugin
-						.getDefault()
-						.getLog()
-						.log(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
-								"Failed to update application mappings", e));
+		/**
+		 * Schedules the mappings to be persisted. Must be called while holding
+		 * the lock on this server data.
+		 */
+		private void mappingChanged() {
+			mappingDirty = true;
+			mappingWriter.schedule(MAPPING_WRITE_DELAY);
+		}
+
+		/**
+		 * Persists the mappings if they changed since they were last
+		 * persisted.
+		 */
+		void flushMapping() {
+			synchronized (mappingWriteLock) {
+				String string;
+				String key;
+				synchronized (this) {
+					if (!mappingDirty) {
+						return;
+					}
+					string = convertMapToString(moduleIdToApplicationId);
+					key = KEY_MODULE_MAPPING_LIST + ":" + getServerId();
+					mappingDirty = false;
+				}
+
+				IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
+				CloudFoundryPlugin.trace("Updated mapping: " + string);
+				node.put(key, string);
+				try {
+					node.flush();
+				}
+				catch (BackingStoreException e) {
+					CloudFoundryPlugin
+							.getDefault()
+							.getLog()
+							.log(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
+									"Failed to update application mappings", e));
+				}
 			}
 		}
 
+		/**
+		 * Discards pending mapping changes, for example when the server is
+		 * removed.
+		 */
+		synchronized void dispose() {
+			mappingWriter.cancel();
+			mappingDirty = false;
+		}
+
 		synchronized ApplicationModule getOrCreateApplicationModule(IModule module) {
 			ApplicationModule appModule = getModuleByModuleName(module.getName());
 			if (appModule != null) {
@@ -237,9 +364,12 @@ public class ModuleCache {
 			return appModule;
 		}
 
-		void updateServerId(String oldServerId, String newServerId) {
+		synchronized void updateServerId(String oldServerId, String newServerId) {
 			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
-			String string = node.get(KEY_MODULE_MAPPING_LIST + ":" + oldServerId, "");
+			// Pending changes are moved to the new id along with the
+			// persisted mappings
+			String string = moduleIdToApplicationId != null ? convertMapToString(moduleIdToApplicationId) : node.get(
+					KEY_MODULE_MAPPING_LIST + ":" + oldServerId, "");
 			node.remove(KEY_MODULE_MAPPING_LIST + ":" + oldServerId);
 			node.put(KEY_MODULE_MAPPING_LIST + ":" + newServerId, string);
 		}
@@ -273,6 +403,7 @@ public class ModuleCache {
 
 		public void serverRemoved(IServer server) {
 			remove(server);
+			CloudFoundryPlugin.getDefault().getPublishProfileStore().removeServer(server.getId());
 		}
 	};
 
@@ -283,6 +414,15 @@ public class ModuleCache {
 
 	public void dispose() {
 		ServerCore.removeServerLifecycleListener(listener);
+
+		// Persist mapping changes that have not been written yet
+		List<ServerData> allData;
+		synchronized (this) {
+			allData = new ArrayList<ServerData>(dataByServer.values());
+		}
+		for (ServerData data : allData) {
+			data.flushMapping();
+		}
 	}
 
 	public synchronized ServerData getData(IServer server) {
@@ -295,7 +435,10 @@ public class ModuleCache {
 	}
 
 	protected synchronized void remove(IServer server) {
-		dataByServer.remove(server);
+		ServerData data = dataByServer.remove(server);
+		if (data != null) {
+			data.dispose();
+		}
 
 		String serverId = server.getAttribute(CloudFoundryServer.PROP_SERVER_ID, (String) null);
 		if (serverId != null) {
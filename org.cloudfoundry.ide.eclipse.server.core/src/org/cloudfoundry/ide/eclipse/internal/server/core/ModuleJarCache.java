@@ -0,0 +1,340 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Keeps the jars assembled from the resources of child modules of web
+ * applications, so that a child module is only assembled again when its
+ * resources change. Jars are assembled reproducibly, so a child module that
+ * is assembled again without changes still produces the same jar, and its
+ * SHA-1 matches the resource already on the server.
+ * <p/>
+ * A jar is identified by a fingerprint of the names, modification stamps and
+ * sizes of the resources it contains. Jars of each module are kept in their
+ * own folder, and only the jar of the latest fingerprint is kept. The folder
+ * of a module is deleted when the last application that contains the module
+ * is deleted, or once it has not been used for {@link #MAX_UNUSED_AGE}.
+ * <p/>
+ * Jars returned by {@link #getJar(String, String, IModuleResource[])} are in
+ * use until they are released, and are not deleted while in use. Jars that
+ * could not be deleted because they were in use are deleted once a newer jar
+ * of their module is assembled, or with the folder of their module.
+ */
+public class ModuleJarCache {
+
+	/** Changed when the content of assembled jars changes */
+	private static final String FORMAT_VERSION = "1";
+
+	private static final String JAR_EXTENSION = ".jar";
+
+	/** Records the key of the module of a folder */
+	private static final String KEY_FILE_NAME = "module.key";
+
+	/**
+	 * 30 days
+	 */
+	public static final long MAX_UNUSED_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private final File directory;
+
+	/** Number of callers using each jar */
+	private final Map<File, Integer> inUse = new HashMap<File, Integer>();
+
+	/**
+	 *
+	 * @param directory where assembled jars are kept
+	 */
+	public ModuleJarCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the jar assembled from the given resources, assembling it if the
+	 * resources changed since it was last assembled. The returned jar must not
+	 * be modified or deleted, and must be released with {@link #release(File)}
+	 * once it is no longer read.
+	 * @param moduleId id of the module
+	 * @param uri of the module in its parent module
+	 * @param resources resources of the module
+	 * @return assembled jar
+	 * @throws CoreException if the jar could not be assembled
+	 */
+	public synchronized File getJar(String moduleId, String uri, IModuleResource[] resources) throws CoreException {
+		String key = getKey(moduleId, uri);
+		String fingerprint = getFingerprint(resources);
+		File moduleDirectory = new File(directory, toHex(digest(key)));
+		File jar = new File(moduleDirectory, fingerprint + JAR_EXTENSION);
+		if (jar.isFile()) {
+			// Marks the folder as used
+			moduleDirectory.setLastModified(System.currentTimeMillis());
+			acquire(jar);
+			return jar;
+		}
+
+		File tempFile = null;
+		try {
+			if (!moduleDirectory.isDirectory()) {
+				if (!moduleDirectory.mkdirs()) {
+					throw new IOException(NLS.bind("Unable to create directory {0}", moduleDirectory));
+				}
+				writeKey(moduleDirectory, key);
+			}
+			// Written to a temporary file first, so that a partially written
+			// jar is never returned
+			tempFile = File.createTempFile("module", ".tmp", moduleDirectory);
+			ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				new ModuleResourceZipWriter(out, true).addEntries(Arrays.asList(resources), null);
+			}
+			finally {
+				out.close();
+			}
+			if (!tempFile.renameTo(jar)) {
+				throw new IOException(NLS.bind("Unable to rename {0} to {1}", tempFile, jar));
+			}
+			tempFile = null;
+		}
+		catch (IOException e) {
+			throw new CoreException(CloudFoundryPlugin.getErrorStatus(
+					NLS.bind("Failed to assemble jar for {0}: {1}", key, e.getMessage()), e));
+		}
+		finally {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+
+		// Only the latest jar of a module is kept, unless older jars are
+		// still read by other callers
+		File[] files = moduleDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (!file.equals(jar) && file.getName().endsWith(JAR_EXTENSION) && !inUse.containsKey(file)) {
+					file.delete();
+				}
+			}
+		}
+		acquire(jar);
+		return jar;
+	}
+
+	/**
+	 * Releases a jar returned by
+	 * {@link #getJar(String, String, IModuleResource[])}.
+	 * @param jar
+	 */
+	public synchronized void release(File jar) {
+		Integer count = inUse.get(jar);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			inUse.put(jar, count - 1);
+		}
+		else {
+			inUse.remove(jar);
+		}
+	}
+
+	private void acquire(File jar) {
+		Integer count = inUse.get(jar);
+		inUse.put(jar, count != null ? count + 1 : 1);
+	}
+
+	private boolean isInUse(File moduleDirectory) {
+		for (File jar : inUse.keySet()) {
+			if (moduleDirectory.equals(jar.getParentFile())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Deletes the jars of a module, once no application contains it anymore.
+	 * Jars in use are kept, and deleted once they have not been used for
+	 * {@link #MAX_UNUSED_AGE}.
+	 * @param moduleId
+	 */
+	public synchronized void removeModule(String moduleId) {
+		File[] moduleDirectories = directory.listFiles();
+		if (moduleDirectories == null) {
+			return;
+		}
+		String prefix = getKey(moduleId, "");
+		for (File moduleDirectory : moduleDirectories) {
+			String key = readKey(moduleDirectory);
+			if (key != null && key.startsWith(prefix) && !isInUse(moduleDirectory)) {
+				delete(moduleDirectory);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the jars of modules that have not been used within the given
+	 * age, for example of modules that no longer exist. Jars in use are kept.
+	 * @param maxAge in milliseconds
+	 */
+	public synchronized void prune(long maxAge) {
+		File[] moduleDirectories = directory.listFiles();
+		if (moduleDirectories == null) {
+			return;
+		}
+		long oldest = System.currentTimeMillis() - maxAge;
+		for (File moduleDirectory : moduleDirectories) {
+			if (moduleDirectory.isDirectory() && moduleDirectory.lastModified() < oldest
+					&& !isInUse(moduleDirectory)) {
+				delete(moduleDirectory);
+			}
+		}
+	}
+
+	private static String getKey(String moduleId, String uri) {
+		return moduleId + '#' + uri;
+	}
+
+	private static void writeKey(File moduleDirectory, String key) throws IOException {
+		OutputStream out = new FileOutputStream(new File(moduleDirectory, KEY_FILE_NAME));
+		try {
+			out.write(key.getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 *
+	 * @param moduleDirectory
+	 * @return key of the module of the folder, or null if not known
+	 */
+	private static String readKey(File moduleDirectory) {
+		File keyFile = new File(moduleDirectory, KEY_FILE_NAME);
+		if (!keyFile.isFile()) {
+			return null;
+		}
+		try {
+			return new String(FileCopyUtils.copyToByteArray(keyFile), "UTF-8");
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static void delete(File file) {
+		File[] members = file.listFiles();
+		if (members != null) {
+			for (File member : members) {
+				delete(member);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 *
+	 * @param resources
+	 * @return hex encoded SHA-1 of the names, modification stamps and sizes of
+	 * the given resources and their members
+	 */
+	public static String getFingerprint(IModuleResource[] resources) {
+		MessageDigest digest = createDigest();
+		update(digest, FORMAT_VERSION);
+		update(digest, Arrays.asList(resources));
+		return toHex(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, List<IModuleResource> resources) {
+		List<IModuleResource> sorted = new ArrayList<IModuleResource>(resources);
+		Collections.sort(sorted, ModuleResourceZipWriter.ENTRY_ORDER);
+		for (IModuleResource resource : sorted) {
+			update(digest, CloudUtil.getZipRelativeName(resource));
+			if (resource instanceof IModuleFolder) {
+				update(digest, Arrays.asList(((IModuleFolder) resource).members()));
+			}
+			else if (resource instanceof IModuleFile) {
+				update(digest, ((IModuleFile) resource).getModificationStamp() + ":" + getSize(resource));
+			}
+		}
+	}
+
+	private static long getSize(IModuleResource resource) {
+		File file = (File) resource.getAdapter(File.class);
+		if (file == null) {
+			IFile iFile = (IFile) resource.getAdapter(IFile.class);
+			IPath location = iFile != null ? iFile.getLocation() : null;
+			file = location != null ? location.toFile() : null;
+		}
+		return file != null ? file.length() : -1;
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		try {
+			digest.update(value.getBytes("UTF-8"));
+			digest.update((byte) 0);
+		}
+		catch (UnsupportedEncodingException e) {
+			// Not reached, UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] digest(String value) {
+		MessageDigest digest = createDigest();
+		update(digest, value);
+		return digest.digest();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// Not reached, SHA-1 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import org.eclipse.wst.server.core.IModule;
+
+/**
+ * Runs an operation on a list of modules, with at most a given number of
+ * modules being processed at the same time. The status of each module is
+ * reported under the name of the module.
+ * @see BoundedOperationScheduler
+ */
+public class ModuleOperationScheduler extends BoundedOperationScheduler<IModule[]> {
+
+	/**
+	 * Operation performed on each module. Implementations must be safe to run
+	 * concurrently for different modules.
+	 */
+	public interface ModuleOperation extends Operation<IModule[]> {
+
+	}
+
+	/**
+	 *
+	 * @param label used for progress and as the message of the resulting
+	 * multi status
+	 * @param parallelism maximum number of modules processed at the same time.
+	 * Values less than 1 are treated as 1.
+	 */
+	public ModuleOperationScheduler(String label, int parallelism) {
+		super(label, parallelism);
+	}
+
+	@Override
+	protected String getName(IModule[] module) {
+		return module[0].getName();
+	}
+
+}
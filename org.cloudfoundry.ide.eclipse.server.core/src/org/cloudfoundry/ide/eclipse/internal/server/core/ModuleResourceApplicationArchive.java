@@ -21,17 +21,28 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 import org.cloudfoundry.client.lib.archive.ApplicationArchive;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ContentFingerprintStore.Fingerprint;
 import org.cloudfoundry.ide.eclipse.internal.server.core.DeployedResourceCache.CachedDeployedApplication;
 import org.cloudfoundry.ide.eclipse.internal.server.core.DeployedResourceCache.DeployedResourceEntry;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.IModule;
-import org.eclipse.wst.server.core.model.IModuleFile;
-import org.eclipse.wst.server.core.model.IModuleFolder;
 import org.eclipse.wst.server.core.model.IModuleResource;
 
 /**
@@ -57,58 +68,156 @@ import org.eclipse.wst.server.core.model.IModuleResource;
  * 2) The second phase involves handling the list of resources that the server
  * indicates have not changed. This is done through a callback handler, which
  * then builds the partial war file with only those resources that have changed.
+ * Unless disabled via {@link CloudFoundryPlugin#getStreamPartialUpload()}, the
+ * partial war is not written to disk. Instead the changed resources are
+ * streamed directly from the workspace as the client zips the payload.
+ * <p/>
+ * Cached entries are only used if the size and time stamp of the local file
+ * still match, which is checked for every entry without reading the file.
  * 
  */
 public class ModuleResourceApplicationArchive extends AbstractModuleResourceArchive {
 
-	private final Set<String> changedResources;
-
 	private String fileName;
 
 	private final CachedDeployedApplication appID;
 
 	public ModuleResourceApplicationArchive(List<IModuleResource> allResources, List<IModuleResource> changedResources,
-			IModule module, String appName) {
-		super(module, allResources);
-		this.appID = new CachedDeployedApplication(appName);
-		this.changedResources = changedResourcesAsZipNames(changedResources);
+			IModule module, String serverId, String appName) {
+		super(module, allResources, true);
+		this.appID = new CachedDeployedApplication(serverId, appName);
+		markChanged(changedResources);
 	}
 
-	protected Set<String> changedResourcesAsZipNames(List<IModuleResource> changedResources) {
-		Set<String> names = new HashSet<String>();
+	/**
+	 * Marks the entries of the given resources as changed in the index of this
+	 * archive.
+	 * @param changedResources resources in the publish delta
+	 */
+	protected void markChanged(List<IModuleResource> changedResources) {
+		ModuleResourceIndex index = getIndex();
 		for (IModuleResource resource : changedResources) {
-			names.add(CloudUtil.getZipRelativeName(resource));
+			int entry = index.find(resource);
+			if (entry >= 0) {
+				index.setChanged(entry);
+			}
 		}
-		return names;
 	}
 
 	public String getFilename() {
 		return fileName;
 	}
 
-	protected ModuleFolderEntryAdapter getModuleFolderAdapter(IModuleFolder folder) {
-		return new ZipModuleFolderEntryAdapter(folder);
+	protected ZipModuleFileEntryAdapter getFileResourceEntryAdapter(int entry) {
+		return new ZipModuleFileEntryAdapter(entry, appID, getIndex().isChanged(entry));
 	}
 
-	protected ModuleFileEntryAdapter getFileResourceEntryAdapter(IModuleFile file) {
-		String zipName = CloudUtil.getZipRelativeName(file);
-		boolean changed = changedResources != null && changedResources.contains(zipName);
-		return new ZipModuleFileEntryAdapter(file, appID, changed);
+	/**
+	 * Pre-computes sha1 codes and file sizes for all file entries in this
+	 * archive across a bounded pool of threads, so that the entries are
+	 * resolved from the deployed resources cache when the CF client requests
+	 * them for resource matching. Each entry checks the size and time stamp of
+	 * its file, and only files that no longer match their cached entry are
+	 * hashed. Entries that fail to be computed are left to be computed again,
+	 * on the calling thread, when requested by the client.
+	 * @param monitor may be null. Checked for cancellation.
+	 * @throws OperationCanceledException if the monitor is cancelled
+	 */
+	public void computeDeployedResourceEntries(IProgressMonitor monitor) {
+		ModuleResourceIndex index = getIndex();
+		int[] fileEntries = new int[index.getEntryCount()];
+		int fileEntryCount = 0;
+		for (int i = 0; i < index.getEntryCount(); i++) {
+			int entry = index.getEntry(i);
+			if (!index.isDirectory(entry)) {
+				fileEntries[fileEntryCount++] = entry;
+			}
+		}
+
+		int threadCount = Math.min(CloudFoundryPlugin.getDefault().getSha1ThreadCount(), fileEntryCount);
+		if (threadCount <= 1) {
+			// Entries are computed lazily when requested by the client
+			return;
+		}
+
+		if (monitor != null) {
+			monitor.subTask(NLS.bind("Computing checksums for {0} resources", fileEntryCount));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Cloud Foundry resource checksum");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			}
+		});
+
+		try {
+			CompletionService<DeployedResourceEntry> completionService = new ExecutorCompletionService<DeployedResourceEntry>(
+					executor);
+			for (int i = 0; i < fileEntryCount; i++) {
+				final int entry = fileEntries[i];
+				completionService.submit(new Callable<DeployedResourceEntry>() {
+					public DeployedResourceEntry call() throws Exception {
+						return getFileResourceEntryAdapter(entry).getDeployedResourcesEntry();
+					}
+				});
+			}
+
+			int remaining = fileEntryCount;
+			while (remaining > 0) {
+				if (monitor != null && monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				Future<DeployedResourceEntry> result = completionService.poll(
+						RequestCoalescer.CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+				if (result != null) {
+					remaining--;
+					try {
+						result.get();
+					}
+					catch (ExecutionException e) {
+						CloudFoundryPlugin.logError("Failed to compute checksum for resource", e.getCause());
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			throw new OperationCanceledException();
+		}
+		finally {
+			executor.shutdownNow();
+		}
 	}
 
 	public void generatePartialWarFile(Set<String> knownResourceNames) {
 		Iterable<Entry> localEntries = getEntries();
 		Map<String, AbstractModuleResourceEntryAdapter> missingChangedEntries = new HashMap<String, AbstractModuleResourceEntryAdapter>();
 		Set<IModuleResource> missingChangedResources = new HashSet<IModuleResource>();
+		List<Entry> missingChangedEntriesInOrder = new ArrayList<ApplicationArchive.Entry>();
 
 		for (Entry entry : localEntries) {
 
 			if (entry.isDirectory() || !knownResourceNames.contains(entry.getName())) {
 				missingChangedEntries.put(entry.getName(), (AbstractModuleResourceEntryAdapter) entry);
 				missingChangedResources.add(((AbstractModuleResourceEntryAdapter) entry).getResource());
+				missingChangedEntriesInOrder.add(entry);
 			}
 		}
 
+		// Discard cached entries for resources that have been deleted locally
+		CloudFoundryPlugin.getDefault().getDeployedResourcesCache().retainEntries(appID, getIndex().getFileNames());
+
+		if (CloudFoundryPlugin.getDefault().getStreamPartialUpload() && canStream(missingChangedEntriesInOrder)) {
+			// The client zips the payload from the entries as it uploads
+			// it, so the module file entries can be streamed directly from
+			// the local files without first writing a temporary war
+			fileName = getModule().getName() + ".war";
+			entries = missingChangedEntriesInOrder;
+			return;
+		}
+
 		// Build war file with changed/missing resources
 		try {
 
@@ -148,6 +257,26 @@ public class ModuleResourceApplicationArchive extends AbstractModuleResourceArch
 		}
 	}
 
+	/**
+	 * 
+	 * @param entriesToDeploy
+	 * @return true if the content of all the given file entries can be read
+	 * directly from a local file.
+	 */
+	protected boolean canStream(List<Entry> entriesToDeploy) {
+		for (Entry entry : entriesToDeploy) {
+			if (entry instanceof ZipModuleFileEntryAdapter) {
+				if (!((ZipModuleFileEntryAdapter) entry).canComputeResourceEntry()) {
+					return false;
+				}
+			}
+			else if (!(entry instanceof ModuleFolderEntryAdapter)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Entry to be used to access actual payload files. Sha1 entries should be
 	 * computed prior to creating the entry, ideally without uncompressing the
@@ -206,18 +335,6 @@ public class ModuleResourceApplicationArchive extends AbstractModuleResourceArch
 
 	}
 
-	public class ZipModuleFolderEntryAdapter extends ModuleFolderEntryAdapter {
-
-		public ZipModuleFolderEntryAdapter(IModuleFolder moduleResource) {
-			super(moduleResource);
-		}
-
-		protected String computeName(IModuleResource resource) {
-			return CloudUtil.getZipRelativeName(resource);
-		}
-
-	}
-
 	/**
 	 * Module file resource specialisation of the Cloud Foundry client entry
 	 * adapter. This computes sha1 and file sizes and manages caching of such
@@ -230,8 +347,10 @@ public class ModuleResourceApplicationArchive extends AbstractModuleResourceArch
 
 		private final boolean recalculate;
 
-		public ZipModuleFileEntryAdapter(IModuleFile moduleFile, CachedDeployedApplication appName, boolean recalculate) {
-			super(moduleFile);
+		private DeployedResourceEntry deployedResourcesEntry;
+
+		public ZipModuleFileEntryAdapter(int entry, CachedDeployedApplication appName, boolean recalculate) {
+			super(entry);
 
 			this.appName = appName;
 			this.recalculate = recalculate;
@@ -239,32 +358,88 @@ public class ModuleResourceApplicationArchive extends AbstractModuleResourceArch
 
 		@Override
 		public long getSize() {
-			DeployedResourceEntry entry = getDeployedResourcesEntry();
-			return entry != null ? entry.getFileSize() : UNDEFINED_SIZE;
+			if (getIndex().hasFingerprint(entry)) {
+				return getIndex().getSize(entry);
+			}
+			DeployedResourceEntry resolved = getDeployedResourcesEntry();
+			return resolved != null ? resolved.getFileSize() : UNDEFINED_SIZE;
 		}
 
-		public DeployedResourceEntry getDeployedResourcesEntry() {
+		/**
+		 * Resolves the cached sha1 and file size for this entry, computing
+		 * them if not cached or stale. The resolved sha1 and file size are
+		 * recorded in the index of the archive, so that entries pre-computed
+		 * in parallel are not validated again when the client requests them.
+		 * @return resolved entry, or null if it cannot be computed
+		 */
+		public synchronized DeployedResourceEntry getDeployedResourcesEntry() {
+			if (deployedResourcesEntry != null) {
+				return deployedResourcesEntry;
+			}
 
-			DeployedResourceEntry deployedResourcesEntry = CloudFoundryPlugin.getDefault().getDeployedResourcesCache()
+			deployedResourcesEntry = CloudFoundryPlugin.getDefault().getDeployedResourcesCache()
 					.getEntry(appName, getName());
 
-			if (canComputeResourceEntry() && (recalculate || deployedResourcesEntry == null)) {
-				byte[] sha1 = super.getSha1Digest();
-				long fileSize = super.getSize();
-				deployedResourcesEntry = new DeployedResourceEntry(sha1, fileSize, getName());
+			// An entry with a fingerprint in the index was already validated
+			if (!getIndex().hasFingerprint(entry) && canComputeResourceEntry() && isStale(deployedResourcesEntry)) {
+				deployedResourcesEntry = computeDeployedResourcesEntry();
 				CloudFoundryPlugin.getDefault().getDeployedResourcesCache().add(appName, deployedResourcesEntry);
 			}
 
+			if (deployedResourcesEntry != null) {
+				getIndex().setFingerprint(entry, deployedResourcesEntry.getSha1(),
+						deployedResourcesEntry.getFileSize());
+			}
 			return deployedResourcesEntry;
 		}
 
-		public byte[] getSha1Digest() {
-			DeployedResourceEntry entry = getDeployedResourcesEntry();
-			return entry != null ? entry.getSha1() : null;
+		/**
+		 * Obtains the sha1 and file size from the content fingerprint store,
+		 * so that a file shared with other applications is not hashed again.
+		 * @return entry for the current content of the file
+		 */
+		protected DeployedResourceEntry computeDeployedResourcesEntry() {
+			try {
+				Fingerprint fingerprint = CloudFoundryPlugin.getDefault().getContentFingerprintStore()
+						.getFingerprint(file);
+				return new DeployedResourceEntry(fingerprint.getSha1(), fingerprint.getSize(),
+						fingerprint.getLastModified(), getName());
+			}
+			catch (IOException e) {
+				CloudFoundryPlugin.trace("Failed to fingerprint " + file + ": " + e.getMessage());
+			}
+
+			// Read the time stamp before computing the sha1, so that a
+			// concurrent modification results in a mismatch on the next
+			// publish rather than a stale sha1
+			long lastModified = file.lastModified();
+			byte[] sha1 = super.getSha1Digest();
+			long fileSize = super.getSize();
+			return new DeployedResourceEntry(sha1, fileSize, lastModified, getName());
 		}
 
-		protected String computeName(IModuleResource resource) {
-			return CloudUtil.getZipRelativeName(resource);
+		/**
+		 * An entry that records the size and time stamp of the file it was
+		 * computed from is only stale if the file no longer matches, which is
+		 * cheap to check compared to hashing the file. Any other entry is only
+		 * stale if the resource is known to have changed.
+		 */
+		protected boolean isStale(DeployedResourceEntry entry) {
+			if (entry == null) {
+				return true;
+			}
+			if (entry.hasFingerprint()) {
+				return !entry.matches(file.length(), file.lastModified());
+			}
+			return recalculate;
+		}
+
+		public byte[] getSha1Digest() {
+			if (getIndex().hasFingerprint(entry)) {
+				return getIndex().getSha1(entry);
+			}
+			DeployedResourceEntry resolved = getDeployedResourcesEntry();
+			return resolved != null ? resolved.getSha1() : null;
 		}
 	}
 
@@ -0,0 +1,439 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+
+/**
+ * Compact index of the resources of a module, in the order in which they are
+ * added to an application archive. Archives of large modules create entry
+ * adapters from the index as they are iterated, instead of keeping an adapter,
+ * a name and a cached sha1 entry per resource for the whole upload.
+ * <p/>
+ * Entry names are kept in a path trie, in which each node holds one segment
+ * of a path, so that a folder path is stored once for all its members. Names
+ * are only assembled when requested. The state of each entry, its size and
+ * sha1 code are kept in primitive arrays indexed by the entry.
+ * <p/>
+ * Entries are identified by their node in the trie. Nodes of folders that are
+ * implied by the module relative path of a resource, but are not resources
+ * themselves, are not entries.
+ */
+public class ModuleResourceIndex {
+
+	private static final int ROOT = 0;
+
+	private static final int SHA1_LENGTH = 20;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final byte ENTRY = 0x1;
+
+	private static final byte DIRECTORY = 0x2;
+
+	private static final byte CHANGED = 0x4;
+
+	private static final byte FINGERPRINT = 0x8;
+
+	private final boolean portableNames;
+
+	private int nodeCount;
+
+	private int[] parents;
+
+	private String[] segments;
+
+	private byte[] flags;
+
+	private IModuleResource[] resources;
+
+	private long[] sizes;
+
+	private byte[] digests;
+
+	/** Open addressing table of node + 1 by parent and segment */
+	private int[] children;
+
+	private int[] entries;
+
+	private int entryCount;
+
+	private int fileCount;
+
+	/**
+	 *
+	 * @param members resources of the module
+	 * @param portableNames true if colons in segments are escaped in entry
+	 * names, as in {@link IPath#toPortableString()}
+	 */
+	public ModuleResourceIndex(IModuleResource[] members, boolean portableNames) {
+		this.portableNames = portableNames;
+		parents = new int[INITIAL_CAPACITY];
+		segments = new String[INITIAL_CAPACITY];
+		flags = new byte[INITIAL_CAPACITY];
+		resources = new IModuleResource[INITIAL_CAPACITY];
+		children = new int[INITIAL_CAPACITY * 2];
+		entries = new int[INITIAL_CAPACITY];
+		parents[ROOT] = -1;
+		nodeCount = 1;
+		add(members);
+
+		// Sizes and sha1 codes are only recorded for entries
+		sizes = new long[nodeCount];
+		digests = new byte[nodeCount * SHA1_LENGTH];
+	}
+
+	/**
+	 * Adds entries in the same order as archives did before the index was
+	 * introduced: each folder is followed by its members.
+	 */
+	private void add(IModuleResource[] members) {
+		if (members == null) {
+			return;
+		}
+		for (IModuleResource resource : members) {
+			if (resource instanceof IModuleFile) {
+				addEntry(resource, false);
+			}
+			else if (resource instanceof IModuleFolder && addEntry(resource, true)) {
+				add(((IModuleFolder) resource).members());
+			}
+		}
+	}
+
+	private boolean addEntry(IModuleResource resource, boolean directory) {
+		int node = getNode(resource, true);
+		if ((flags[node] & ENTRY) != 0) {
+			// A duplicate name would result in an invalid archive
+			CloudFoundryPlugin.trace("Ignoring duplicate module resource " + getName(node));
+			return false;
+		}
+		flags[node] |= directory ? ENTRY | DIRECTORY : ENTRY;
+		resources[node] = resource;
+		if (entryCount == entries.length) {
+			int[] newEntries = new int[entryCount * 2];
+			System.arraycopy(entries, 0, newEntries, 0, entryCount);
+			entries = newEntries;
+		}
+		entries[entryCount++] = node;
+		if (!directory) {
+			fileCount++;
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return number of entries, which are numbered from 0
+	 */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	/**
+	 *
+	 * @param index between 0 and {@link #getEntryCount()}, exclusive
+	 * @return entry at the given position
+	 */
+	public int getEntry(int index) {
+		if (index < 0 || index >= entryCount) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return entries[index];
+	}
+
+	public IModuleResource getResource(int entry) {
+		return resources[entry];
+	}
+
+	public boolean isDirectory(int entry) {
+		return (flags[entry] & DIRECTORY) != 0;
+	}
+
+	/**
+	 *
+	 * @param entry
+	 * @return module relative name of the entry, ending with a '/' for
+	 * folders
+	 */
+	public String getName(int entry) {
+		int length = 0;
+		int depth = 0;
+		for (int node = entry; node != ROOT; node = parents[node]) {
+			length += segments[node].length() + 1;
+			depth++;
+		}
+		int[] path = new int[depth];
+		for (int node = entry; node != ROOT; node = parents[node]) {
+			path[--depth] = node;
+		}
+
+		StringBuilder name = new StringBuilder(length);
+		for (int i = 0; i < path.length; i++) {
+			if (i > 0) {
+				name.append('/');
+			}
+			appendSegment(name, segments[path[i]]);
+		}
+		if (isDirectory(entry)) {
+			name.append('/');
+		}
+		return name.toString();
+	}
+
+	private void appendSegment(StringBuilder name, String segment) {
+		if (!portableNames || segment.indexOf(':') < 0) {
+			name.append(segment);
+			return;
+		}
+		for (int i = 0; i < segment.length(); i++) {
+			char c = segment.charAt(i);
+			if (c == ':') {
+				name.append(':');
+			}
+			name.append(c);
+		}
+	}
+
+	/**
+	 *
+	 * @param resource
+	 * @return entry of the same kind, module relative path and name as the
+	 * given resource, or -1 if there is none
+	 */
+	public int find(IModuleResource resource) {
+		int node = getNode(resource, false);
+		if (node < 0 || (flags[node] & ENTRY) == 0 || isDirectory(node) != resource instanceof IModuleFolder) {
+			return -1;
+		}
+		return node;
+	}
+
+	/**
+	 *
+	 * @param name module relative name, as returned by {@link #getName(int)}
+	 * @return entry with the given name, or -1 if there is none
+	 */
+	public int findName(String name) {
+		boolean directory = name.endsWith("/");
+		int end = directory ? name.length() - 1 : name.length();
+		int node = ROOT;
+		int start = 0;
+		while (node >= 0 && start <= end) {
+			int separator = name.indexOf('/', start);
+			if (separator < 0 || separator > end) {
+				separator = end;
+			}
+			String segment = name.substring(start, separator);
+			if (portableNames) {
+				segment = segment.replace("::", ":");
+			}
+			node = getChild(node, segment, false);
+			start = separator + 1;
+		}
+		if (node <= ROOT || (flags[node] & ENTRY) == 0 || isDirectory(node) != directory) {
+			return -1;
+		}
+		return node;
+	}
+
+	/**
+	 *
+	 * @return view of the names of the file entries
+	 */
+	public Set<String> getFileNames() {
+		return new AbstractSet<String>() {
+
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof String)) {
+					return false;
+				}
+				int entry = findName((String) o);
+				return entry >= 0 && !isDirectory(entry);
+			}
+
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+
+					private int next = nextFile(0);
+
+					public boolean hasNext() {
+						return next < entryCount;
+					}
+
+					public String next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						String name = getName(entries[next]);
+						next = nextFile(next + 1);
+						return name;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return fileCount;
+			}
+		};
+	}
+
+	private int nextFile(int index) {
+		while (index < entryCount && isDirectory(entries[index])) {
+			index++;
+		}
+		return index;
+	}
+
+	public synchronized void setChanged(int entry) {
+		flags[entry] |= CHANGED;
+	}
+
+	/**
+	 *
+	 * @param entry
+	 * @return true if the resource of the entry is known to have changed
+	 * since the last publish
+	 */
+	public synchronized boolean isChanged(int entry) {
+		return (flags[entry] & CHANGED) != 0;
+	}
+
+	/**
+	 * Records the sha1 code and size of a file entry, so that they need not be
+	 * resolved again when the entries are iterated again.
+	 * @param entry
+	 * @param sha1 ignored unless a sha1 code
+	 * @param size
+	 */
+	public synchronized void setFingerprint(int entry, byte[] sha1, long size) {
+		if (sha1 == null || sha1.length != SHA1_LENGTH) {
+			return;
+		}
+		System.arraycopy(sha1, 0, digests, entry * SHA1_LENGTH, SHA1_LENGTH);
+		sizes[entry] = size;
+		flags[entry] |= FINGERPRINT;
+	}
+
+	public synchronized boolean hasFingerprint(int entry) {
+		return (flags[entry] & FINGERPRINT) != 0;
+	}
+
+	/**
+	 *
+	 * @param entry
+	 * @return recorded sha1 code, or null if none is recorded
+	 */
+	public synchronized byte[] getSha1(int entry) {
+		if (!hasFingerprint(entry)) {
+			return null;
+		}
+		byte[] sha1 = new byte[SHA1_LENGTH];
+		System.arraycopy(digests, entry * SHA1_LENGTH, sha1, 0, SHA1_LENGTH);
+		return sha1;
+	}
+
+	/**
+	 *
+	 * @param entry
+	 * @return recorded size, or -1 if none is recorded
+	 */
+	public synchronized long getSize(int entry) {
+		return hasFingerprint(entry) ? sizes[entry] : -1;
+	}
+
+	private int getNode(IModuleResource resource, boolean create) {
+		IPath path = resource.getModuleRelativePath();
+		int node = ROOT;
+		int segmentCount = path != null ? path.segmentCount() : 0;
+		for (int i = 0; i < segmentCount && node >= 0; i++) {
+			node = getChild(node, path.segment(i), create);
+		}
+		return node >= 0 ? getChild(node, resource.getName(), create) : -1;
+	}
+
+	private int getChild(int parent, String segment, boolean create) {
+		int mask = children.length - 1;
+		int slot = hash(parent, segment) & mask;
+		for (int node; (node = children[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+			if (parents[node] == parent && segments[node].equals(segment)) {
+				return node;
+			}
+		}
+		if (!create) {
+			return -1;
+		}
+
+		if (nodeCount == parents.length) {
+			growNodes(nodeCount * 2);
+		}
+		int node = nodeCount++;
+		parents[node] = parent;
+		segments[node] = segment;
+
+		// Kept at most half full
+		if (nodeCount * 2 > children.length) {
+			children = new int[children.length * 2];
+			for (int i = 1; i < nodeCount; i++) {
+				insert(i);
+			}
+		}
+		else {
+			insert(node);
+		}
+		return node;
+	}
+
+	private void growNodes(int capacity) {
+		int[] newParents = new int[capacity];
+		System.arraycopy(parents, 0, newParents, 0, nodeCount);
+		parents = newParents;
+		String[] newSegments = new String[capacity];
+		System.arraycopy(segments, 0, newSegments, 0, nodeCount);
+		segments = newSegments;
+		byte[] newFlags = new byte[capacity];
+		System.arraycopy(flags, 0, newFlags, 0, nodeCount);
+		flags = newFlags;
+		IModuleResource[] newResources = new IModuleResource[capacity];
+		System.arraycopy(resources, 0, newResources, 0, nodeCount);
+		resources = newResources;
+	}
+
+	private void insert(int node) {
+		int mask = children.length - 1;
+		int slot = hash(parents[node], segments[node]) & mask;
+		while (children[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		children[slot] = node + 1;
+	}
+
+	private static int hash(int parent, String segment) {
+		int hash = segment.hashCode() * 31 + parent;
+		return hash ^ (hash >>> 16);
+	}
+
+}
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+
+/**
+ * Writes module resources to a zip output stream. Each writer has its own
+ * copy buffer, so separate writers can assemble archives for different modules
+ * concurrently.
+ * <p/>
+ * Resources that are already compressed, like jars or images, are stored
+ * rather than deflated again, as deflating them costs CPU time without
+ * reducing their size. Stored entries require the CRC and size up front, so
+ * the content of such resources is read twice. This is still cheaper than
+ * deflating it.
+ * <p/>
+ * A reproducible writer adds the resources of each folder in name order, with
+ * the manifest first, and gives all entries the same time, so that the same
+ * resources always produce the same archive bytes, and therefore the same
+ * SHA-1.
+ */
+public class ModuleResourceZipWriter {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private static final String[] COMPRESSED_EXTENSIONS = { ".jar", ".war", ".ear", ".zip", ".gz", ".tgz", ".bz2",
+			".png", ".gif", ".jpg", ".jpeg", ".ico", ".mp3", ".mp4", ".swf" };
+
+	/**
+	 * Time of all entries of reproducible archives. Set in the local time zone,
+	 * as zip entry times are stored as local date and time.
+	 */
+	private static final long REPRODUCIBLE_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1).getTimeInMillis();
+
+	private static final String MANIFEST_FOLDER = "META-INF/";
+
+	private static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+	/** Order of the entries of a folder in reproducible archives */
+	static final Comparator<IModuleResource> ENTRY_ORDER = new Comparator<IModuleResource>() {
+
+		public int compare(IModuleResource resource1, IModuleResource resource2) {
+			String name1 = CloudUtil.getZipRelativeName(resource1);
+			String name2 = CloudUtil.getZipRelativeName(resource2);
+			int rank = getRank(name1) - getRank(name2);
+			return rank != 0 ? rank : name1.compareTo(name2);
+		}
+
+		private int getRank(String name) {
+			if (MANIFEST_FOLDER.equals(name)) {
+				return 0;
+			}
+			return MANIFEST.equals(name) ? 1 : 2;
+		}
+	};
+
+	private final ZipOutputStream out;
+
+	private final boolean reproducible;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private final CRC32 crc = new CRC32();
+
+	public ModuleResourceZipWriter(ZipOutputStream out) {
+		this(out, false);
+	}
+
+	/**
+	 *
+	 * @param out
+	 * @param reproducible true if entries should be sorted, and have a fixed
+	 * time
+	 */
+	public ModuleResourceZipWriter(ZipOutputStream out, boolean reproducible) {
+		this.out = out;
+		this.reproducible = reproducible;
+	}
+
+	/**
+	 * Adds zip entries for all folders in the given resources, and the files
+	 * in the given resources that are also in the filter in set.
+	 * @param resources
+	 * @param filterInFiles files that should be added to the archive, or null
+	 * to add all files
+	 * @throws CoreException if failed to read contents of a workspace file
+	 * @throws IOException if failed to read a file or write the entry
+	 */
+	public void addEntries(List<IModuleResource> resources, Set<IModuleResource> filterInFiles) throws CoreException,
+			IOException {
+		if (resources == null) {
+			return;
+		}
+
+		if (reproducible) {
+			resources = new ArrayList<IModuleResource>(resources);
+			Collections.sort(resources, ENTRY_ORDER);
+		}
+
+		for (IModuleResource resource : resources) {
+			if (resource instanceof IModuleFolder) {
+				addFolder((IModuleFolder) resource);
+				addEntries(Arrays.asList(((IModuleFolder) resource).members()), filterInFiles);
+			}
+			else if (filterInFiles == null || filterInFiles.contains(resource)) {
+				// Only add files that are in the filterInList
+				addFile((IModuleFile) resource);
+			}
+		}
+	}
+
+	protected void addFolder(IModuleFolder folder) throws IOException {
+		ZipEntry zipEntry = new ZipEntry(CloudUtil.getZipRelativeName(folder));
+
+		long timeStamp = 0;
+		IContainer container = (IContainer) folder.getAdapter(IContainer.class);
+		if (container != null) {
+			timeStamp = container.getLocalTimeStamp();
+		}
+		setTime(zipEntry, timeStamp);
+
+		out.putNextEntry(zipEntry);
+		out.closeEntry();
+	}
+
+	protected void addFile(IModuleFile moduleFile) throws CoreException, IOException {
+		String entryPath = CloudUtil.getZipRelativeName(moduleFile);
+		ZipEntry zipEntry = new ZipEntry(entryPath);
+
+		IFile iFile = (IFile) moduleFile.getAdapter(IFile.class);
+		File file = iFile == null ? (File) moduleFile.getAdapter(File.class) : null;
+
+		setTime(zipEntry, iFile != null ? iFile.getLocalTimeStamp() : file.lastModified());
+
+		if (isCompressed(entryPath)) {
+			crc.reset();
+			long size = copy(open(iFile, file), null);
+			zipEntry.setMethod(ZipEntry.STORED);
+			zipEntry.setSize(size);
+			zipEntry.setCompressedSize(size);
+			zipEntry.setCrc(crc.getValue());
+		}
+
+		out.putNextEntry(zipEntry);
+		copy(open(iFile, file), out);
+		out.closeEntry();
+	}
+
+	protected InputStream open(IFile iFile, File file) throws CoreException, IOException {
+		return iFile != null ? iFile.getContents() : new FileInputStream(file);
+	}
+
+	/**
+	 * Copies and closes the input. If the output is null, the input is only
+	 * read to compute its CRC.
+	 * @return number of bytes read
+	 */
+	protected long copy(InputStream input, ZipOutputStream output) throws IOException {
+		long size = 0;
+		try {
+			int n;
+			while ((n = input.read(buffer)) > -1) {
+				if (output != null) {
+					output.write(buffer, 0, n);
+				}
+				else {
+					crc.update(buffer, 0, n);
+				}
+				size += n;
+			}
+		}
+		finally {
+			input.close();
+		}
+		return size;
+	}
+
+	protected void setTime(ZipEntry zipEntry, long timeStamp) {
+		if (reproducible) {
+			zipEntry.setTime(REPRODUCIBLE_TIME);
+		}
+		else if (timeStamp != IResource.NULL_STAMP && timeStamp != 0) {
+			zipEntry.setTime(timeStamp);
+		}
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return true if the name has the extension of a file format that is
+	 * already compressed.
+	 */
+	public static boolean isCompressed(String name) {
+		String lowerCaseName = name.toLowerCase();
+		for (String extension : COMPRESSED_EXTENSIONS) {
+			if (lowerCaseName.endsWith(extension)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.lang.reflect.Field;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.cloudfoundry.client.lib.CloudFoundryClient;
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.cloudfoundry.client.lib.oauth2.OauthClient;
+import org.cloudfoundry.client.lib.rest.CloudControllerClient;
+import org.cloudfoundry.client.lib.util.RestUtil;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.CommonsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * HTTP transport shared by all Cloud Foundry clients, which keeps connections
+ * to each controller host open and reuses them for subsequent requests, so
+ * that requests do not each pay for TCP connection setup and a TLS handshake.
+ * <p/>
+ * The Java client creates a new HTTP client, with its own connections, every
+ * time its proxy configuration is updated, which happens before every
+ * request. Clients are therefore configured to create their HTTP clients
+ * from this transport instead, which shares a single pool of connections. As
+ * the Java client does not provide a way to configure its transport, this is
+ * done by replacing the internal components of the client that create HTTP
+ * clients. If the internals of the client do not match, the client keeps its
+ * default transport.
+ * <p/>
+ * Idle connections are closed after {@link #IDLE_CONNECTION_TIMEOUT}.
+ *
+ */
+public class PooledHttpTransport {
+
+	private static final long IDLE_CONNECTION_TIMEOUT = 60 * 1000;
+
+	private static final long IDLE_CONNECTION_CHECK_INTERVAL = 15 * 1000;
+
+	private static final int MAX_TOTAL_CONNECTIONS = 32;
+
+	private final MultiThreadedHttpConnectionManager connectionManager;
+
+	private final IdleConnectionTimeoutThread idleConnectionCloser;
+
+	/**
+	 *
+	 * @param connectTimeout in milliseconds. 0 for no timeout.
+	 * @param readTimeout timeout for a response to a request, in milliseconds.
+	 * 0 for no timeout.
+	 * @param maxConnectionsPerHost maximum number of connections kept to each
+	 * host, which limits the number of concurrent requests to a host.
+	 */
+	public PooledHttpTransport(int connectTimeout, int readTimeout, int maxConnectionsPerHost) {
+		connectionManager = new MultiThreadedHttpConnectionManager();
+		HttpConnectionManagerParams params = connectionManager.getParams();
+		params.setConnectionTimeout(connectTimeout);
+		params.setSoTimeout(readTimeout);
+		params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+		params.setMaxTotalConnections(Math.max(MAX_TOTAL_CONNECTIONS, maxConnectionsPerHost));
+		// Controllers and proxies may close connections that are idle
+		params.setStaleCheckingEnabled(true);
+		params.setTcpNoDelay(true);
+
+		idleConnectionCloser = new IdleConnectionTimeoutThread();
+		idleConnectionCloser.setName("Cloud Foundry idle connection closer");
+		idleConnectionCloser.setConnectionTimeout(IDLE_CONNECTION_TIMEOUT);
+		idleConnectionCloser.setTimeoutInterval(IDLE_CONNECTION_CHECK_INTERVAL);
+		idleConnectionCloser.addConnectionManager(connectionManager);
+		idleConnectionCloser.start();
+	}
+
+	/**
+	 *
+	 * @param proxyConfiguration may be null if no proxy is used
+	 * @return request factory that uses pooled connections
+	 */
+	public ClientHttpRequestFactory createRequestFactory(HttpProxyConfiguration proxyConfiguration) {
+		HttpClient httpClient = new HttpClient(connectionManager);
+		if (proxyConfiguration != null) {
+			httpClient.getHostConfiguration().setProxy(proxyConfiguration.getProxyHost(),
+					proxyConfiguration.getProxyPort());
+		}
+		return new CommonsClientHttpRequestFactory(httpClient);
+	}
+
+	/**
+	 * Configures the given client to send its requests through this
+	 * transport.
+	 * @param operations
+	 * @param proxyConfiguration proxy used by the client, or null if none
+	 * @return true if the client was configured, false if it keeps its
+	 * default transport
+	 */
+	public boolean configure(CloudFoundryOperations operations, HttpProxyConfiguration proxyConfiguration) {
+		if (!(operations instanceof CloudFoundryClient)) {
+			return false;
+		}
+		try {
+			Object controllerClient = getFieldValue(operations, CloudControllerClient.class);
+			if (controllerClient == null || !setFieldValue(controllerClient, RestUtil.class, new PooledRestUtil())) {
+				CloudFoundryPlugin.trace("Unable to use pooled connections for client of "
+						+ operations.getCloudControllerUrl());
+				return false;
+			}
+
+			// The authorisation client is created once, when the client is
+			// created
+			Object oauthClient = getFieldValue(controllerClient, OauthClient.class);
+			if (oauthClient != null) {
+				RestTemplate restTemplate = (RestTemplate) getFieldValue(oauthClient, RestTemplate.class);
+				if (restTemplate != null) {
+					restTemplate.setRequestFactory(createRequestFactory(proxyConfiguration));
+				}
+			}
+
+			// Replaces the request factory of the client with one from the
+			// pooled rest util
+			operations.updateHttpProxyConfiguration(proxyConfiguration);
+			return true;
+		}
+		catch (IllegalAccessException e) {
+			CloudFoundryPlugin.logError("Unable to use pooled connections for client of "
+					+ operations.getCloudControllerUrl(), e);
+		}
+		catch (SecurityException e) {
+			CloudFoundryPlugin.logError("Unable to use pooled connections for client of "
+					+ operations.getCloudControllerUrl(), e);
+		}
+		return false;
+	}
+
+	/**
+	 * Closes all pooled connections. The transport must not be used
+	 * afterwards.
+	 */
+	public void shutdown() {
+		idleConnectionCloser.shutdown();
+		connectionManager.shutdown();
+	}
+
+	protected static Field getField(Object object, Class<?> type) {
+		for (Class<?> clazz = object.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (field.getType() == type) {
+					field.setAccessible(true);
+					return field;
+				}
+			}
+		}
+		return null;
+	}
+
+	protected static Object getFieldValue(Object object, Class<?> type) throws IllegalAccessException {
+		Field field = getField(object, type);
+		return field != null ? field.get(object) : null;
+	}
+
+	protected static boolean setFieldValue(Object object, Class<?> type, Object value) throws IllegalAccessException {
+		Field field = getField(object, type);
+		if (field == null) {
+			return false;
+		}
+		field.set(object, value);
+		return true;
+	}
+
+	/**
+	 * Creates the request factories of a client, whenever its proxy
+	 * configuration is updated, from the pooled transport.
+	 */
+	protected class PooledRestUtil extends RestUtil {
+
+		@Override
+		public ClientHttpRequestFactory createRequestFactory(HttpProxyConfiguration httpProxyConfiguration) {
+			return PooledHttpTransport.this.createRequestFactory(httpProxyConfiguration);
+		}
+
+	}
+
+}
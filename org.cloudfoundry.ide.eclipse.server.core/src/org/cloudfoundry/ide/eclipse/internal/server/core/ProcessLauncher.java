@@ -10,25 +10,49 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.apache.commons.io.IOUtils;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 
 /**
  * Launches a native process that blocks the current thread it is launched from
  * until the process exists. Throws CoreException if errors are generated during
  * the launch process, or there are no arguments to the process.
+ * <p/>
+ * The output and error streams of the process are read concurrently on
+ * separate threads, so that the process does not block on a full pipe. Only
+ * the last {@link #OUTPUT_BUFFER_SIZE} characters of the error stream are kept
+ * for the error message, and output lines may be streamed to a
+ * {@link ProcessOutputListener} as they are read.
  */
 public abstract class ProcessLauncher {
 
+	/**
+	 * Maximum number of characters of the error stream of a process that are
+	 * kept
+	 */
+	public static final int OUTPUT_BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * Time in milliseconds to wait for the remaining output of an exited
+	 * process to be read. Child processes that inherited the streams may keep
+	 * them open.
+	 */
+	private static final long OUTPUT_DRAIN_TIMEOUT = 2000;
+
+	private static final long MAX_POLL_DELAY = 200;
+
 	/**
 	 * Returns when the process has exited without errors. This will wait for
 	 * the process to exist, therefore will block the current thread in which it
@@ -37,6 +61,19 @@ public abstract class ProcessLauncher {
 	 * launched
 	 */
 	public void run() throws CoreException {
+		run(null);
+	}
+
+	/**
+	 * Same as {@link #run()}, but destroys the process if the given monitor is
+	 * cancelled, or if the process does not exit within
+	 * {@link #getTimeout()}.
+	 * @param monitor may be null
+	 * @throws CoreException if any errors occur while the process is being
+	 * launched, or if it times out
+	 * @throws OperationCanceledException if the monitor is cancelled
+	 */
+	public void run(IProgressMonitor monitor) throws CoreException {
 		Exception error = null;
 		Process p = null;
 		try {
@@ -68,19 +105,23 @@ public abstract class ProcessLauncher {
 				}
 				else {
 
-					StringBuffer errorBuffer = new StringBuffer();
+					OutputRingBuffer errorBuffer = new OutputRingBuffer(OUTPUT_BUFFER_SIZE);
 					// Clear the input and error streams to prevent the
 					// process
 					// from blocking
-					handleProcessIOAsynch(p, null, errorBuffer);
+					List<ProcessStreamHandler> handlers = handleProcessIOAsynch(p, null, errorBuffer);
 
-					p.waitFor();
+					int exitValue = waitFor(p, monitor);
+
+					for (ProcessStreamHandler handler : handlers) {
+						handler.join(OUTPUT_DRAIN_TIMEOUT);
+					}
 
 					if (errorBuffer.length() > 0) {
 						throw new CoreException(getErrorStatus(errorBuffer.toString()));
 					}
-					else if (p.exitValue() != 0) {
-						throw new CoreException(getErrorStatus("process exit value: " + p.exitValue()));
+					else if (exitValue != 0) {
+						throw new CoreException(getErrorStatus("process exit value: " + exitValue));
 					}
 				}
 			}
@@ -106,25 +147,65 @@ public abstract class ProcessLauncher {
 
 	}
 
+	/**
+	 * Waits for the process to exit. The exit value is polled with an
+	 * increasing delay if the wait may be cancelled or time out.
+	 * @return exit value of the process
+	 */
+	protected int waitFor(Process p, IProgressMonitor monitor) throws InterruptedException, CoreException {
+		long timeout = getTimeout();
+		if (timeout <= 0 && monitor == null) {
+			return p.waitFor();
+		}
+		long deadline = System.currentTimeMillis() + timeout;
+		long delay = 10;
+		while (true) {
+			try {
+				return p.exitValue();
+			}
+			catch (IllegalThreadStateException e) {
+				// Not exited yet
+			}
+			if (monitor != null && monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			if (timeout > 0 && System.currentTimeMillis() >= deadline) {
+				throw new CoreException(getErrorStatus("process did not exit within " + timeout + " ms"));
+			}
+			Thread.sleep(delay);
+			delay = Math.min(delay * 2, MAX_POLL_DELAY);
+		}
+	}
+
 	/**
 	 * The process IO needs to be handled in order to not block the process.
+	 * Each stream is read on its own thread.
 	 * @param p
-	 * @return
-	 * @throws IOException
+	 * @param inputBuffer keeps the end of the output stream, may be null
+	 * @param errorBuffer keeps the end of the error stream, may be null
+	 * @return started stream handlers
 	 */
-	protected void handleProcessIOAsynch(Process p, StringBuffer inputBuffer, StringBuffer errorBuffer) {
+	protected List<ProcessStreamHandler> handleProcessIOAsynch(Process p, OutputRingBuffer inputBuffer,
+			OutputRingBuffer errorBuffer) {
 
 		InputStream in = p.getInputStream();
 		InputStream error = p.getErrorStream();
 
+		List<ProcessStreamHandler> handlers = new ArrayList<ProcessStreamHandler>(2);
+		ProcessOutputListener listener = getOutputListener();
+
 		if (in != null) {
-			new ProcessStreamHandler(in, inputBuffer, getLaunchName()).start();
+			handlers.add(new ProcessStreamHandler(in, inputBuffer, listener, false, getLaunchName()));
 		}
 
 		if (error != null) {
-			new ProcessStreamHandler(error, errorBuffer, getLaunchName()).start();
+			handlers.add(new ProcessStreamHandler(error, errorBuffer, listener, true, getLaunchName()));
 		}
 
+		for (ProcessStreamHandler handler : handlers) {
+			handler.start();
+		}
+		return handlers;
 	}
 
 	protected IStatus getErrorStatus(String body) {
@@ -137,46 +218,177 @@ public abstract class ProcessLauncher {
 				.getErrorStatus(errorMessage);
 	}
 
+	/**
+	 *
+	 * @return time in milliseconds after which the process is destroyed, or 0
+	 * to wait until it exits
+	 */
+	protected long getTimeout() {
+		return 0;
+	}
+
+	/**
+	 *
+	 * @return listener notified of each line of output of the process, or
+	 * null
+	 */
+	protected ProcessOutputListener getOutputListener() {
+		return null;
+	}
+
 	abstract protected String getLaunchName();
 
 	abstract protected List<String> getProcessArguments() throws CoreException;
 
 	abstract protected Map<String, String> getEnvironmentVariables() throws CoreException;
 
-	protected static class ProcessStreamHandler {
+	public interface ProcessOutputListener {
+
+		/**
+		 * Called on the thread reading the stream. Lines longer than
+		 * {@link ProcessLauncher#OUTPUT_BUFFER_SIZE} are split.
+		 * @param line without line terminator
+		 * @param error true if the line was read from the error stream
+		 */
+		public void outputReceived(String line, boolean error);
+
+	}
+
+	/**
+	 * Keeps the last characters appended to it, with line terminators
+	 * replaced by spaces.
+	 */
+	public static class OutputRingBuffer {
+
+		private final char[] chars;
+
+		private long length;
+
+		public OutputRingBuffer(int capacity) {
+			this.chars = new char[capacity];
+		}
+
+		public synchronized void append(char[] buffer, int offset, int count) {
+			for (int i = offset; i < offset + count; i++) {
+				char c = buffer[i];
+				if (c == '\r') {
+					continue;
+				}
+				chars[(int) (length % chars.length)] = c == '\n' ? ' ' : c;
+				length++;
+			}
+		}
+
+		/**
+		 *
+		 * @return number of characters appended, including discarded ones
+		 */
+		public synchronized long length() {
+			return length;
+		}
+
+		public synchronized boolean isTruncated() {
+			return length > chars.length;
+		}
+
+		@Override
+		public synchronized String toString() {
+			if (!isTruncated()) {
+				return new String(chars, 0, (int) length);
+			}
+			int start = (int) (length % chars.length);
+			StringBuilder value = new StringBuilder(chars.length + 3);
+			value.append("...");
+			value.append(chars, start, chars.length - start);
+			value.append(chars, 0, start);
+			return value.toString();
+		}
+	}
+
+	protected static class ProcessStreamHandler implements Runnable {
 
 		private final InputStream processInput;
 
-		private final StringBuffer outputBuffer;
+		private final OutputRingBuffer outputBuffer;
+
+		private final ProcessOutputListener listener;
+
+		private final boolean error;
 
 		private final String processName;
 
-		public ProcessStreamHandler(InputStream processInput, StringBuffer outputBuffer, String processName) {
+		private Thread thread;
+
+		public ProcessStreamHandler(InputStream processInput, OutputRingBuffer outputBuffer,
+				ProcessOutputListener listener, boolean error, String processName) {
 			this.processInput = processInput;
 			this.outputBuffer = outputBuffer;
+			this.listener = listener;
+			this.error = error;
 			this.processName = processName;
 		}
 
 		public void start() {
-			BufferedReader reader = new BufferedReader(new InputStreamReader(processInput));
+			thread = new Thread(this, (error ? "Error" : "Output") + " reader for " + processName);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Waits for the end of the stream to be read.
+		 * @param timeout in milliseconds
+		 */
+		public void join(long timeout) throws InterruptedException {
+			if (thread != null) {
+				thread.join(timeout);
+			}
+		}
+
+		public void run() {
+			Reader reader = new InputStreamReader(processInput);
+			char[] buffer = new char[4096];
+			StringBuilder line = listener != null ? new StringBuilder() : null;
 			try {
-				String line = reader.readLine();
-				while (line != null) {
+				int read;
+				while ((read = reader.read(buffer)) != -1) {
 					if (outputBuffer != null) {
-						outputBuffer.append(line);
-						outputBuffer.append(' ');
+						outputBuffer.append(buffer, 0, read);
 					}
-					line = reader.readLine();
+					if (line != null) {
+						for (int i = 0; i < read; i++) {
+							char c = buffer[i];
+							if (c == '\n' || line.length() >= OUTPUT_BUFFER_SIZE) {
+								notifyLine(line);
+							}
+							if (c != '\n' && c != '\r') {
+								line.append(c);
+							}
+						}
+					}
+				}
+				if (line != null && line.length() > 0) {
+					notifyLine(line);
 				}
 			}
 			catch (IOException e) {
-				CloudFoundryPlugin.logError("Error while reading input from process for: " + processName, e);
+				// Also thrown when the stream is closed as the process is
+				// destroyed
+				CloudFoundryPlugin.trace("Error while reading input from process for: " + processName + ": "
+						+ e.getMessage());
 			}
 			finally {
-				if (processInput != null) {
-					IOUtils.closeQuietly(processInput);
-				}
+				IOUtils.closeQuietly(processInput);
+			}
+		}
+
+		protected void notifyLine(StringBuilder line) {
+			try {
+				listener.outputReceived(line.toString(), error);
+			}
+			catch (RuntimeException e) {
+				CloudFoundryPlugin.logError("Failed to handle output of process for: " + processName, e);
 			}
+			line.setLength(0);
 		}
 	}
 
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.cloudfoundry.client.lib.archive.ApplicationArchive;
+
+/**
+ * Time spent in each phase of a single publish of an application, and the
+ * number of bytes that resource matching found on the server, or that had to
+ * be uploaded. Phases that did not occur in a publish, for example hashing
+ * when a full war file is uploaded, are not measured.
+ * <p/>
+ * A phase may be started and stopped more than once in a publish, in which
+ * case its duration is the sum of the measured intervals.
+ */
+public class PublishProfile {
+
+	public enum Phase {
+
+		ASSEMBLY("WAR assembly"),
+
+		HASHING("Hashing"),
+
+		MATCHING("Resource matching"),
+
+		UPLOAD("Upload"),
+
+		STAGING("Staging"),
+
+		START("Start");
+
+		private final String label;
+
+		private Phase(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	public static final long NOT_MEASURED = -1;
+
+	private final long timestamp;
+
+	/** In milliseconds, by phase ordinal */
+	private final long[] durations = new long[Phase.values().length];
+
+	/** In nanoseconds, by phase ordinal. 0 if the phase is not running. */
+	private final long[] startTimes = new long[Phase.values().length];
+
+	private long matchedBytes = NOT_MEASURED;
+
+	private long unmatchedBytes = NOT_MEASURED;
+
+	public PublishProfile() {
+		this(System.currentTimeMillis());
+	}
+
+	/**
+	 *
+	 * @param timestamp time at which the publish started
+	 */
+	public PublishProfile(long timestamp) {
+		this.timestamp = timestamp;
+		Arrays.fill(durations, NOT_MEASURED);
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public synchronized void start(Phase phase) {
+		// 0 marks a phase that is not running
+		startTimes[phase.ordinal()] = Math.max(System.nanoTime(), 1);
+	}
+
+	/**
+	 * Adds the time elapsed since the phase was started to its duration. Has
+	 * no effect if the phase is not running.
+	 * @param phase
+	 */
+	public synchronized void stop(Phase phase) {
+		long startTime = startTimes[phase.ordinal()];
+		if (startTime == 0) {
+			return;
+		}
+		startTimes[phase.ordinal()] = 0;
+		long elapsed = (System.nanoTime() - startTime) / 1000000;
+		setDuration(phase, Math.max(getDuration(phase), 0) + elapsed);
+	}
+
+	public synchronized boolean isRunning(Phase phase) {
+		return startTimes[phase.ordinal()] != 0;
+	}
+
+	/**
+	 *
+	 * @param phase
+	 * @return duration of the phase in milliseconds, or {@link #NOT_MEASURED}
+	 */
+	public synchronized long getDuration(Phase phase) {
+		return durations[phase.ordinal()];
+	}
+
+	public synchronized void setDuration(Phase phase, long duration) {
+		durations[phase.ordinal()] = duration;
+	}
+
+	/**
+	 *
+	 * @return sum of the durations of the measured phases, in milliseconds
+	 */
+	public synchronized long getTotalDuration() {
+		long total = 0;
+		for (long duration : durations) {
+			if (duration > 0) {
+				total += duration;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 *
+	 * @return uncompressed size of the files that were already on the server,
+	 * or {@link #NOT_MEASURED}
+	 */
+	public synchronized long getMatchedBytes() {
+		return matchedBytes;
+	}
+
+	public synchronized void setMatchedBytes(long matchedBytes) {
+		this.matchedBytes = matchedBytes;
+	}
+
+	/**
+	 *
+	 * @return uncompressed size of the files that were uploaded, or
+	 * {@link #NOT_MEASURED}
+	 */
+	public synchronized long getUnmatchedBytes() {
+		return unmatchedBytes;
+	}
+
+	public synchronized void setUnmatchedBytes(long unmatchedBytes) {
+		this.unmatchedBytes = unmatchedBytes;
+	}
+
+	/**
+	 *
+	 * @param archive
+	 * @param fileNames names of archive entries
+	 * @return total size of the files of the archive with the given names
+	 */
+	public static long getSize(ApplicationArchive archive, Set<String> fileNames) {
+		long size = 0;
+		if (fileNames == null || fileNames.isEmpty()) {
+			return size;
+		}
+		for (ApplicationArchive.Entry entry : archive.getEntries()) {
+			if (!entry.isDirectory() && fileNames.contains(entry.getName())) {
+				size += entry.getSize();
+			}
+		}
+		return size;
+	}
+
+}
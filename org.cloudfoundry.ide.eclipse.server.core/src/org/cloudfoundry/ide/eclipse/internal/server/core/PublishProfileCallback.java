@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.Set;
+
+import org.cloudfoundry.client.lib.UploadStatusCallback;
+import org.cloudfoundry.client.lib.archive.ApplicationArchive;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PublishProfile.Phase;
+
+/**
+ * Records the phases of an application upload in a {@link PublishProfile}.
+ * The client matches resources before notifying
+ * {@link #onCheckResources()}, then builds the payload of unmatched resources
+ * before notifying {@link #onProcessMatchedResources(int)}, and uploads it.
+ * Files generated when the matched file names are notified, such as a partial
+ * war file, are recorded as assembly.
+ * <p/>
+ * {@link #uploadStarted()} and {@link #uploadFinished()} must be called around
+ * the upload request.
+ */
+public class PublishProfileCallback implements UploadStatusCallback {
+
+	private final PublishProfile profile;
+
+	private final ApplicationArchive archive;
+
+	private final UploadStatusCallback delegate;
+
+	/**
+	 *
+	 * @param profile
+	 * @param archive uploaded archive, from which the size of matched files is
+	 * computed. May be null if not known.
+	 * @param delegate callback notified after the phases are recorded. May be
+	 * null.
+	 */
+	public PublishProfileCallback(PublishProfile profile, ApplicationArchive archive, UploadStatusCallback delegate) {
+		this.profile = profile;
+		this.archive = archive;
+		this.delegate = delegate != null ? delegate : UploadStatusCallback.NONE;
+	}
+
+	public void uploadStarted() {
+		profile.start(Phase.MATCHING);
+	}
+
+	public void uploadFinished() {
+		// Phases that were not notified by the client end with the upload
+		profile.stop(Phase.MATCHING);
+		profile.stop(Phase.UPLOAD);
+	}
+
+	public void onCheckResources() {
+		profile.stop(Phase.MATCHING);
+		delegate.onCheckResources();
+	}
+
+	public void onMatchedFileNames(Set<String> matchedFileNames) {
+		profile.stop(Phase.MATCHING);
+		if (archive != null) {
+			profile.setMatchedBytes(PublishProfile.getSize(archive, matchedFileNames));
+		}
+		profile.start(Phase.ASSEMBLY);
+		try {
+			delegate.onMatchedFileNames(matchedFileNames);
+		}
+		finally {
+			profile.stop(Phase.ASSEMBLY);
+		}
+	}
+
+	public void onProcessMatchedResources(int length) {
+		profile.setUnmatchedBytes(length);
+		delegate.onProcessMatchedResources(length);
+		profile.start(Phase.UPLOAD);
+	}
+
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFile.ContentReader;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFile.ContentWriter;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PublishProfile.Phase;
+
+/**
+ * Keeps the profiles of the most recent publishes of each application, so
+ * that a phase that regressed, for example after a dependency change, can be
+ * identified. Applications are identified by the id of their server and their
+ * name.
+ * <p/>
+ * Profiles are persisted to a {@link ChecksummedIndexFile} each time they
+ * change, and the store starts empty if the file cannot be read. Profiles of
+ * deleted applications and servers are removed.
+ */
+public class PublishProfileStore {
+
+	public static final String INDEX_FILE_NAME = "publishProfiles.idx";
+
+	/**
+	 * Number of profiles kept per application
+	 */
+	public static final int MAX_PROFILES = 20;
+
+	private static final int MAGIC = 0xCFD5A300;
+
+	private static final int VERSION = 2;
+
+	private final ChecksummedIndexFile indexFile;
+
+	/** Profiles by server id and application name, oldest first */
+	private Map<String, Map<String, LinkedList<PublishProfile>>> profiles;
+
+	public PublishProfileStore(File indexFile) {
+		this.indexFile = new ChecksummedIndexFile(indexFile, MAGIC, VERSION, "publish profiles");
+	}
+
+	public File getIndexFile() {
+		return indexFile.getFile();
+	}
+
+	/**
+	 * Adds the profile of a publish, discards the oldest profiles of the
+	 * application beyond {@link #MAX_PROFILES}, and saves the store.
+	 * @param serverId
+	 * @param appName
+	 * @param profile
+	 */
+	public synchronized void add(String serverId, String appName, PublishProfile profile) {
+		Map<String, LinkedList<PublishProfile>> serverProfiles = getProfiles().get(serverId);
+		if (serverProfiles == null) {
+			serverProfiles = new LinkedHashMap<String, LinkedList<PublishProfile>>();
+			getProfiles().put(serverId, serverProfiles);
+		}
+		LinkedList<PublishProfile> appProfiles = serverProfiles.get(appName);
+		if (appProfiles == null) {
+			appProfiles = new LinkedList<PublishProfile>();
+			serverProfiles.put(appName, appProfiles);
+		}
+		appProfiles.add(profile);
+		while (appProfiles.size() > MAX_PROFILES) {
+			appProfiles.removeFirst();
+		}
+		save();
+	}
+
+	/**
+	 *
+	 * @param serverId
+	 * @param appName
+	 * @return profiles of the most recent publishes of the application, most
+	 * recent first. Never null.
+	 */
+	public synchronized List<PublishProfile> getProfiles(String serverId, String appName) {
+		Map<String, LinkedList<PublishProfile>> serverProfiles = getProfiles().get(serverId);
+		LinkedList<PublishProfile> appProfiles = serverProfiles != null ? serverProfiles.get(appName) : null;
+		if (appProfiles == null) {
+			return Collections.emptyList();
+		}
+		List<PublishProfile> result = new ArrayList<PublishProfile>(appProfiles);
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * Removes the profiles of an application, for example after it was
+	 * deleted.
+	 * @param serverId
+	 * @param appName
+	 */
+	public synchronized void remove(String serverId, String appName) {
+		Map<String, LinkedList<PublishProfile>> serverProfiles = getProfiles().get(serverId);
+		if (serverProfiles != null && serverProfiles.remove(appName) != null) {
+			if (serverProfiles.isEmpty()) {
+				getProfiles().remove(serverId);
+			}
+			save();
+		}
+	}
+
+	/**
+	 * Removes the profiles of all applications of a deleted server.
+	 * @param serverId
+	 */
+	public synchronized void removeServer(String serverId) {
+		if (getProfiles().remove(serverId) != null) {
+			save();
+		}
+	}
+
+	/**
+	 * Removes the profiles of all applications of servers other than the
+	 * given ones, for example of servers deleted in a previous session.
+	 * @param serverIds ids of the existing servers
+	 */
+	public synchronized void retainServers(Collection<String> serverIds) {
+		if (getProfiles().keySet().retainAll(serverIds)) {
+			save();
+		}
+	}
+
+	private Map<String, Map<String, LinkedList<PublishProfile>>> getProfiles() {
+		if (profiles == null) {
+			profiles = new LinkedHashMap<String, Map<String, LinkedList<PublishProfile>>>();
+			load();
+		}
+		return profiles;
+	}
+
+	private void load() {
+		final Map<String, Map<String, LinkedList<PublishProfile>>> loaded = new LinkedHashMap<String, Map<String, LinkedList<PublishProfile>>>();
+		boolean valid = indexFile.read(new ContentReader() {
+			public void read(DataInputStream in) throws IOException {
+				Phase[] phases = Phase.values();
+				int serverCount = in.readInt();
+				for (int i = 0; i < serverCount; i++) {
+					String serverId = in.readUTF();
+					Map<String, LinkedList<PublishProfile>> serverProfiles = new LinkedHashMap<String, LinkedList<PublishProfile>>();
+					int appCount = in.readInt();
+					for (int j = 0; j < appCount; j++) {
+						String appName = in.readUTF();
+						int profileCount = in.readInt();
+						if (profileCount < 0) {
+							throw new IOException("Invalid profile count: " + profileCount);
+						}
+						LinkedList<PublishProfile> appProfiles = new LinkedList<PublishProfile>();
+						for (int k = 0; k < profileCount; k++) {
+							PublishProfile profile = new PublishProfile(in.readLong());
+							profile.setMatchedBytes(in.readLong());
+							profile.setUnmatchedBytes(in.readLong());
+							int phaseCount = in.readInt();
+							for (int l = 0; l < phaseCount; l++) {
+								long duration = in.readLong();
+								// Phases added in a later version are ignored
+								if (l < phases.length) {
+									profile.setDuration(phases[l], duration);
+								}
+							}
+							appProfiles.add(profile);
+						}
+						serverProfiles.put(appName, appProfiles);
+					}
+					loaded.put(serverId, serverProfiles);
+				}
+			}
+		});
+		if (valid) {
+			profiles.putAll(loaded);
+		}
+	}
+
+	private void save() {
+		indexFile.write(new ContentWriter() {
+			public void write(DataOutputStream out) throws IOException {
+				Phase[] phases = Phase.values();
+				out.writeInt(profiles.size());
+				for (Map.Entry<String, Map<String, LinkedList<PublishProfile>>> serverEntry : profiles.entrySet()) {
+					out.writeUTF(serverEntry.getKey());
+					out.writeInt(serverEntry.getValue().size());
+					for (Map.Entry<String, LinkedList<PublishProfile>> appEntry : serverEntry.getValue().entrySet()) {
+						out.writeUTF(appEntry.getKey());
+						out.writeInt(appEntry.getValue().size());
+						for (PublishProfile profile : appEntry.getValue()) {
+							out.writeLong(profile.getTimestamp());
+							out.writeLong(profile.getMatchedBytes());
+							out.writeLong(profile.getUnmatchedBytes());
+							out.writeInt(phases.length);
+							for (Phase phase : phases) {
+								out.writeLong(profile.getDuration(phase));
+							}
+						}
+					}
+				}
+			}
+		});
+	}
+
+}
@@ -10,16 +10,34 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.wst.server.core.IModule;
 import org.eclipse.wst.server.core.IServer;
 
 /**
  * Refresh job for refreshing local server status to correspond to the actual
  * server status
+ * <p/>
+ * Explicit refresh requests, via {@link #setInterval(long)} and
+ * {@link #reschedule()}, schedule a single refresh after the given interval.
+ * Requests that arrive while a refresh is already scheduled to run at about
+ * the same time, or sooner, are merged into the scheduled refresh.
+ * <p/>
+ * Between requests, the job polls the server adaptively: quickly while
+ * applications are starting, stopping or updating, and with an exponentially
+ * increasing interval while refreshes find no changes. Applications with
+ * fewer running instances than requested are only polled quickly for
+ * {@link #INSTANCE_START_WINDOW} after they were started or scaled, as
+ * crashing or under-provisioned applications may stay in that state.
  * @author Christian Dupuis
  * @author Leo Dos Santos
  * @author Steffen Pingel
@@ -28,8 +46,55 @@ public class RefreshJob extends Job {
 
 	private static final long DEFAULT_INTERVAL = 60 * 1000;
 
+	/**
+	 * Polling interval while applications are in a transitional state
+	 */
+	private static final long TRANSITION_INTERVAL = 5 * 1000;
+
+	/**
+	 * Polling interval after a refresh that found changes
+	 */
+	private static final long MIN_IDLE_INTERVAL = 15 * 1000;
+
+	/**
+	 * Upper bound of the polling interval while refreshes find no changes
+	 */
+	private static final long MAX_IDLE_INTERVAL = 5 * 60 * 1000;
+
+	/**
+	 * Requests for a refresh that would run within this period of an already
+	 * scheduled refresh are merged with it.
+	 */
+	private static final long MERGE_WINDOW = 2 * 1000;
+
+	/**
+	 * Period during which an application with fewer running instances than
+	 * requested is considered to be starting its instances
+	 */
+	public static final long INSTANCE_START_WINDOW = 2 * 60 * 1000;
+
+	private final Object lock = new Object();
+
 	private long interval;
 
+	private long idleInterval = MIN_IDLE_INTERVAL;
+
+	/**
+	 * Time at which the next refresh is scheduled to run, or -1 if no refresh
+	 * is scheduled
+	 */
+	private long scheduledTime = -1;
+
+	private boolean running;
+
+	private boolean requestedWhileRunning;
+
+	/**
+	 * Applications with fewer running instances than requested, by name. Must
+	 * be accessed while holding the lock.
+	 */
+	private Map<String, InstanceStart> instanceStarts = new HashMap<String, InstanceStart>();
+
 	private final CloudFoundryServer server;
 
 	public RefreshJob(CloudFoundryServer server) {
@@ -40,35 +105,183 @@ public class RefreshJob extends Job {
 	}
 
 	public long getInterval() {
-		return interval;
+		synchronized (lock) {
+			return interval;
+		}
 	}
 
 	public void reschedule() {
-		// schedule, if not already running or scheduled
-		cancel();
-		if (interval > 0) {
-			schedule(interval);
+		synchronized (lock) {
+			if (interval <= 0) {
+				cancel();
+				scheduledTime = -1;
+				return;
+			}
+
+			if (running) {
+				// refresh again once the running refresh completes, as the
+				// request may be for changes it did not see
+				requestedWhileRunning = true;
+				return;
+			}
+
+			long requestedTime = System.currentTimeMillis() + interval;
+			if (scheduledTime > 0 && getState() != Job.NONE && scheduledTime <= requestedTime + MERGE_WINDOW) {
+				// a refresh is already scheduled to run at about the same
+				// time, or sooner
+				return;
+			}
+
+			cancel();
+			scheduleRefresh(interval);
 		}
 	}
 
+	/**
+	 * Sets the interval after which the next refresh is run when the job is
+	 * rescheduled. A value of zero or less stops automatic refreshes. As an
+	 * explicit request indicates activity on the server, this also resets the
+	 * polling back off.
+	 * @param interval
+	 */
 	public void setInterval(long interval) {
-		this.interval = interval;
+		synchronized (lock) {
+			this.interval = interval;
+			this.idleInterval = MIN_IDLE_INTERVAL;
+		}
 	}
 
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
-		try {
-			server.getBehaviour().refreshModules(monitor);
+		synchronized (lock) {
+			running = true;
+			scheduledTime = -1;
+			requestedWhileRunning = false;
+		}
 
-			if (server.getServer().getServerState() == IServer.STATE_STARTED && interval > 0) {
-				schedule(interval);
-			}
+		boolean changed = false;
+		try {
+			changed = server.getBehaviour().refreshApplications(monitor);
 		}
 		catch (CoreException e) {
-			CloudFoundryPlugin.getDefault().getLog().log(
-					new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, "Refresh of server failed", e));
+			CloudFoundryPlugin.getDefault().getLog()
+					.log(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, "Refresh of server failed", e));
+		}
+		finally {
+			synchronized (lock) {
+				running = false;
+				if (server.getServer().getServerState() == IServer.STATE_STARTED && interval > 0) {
+					long delay = getNextInterval(changed);
+					if (requestedWhileRunning) {
+						delay = Math.min(delay, interval);
+					}
+					scheduleRefresh(delay);
+				}
+			}
 		}
 
 		return Status.OK_STATUS;
 	}
+
+	/**
+	 * Must be called while holding the lock.
+	 */
+	protected void scheduleRefresh(long delay) {
+		scheduledTime = System.currentTimeMillis() + delay;
+		schedule(delay);
+	}
+
+	/**
+	 * Must be called while holding the lock.
+	 * @param changed true if the last refresh found changes to the applications
+	 * @return interval until the next periodic refresh
+	 */
+	protected long getNextInterval(boolean changed) {
+		if (hasApplicationsInTransition()) {
+			idleInterval = MIN_IDLE_INTERVAL;
+			return TRANSITION_INTERVAL;
+		}
+
+		if (changed) {
+			idleInterval = MIN_IDLE_INTERVAL;
+		}
+		else {
+			idleInterval = Math.min(idleInterval * 2, MAX_IDLE_INTERVAL);
+		}
+		return idleInterval;
+	}
+
+	/**
+	 * Must be called while holding the lock.
+	 * @return true if any application is starting, stopping or updating, or
+	 * is starting instances.
+	 */
+	protected boolean hasApplicationsInTransition() {
+		long now = System.currentTimeMillis();
+		boolean inTransition = false;
+		Map<String, InstanceStart> starts = new HashMap<String, InstanceStart>();
+		IServer iServer = server.getServer();
+		for (ApplicationModule appModule : server.getApplications()) {
+			int moduleState = iServer.getModuleState(new IModule[] { appModule.getLocalModule() });
+			if (moduleState == IServer.STATE_STARTING || moduleState == IServer.STATE_STOPPING) {
+				// Instances that are missing once the application started
+				// are given a new window
+				inTransition = true;
+				continue;
+			}
+
+			CloudApplication application = appModule.getApplication();
+			if (application != null) {
+				if (application.getState() == AppState.UPDATING) {
+					inTransition = true;
+				}
+				else if (application.getState() == AppState.STARTED
+						&& application.getRunningInstances() < application.getInstances()) {
+					InstanceStart start = getInstanceStart(instanceStarts.get(application.getName()),
+							application.getInstances(), now);
+					starts.put(application.getName(), start);
+					inTransition |= start.isStarting(now);
+				}
+			}
+		}
+		instanceStarts = starts;
+		return inTransition;
+	}
+
+	/**
+	 *
+	 * @param start recorded for an application that has fewer running
+	 * instances than requested, or null if none was recorded
+	 * @param instances number of instances requested
+	 * @param now
+	 * @return the given start, or a new start if none was recorded or the
+	 * application was scaled since
+	 */
+	protected static InstanceStart getInstanceStart(InstanceStart start, int instances, long now) {
+		if (start == null || start.instances != instances) {
+			return new InstanceStart(instances, now);
+		}
+		return start;
+	}
+
+	/**
+	 * Records since when an application has had fewer running instances than
+	 * requested.
+	 */
+	protected static class InstanceStart {
+
+		private final int instances;
+
+		private final long since;
+
+		public InstanceStart(int instances, long since) {
+			this.instances = instances;
+			this.since = since;
+		}
+
+		public boolean isStarting(long now) {
+			return now - since < INSTANCE_START_WINDOW;
+		}
+
+	}
 }
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Runs calls so that concurrent calls with the same key share a single
+ * execution and its result. The key must identify the call and its
+ * arguments. The call runs on the thread of the first caller, and callers that
+ * join it wait without holding any lock.
+ * <p/>
+ * Callers stop waiting if their own monitor is cancelled. If the call is
+ * cancelled by the caller that runs it, the callers that joined it run the
+ * call again.
+ */
+public class RequestCoalescer {
+
+	/**
+	 * Interval, in milliseconds, at which a thread waiting for work done on
+	 * another thread checks whether its monitor was cancelled.
+	 */
+	public static final long CANCELLATION_CHECK_INTERVAL = 100;
+
+	private final ConcurrentMap<String, FutureTask<?>> inFlight = new ConcurrentHashMap<String, FutureTask<?>>();
+
+	/**
+	 * Runs the call, or joins the call with the same key that is already in
+	 * progress.
+	 * @param key
+	 * @param call
+	 * @param monitor of the caller, may be null
+	 * @return the result of the call, which is shared by all callers that
+	 * joined it
+	 * @throws CoreException if the call failed with a checked exception
+	 * @throws OperationCanceledException if the monitor is cancelled
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T run(String key, Callable<T> call, IProgressMonitor monitor) throws CoreException {
+		while (true) {
+			FutureTask<T> task = new FutureTask<T>(call);
+			FutureTask<?> running = inFlight.putIfAbsent(key, task);
+			if (running == null) {
+				try {
+					task.run();
+				}
+				finally {
+					inFlight.remove(key, task);
+				}
+				return getResult(task, monitor);
+			}
+
+			try {
+				return (T) getResult(running, monitor);
+			}
+			catch (OperationCanceledException e) {
+				if (monitor != null && monitor.isCanceled()) {
+					throw e;
+				}
+				// Cancelled by the caller that ran it
+			}
+		}
+	}
+
+	/**
+	 * Waits for the result of a future, checking the monitor for cancellation
+	 * every {@link #CANCELLATION_CHECK_INTERVAL}.
+	 * @param future
+	 * @param monitor may be null
+	 * @return the result of the future
+	 * @throws CoreException if the future failed with a checked exception
+	 * @throws OperationCanceledException if the monitor is cancelled or the
+	 * thread is interrupted while waiting
+	 */
+	public static <T> T getResult(Future<T> future, IProgressMonitor monitor) throws CoreException {
+		while (true) {
+			if (monitor != null && monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			try {
+				return future.get(CANCELLATION_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e) {
+				// Check for cancellation and keep waiting
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof CoreException) {
+					throw (CoreException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new CoreException(CloudFoundryPlugin.getErrorStatus(cause));
+			}
+		}
+	}
+
+}
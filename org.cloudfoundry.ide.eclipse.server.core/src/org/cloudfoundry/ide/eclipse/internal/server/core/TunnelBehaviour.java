@@ -10,7 +10,6 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
-import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -22,7 +21,6 @@ import org.cloudfoundry.caldecott.TunnelException;
 import org.cloudfoundry.caldecott.client.HttpTunnelFactory;
 import org.cloudfoundry.caldecott.client.TunnelFactory;
 import org.cloudfoundry.caldecott.client.TunnelHelper;
-import org.cloudfoundry.caldecott.client.TunnelServer;
 import org.cloudfoundry.client.lib.CloudFoundryClient;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.HttpProxyConfiguration;
@@ -30,14 +28,14 @@ import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.client.lib.domain.CloudService;
 import org.cloudfoundry.client.lib.domain.DeploymentInfo;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelDescriptor;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelRuntime.TunnelServerPort;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelRelayServer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.IModule;
-import org.springframework.core.task.TaskExecutor;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 /**
  * Primary handler for all Caldecott operations, like starting and stopping a
@@ -125,8 +123,9 @@ public class TunnelBehaviour {
 
 			@Override
 			protected String runInWait(IProgressMonitor monitor) throws CoreException {
-				if (client instanceof CloudFoundryClient) {
-					return TunnelHelper.getTunnelUri((CloudFoundryClient) client);
+				CloudFoundryClient javaClient = getJavaClient(client);
+				if (javaClient != null) {
+					return TunnelHelper.getTunnelUri(javaClient);
 				}
 				return null;
 			}
@@ -142,12 +141,25 @@ public class TunnelBehaviour {
 	}
 
 	protected String getTunnelAuthorisation(CloudFoundryOperations operations) {
-		if (operations instanceof CloudFoundryClient) {
-			return TunnelHelper.getTunnelAuth((CloudFoundryClient) operations);
+		CloudFoundryClient javaClient = getJavaClient(operations);
+		if (javaClient != null) {
+			return TunnelHelper.getTunnelAuth(javaClient);
 		}
 		return null;
 	}
 
+	/**
+	 * The tunnel helper requires the Java client itself, rather than a client
+	 * that wraps it.
+	 * @param operations
+	 * @return the Java client performing the requests of the given client, or
+	 * null if it is not a Java client
+	 */
+	protected static CloudFoundryClient getJavaClient(CloudFoundryOperations operations) {
+		CloudFoundryOperations unwrapped = CachingCloudFoundryOperations.unwrap(operations);
+		return unwrapped instanceof CloudFoundryClient ? (CloudFoundryClient) unwrapped : null;
+	}
+
 	public synchronized CaldecottTunnelDescriptor startCaldecottTunnel(final String serviceName,
 			IProgressMonitor monitor, final boolean shouldShowTunnelInformation) throws CoreException {
 
@@ -228,7 +240,7 @@ public class TunnelBehaviour {
 
 				TunnelFactory tunnelFactory = new HttpTunnelFactory(url, host, port, auth, proxyConfiguration);
 
-				List<TunnelServer> tunnelServers = new ArrayList<TunnelServer>(1);
+				List<TunnelRelayServer> tunnelServers = new ArrayList<TunnelRelayServer>(1);
 				int localPort = getTunnelServer(tunnelFactory, tunnelServers);
 
 				if (tunnelServers.isEmpty() || localPort == -1) {
@@ -239,10 +251,20 @@ public class TunnelBehaviour {
 					return null;
 				}
 
-				TunnelServer tunnelServer = tunnelServers.get(0);
+				TunnelRelayServer tunnelServer = tunnelServers.get(0);
 
 				progress.setTaskName("Starting tunnel server");
-				tunnelServer.start();
+				boolean started = false;
+				try {
+					tunnelServer.start();
+					started = true;
+				}
+				finally {
+					if (!started) {
+						tunnelServer.stop();
+						CloudFoundryPlugin.getCaldecottTunnelRuntime().release(localPort);
+					}
+				}
 
 				CaldecottTunnelDescriptor descriptor = new CaldecottTunnelDescriptor(serviceUserName, servicePassword,
 						name, serviceName, dataBase, tunnelServer, localPort);
@@ -285,41 +307,31 @@ public class TunnelBehaviour {
 	}
 
 	/**
-	 * 
+	 * Creates a tunnel server on a free local port, allocated from the ports
+	 * shared by all tunnels. The port must be released once the tunnel server
+	 * is stopped.
 	 * @param tunnelFactory
 	 * @param server non null, where created tunnel will be stored.
 	 * @return -1 if port failed to open
 	 * @throws CoreException
 	 */
-	protected int getTunnelServer(TunnelFactory tunnelFactory, List<TunnelServer> tunnelServers) throws CoreException {
-
-		RuntimeException se = null;
-
-		int port = -1;
-		TunnelServer tunnelServer = null;
-		for (int i = BASE_PORT; i <= MAX_PORT; i++) {
-
-			try {
-				InetSocketAddress local = new InetSocketAddress(LOCAL_HOST, i);
-				tunnelServer = new TunnelServer(local, tunnelFactory, getTunnelServerThreadExecutor());
-				tunnelServers.add(tunnelServer);
-				port = i;
-				break;
-			}
-			catch (TunnelException e) {
-				se = e;
-			}
-			catch (SecurityException e) {
-				se = e;
+	protected int getTunnelServer(TunnelFactory tunnelFactory, List<TunnelRelayServer> tunnelServers)
+			throws CoreException {
+		try {
+			TunnelServerPort serverPort = CloudFoundryPlugin.getCaldecottTunnelRuntime().createTunnelServer(
+					tunnelFactory);
+			if (serverPort == null) {
+				return -1;
 			}
-
+			tunnelServers.add(serverPort.getServer());
+			return serverPort.getPort();
 		}
-		// Only rethrow security exception if all ports have failed
-		if (tunnelServer == null && se != null) {
-			throw new CoreException(CloudFoundryPlugin.getErrorStatus(se));
+		catch (TunnelException e) {
+			throw new CoreException(CloudFoundryPlugin.getErrorStatus(e));
+		}
+		catch (SecurityException e) {
+			throw new CoreException(CloudFoundryPlugin.getErrorStatus(e));
 		}
-		return port;
-
 	}
 
 	/**
@@ -361,15 +373,6 @@ public class TunnelBehaviour {
 		return serviceChanges;
 	}
 
-	protected TaskExecutor getTunnelServerThreadExecutor() {
-		int defaultPoolSize = 20;
-		ThreadPoolTaskExecutor te = new ThreadPoolTaskExecutor();
-		te.setCorePoolSize(defaultPoolSize);
-		te.setMaxPoolSize(defaultPoolSize * 2);
-		te.setQueueCapacity(100);
-		return te;
-	}
-
 	protected String getServiceVendor(String serviceName, IProgressMonitor monitor) throws CoreException {
 		List<CloudService> services = cloudServer.getBehaviour().getServices(monitor);
 		if (services != null) {
@@ -392,8 +395,9 @@ public class TunnelBehaviour {
 
 			@Override
 			protected Map<String, String> runInWait(IProgressMonitor monitor) {
-				if (client instanceof CloudFoundryClient) {
-					return TunnelHelper.getTunnelServiceInfo((CloudFoundryClient) client, serviceName);
+				CloudFoundryClient javaClient = getJavaClient(client);
+				if (javaClient != null) {
+					return TunnelHelper.getTunnelServiceInfo(javaClient, serviceName);
 				}
 				return null;
 			}
@@ -426,7 +430,9 @@ public class TunnelBehaviour {
 	}
 
 	/**
-	 * Stops and deletes all Caldecott tunnels for the given server.
+	 * Stops and deletes all Caldecott tunnels for the given server. The
+	 * threads shared by tunnels are shut down once no tunnel of any server is
+	 * open.
 	 * @param monitor
 	 * @throws CoreException
 	 */
@@ -445,7 +451,12 @@ public class TunnelBehaviour {
 		CaldecottTunnelDescriptor tunnelDescriptor = CloudFoundryPlugin.getCaldecottTunnelCache().getDescriptor(
 				cloudServer, serviceName);
 		if (tunnelDescriptor != null) {
-			tunnelDescriptor.getTunnelServer().stop();
+			try {
+				tunnelDescriptor.getTunnelServer().stop();
+			}
+			finally {
+				CloudFoundryPlugin.getCaldecottTunnelRuntime().release(tunnelDescriptor.tunnelPort());
+			}
 		}
 		return tunnelDescriptor;
 	}
@@ -523,9 +534,18 @@ public class TunnelBehaviour {
 		boolean deployed = false;
 		try {
 			t.setContextClassLoader(CloudFoundryServerBehaviour.class.getClassLoader());
-			if (client instanceof CloudFoundryClient) {
-				TunnelHelper.deployTunnelApp((CloudFoundryClient) client);
-				deployed = true;
+			CloudFoundryClient javaClient = getJavaClient(client);
+			if (javaClient != null) {
+				try {
+					TunnelHelper.deployTunnelApp(javaClient);
+					deployed = true;
+				}
+				finally {
+					// The application was deployed around any caching client
+					if (client instanceof CachingCloudFoundryOperations) {
+						((CachingCloudFoundryOperations) client).invalidateAll();
+					}
+				}
 			}
 
 		}
@@ -10,12 +10,13 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core.standalone;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.cloudfoundry.ide.eclipse.internal.server.core.AbstractModuleResourceArchive;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ContentFingerprintStore.Fingerprint;
 import org.eclipse.wst.server.core.IModule;
-import org.eclipse.wst.server.core.model.IModuleFile;
-import org.eclipse.wst.server.core.model.IModuleFolder;
 import org.eclipse.wst.server.core.model.IModuleResource;
 
 /**
@@ -31,38 +32,44 @@ public class StandaloneApplicationArchive extends AbstractModuleResourceArchive
 	}
 
 	@Override
-	protected ModuleFolderEntryAdapter getModuleFolderAdapter(IModuleFolder folder) {
-		return new StandaloneModuleFolderEntryAdapter(folder);
-	}
-
-	@Override
-	protected ModuleFileEntryAdapter getFileResourceEntryAdapter(IModuleFile moduleFile) {
-		return new StandaloneModuleFileEntryAdapter(moduleFile);
+	protected ModuleFileEntryAdapter getFileResourceEntryAdapter(int entry) {
+		return new StandaloneModuleFileEntryAdapter(entry);
 	}
 
 	public class StandaloneModuleFileEntryAdapter extends ModuleFileEntryAdapter {
 
-		public StandaloneModuleFileEntryAdapter(IModuleFile moduleFile) {
-			super(moduleFile);
+		public StandaloneModuleFileEntryAdapter(int entry) {
+			super(entry);
 		}
 
 		@Override
-		protected String computeName(IModuleResource resource) {
-			String name = resource.getModuleRelativePath().append(resource.getName()).toString();
-			return name;
+		public long getSize() {
+			return resolveFingerprint() ? getIndex().getSize(entry) : super.getSize();
 		}
 
-	}
-
-	public class StandaloneModuleFolderEntryAdapter extends ModuleFolderEntryAdapter {
-		public StandaloneModuleFolderEntryAdapter(IModuleFolder folder) {
-			super(folder);
+		@Override
+		public byte[] getSha1Digest() {
+			return resolveFingerprint() ? getIndex().getSha1(entry) : super.getSha1Digest();
 		}
 
-		@Override
-		protected String computeName(IModuleResource resource) {
-			String name = resource.getModuleRelativePath().append(resource.getName()).toString() + "/";
-			return name;
+		/**
+		 * Records the fingerprint from the content fingerprint store in the
+		 * index of the archive, so that dependencies shared with other
+		 * applications are not hashed again.
+		 * @return true if the index has a fingerprint for this entry
+		 */
+		protected boolean resolveFingerprint() {
+			if (!getIndex().hasFingerprint(entry) && canComputeResourceEntry()) {
+				try {
+					Fingerprint fingerprint = CloudFoundryPlugin.getDefault().getContentFingerprintStore()
+							.getFingerprint(file);
+					getIndex().setFingerprint(entry, fingerprint.getSha1(), fingerprint.getSize());
+				}
+				catch (IOException e) {
+					CloudFoundryPlugin.trace("Failed to fingerprint " + file + ": " + e.getMessage());
+				}
+			}
+			return getIndex().hasFingerprint(entry);
 		}
 
 	}
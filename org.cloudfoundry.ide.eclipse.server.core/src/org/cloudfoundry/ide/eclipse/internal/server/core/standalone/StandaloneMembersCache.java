@@ -0,0 +1,444 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.standalone;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+import org.eclipse.wst.server.core.util.ModuleFolder;
+
+/**
+ * Caches the resolved runtime classpath and the module resources of
+ * standalone projects, as resolving the runtime classpath and walking the
+ * output folders is expensive, and WTP requests the members of a module
+ * several times per publish.
+ * <p/>
+ * The runtime classpath of all projects is discarded when the classpath of
+ * any Java project changes, as projects may depend on each other. The module
+ * resources of a project are discarded when resources are added to or removed
+ * from a location on its runtime classpath. Module files record the
+ * modification stamp of their file when they are created, so when the content
+ * of files on the runtime classpath changes, for example after a build, the
+ * cached module files of these files are replaced, so that the publish delta
+ * includes them.
+ */
+public class StandaloneMembersCache {
+
+	/**
+	 * Runtime source and dependency locations of a project, as OS specific
+	 * absolute paths.
+	 */
+	public static class RuntimeClasspath {
+
+		private final List<String> sourceLocations;
+
+		private final List<String> dependencyLocations;
+
+		public RuntimeClasspath(List<String> sourceLocations, List<String> dependencyLocations) {
+			this.sourceLocations = sourceLocations != null ? Collections.unmodifiableList(new ArrayList<String>(
+					sourceLocations)) : Collections.<String> emptyList();
+			this.dependencyLocations = dependencyLocations != null ? Collections
+					.unmodifiableList(new ArrayList<String>(dependencyLocations)) : Collections.<String> emptyList();
+		}
+
+		public List<String> getSourceLocations() {
+			return sourceLocations;
+		}
+
+		public List<String> getDependencyLocations() {
+			return dependencyLocations;
+		}
+
+		/**
+		 *
+		 * @param location OS specific absolute path of a folder
+		 * @return true if a location on the classpath is in the given folder,
+		 * or contains it
+		 */
+		public boolean overlaps(String location) {
+			return overlaps(sourceLocations, location) || overlaps(dependencyLocations, location);
+		}
+
+		/**
+		 *
+		 * @param location OS specific absolute path of a file
+		 * @return true if the file is on the classpath, or in a folder on the
+		 * classpath
+		 */
+		public boolean contains(String location) {
+			return contains(sourceLocations, location) || contains(dependencyLocations, location);
+		}
+
+		private static boolean contains(List<String> locations, String location) {
+			for (String entry : locations) {
+				if (isInFolder(location, entry)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean overlaps(List<String> locations, String location) {
+			for (String entry : locations) {
+				if (isInFolder(entry, location) || isInFolder(location, entry)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean isInFolder(String location, String folder) {
+			if (!location.startsWith(folder)) {
+				return false;
+			}
+			return location.length() == folder.length() || folder.endsWith(File.separator)
+					|| location.charAt(folder.length()) == File.separatorChar;
+		}
+	}
+
+	private static class ProjectEntry {
+
+		RuntimeClasspath classpath;
+
+		IModuleResource[] members;
+
+		/** Incremented when the cached values are discarded */
+		long generation;
+	}
+
+	private final Map<IProject, ProjectEntry> entries = new HashMap<IProject, ProjectEntry>();
+
+	private final IElementChangedListener classpathListener = new IElementChangedListener() {
+
+		public void elementChanged(ElementChangedEvent event) {
+			if (isClasspathChange(event.getDelta())) {
+				invalidateAll();
+			}
+		}
+	};
+
+	private final IResourceChangeListener resourceListener = new IResourceChangeListener() {
+
+		public void resourceChanged(IResourceChangeEvent event) {
+			if (event.getType() == IResourceChangeEvent.POST_CHANGE) {
+				if (event.getDelta() != null) {
+					Set<String> changedFiles = new HashSet<String>();
+					for (IResourceDelta projectDelta : event.getDelta().getAffectedChildren()) {
+						if (hasStructuralChange(projectDelta)) {
+							invalidateMembers((IProject) projectDelta.getResource());
+						}
+						else {
+							collectContentChanges(projectDelta, changedFiles);
+						}
+					}
+					if (!changedFiles.isEmpty()) {
+						refreshFiles(changedFiles);
+					}
+				}
+			}
+			else if (event.getResource() instanceof IProject) {
+				// Closed or deleted
+				remove((IProject) event.getResource());
+			}
+		}
+	};
+
+	public StandaloneMembersCache() {
+		JavaCore.addElementChangedListener(classpathListener, ElementChangedEvent.POST_CHANGE);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceListener,
+				IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+	}
+
+	public void dispose() {
+		JavaCore.removeElementChangedListener(classpathListener);
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceListener);
+		synchronized (this) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Returns the current generation of the cached values of the project. It
+	 * must be obtained before computing values to add to the cache, so that
+	 * values computed while the project changes are not cached.
+	 */
+	public synchronized long getGeneration(IProject project) {
+		return getEntry(project).generation;
+	}
+
+	/**
+	 *
+	 * @param project
+	 * @return cached runtime classpath, or null if it must be resolved
+	 */
+	public synchronized RuntimeClasspath getClasspath(IProject project) {
+		ProjectEntry entry = entries.get(project);
+		return entry != null ? entry.classpath : null;
+	}
+
+	public synchronized void setClasspath(IProject project, long generation, RuntimeClasspath classpath) {
+		ProjectEntry entry = getEntry(project);
+		if (entry.generation == generation) {
+			entry.classpath = classpath;
+		}
+	}
+
+	/**
+	 *
+	 * @param project
+	 * @return cached module resources, or null if they must be computed
+	 */
+	public synchronized IModuleResource[] getMembers(IProject project) {
+		ProjectEntry entry = entries.get(project);
+		return entry != null && entry.members != null ? entry.members.clone() : null;
+	}
+
+	public synchronized void setMembers(IProject project, long generation, IModuleResource[] members) {
+		ProjectEntry entry = getEntry(project);
+		if (entry.generation == generation) {
+			entry.members = members.clone();
+		}
+	}
+
+	/**
+	 * Discards the module resources of the given project, and of the projects
+	 * whose runtime classpath contains a location in it.
+	 */
+	public synchronized void invalidateMembers(IProject changed) {
+		IPath changedLocation = changed.getLocation();
+		String location = changedLocation != null ? changedLocation.toOSString() : null;
+		for (Map.Entry<IProject, ProjectEntry> mapEntry : entries.entrySet()) {
+			ProjectEntry entry = mapEntry.getValue();
+			if (mapEntry.getKey().equals(changed)
+					|| (location != null && entry.classpath != null && entry.classpath.overlaps(location))) {
+				entry.members = null;
+				entry.generation++;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the cached module files of the given files, whose content
+	 * changed, with module files that record their current modification stamp.
+	 * Cached folders that contain them are copied rather than modified, as
+	 * cached module resources may be in use.
+	 * @param locations OS specific absolute paths of the changed files
+	 */
+	public synchronized void refreshFiles(Set<String> locations) {
+		for (ProjectEntry entry : entries.values()) {
+			if (entry.members == null || (entry.classpath != null && !containsAny(entry.classpath, locations))) {
+				continue;
+			}
+			IModuleResource[] refreshed = refresh(entry.members, locations);
+			if (refreshed != entry.members) {
+				entry.members = refreshed;
+				// Members computed before the change are stale
+				entry.generation++;
+			}
+		}
+	}
+
+	private static boolean containsAny(RuntimeClasspath classpath, Set<String> locations) {
+		for (String location : locations) {
+			if (classpath.contains(location)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @return the given members if none was refreshed, or a copy with the
+	 * refreshed members
+	 */
+	private static IModuleResource[] refresh(IModuleResource[] members, Set<String> locations) {
+		IModuleResource[] refreshed = members;
+		for (int i = 0; i < members.length; i++) {
+			IModuleResource member = refresh(members[i], locations);
+			if (member != members[i]) {
+				if (refreshed == members) {
+					refreshed = members.clone();
+				}
+				refreshed[i] = member;
+			}
+		}
+		return refreshed;
+	}
+
+	private static IModuleResource refresh(IModuleResource member, Set<String> locations) {
+		if (member instanceof IModuleFolder) {
+			IModuleFolder folder = (IModuleFolder) member;
+			IModuleResource[] children = folder.members();
+			if (children == null) {
+				return member;
+			}
+			IModuleResource[] refreshed = refresh(children, locations);
+			if (refreshed == children) {
+				return member;
+			}
+			ModuleFolder copy = new ModuleFolder((IContainer) folder.getAdapter(IContainer.class),
+					folder.getName(), folder.getModuleRelativePath());
+			copy.setMembers(refreshed);
+			return copy;
+		}
+		if (member instanceof IModuleFile) {
+			IFile file = (IFile) member.getAdapter(IFile.class);
+			if (file != null) {
+				IPath location = file.getLocation();
+				if (location != null && locations.contains(location.toOSString())) {
+					return new ModuleFile(file, member.getName(), member.getModuleRelativePath());
+				}
+			}
+			else {
+				File externalFile = (File) member.getAdapter(File.class);
+				if (externalFile != null && locations.contains(externalFile.getAbsolutePath())) {
+					return new ModuleFile(externalFile, member.getName(), member.getModuleRelativePath());
+				}
+			}
+		}
+		return member;
+	}
+
+	public synchronized void invalidateAll() {
+		for (ProjectEntry entry : entries.values()) {
+			entry.classpath = null;
+			entry.members = null;
+			entry.generation++;
+		}
+	}
+
+	protected synchronized void remove(IProject project) {
+		entries.remove(project);
+		// Other projects may depend on the removed project
+		invalidateAll();
+	}
+
+	private ProjectEntry getEntry(IProject project) {
+		ProjectEntry entry = entries.get(project);
+		if (entry == null) {
+			entry = new ProjectEntry();
+			entries.put(project, entry);
+		}
+		return entry;
+	}
+
+	protected static boolean isClasspathChange(IJavaElementDelta delta) {
+		int flags = delta.getFlags();
+		if ((flags & (IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+				| IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED)) != 0) {
+			return true;
+		}
+		if (delta.getElement().getElementType() == IJavaElement.JAVA_PROJECT
+				&& (delta.getKind() == IJavaElementDelta.ADDED || delta.getKind() == IJavaElementDelta.REMOVED)) {
+			return true;
+		}
+		// Only the model and project levels carry classpath changes
+		if (delta.getElement().getElementType() == IJavaElement.JAVA_MODEL) {
+			for (IJavaElementDelta child : delta.getAffectedChildren()) {
+				if (isClasspathChange(child)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Collects the locations of the files whose content changed in the delta.
+	 * @param delta
+	 * @param locations
+	 */
+	protected static void collectContentChanges(IResourceDelta delta, final Set<String> locations) {
+		try {
+			delta.accept(new IResourceDeltaVisitor() {
+
+				public boolean visit(IResourceDelta child) throws CoreException {
+					IResource resource = child.getResource();
+					if (resource.getType() != IResource.FILE) {
+						return true;
+					}
+					if (child.getKind() == IResourceDelta.CHANGED
+							&& (child.getFlags() & IResourceDelta.CONTENT) != 0) {
+						IPath location = resource.getLocation();
+						if (location != null) {
+							locations.add(location.toOSString());
+						}
+					}
+					return false;
+				}
+			});
+		}
+		catch (CoreException e) {
+			CloudFoundryPlugin.logError(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param delta
+	 * @return true if a resource was added, removed or moved in the delta
+	 */
+	protected static boolean hasStructuralChange(IResourceDelta delta) {
+		final boolean[] changed = new boolean[1];
+		try {
+			delta.accept(new IResourceDeltaVisitor() {
+
+				public boolean visit(IResourceDelta child) throws CoreException {
+					if (changed[0]) {
+						return false;
+					}
+					if (child.getKind() == IResourceDelta.ADDED
+							|| child.getKind() == IResourceDelta.REMOVED
+							|| (child.getFlags() & (IResourceDelta.MOVED_FROM | IResourceDelta.MOVED_TO
+									| IResourceDelta.REPLACED | IResourceDelta.OPEN)) != 0) {
+						changed[0] = child.getResource().getType() != IResource.ROOT;
+						return false;
+					}
+					return true;
+				}
+			});
+		}
+		catch (CoreException e) {
+			CloudFoundryPlugin.logError(e);
+			return true;
+		}
+		return changed[0];
+	}
+
+}
@@ -11,11 +11,14 @@
 package org.cloudfoundry.ide.eclipse.internal.server.core.standalone;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryProjectUtil;
+import org.cloudfoundry.ide.eclipse.internal.server.core.standalone.StandaloneMembersCache.RuntimeClasspath;
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -56,6 +59,10 @@ import org.eclipse.wst.server.core.util.ProjectModule;
  * Consequently, when handling the list of generated module resources, it should
  * be done recursively.
  * <p/>
+ * As a new delegate may be created for each request, the resolved runtime
+ * classpath and the module resources are cached per project in the
+ * {@link StandaloneMembersCache}.
+ * <p/>
  * See implementations of IModule
  * 
  * @see StandAloneModuleFactory
@@ -160,18 +167,46 @@ public class StandaloneModuleDelegate extends ProjectModule {
 
 	@Override
 	public IModuleResource[] members() throws CoreException {
-		return computeRuntimeClasspathMembers();
+		StandaloneMembersCache cache = CloudFoundryPlugin.getStandaloneMembersCache();
+		IProject project = getProject();
+		IModuleResource[] members = cache.getMembers(project);
+		if (members == null) {
+			long generation = cache.getGeneration(project);
+			members = computeRuntimeClasspathMembers(cache, generation);
+			cache.setMembers(project, generation, members);
+		}
+		return members;
 	}
 
-	protected IModuleResource[] computeRuntimeClasspathMembers() throws CoreException {
-		List<IModuleResource> members = new ArrayList<IModuleResource>();
+	/**
+	 * Returns the cached runtime classpath of the project, or resolves it.
+	 * @return runtime classpath, or null if the project is not a Java project
+	 */
+	protected RuntimeClasspath getRuntimeClasspath(StandaloneMembersCache cache, long generation)
+			throws CoreException {
+		RuntimeClasspath classpath = cache.getClasspath(getProject());
+		if (classpath == null) {
+			IJavaProject javaProject = CloudFoundryProjectUtil.getJavaProject(getProject());
+			if (javaProject == null) {
+				return null;
+			}
+			StandaloneRuntimeResolver resolver = new StandaloneRuntimeResolver(javaProject, true);
+			classpath = new RuntimeClasspath(resolver.getRuntimeSourceLocations(),
+					resolver.getRuntimeDependencyLocations());
+			cache.setClasspath(getProject(), generation, classpath);
+		}
+		return classpath;
+	}
 
-		IJavaProject javaProject = CloudFoundryProjectUtil.getJavaProject(getProject());
+	protected IModuleResource[] computeRuntimeClasspathMembers(StandaloneMembersCache cache, long generation)
+			throws CoreException {
+		// Hashed, as a project may have thousands of resources to dedup
+		Set<IModuleResource> members = new LinkedHashSet<IModuleResource>();
 
-		if (javaProject != null) {
-			StandaloneRuntimeResolver resolver = new StandaloneRuntimeResolver(javaProject, true);
+		RuntimeClasspath classpath = getRuntimeClasspath(cache, generation);
 
-			List<String> resolvedSource = resolver.getRuntimeSourceLocations();
+		if (classpath != null) {
+			List<String> resolvedSource = classpath.getSourceLocations();
 
 			// Add the non-dependecy resources first at root level path. This
 			// means that, when published,
@@ -184,11 +219,11 @@ public class StandaloneModuleDelegate extends ProjectModule {
 			}
 
 			// Add the dependencies in a /lib
-			if (resolver.hasRuntimeDependencies()) {
+			List<String> dependencies = classpath.getDependencyLocations();
+			if (!dependencies.isEmpty()) {
 				// check if at root level, there already exists a /lib folder
 				ModuleFolder libFolder = createLibFolder(members);
-				List<String> dependencies = resolver.getRuntimeDependencyLocations();
-				List<IModuleResource> libMembers = new ArrayList<IModuleResource>();
+				Set<IModuleResource> libMembers = new LinkedHashSet<IModuleResource>();
 				for (String path : dependencies) {
 					addModuleResources(path, libMembers, JavaStartCommand.DEFAULT_LIB_PATH);
 				}
@@ -209,7 +244,7 @@ public class StandaloneModuleDelegate extends ProjectModule {
 	 * @param moduleResources
 	 * @return non-null /lib folder
 	 */
-	protected ModuleFolder createLibFolder(List<IModuleResource> moduleResources) {
+	protected ModuleFolder createLibFolder(Collection<IModuleResource> moduleResources) {
 		for (IModuleResource resource : moduleResources) {
 			if (resource instanceof ModuleFolder && JavaStartCommand.DEFAULT_LIB_PATH.equals(resource.getName())) {
 				return (ModuleFolder) resource;
@@ -258,7 +293,8 @@ public class StandaloneModuleDelegate extends ProjectModule {
 	 * module relative path.
 	 * @param resourceLocation resource location that needs to be mapped to
 	 * corresponding module resources. location can be relative or absolute.
-	 * @param members where module resource should be added
+	 * @param members where module resource should be added. Use a hashed
+	 * collection, as each resource is checked for duplicates
 	 * @param moduleRelativePath remote location path of the resource. It does
 	 * not need to be the same as the local resource location.
 	 * @throws CoreException
@@ -10,7 +10,6 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core.tunnel;
 
-import org.cloudfoundry.caldecott.client.TunnelServer;
 import org.cloudfoundry.ide.eclipse.internal.server.core.TunnelBehaviour;
 
 public class CaldecottTunnelDescriptor {
@@ -21,7 +20,7 @@ public class CaldecottTunnelDescriptor {
 
 	private final int tunnelPort;
 
-	private final TunnelServer server;
+	private final TunnelRelayServer server;
 
 	private final String serviceName;
 
@@ -30,7 +29,7 @@ public class CaldecottTunnelDescriptor {
 	private final String databaseName;
 
 	public CaldecottTunnelDescriptor(String userName, String password, String databaseName, String serviceName,
-			String serviceVendor, TunnelServer server, int tunnelPort) {
+			String serviceVendor, TunnelRelayServer server, int tunnelPort) {
 		this.server = server;
 		this.userName = userName;
 		this.password = password;
@@ -130,10 +129,18 @@ public class CaldecottTunnelDescriptor {
 		return null;
 	}
 
-	public TunnelServer getTunnelServer() {
+	public TunnelRelayServer getTunnelServer() {
 		return server;
 	}
 
+	/**
+	 *
+	 * @return traffic statistics of the tunnel
+	 */
+	public TunnelMetrics getMetrics() {
+		return server.getMetrics();
+	}
+
 	public enum ServiceVendor {
 		postgresql, mysql, mongodb
 	}
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.tunnel;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudfoundry.caldecott.TunnelException;
+import org.cloudfoundry.caldecott.client.TunnelFactory;
+import org.cloudfoundry.ide.eclipse.internal.server.core.TunnelBehaviour;
+
+/**
+ * Resources shared by all Caldecott tunnel servers: the local ports they
+ * listen on, the relay that accepts and relays their connections, and the
+ * threads that send the requests of the relay to the Caldecott application.
+ * <p/>
+ * The requests of all tunnel servers run on two bounded pools, whose idle
+ * threads beyond the first terminate after a while: one for the long polls
+ * receiving data,
+ * which each hold a thread until data is available or the request times out,
+ * and one for the requests opening tunnels and sending data, so that these
+ * never wait behind idle connections. Threads are only added while all threads
+ * of a pool are busy, and requests are queued once the pool has reached its
+ * maximum size. The relay and the pools are shut down once no tunnel is
+ * open anymore, and started again for the next tunnel.
+ */
+public class CaldecottTunnelRuntime {
+
+	/**
+	 * Maximum number of threads receiving data, shared by all tunnel servers
+	 */
+	private static final int MAX_POLL_THREADS = 64;
+
+	/**
+	 * Maximum number of threads opening tunnels and sending data, shared by
+	 * all tunnel servers
+	 */
+	private static final int MAX_REQUEST_THREADS = 16;
+
+	private static final long THREAD_KEEP_ALIVE = 60 * 1000;
+
+	/**
+	 * Number of ports tried before giving up, if ports turn out to be in use
+	 * by other processes
+	 */
+	private static final int MAX_BIND_ATTEMPTS = 50;
+
+	private final TunnelPortAllocator portAllocator = new TunnelPortAllocator(TunnelBehaviour.BASE_PORT,
+			TunnelBehaviour.MAX_PORT);
+
+	private ThreadPoolExecutor executor;
+
+	private ThreadPoolExecutor pollExecutor;
+
+	private final TunnelRelay relay = new TunnelRelay(new Executor() {
+		public void execute(Runnable task) {
+			getExecutor().execute(task);
+		}
+	}, new Executor() {
+		public void execute(Runnable task) {
+			getPollExecutor().execute(task);
+		}
+	});
+
+	/**
+	 * Creates a tunnel server listening on a free local port. The tunnel
+	 * server must be released with {@link #release(int)} once it is stopped.
+	 * @param tunnelFactory
+	 * @return the created tunnel server, or null if no free port was found
+	 * @throws TunnelException if the ports tried could not be bound for other
+	 * reasons than being in use
+	 */
+	public TunnelServerPort createTunnelServer(TunnelFactory tunnelFactory) throws TunnelException {
+		TunnelException lastError = null;
+		for (int i = 0; i < MAX_BIND_ATTEMPTS; i++) {
+			int port = portAllocator.allocate();
+			if (port < 0) {
+				break;
+			}
+			try {
+				InetSocketAddress local = new InetSocketAddress(TunnelBehaviour.LOCAL_HOST, port);
+				TunnelRelayServer server = new TunnelRelayServer(local, tunnelFactory, relay);
+				return new TunnelServerPort(server, port);
+			}
+			catch (TunnelException e) {
+				// Most likely in use by another process
+				portAllocator.markUnavailable(port);
+				lastError = e;
+			}
+		}
+		if (lastError != null) {
+			throw lastError;
+		}
+		return null;
+	}
+
+	/**
+	 * Releases the port of a stopped tunnel server. Shuts down the threads of
+	 * the tunnel servers if no other tunnel is open.
+	 * @param port
+	 */
+	public synchronized void release(int port) {
+		portAllocator.release(port);
+		if (portAllocator.getAllocatedCount() == 0) {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Shuts down the relay and the threads of the tunnel servers. Connections
+	 * of tunnel servers that are still running are closed.
+	 */
+	public synchronized void shutdown() {
+		relay.shutdown();
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		if (pollExecutor != null) {
+			pollExecutor.shutdown();
+			pollExecutor = null;
+		}
+	}
+
+	protected synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			executor = createExecutor(MAX_REQUEST_THREADS, THREAD_KEEP_ALIVE, "Caldecott tunnel ");
+		}
+		return executor;
+	}
+
+	protected synchronized ThreadPoolExecutor getPollExecutor() {
+		if (pollExecutor == null) {
+			pollExecutor = createExecutor(MAX_POLL_THREADS, THREAD_KEEP_ALIVE, "Caldecott tunnel poll ");
+		}
+		return pollExecutor;
+	}
+
+	protected static ThreadPoolExecutor createExecutor(int maxThreads, long keepAlive, String threadName) {
+		TunnelTaskQueue queue = new TunnelTaskQueue();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, maxThreads, keepAlive, TimeUnit.MILLISECONDS, queue,
+				new TunnelThreadFactory(threadName), queue);
+		queue.executor = executor;
+		return executor;
+	}
+
+	/**
+	 * A tunnel server, and the local port it listens on.
+	 */
+	public static class TunnelServerPort {
+
+		private final TunnelRelayServer server;
+
+		private final int port;
+
+		TunnelServerPort(TunnelRelayServer server, int port) {
+			this.server = server;
+			this.port = port;
+		}
+
+		public TunnelRelayServer getServer() {
+			return server;
+		}
+
+		public int getPort() {
+			return port;
+		}
+	}
+
+	/**
+	 * Queue of a tunnel pool that refuses requests while all threads are busy
+	 * and the pool can still grow, so that the pool starts a thread for them
+	 * instead of queueing them behind long polls. Requests refused by the pool
+	 * once it reached its maximum size are queued anyway. The pool keeps a
+	 * single core thread, which runs requests queued while other threads were
+	 * terminating.
+	 */
+	protected static class TunnelTaskQueue extends LinkedBlockingQueue<Runnable> implements RejectedExecutionHandler {
+
+		private static final long serialVersionUID = 1L;
+
+		private volatile ThreadPoolExecutor executor;
+
+		@Override
+		public boolean offer(Runnable task) {
+			ThreadPoolExecutor pool = executor;
+			if (pool != null && pool.getPoolSize() < pool.getMaximumPoolSize()
+					&& pool.getActiveCount() >= pool.getPoolSize()) {
+				return false;
+			}
+			return super.offer(task);
+		}
+
+		public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+			if (pool.isShutdown() || !super.offer(task)) {
+				throw new RejectedExecutionException("Tunnel threads are shut down");
+			}
+		}
+	}
+
+	protected static class TunnelThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		private final String name;
+
+		TunnelThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
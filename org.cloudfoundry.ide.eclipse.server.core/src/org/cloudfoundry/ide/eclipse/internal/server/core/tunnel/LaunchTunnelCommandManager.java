@@ -26,6 +26,7 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudUtil;
 import org.cloudfoundry.ide.eclipse.internal.server.core.PlatformUtil;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ProcessLauncher;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ProcessLauncher.ProcessOutputListener;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
@@ -39,10 +40,26 @@ import org.eclipse.core.runtime.Platform;
  */
 public class LaunchTunnelCommandManager {
 
+	/** Time in milliseconds allowed for changing the permissions of a script file */
+	private static final long PERMISSION_CHANGE_TIMEOUT = 30 * 1000;
+
 	private final ServiceCommand serviceCommand;
 
+	private final ProcessOutputListener outputListener;
+
 	public LaunchTunnelCommandManager(ServiceCommand serviceCommand) {
+		this(serviceCommand, null);
+	}
+
+	/**
+	 *
+	 * @param serviceCommand
+	 * @param outputListener notified of the output of the launched
+	 * application, may be null
+	 */
+	public LaunchTunnelCommandManager(ServiceCommand serviceCommand, ProcessOutputListener outputListener) {
 		this.serviceCommand = serviceCommand;
+		this.outputListener = outputListener;
 	}
 
 	protected String getLaunchName() {
@@ -51,7 +68,7 @@ public class LaunchTunnelCommandManager {
 
 	/**
 	 * Throws CoreException if an error occurred while launching the external
-	 * application.
+	 * application. The application is destroyed if the monitor is cancelled.
 	 * @param monitor
 	 */
 	public void run(IProgressMonitor monitor) throws CoreException {
@@ -187,7 +204,7 @@ public class LaunchTunnelCommandManager {
 					processArguments.addAll(optionElements);
 				}
 			}
-			launch(processArguments, envVars);
+			launch(processArguments, envVars, monitor);
 
 		}
 		finally {
@@ -211,7 +228,8 @@ public class LaunchTunnelCommandManager {
 		return vars;
 	}
 
-	protected void launch(final List<String> processArguments, final Map<String, String> enVars) throws CoreException {
+	protected void launch(final List<String> processArguments, final Map<String, String> enVars,
+			IProgressMonitor monitor) throws CoreException {
 		// If there are process arguments, launch the process
 		if (!processArguments.isEmpty()) {
 
@@ -230,7 +248,12 @@ public class LaunchTunnelCommandManager {
 					return enVars;
 				}
 
-			}.run();
+				@Override
+				protected ProcessOutputListener getOutputListener() {
+					return outputListener;
+				}
+
+			}.run(monitor);
 		}
 		else {
 			throw new CoreException(
@@ -340,6 +363,11 @@ public class LaunchTunnelCommandManager {
 			return null;
 		}
 
+		@Override
+		protected long getTimeout() {
+			return PERMISSION_CHANGE_TIMEOUT;
+		}
+
 	}
 
 }
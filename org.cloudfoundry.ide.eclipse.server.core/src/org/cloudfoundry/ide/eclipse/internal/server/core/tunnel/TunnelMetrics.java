@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.tunnel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Traffic statistics of a tunnel, updated by the relay of its connections,
+ * to tell whether slow operations through a tunnel are due to the tunnel or
+ * to the service.
+ * <p/>
+ * Counters are updated without locking, and may be read at any time. Values
+ * read while connections are relayed may be slightly inconsistent with each
+ * other.
+ * <p/>
+ * Round-trip latencies are recorded for requests sending data to the
+ * Caldecott application. Requests receiving data are held by the Caldecott
+ * application until the service sends data, so their duration is the time
+ * the service takes to respond, and is not recorded.
+ */
+public class TunnelMetrics {
+
+	/** Upper bounds of the latency histogram buckets, in milliseconds */
+	private static final long[] LATENCY_BOUNDS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000 };
+
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	private final AtomicInteger activeConnections = new AtomicInteger();
+
+	private final AtomicLong totalConnections = new AtomicLong();
+
+	private final AtomicLong sendRequests = new AtomicLong();
+
+	private final AtomicLong pollRequests = new AtomicLong();
+
+	private final AtomicLong pollRetries = new AtomicLong();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	/** Last bucket counts latencies above the largest bound */
+	private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BOUNDS.length + 1);
+
+	void connectionOpened() {
+		activeConnections.incrementAndGet();
+		totalConnections.incrementAndGet();
+	}
+
+	void connectionClosed() {
+		activeConnections.decrementAndGet();
+	}
+
+	/**
+	 *
+	 * @param bytes number of bytes sent
+	 * @param nanos round-trip time of the request
+	 */
+	void sent(int bytes, long nanos) {
+		sendRequests.incrementAndGet();
+		bytesSent.addAndGet(bytes);
+		long millis = nanos / 1000000;
+		int bucket = 0;
+		while (bucket < LATENCY_BOUNDS.length && millis > LATENCY_BOUNDS[bucket]) {
+			bucket++;
+		}
+		latencies.incrementAndGet(bucket);
+	}
+
+	void polled() {
+		pollRequests.incrementAndGet();
+	}
+
+	void received(int bytes) {
+		bytesReceived.addAndGet(bytes);
+	}
+
+	/**
+	 * A request receiving data timed out before data was available, and is
+	 * sent again.
+	 */
+	void pollRetried() {
+		pollRetries.incrementAndGet();
+	}
+
+	void failed() {
+		errors.incrementAndGet();
+	}
+
+	/**
+	 *
+	 * @return bytes sent from local connections through the tunnel
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	/**
+	 *
+	 * @return bytes received through the tunnel for local connections
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	public int getActiveConnections() {
+		return activeConnections.get();
+	}
+
+	public long getTotalConnections() {
+		return totalConnections.get();
+	}
+
+	/**
+	 *
+	 * @return number of HTTP requests that sent data
+	 */
+	public long getSendRequests() {
+		return sendRequests.get();
+	}
+
+	/**
+	 *
+	 * @return number of HTTP requests that polled for data
+	 */
+	public long getPollRequests() {
+		return pollRequests.get();
+	}
+
+	public long getPollRetries() {
+		return pollRetries.get();
+	}
+
+	/**
+	 *
+	 * @return number of failed tunnel requests
+	 */
+	public long getErrors() {
+		return errors.get();
+	}
+
+	/**
+	 *
+	 * @return upper bounds of the latency histogram buckets in milliseconds.
+	 * The histogram has an additional bucket for larger latencies.
+	 */
+	public static long[] getLatencyBounds() {
+		return LATENCY_BOUNDS.clone();
+	}
+
+	/**
+	 *
+	 * @return number of requests in each latency bucket
+	 */
+	public long[] getLatencyHistogram() {
+		long[] histogram = new long[latencies.length()];
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] = latencies.get(i);
+		}
+		return histogram;
+	}
+
+	/**
+	 *
+	 * @param percentile between 0 and 100
+	 * @return upper bound in milliseconds of the latency bucket containing the
+	 * given percentile, {@link Long#MAX_VALUE} if it is above the largest
+	 * bound, or -1 if no latency was recorded
+	 */
+	public long getLatencyPercentile(double percentile) {
+		long[] histogram = getLatencyHistogram();
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return -1;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+			seen += histogram[i];
+			if (seen >= rank) {
+				return LATENCY_BOUNDS[i];
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 *
+	 * @return comma separated column names of {@link #toCSV(String)}
+	 */
+	public static String getCSVHeader() {
+		StringBuilder header = new StringBuilder();
+		header.append("service,bytes_sent,bytes_received,active_connections,total_connections,");
+		header.append("send_requests,poll_requests,poll_retries,errors");
+		for (long bound : LATENCY_BOUNDS) {
+			header.append(",latency_le_").append(bound).append("ms");
+		}
+		header.append(",latency_gt_").append(LATENCY_BOUNDS[LATENCY_BOUNDS.length - 1]).append("ms");
+		return header.toString();
+	}
+
+	/**
+	 *
+	 * @param serviceName name of the service of the tunnel
+	 * @return current values as comma separated values
+	 */
+	public String toCSV(String serviceName) {
+		StringBuilder row = new StringBuilder();
+		row.append(escapeCSV(serviceName));
+		row.append(',').append(getBytesSent());
+		row.append(',').append(getBytesReceived());
+		row.append(',').append(getActiveConnections());
+		row.append(',').append(getTotalConnections());
+		row.append(',').append(getSendRequests());
+		row.append(',').append(getPollRequests());
+		row.append(',').append(getPollRetries());
+		row.append(',').append(getErrors());
+		for (long count : getLatencyHistogram()) {
+			row.append(',').append(count);
+		}
+		return row.toString();
+	}
+
+	protected static String escapeCSV(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.tunnel;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Allocates local ports for tunnels from a range of ports. Ports in use by
+ * tunnels are tracked, so that they are not allocated again until released.
+ * Ports that turn out to be in use by other processes are skipped for a while
+ * before being allocated again.
+ * <p/>
+ * Ports are allocated in rotation through the range, so that a port that was
+ * just released is not reused right away.
+ */
+public class TunnelPortAllocator {
+
+	/** How long ports in use by other processes are skipped */
+	private static final long UNAVAILABLE_TIMEOUT = 5 * 60 * 1000;
+
+	private final int basePort;
+
+	private final int maxPort;
+
+	/** Ports allocated to tunnels, relative to the base port */
+	private final BitSet allocated = new BitSet();
+
+	/** Ports in use by other processes, with the time until which they are skipped */
+	private final Map<Integer, Long> unavailable = new HashMap<Integer, Long>();
+
+	private int next;
+
+	private int allocatedCount;
+
+	/**
+	 *
+	 * @param basePort first port of the range
+	 * @param maxPort last port of the range, inclusive
+	 */
+	public TunnelPortAllocator(int basePort, int maxPort) {
+		this.basePort = basePort;
+		this.maxPort = maxPort;
+		this.next = basePort;
+	}
+
+	/**
+	 *
+	 * @return a port that is not allocated, or -1 if all ports of the range
+	 * are allocated or unavailable
+	 */
+	public synchronized int allocate() {
+		expireUnavailable();
+		int size = maxPort - basePort + 1;
+		int offset = next - basePort;
+		// Number of ports of the range checked so far
+		int checked = 0;
+		while (checked < size) {
+			int free = allocated.nextClearBit(offset);
+			if (free >= size) {
+				// Wraps around to the start of the range
+				checked += size - offset;
+				offset = 0;
+				continue;
+			}
+			checked += free - offset + 1;
+			int port = basePort + free;
+			if (!unavailable.containsKey(port)) {
+				allocated.set(free);
+				allocatedCount++;
+				next = port < maxPort ? port + 1 : basePort;
+				return port;
+			}
+			offset = free + 1 < size ? free + 1 : 0;
+		}
+		return -1;
+	}
+
+	/**
+	 * Releases a port that is no longer used by a tunnel.
+	 * @param port
+	 */
+	public synchronized void release(int port) {
+		if (isInRange(port) && allocated.get(port - basePort)) {
+			allocated.clear(port - basePort);
+			allocatedCount--;
+		}
+	}
+
+	/**
+	 * Releases an allocated port that could not be used as it is in use by
+	 * another process. The port is skipped by subsequent allocations for a
+	 * while.
+	 * @param port
+	 */
+	public synchronized void markUnavailable(int port) {
+		if (isInRange(port)) {
+			release(port);
+			unavailable.put(port, System.currentTimeMillis() + UNAVAILABLE_TIMEOUT);
+		}
+	}
+
+	/**
+	 *
+	 * @return number of ports currently allocated
+	 */
+	public synchronized int getAllocatedCount() {
+		return allocatedCount;
+	}
+
+	protected boolean isInRange(int port) {
+		return port >= basePort && port <= maxPort;
+	}
+
+	protected void expireUnavailable() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Entry<Integer, Long>> it = unavailable.entrySet().iterator(); it.hasNext();) {
+			if (it.next().getValue() <= now) {
+				it.remove();
+			}
+		}
+	}
+
+}
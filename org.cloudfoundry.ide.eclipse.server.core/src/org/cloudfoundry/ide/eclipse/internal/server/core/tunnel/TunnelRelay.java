@@ -0,0 +1,613 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.tunnel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.cloudfoundry.caldecott.client.Tunnel;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Relays the connections of all tunnel servers through their Caldecott
+ * tunnels, without a thread per connection.
+ * <p/>
+ * A single selector thread reads from and writes to the local sockets of all
+ * connections, through one direct buffer. The HTTP requests to the Caldecott
+ * application are blocking. Requests receiving data are long polls held by
+ * the application until data is available, so they run on their own executor,
+ * and requests opening tunnels or sending data never wait behind them:
+ * <ul>
+ * <li>Data read from a socket while a request sending data is in progress is
+ * accumulated, and sent in a single request once the previous one completes,
+ * up to {@link #MAX_BATCH_SIZE} per request.</li>
+ * <li>The next request receiving data is sent as soon as the previous one
+ * completes, while the received data is still being written to the socket.
+ * A request that times out is sent again as a new task, so that it does not
+ * keep its thread from other connections.</li>
+ * <li>A connection stops reading from its socket, or receiving data from its
+ * tunnel, while more than {@link #MAX_PENDING_SIZE} is waiting to be sent in
+ * that direction.</li>
+ * </ul>
+ * The Caldecott protocol numbers the requests in each direction, so there is
+ * at most one request in progress per direction and connection.
+ */
+public class TunnelRelay {
+
+	private static final int SOCKET_BUFFER_SIZE = 64 * 1024;
+
+	/** Maximum number of bytes sent in a single request */
+	static final int MAX_BATCH_SIZE = 256 * 1024;
+
+	/** Number of bytes waiting in one direction above which a connection pauses */
+	static final int MAX_PENDING_SIZE = 1024 * 1024;
+
+	private final Executor executor;
+
+	private final Executor pollExecutor;
+
+	/** Tasks to run on the selector thread */
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	/** Used by the selector thread only */
+	private final ByteBuffer socketBuffer = ByteBuffer.allocateDirect(SOCKET_BUFFER_SIZE);
+
+	/** Used by the selector thread only */
+	private final byte[] transferBuffer = new byte[SOCKET_BUFFER_SIZE];
+
+	private Selector selector;
+
+	private Thread selectorThread;
+
+	/**
+	 *
+	 * @param executor runs all requests to the Caldecott application
+	 */
+	public TunnelRelay(Executor executor) {
+		this(executor, executor);
+	}
+
+	/**
+	 *
+	 * @param executor runs the requests opening and closing tunnels, and
+	 * sending data
+	 * @param pollExecutor runs the requests receiving data
+	 */
+	public TunnelRelay(Executor executor, Executor pollExecutor) {
+		this.executor = executor;
+		this.pollExecutor = pollExecutor;
+	}
+
+	/**
+	 * Starts accepting and relaying connections of the given server.
+	 * @param server
+	 * @throws IOException if the selector cannot be opened
+	 */
+	public void register(final TunnelRelayServer server) throws IOException {
+		invokeLater(new Runnable() {
+			public void run() {
+				try {
+					server.getChannel().register(selector, SelectionKey.OP_ACCEPT, server);
+				}
+				catch (ClosedChannelException e) {
+					// Stopped before being registered
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stops the selector thread. Open connections are closed. The relay
+	 * starts again when a server is registered.
+	 */
+	public synchronized void shutdown() {
+		if (selectorThread != null) {
+			selectorThread.interrupt();
+			selector.wakeup();
+			selectorThread = null;
+			selector = null;
+		}
+	}
+
+	protected synchronized void invokeLater(Runnable task) throws IOException {
+		if (selectorThread == null) {
+			selector = Selector.open();
+			selectorThread = new Thread(new SelectorLoop(selector), "Caldecott tunnel relay");
+			selectorThread.setDaemon(true);
+			selectorThread.start();
+		}
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 * Runs the given task on the selector thread, if the relay is still
+	 * running.
+	 */
+	protected void invokeLaterIfRunning(Runnable task) {
+		synchronized (this) {
+			if (selectorThread == null) {
+				return;
+			}
+		}
+		try {
+			invokeLater(task);
+		}
+		catch (IOException e) {
+			// Not reached, as the selector is open
+		}
+	}
+
+	protected void execute(Connection connection, Runnable request) {
+		execute(executor, connection, request);
+	}
+
+	protected void executePoll(Connection connection, Runnable request) {
+		execute(pollExecutor, connection, request);
+	}
+
+	private void execute(Executor executor, Connection connection, Runnable request) {
+		try {
+			executor.execute(request);
+		}
+		catch (RejectedExecutionException e) {
+			CloudFoundryPlugin.logError("Unable to relay tunnel connection: " + e.getMessage());
+			connection.close();
+		}
+	}
+
+	protected class SelectorLoop implements Runnable {
+
+		private final Selector selector;
+
+		SelectorLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		public void run() {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					selector.select();
+					runTasks();
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						handle(key);
+					}
+				}
+			}
+			catch (IOException e) {
+				CloudFoundryPlugin.logError("Tunnel relay failed", e);
+			}
+			finally {
+				closeAll();
+			}
+		}
+
+		protected void runTasks() {
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				try {
+					task.run();
+				}
+				catch (RuntimeException e) {
+					CloudFoundryPlugin.logError("Tunnel relay failed", e);
+				}
+			}
+		}
+
+		protected void handle(SelectionKey key) {
+			Object attachment = key.attachment();
+			try {
+				if (attachment instanceof TunnelRelayServer) {
+					if (key.isAcceptable()) {
+						accept((TunnelRelayServer) attachment);
+					}
+				}
+				else if (attachment instanceof Connection) {
+					Connection connection = (Connection) attachment;
+					if (key.isReadable()) {
+						connection.readFromSocket();
+					}
+					if (key.isValid() && key.isWritable()) {
+						connection.writeToSocket();
+					}
+				}
+			}
+			catch (CancelledKeyException e) {
+				// Closed while being handled
+			}
+			catch (IOException e) {
+				if (attachment instanceof Connection) {
+					CloudFoundryPlugin.trace("Closing tunnel connection: " + e.getMessage());
+					((Connection) attachment).close();
+				}
+			}
+		}
+
+		protected void accept(TunnelRelayServer server) throws IOException {
+			SocketChannel channel;
+			while ((channel = server.getChannel().accept()) != null) {
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				Connection connection = new Connection(server, channel);
+				if (server.addConnection(connection)) {
+					server.getMetrics().connectionOpened();
+					connection.open(channel.register(selector, SelectionKey.OP_READ, connection));
+				}
+				else {
+					channel.close();
+				}
+			}
+		}
+
+		protected void closeAll() {
+			for (SelectionKey key : selector.keys()) {
+				Object attachment = key.attachment();
+				if (attachment instanceof Connection) {
+					((Connection) attachment).close();
+				}
+			}
+			try {
+				selector.close();
+			}
+			catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	/**
+	 * A local connection relayed through its own Caldecott tunnel. Apart from
+	 * {@link #close()}, methods are called on the selector thread only.
+	 */
+	protected class Connection {
+
+		private final TunnelRelayServer server;
+
+		private final SocketChannel channel;
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private SelectionKey key;
+
+		/** Set once the tunnel is opened */
+		private volatile Tunnel tunnel;
+
+		/** Data read from the socket, to send through the tunnel */
+		private final ByteArrayOutputStream outbound = new ByteArrayOutputStream();
+
+		/** Data received from the tunnel, to write to the socket */
+		private final LinkedList<ByteBuffer> inbound = new LinkedList<ByteBuffer>();
+
+		private int inboundSize;
+
+		private boolean sending;
+
+		private boolean receiving;
+
+		private boolean socketEnded;
+
+		private boolean tunnelEnded;
+
+		Connection(TunnelRelayServer server, SocketChannel channel) {
+			this.server = server;
+			this.channel = channel;
+		}
+
+		/**
+		 * Opens the tunnel of this connection. Data is read from the socket
+		 * while the tunnel is opened, and sent once it is open.
+		 */
+		void open(SelectionKey key) {
+			this.key = key;
+			execute(this, new Runnable() {
+				public void run() {
+					try {
+						tunnel = server.getTunnelFactory().createTunnel();
+					}
+					catch (RuntimeException e) {
+						server.getMetrics().failed();
+						CloudFoundryPlugin.logError("Failed to open tunnel for connection to " + server, e);
+						close();
+						return;
+					}
+					if (closed.get()) {
+						closeTunnel();
+						return;
+					}
+					invokeLaterIfRunning(new Runnable() {
+						public void run() {
+							send();
+							receive();
+						}
+					});
+				}
+			});
+		}
+
+		void readFromSocket() throws IOException {
+			socketBuffer.clear();
+			int read = channel.read(socketBuffer);
+			if (read < 0) {
+				socketEnded = true;
+				setInterest(SelectionKey.OP_READ, false);
+			}
+			else if (read > 0) {
+				socketBuffer.flip();
+				socketBuffer.get(transferBuffer, 0, read);
+				outbound.write(transferBuffer, 0, read);
+				if (outbound.size() >= MAX_PENDING_SIZE) {
+					setInterest(SelectionKey.OP_READ, false);
+				}
+			}
+			send();
+		}
+
+		void writeToSocket() throws IOException {
+			if (!inbound.isEmpty()) {
+				long written = channel.write(inbound.toArray(new ByteBuffer[inbound.size()]));
+				inboundSize -= written;
+				while (!inbound.isEmpty() && !inbound.getFirst().hasRemaining()) {
+					inbound.removeFirst();
+				}
+			}
+			if (inbound.isEmpty()) {
+				setInterest(SelectionKey.OP_WRITE, false);
+				if (tunnelEnded) {
+					close();
+					return;
+				}
+			}
+			receive();
+		}
+
+		/**
+		 * Sends the data read from the socket through the tunnel, unless data
+		 * is being sent already.
+		 */
+		void send() {
+			if (closed.get() || tunnel == null || sending) {
+				return;
+			}
+			if (outbound.size() == 0) {
+				if (socketEnded) {
+					close();
+				}
+				return;
+			}
+
+			byte[] data = outbound.toByteArray();
+			outbound.reset();
+			if (data.length > MAX_BATCH_SIZE) {
+				outbound.write(data, MAX_BATCH_SIZE, data.length - MAX_BATCH_SIZE);
+				byte[] batch = new byte[MAX_BATCH_SIZE];
+				System.arraycopy(data, 0, batch, 0, MAX_BATCH_SIZE);
+				data = batch;
+			}
+			if (!socketEnded && outbound.size() < MAX_PENDING_SIZE) {
+				setInterest(SelectionKey.OP_READ, true);
+			}
+
+			sending = true;
+			write(data);
+		}
+
+		/**
+		 * Sends a batch through the tunnel. The batch is sent again, in a new
+		 * task, if the request times out.
+		 */
+		protected void write(final byte[] batch) {
+			execute(this, new Runnable() {
+				public void run() {
+					if (closed.get()) {
+						return;
+					}
+					long start = System.nanoTime();
+					try {
+						tunnel.write(batch);
+					}
+					catch (RuntimeException e) {
+						if (isSocketTimeout(e) && !closed.get()) {
+							CloudFoundryPlugin.trace("Retrying tunnel write after timeout: " + e.getMessage());
+							write(batch);
+						}
+						else {
+							failed("Failed to send through tunnel", e);
+						}
+						return;
+					}
+					server.getMetrics().sent(batch.length, System.nanoTime() - start);
+					invokeLaterIfRunning(new Runnable() {
+						public void run() {
+							sending = false;
+							send();
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * Receives data from the tunnel, unless data is being received
+		 * already, or too much received data is waiting to be written to the
+		 * socket.
+		 */
+		void receive() {
+			if (closed.get() || tunnel == null || receiving || tunnelEnded || inboundSize >= MAX_PENDING_SIZE) {
+				return;
+			}
+			receiving = true;
+			poll(false);
+		}
+
+		/**
+		 * Sends a single request receiving data from the tunnel. The
+		 * Caldecott application holds the request until data is available, so
+		 * a request that times out is sent again, in a new task.
+		 * @param retry whether the previous request timed out
+		 */
+		protected void poll(final boolean retry) {
+			executePoll(this, new Runnable() {
+				public void run() {
+					if (closed.get()) {
+						return;
+					}
+					server.getMetrics().polled();
+					byte[] data;
+					try {
+						data = tunnel.read(retry);
+					}
+					catch (HttpStatusCodeException e) {
+						int status = e.getStatusCode().value();
+						if (status == 502 || status == 504) {
+							retryPoll();
+							return;
+						}
+						if (status != 404 && status != 410) {
+							failed("Failed to receive from tunnel", e);
+							return;
+						}
+						// The tunnel was closed by the Caldecott application
+						data = null;
+					}
+					catch (RuntimeException e) {
+						if (isSocketTimeout(e)) {
+							retryPoll();
+						}
+						else {
+							failed("Failed to receive from tunnel", e);
+						}
+						return;
+					}
+					final byte[] received = data;
+					invokeLaterIfRunning(new Runnable() {
+						public void run() {
+							received(received);
+						}
+					});
+				}
+			});
+		}
+
+		private void retryPoll() {
+			if (!closed.get()) {
+				server.getMetrics().pollRetried();
+				poll(true);
+			}
+		}
+
+		/**
+		 *
+		 * @param data null if the tunnel was closed by the Caldecott
+		 * application
+		 */
+		void received(byte[] data) {
+			receiving = false;
+			if (closed.get()) {
+				return;
+			}
+			if (data == null) {
+				tunnelEnded = true;
+				if (inbound.isEmpty()) {
+					close();
+				}
+				return;
+			}
+			if (data.length > 0) {
+				server.getMetrics().received(data.length);
+				inbound.add(ByteBuffer.wrap(data));
+				inboundSize += data.length;
+				setInterest(SelectionKey.OP_WRITE, true);
+			}
+			// Receives the next data while this data is written
+			receive();
+		}
+
+		protected void setInterest(int operation, boolean enabled) {
+			if (key != null && key.isValid()) {
+				int ops = key.interestOps();
+				key.interestOps(enabled ? ops | operation : ops & ~operation);
+			}
+		}
+
+		/**
+		 * Closes the socket and the tunnel of this connection. May be called
+		 * from any thread.
+		 */
+		public void close() {
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+			server.getMetrics().connectionClosed();
+			server.removeConnection(this);
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				// Ignore
+			}
+			if (tunnel != null) {
+				try {
+					executor.execute(new Runnable() {
+						public void run() {
+							closeTunnel();
+						}
+					});
+				}
+				catch (RejectedExecutionException e) {
+					// Shutting down. The Caldecott application closes idle
+					// tunnels.
+				}
+			}
+		}
+
+		protected void failed(String message, RuntimeException e) {
+			if (!closed.get()) {
+				server.getMetrics().failed();
+				CloudFoundryPlugin.trace(message + ": " + e.getMessage());
+			}
+			close();
+		}
+
+		protected void closeTunnel() {
+			try {
+				tunnel.close();
+			}
+			catch (RuntimeException e) {
+				CloudFoundryPlugin.trace("Failed to close tunnel: " + e.getMessage());
+			}
+		}
+	}
+
+	protected static boolean isSocketTimeout(RuntimeException e) {
+		return e instanceof ResourceAccessException && e.getCause() instanceof SocketTimeoutException;
+	}
+
+}
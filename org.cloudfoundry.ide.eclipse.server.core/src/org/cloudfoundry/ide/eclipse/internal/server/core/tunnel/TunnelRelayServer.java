@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.tunnel;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.cloudfoundry.caldecott.TunnelException;
+import org.cloudfoundry.caldecott.client.TunnelFactory;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelRelay.Connection;
+
+/**
+ * Listens on a local port for connections of database tools, and relays each
+ * connection through a Caldecott tunnel created by the tunnel factory. The
+ * connections are relayed by a {@link TunnelRelay} that is shared by all
+ * tunnel servers.
+ */
+public class TunnelRelayServer {
+
+	private final InetSocketAddress local;
+
+	private final TunnelFactory tunnelFactory;
+
+	private final TunnelRelay relay;
+
+	private final ServerSocketChannel serverChannel;
+
+	private final Set<Connection> connections = new HashSet<Connection>();
+
+	private final TunnelMetrics metrics = new TunnelMetrics();
+
+	private boolean stopped;
+
+	/**
+	 * Binds the local address. Connections are accepted once the server is
+	 * started.
+	 * @param local
+	 * @param tunnelFactory
+	 * @param relay
+	 * @throws TunnelException if the local address cannot be bound, for
+	 * example if it is in use
+	 */
+	public TunnelRelayServer(InetSocketAddress local, TunnelFactory tunnelFactory, TunnelRelay relay)
+			throws TunnelException {
+		this.local = local;
+		this.tunnelFactory = tunnelFactory;
+		this.relay = relay;
+		ServerSocketChannel channel = null;
+		try {
+			channel = ServerSocketChannel.open();
+			// SO_REUSEADDR is left to the platform default. On Windows it
+			// would allow binding a port another process listens on.
+			channel.socket().bind(local);
+			channel.configureBlocking(false);
+		}
+		catch (IOException e) {
+			close(channel);
+			throw new TunnelException("Unable to bind to " + local, e);
+		}
+		this.serverChannel = channel;
+	}
+
+	public void start() throws TunnelException {
+		try {
+			relay.register(this);
+		}
+		catch (IOException e) {
+			throw new TunnelException("Unable to start tunnel server on " + local, e);
+		}
+	}
+
+	/**
+	 * Stops accepting connections, and closes the open connections.
+	 */
+	public void stop() {
+		List<Connection> open;
+		synchronized (this) {
+			stopped = true;
+			open = new ArrayList<Connection>(connections);
+			connections.clear();
+		}
+		close(serverChannel);
+		for (Connection connection : open) {
+			connection.close();
+		}
+	}
+
+	public InetSocketAddress getLocalAddress() {
+		return local;
+	}
+
+	/**
+	 *
+	 * @return port the server listens on
+	 */
+	public int getLocalPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 *
+	 * @return traffic statistics of the connections relayed by this server
+	 */
+	public TunnelMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 *
+	 * @return number of connections currently relayed
+	 */
+	public synchronized int getConnectionCount() {
+		return connections.size();
+	}
+
+	ServerSocketChannel getChannel() {
+		return serverChannel;
+	}
+
+	TunnelFactory getTunnelFactory() {
+		return tunnelFactory;
+	}
+
+	/**
+	 *
+	 * @param connection
+	 * @return false if the server is stopped, and the connection must be
+	 * closed
+	 */
+	synchronized boolean addConnection(Connection connection) {
+		if (stopped) {
+			return false;
+		}
+		connections.add(connection);
+		return true;
+	}
+
+	synchronized void removeConnection(Connection connection) {
+		connections.remove(connection);
+	}
+
+	private static void close(ServerSocketChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Tunnel server on " + local;
+	}
+
+}
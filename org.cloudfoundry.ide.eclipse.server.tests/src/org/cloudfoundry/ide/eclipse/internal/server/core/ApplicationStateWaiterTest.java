@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationStateWaiter.ApplicationStarted;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+public class ApplicationStateWaiterTest extends TestCase {
+
+	private final AtomicInteger getApplicationCount = new AtomicInteger();
+
+	/** Number of status requests after which the application is started */
+	private volatile int startAfter;
+
+	private volatile String instanceState = "RUNNING";
+
+	private volatile CountDownLatch blockGetApplication;
+
+	private CloudFoundryOperations client;
+
+	private ApplicationStateWaiter waiter;
+
+	@Override
+	protected void setUp() throws Exception {
+		InvocationHandler handler = new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("getApplication")) {
+					int count = getApplicationCount.incrementAndGet();
+					if (blockGetApplication != null) {
+						blockGetApplication.await(5, TimeUnit.SECONDS);
+					}
+					CloudApplication application = new CloudApplication((String) args[0], null, null, 0, 1, null,
+							null, count > startAfter ? AppState.STARTED : AppState.STOPPED);
+					application.setRunningInstances(0);
+					return application;
+				}
+				if (method.getName().equals("getApplicationInstances")) {
+					Map<String, Object> instance = new HashMap<String, Object>();
+					instance.put("since", 0L);
+					instance.put("index", 0);
+					instance.put("state", instanceState);
+					List<Map<String, Object>> instances = new ArrayList<Map<String, Object>>();
+					instances.add(instance);
+					return new InstancesInfo(instances);
+				}
+				return null;
+			}
+		};
+		client = (CloudFoundryOperations) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { CloudFoundryOperations.class }, handler);
+		waiter = new ApplicationStateWaiter();
+	}
+
+	public void testWaitUntilStarted() throws Exception {
+		startAfter = 2;
+		CloudApplication application = waiter.waitFor(client, "app", new ApplicationStarted(), 10000,
+				new NullProgressMonitor());
+		assertNotNull(application);
+		assertEquals(3, getApplicationCount.get());
+	}
+
+	public void testTimeout() throws Exception {
+		startAfter = Integer.MAX_VALUE;
+		assertNull(waiter.waitFor(client, "app", new ApplicationStarted(), 700, new NullProgressMonitor()));
+	}
+
+	public void testCrashEndsWait() throws Exception {
+		instanceState = "CRASHED";
+		try {
+			waiter.waitFor(client, "app", new ApplicationStarted() {
+				@Override
+				public boolean isSatisfied(CloudApplication application) {
+					return AppState.STARTED.equals(application.getState()) && application.getRunningInstances() > 0;
+				}
+			}, 10000, new NullProgressMonitor());
+			fail("Expected CoreException");
+		}
+		catch (CoreException e) {
+			// expected
+		}
+		assertEquals(1, getApplicationCount.get());
+	}
+
+	public void testCancel() throws Exception {
+		startAfter = Integer.MAX_VALUE;
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		new Thread() {
+			@Override
+			public void run() {
+				ExponentialBackoff.sleep(300, null);
+				monitor.setCanceled(true);
+			}
+		}.start();
+		long start = System.currentTimeMillis();
+		try {
+			waiter.waitFor(client, "app", new ApplicationStarted(), 60000, monitor);
+			fail("Expected OperationCanceledException");
+		}
+		catch (OperationCanceledException e) {
+			// expected
+		}
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	public void testConcurrentWaitersShareRequest() throws Exception {
+		startAfter = 0;
+		blockGetApplication = new CountDownLatch(1);
+		final int waiters = 4;
+		final CountDownLatch done = new CountDownLatch(waiters);
+		for (int i = 0; i < waiters; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						waiter.waitFor(client, "app", new ApplicationStarted(), 10000, new NullProgressMonitor());
+					}
+					catch (CoreException e) {
+						// Fails the count below
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		Thread.sleep(200);
+		blockGetApplication.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, getApplicationCount.get());
+	}
+
+}
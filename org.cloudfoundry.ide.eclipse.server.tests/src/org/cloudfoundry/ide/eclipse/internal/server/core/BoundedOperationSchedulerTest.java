@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+public class BoundedOperationSchedulerTest extends TestCase {
+
+	private static final int PARALLELISM = 2;
+
+	private final BoundedOperationScheduler<String> scheduler = new BoundedOperationScheduler<String>("Test",
+			PARALLELISM) {
+		@Override
+		protected String getName(String element) {
+			return element;
+		}
+	};
+
+	public void testStatusPerElement() throws Exception {
+		final AtomicInteger concurrent = new AtomicInteger();
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+		MultiStatus status = scheduler.run(Arrays.asList("a", "b", "fail", "c", "d"),
+				new BoundedOperationScheduler.Operation<String>() {
+					public void run(String element, IProgressMonitor monitor) throws CoreException {
+						int running = concurrent.incrementAndGet();
+						synchronized (maxConcurrent) {
+							maxConcurrent.set(Math.max(maxConcurrent.get(), running));
+						}
+						try {
+							Thread.sleep(20);
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						finally {
+							concurrent.decrementAndGet();
+						}
+						if ("fail".equals(element)) {
+							throw new CoreException(CloudFoundryPlugin.getErrorStatus("failed"));
+						}
+					}
+				}, new NullProgressMonitor());
+
+		assertEquals(5, status.getChildren().length);
+		assertEquals(IStatus.ERROR, status.getSeverity());
+		int failures = 0;
+		for (IStatus child : status.getChildren()) {
+			if (!child.isOK()) {
+				failures++;
+			}
+		}
+		assertEquals(1, failures);
+		assertTrue(maxConcurrent.get() <= PARALLELISM);
+	}
+
+	public void testCancelledWhileOperationsComplete() throws Exception {
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		final AtomicInteger started = new AtomicInteger();
+		List<String> elements = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			elements.add("element" + i);
+		}
+
+		try {
+			// Operations complete well within the cancellation check interval
+			scheduler.run(elements, new BoundedOperationScheduler.Operation<String>() {
+				public void run(String element, IProgressMonitor operationMonitor) throws CoreException {
+					if (started.incrementAndGet() == 1) {
+						monitor.setCanceled(true);
+					}
+				}
+			}, monitor);
+			fail("Expected cancellation");
+		}
+		catch (OperationCanceledException e) {
+			// expected
+		}
+
+		// Only operations that had started when the monitor was cancelled run
+		Thread.sleep(2 * RequestCoalescer.CANCELLATION_CHECK_INTERVAL);
+		assertTrue(started.get() <= PARALLELISM);
+	}
+
+	public void testQueuedOperationsNotRunAfterCancel() throws Exception {
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		final CountDownLatch running = new CountDownLatch(PARALLELISM);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger completed = new AtomicInteger();
+
+		Thread canceller = new Thread() {
+			@Override
+			public void run() {
+				try {
+					running.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					// cancel anyway
+				}
+				monitor.setCanceled(true);
+			}
+		};
+		canceller.start();
+
+		try {
+			scheduler.run(Arrays.asList("a", "b", "c", "d", "e"), new BoundedOperationScheduler.Operation<String>() {
+				public void run(String element, IProgressMonitor operationMonitor) throws CoreException {
+					started.incrementAndGet();
+					running.countDown();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					completed.incrementAndGet();
+				}
+			}, monitor);
+			fail("Expected cancellation");
+		}
+		catch (OperationCanceledException e) {
+			// expected
+		}
+
+		// Running operations complete, queued ones are discarded
+		release.countDown();
+		Thread.sleep(2 * RequestCoalescer.CANCELLATION_CHECK_INTERVAL);
+		assertEquals(PARALLELISM, started.get());
+		assertEquals(PARALLELISM, completed.get());
+	}
+
+	public void testSequentialCancel() throws Exception {
+		BoundedOperationScheduler<String> sequential = new BoundedOperationScheduler<String>("Test", 1) {
+			@Override
+			protected String getName(String element) {
+				return element;
+			}
+		};
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		final AtomicInteger started = new AtomicInteger();
+		try {
+			sequential.run(Arrays.asList("a", "b", "c"), new BoundedOperationScheduler.Operation<String>() {
+				public void run(String element, IProgressMonitor operationMonitor) throws CoreException {
+					started.incrementAndGet();
+					monitor.setCanceled(true);
+				}
+			}, monitor);
+			fail("Expected cancellation");
+		}
+		catch (OperationCanceledException e) {
+			// expected
+		}
+		assertEquals(1, started.get());
+	}
+
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.client.lib.domain.CloudService;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+public class CachingCloudFoundryOperationsTest extends TestCase {
+
+	private final AtomicInteger getApplicationsCount = new AtomicInteger();
+
+	private final AtomicInteger proxyUpdateCount = new AtomicInteger();
+
+	private volatile CountDownLatch blockGetApplications;
+
+	private volatile RuntimeException getApplicationsFailure;
+
+	private CachingCloudFoundryOperations operations;
+
+	@Override
+	protected void setUp() throws Exception {
+		InvocationHandler handler = new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("getApplications")) {
+					getApplicationsCount.incrementAndGet();
+					if (blockGetApplications != null) {
+						blockGetApplications.await(5, TimeUnit.SECONDS);
+					}
+					if (getApplicationsFailure != null) {
+						throw getApplicationsFailure;
+					}
+					return new ArrayList<CloudApplication>();
+				}
+				if (method.getName().equals("getApplication")) {
+					CloudApplication application = new CloudApplication((String) args[0], null, "spring", 512, 1,
+							new ArrayList<String>(Arrays.asList("app.cloudfoundry.com")), new ArrayList<String>(
+									Arrays.asList("mysql")), AppState.STARTED);
+					application.setEnv(Arrays.asList("key=value"));
+					return application;
+				}
+				if (method.getName().equals("updateHttpProxyConfiguration")) {
+					proxyUpdateCount.incrementAndGet();
+				}
+				return null;
+			}
+		};
+		CloudFoundryOperations delegate = (CloudFoundryOperations) Proxy.newProxyInstance(getClass()
+				.getClassLoader(), new Class<?>[] { CloudFoundryOperations.class }, handler);
+		operations = new CachingCloudFoundryOperations(delegate);
+	}
+
+	public void testReadIsCached() {
+		List<CloudApplication> applications = operations.getApplications();
+		applications.add(new CloudApplication("modified", null, null, 0, 0, null, null, null));
+		assertTrue(operations.getApplications().isEmpty());
+		assertEquals(1, getApplicationsCount.get());
+	}
+
+	public void testCachedApplicationIsCopied() {
+		CloudApplication application = operations.getApplication("app");
+		application.setUris(Arrays.asList("changed.cloudfoundry.com"));
+		application.getServices().add("redis");
+		application.setMemory(1024);
+
+		CloudApplication cached = operations.getApplication("app");
+		assertNotSame(application, cached);
+		assertEquals(Arrays.asList("app.cloudfoundry.com"), cached.getUris());
+		assertEquals(Arrays.asList("mysql"), cached.getServices());
+		assertEquals(512, cached.getMemory());
+		assertEquals(1, cached.getInstances());
+		assertEquals(AppState.STARTED, cached.getState());
+		assertEquals("spring", cached.getStaging().getFramework());
+		assertEquals(Arrays.asList("key=value"), cached.getEnv());
+	}
+
+	public void testWriteInvalidates() {
+		operations.getApplications();
+		operations.stopApplication("app");
+		operations.getApplications();
+		assertEquals(2, getApplicationsCount.get());
+
+		// Unrelated writes do not invalidate applications
+		operations.createService(new CloudService());
+		operations.getApplications();
+		assertEquals(2, getApplicationsCount.get());
+	}
+
+	public void testProxyUpdateKeepsCache() {
+		operations.getApplications();
+		operations.updateHttpProxyConfiguration(null);
+		operations.updateHttpProxyConfiguration(null);
+		operations.getApplications();
+		assertEquals(1, getApplicationsCount.get());
+	}
+
+	public void testUnchangedProxyNotPassedOn() {
+		operations.updateHttpProxyConfiguration(null);
+		operations.updateHttpProxyConfiguration(null);
+		assertEquals(1, proxyUpdateCount.get());
+
+		operations.updateHttpProxyConfiguration(new HttpProxyConfiguration("proxy", 8080));
+		operations.updateHttpProxyConfiguration(new HttpProxyConfiguration("proxy", 8080));
+		assertEquals(2, proxyUpdateCount.get());
+
+		operations.updateHttpProxyConfiguration(new HttpProxyConfiguration("proxy", 8081));
+		operations.updateHttpProxyConfiguration(null);
+		assertEquals(4, proxyUpdateCount.get());
+	}
+
+	public void testFailureIsNotCached() {
+		getApplicationsFailure = new IllegalStateException("failed");
+		try {
+			operations.getApplications();
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		getApplicationsFailure = null;
+		assertNotNull(operations.getApplications());
+		assertEquals(2, getApplicationsCount.get());
+	}
+
+	public void testConcurrentReadsShareRequest() throws Exception {
+		blockGetApplications = new CountDownLatch(1);
+		final int readers = 4;
+		final CountDownLatch done = new CountDownLatch(readers);
+		for (int i = 0; i < readers; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					operations.getApplications();
+					done.countDown();
+				}
+			}.start();
+		}
+		Thread.sleep(200);
+		blockGetApplications.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, getApplicationsCount.get());
+	}
+
+	public void testWaitCancelledByMonitor() throws Exception {
+		blockGetApplications = new CountDownLatch(1);
+		new Thread() {
+			@Override
+			public void run() {
+				operations.getApplications();
+			}
+		}.start();
+		Thread.sleep(200);
+
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		assertNull(operations.setMonitor(monitor));
+		try {
+			operations.getApplications();
+			fail("Expected cancellation");
+		}
+		catch (OperationCanceledException e) {
+			// expected
+		}
+		finally {
+			assertSame(monitor, operations.setMonitor(null));
+			blockGetApplications.countDown();
+		}
+		assertEquals(1, getApplicationsCount.get());
+	}
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelRuntime;
+
+public class CaldecottTunnelRuntimeTest extends TestCase {
+
+	private static final int MAX_THREADS = 2;
+
+	private static final long KEEP_ALIVE = 50;
+
+	private final ThreadPoolExecutor executor = TestRuntime.create(MAX_THREADS, KEEP_ALIVE, "test ");
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdownNow();
+	}
+
+	public void testRequestsQueuedWhenAllThreadsBusy() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch completed = new CountDownLatch(5);
+		for (int i = 0; i < 5; i++) {
+			execute(release, completed, i < MAX_THREADS);
+		}
+
+		// Threads are added up to the maximum, further requests wait
+		assertEquals(MAX_THREADS, executor.getPoolSize());
+		assertEquals(3, executor.getQueue().size());
+
+		release.countDown();
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testIdleThreadsTerminate() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch completed = new CountDownLatch(MAX_THREADS);
+		for (int i = 0; i < MAX_THREADS; i++) {
+			execute(release, completed, true);
+		}
+		assertEquals(MAX_THREADS, executor.getPoolSize());
+		release.countDown();
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+
+		// Only the core thread is kept
+		Thread.sleep(10 * KEEP_ALIVE);
+		assertEquals(1, executor.getPoolSize());
+	}
+
+	public void testIdleThreadReused() throws Exception {
+		final CountDownLatch completed = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					completed.countDown();
+				}
+			});
+			Thread.sleep(KEEP_ALIVE / 5);
+		}
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.getPoolSize());
+	}
+
+	public void testRejectedAfterShutdown() throws Exception {
+		executor.shutdown();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					// not run
+				}
+			});
+			fail("Expected rejection");
+		}
+		catch (RejectedExecutionException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Runs a request that blocks until released, optionally waiting until it
+	 * is running
+	 */
+	private void execute(final CountDownLatch release, final CountDownLatch completed, boolean awaitStart)
+			throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				completed.countDown();
+			}
+		});
+		if (awaitStart) {
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+		}
+	}
+
+	private static class TestRuntime extends CaldecottTunnelRuntime {
+
+		static ThreadPoolExecutor create(int maxThreads, long keepAlive, String threadName) {
+			return CaldecottTunnelRuntime.createExecutor(maxThreads, keepAlive, threadName);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFile.ContentReader;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFile.ContentWriter;
+
+public class ChecksummedIndexFileTest extends TestCase {
+
+	private File folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("checksummedIndex", "");
+		folder.delete();
+		folder.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ContentFingerprintStoreTest.delete(folder);
+	}
+
+	public void testWriteReplacesIndex() throws Exception {
+		ChecksummedIndexFile index = new ChecksummedIndexFile(new File(folder, "test.idx"), 1, 1, "test index");
+		assertTrue(index.write(writer("first")));
+		assertTrue(index.write(writer("second")));
+
+		List<String> read = new ArrayList<String>();
+		assertTrue(index.read(reader(read)));
+		assertEquals(1, read.size());
+		assertEquals("second", read.get(0));
+
+		// No temporary file is left behind
+		assertEquals(1, folder.list().length);
+	}
+
+	public void testOtherVersionDiscarded() throws Exception {
+		File file = new File(folder, "test.idx");
+		assertTrue(new ChecksummedIndexFile(file, 1, 1, "test index").write(writer("content")));
+
+		assertFalse(new ChecksummedIndexFile(file, 1, 2, "test index").read(reader(new ArrayList<String>())));
+		assertFalse(file.exists());
+		assertFalse(new ChecksummedIndexFile(file, 1, 1, "test index").read(reader(new ArrayList<String>())));
+	}
+
+	private static ContentWriter writer(final String value) {
+		return new ContentWriter() {
+			public void write(DataOutputStream out) throws IOException {
+				out.writeUTF(value);
+			}
+		};
+	}
+
+	private static ContentReader reader(final List<String> values) {
+		return new ContentReader() {
+			public void read(DataInputStream in) throws IOException {
+				values.add(in.readUTF());
+			}
+		};
+	}
+
+}
@@ -10,7 +10,9 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -77,4 +79,31 @@ public class CloudUtilTest extends TestCase {
 		assertEquals(expected, files);
 	}
 
+	public void testCreateWarFileIsReproducible() throws Exception {
+		harness.createProject("appclient-module");
+		project = harness.createProject("dynamic-webapp-with-appclient-module");
+		harness.addModule(project);
+
+		IModule[] modules = ServerUtil.getModules(project);
+		File first = CloudUtil.createWarFile(modules, (Server) server, new NullProgressMonitor());
+		// Entry times are in seconds
+		Thread.sleep(2000);
+		File second = CloudUtil.createWarFile(modules, (Server) server, new NullProgressMonitor());
+
+		assertFalse(first.equals(second));
+		assertTrue(Arrays.equals(readBytes(first), readBytes(second)));
+	}
+
+	private static byte[] readBytes(File file) throws Exception {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			byte[] bytes = new byte[(int) file.length()];
+			in.readFully(bytes);
+			return bytes;
+		}
+		finally {
+			in.close();
+		}
+	}
+
 }
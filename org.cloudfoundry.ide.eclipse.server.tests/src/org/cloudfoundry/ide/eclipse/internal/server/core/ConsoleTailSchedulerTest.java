@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.ConsoleTailScheduler;
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.ConsoleTailScheduler.RequestRateLimiter;
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.ConsoleTailScheduler.TailedConsole;
+
+public class ConsoleTailSchedulerTest extends TestCase {
+
+	private static final long TIMEOUT = 5000;
+
+	private final AtomicInteger visibilityChecks = new AtomicInteger();
+
+	/** Number of visibility checks that report consoles as hidden */
+	private volatile int hiddenChecks;
+
+	private final ConsoleTailScheduler scheduler = new ConsoleTailScheduler(
+			new ConsoleTailScheduler.VisibilityProvider() {
+				public boolean isVisible(TailedConsole console) {
+					return visibilityChecks.incrementAndGet() > hiddenChecks;
+				}
+			});
+
+	@Override
+	protected void tearDown() throws Exception {
+		scheduler.dispose();
+	}
+
+	public void testRateLimiter() {
+		RequestRateLimiter limiter = new RequestRateLimiter(4, 0);
+		assertEquals(0, limiter.tryAcquire(2, 0));
+		assertEquals(0, limiter.tryAcquire(2, 0));
+
+		// Refilled at the sustained rate
+		assertEquals(250, limiter.tryAcquire(1, 0));
+		assertEquals(0, limiter.tryAcquire(1, 250));
+		assertEquals(500, limiter.tryAcquire(2, 250));
+
+		// The burst is bounded, and larger requests only wait for a full burst
+		assertEquals(0, limiter.tryAcquire(8, 10000));
+		assertEquals(250, limiter.tryAcquire(1, 10000));
+	}
+
+	public void testWorkersStoppedOnceIdle() throws Exception {
+		final CountDownLatch polling = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		TestConsole console = new TestConsole(2) {
+			@Override
+			public long poll() {
+				polling.countDown();
+				try {
+					release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.poll();
+			}
+		};
+		console.wake();
+		assertTrue(polling.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(1, scheduler.getScheduledCount());
+
+		release.countDown();
+		waitForIdle();
+		assertEquals(2, console.polls.get());
+
+		// Started again for the next poll
+		console.stopAfter(1);
+		console.wake();
+		waitForIdle();
+		assertEquals(3, console.polls.get());
+	}
+
+	public void testConsolesOfServerRateLimited() throws Exception {
+		long start = System.currentTimeMillis();
+		TestConsole console = new TestConsole(2);
+		console.requests = 4;
+		TestConsole otherConsole = new TestConsole(1);
+		otherConsole.requests = 4;
+		console.wake();
+		otherConsole.wake();
+		waitForIdle();
+
+		// A burst of 4 requests per second, so 2 polls wait
+		assertEquals(2, console.polls.get());
+		assertEquals(1, otherConsole.polls.get());
+		assertTrue(System.currentTimeMillis() - start >= 1500);
+	}
+
+	public void testHiddenConsoleNotPolled() throws Exception {
+		hiddenChecks = Integer.MAX_VALUE;
+		TestConsole console = new TestConsole(1);
+		console.wake();
+		waitForIdle();
+		assertEquals(0, console.polls.get());
+		assertFalse(console.isScheduled());
+	}
+
+	public void testWokenWhenVisibleWhileStopping() throws Exception {
+		// Becomes visible right after the poll decided to stop
+		hiddenChecks = 1;
+		TestConsole console = new TestConsole(1);
+		console.wake();
+		waitForIdle();
+		assertEquals(1, console.polls.get());
+	}
+
+	public void testDisposedSchedulerDoesNotPoll() throws Exception {
+		scheduler.dispose();
+		TestConsole console = new TestConsole(1);
+		console.wake();
+		assertFalse(console.isScheduled());
+		assertEquals(0, scheduler.getScheduledCount());
+		assertEquals(0, console.polls.get());
+	}
+
+	private void waitForIdle() throws InterruptedException {
+		long timeout = System.currentTimeMillis() + TIMEOUT;
+		while (scheduler.getScheduledCount() > 0) {
+			assertTrue("Polls still scheduled", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Polls a given number of times, and follows the scheduling protocol of
+	 * the Cloud Foundry console.
+	 */
+	private class TestConsole implements TailedConsole {
+
+		final AtomicInteger polls = new AtomicInteger();
+
+		volatile int requests;
+
+		private volatile int remainingPolls;
+
+		private boolean scheduled;
+
+		TestConsole(int polls) {
+			this.remainingPolls = polls;
+		}
+
+		void stopAfter(int polls) {
+			remainingPolls = polls;
+		}
+
+		synchronized boolean isScheduled() {
+			return scheduled;
+		}
+
+		public boolean isTailing() {
+			return remainingPolls > 0;
+		}
+
+		public int getDueRequestCount(long time) {
+			return requests;
+		}
+
+		public long poll() {
+			polls.incrementAndGet();
+			return --remainingPolls > 0 ? 0 : STOP;
+		}
+
+		public synchronized void unscheduled() {
+			scheduled = false;
+		}
+
+		public void wake() {
+			synchronized (this) {
+				if (!isTailing() || scheduled) {
+					return;
+				}
+				scheduled = true;
+			}
+			scheduler.schedule(this, 0);
+		}
+
+		public String getServerId() {
+			return "server";
+		}
+
+		public String getName() {
+			return "console";
+		}
+	}
+
+}
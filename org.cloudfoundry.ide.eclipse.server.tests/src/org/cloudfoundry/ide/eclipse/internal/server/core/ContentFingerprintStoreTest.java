@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.ContentFingerprintStore.Fingerprint;
+
+public class ContentFingerprintStoreTest extends TestCase {
+
+	private File folder;
+
+	private File repository;
+
+	private File indexFile;
+
+	private File repositoryIndexFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("fingerprints", "");
+		folder.delete();
+		folder.mkdirs();
+		repository = new File(folder, "repository");
+		repository.mkdirs();
+		indexFile = new File(folder, ContentFingerprintStore.INDEX_FILE_NAME);
+		repositoryIndexFile = new File(folder, ContentFingerprintStore.REPOSITORY_INDEX_FILE_NAME);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(folder);
+	}
+
+	public void testFingerprintReused() throws Exception {
+		File file = write(new File(folder, "lib.jar"), "content");
+		ContentFingerprintStore store = createStore();
+
+		Fingerprint first = store.getFingerprint(file);
+		assertEquals(file.length(), first.getSize());
+		assertTrue(Arrays.equals(ContentFingerprintStore.computeSha1(file), first.getSha1()));
+		assertSame(first, store.getFingerprint(file));
+
+		write(file, "changed content");
+		Fingerprint second = store.getFingerprint(file);
+		assertNotSame(first, second);
+		assertFalse(Arrays.equals(first.getSha1(), second.getSha1()));
+	}
+
+	public void testSaveAndLoad() throws Exception {
+		File file = write(new File(folder, "lib.jar"), "content");
+		File artifact = write(new File(repository, "artifact.jar"), "artifact");
+		ContentFingerprintStore store = createStore();
+		Fingerprint fingerprint = store.getFingerprint(file);
+		store.getFingerprint(artifact);
+		assertTrue(store.isDirty());
+
+		store.save();
+		assertFalse(store.isDirty());
+		assertTrue(indexFile.exists());
+		// Repository artifacts are kept in the shared index
+		assertTrue(repositoryIndexFile.exists());
+
+		ContentFingerprintStore loaded = createStore();
+		Fingerprint loadedFingerprint = loaded.getFingerprint(file);
+		assertTrue(Arrays.equals(fingerprint.getSha1(), loadedFingerprint.getSha1()));
+		loaded.getFingerprint(artifact);
+		assertFalse(loaded.isDirty());
+	}
+
+	public void testRepositoryArtifact() throws Exception {
+		ContentFingerprintStore store = createStore();
+		String location = repository.getCanonicalPath();
+		assertTrue(store.isRepositoryArtifact(location + File.separator + "artifact.jar"));
+		assertFalse(store.isRepositoryArtifact(location));
+		assertFalse(store.isRepositoryArtifact(location + "2" + File.separator + "artifact.jar"));
+	}
+
+	protected ContentFingerprintStore createStore() throws IOException {
+		return new ContentFingerprintStore(indexFile, repositoryIndexFile, Collections.singletonList(repository
+				.getCanonicalPath()));
+	}
+
+	protected static File write(File file, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+
+	protected static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
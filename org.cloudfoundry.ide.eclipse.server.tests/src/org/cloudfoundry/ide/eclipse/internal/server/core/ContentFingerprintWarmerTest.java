@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.ContentFingerprintStore.Fingerprint;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+public class ContentFingerprintWarmerTest extends TestCase {
+
+	private File folder;
+
+	private ContentFingerprintStore store;
+
+	private ContentFingerprintWarmer warmer;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("fingerprintWarmer", "");
+		folder.delete();
+		folder.mkdirs();
+		store = new ContentFingerprintStore(new File(folder, ContentFingerprintStore.INDEX_FILE_NAME), new File(
+				folder, ContentFingerprintStore.REPOSITORY_INDEX_FILE_NAME), Collections.<String> emptyList());
+		warmer = new ContentFingerprintWarmer(store);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		warmer.dispose();
+		ContentFingerprintStoreTest.delete(folder);
+	}
+
+	public void testWarm() throws Exception {
+		File file = ContentFingerprintStoreTest.write(new File(folder, "index.html"), "content");
+		File deleted = new File(folder, "deleted.html");
+		assertFalse(store.isDirty());
+
+		warmer.warm(Arrays.asList(file, deleted));
+		warmer.join();
+
+		// The fingerprint is obtained from the store without hashing the file
+		assertTrue(store.isDirty());
+		Fingerprint fingerprint = store.getFingerprint(file);
+		assertSame(fingerprint, store.getFingerprint(file));
+		assertTrue(Arrays.equals(ContentFingerprintStore.computeSha1(file), fingerprint.getSha1()));
+	}
+
+	public void testIsPublished() throws Exception {
+		List<IPath> published = Arrays.<IPath> asList(new Path("/app/bin"), new Path("/app/WebContent/index.html"));
+
+		assertTrue(ContentFingerprintWarmer.isPublished(new Path("/app/bin/Main.class"), published, true));
+		assertTrue(ContentFingerprintWarmer.isPublished(new Path("/app/WebContent/index.html"), published, true));
+		assertFalse(ContentFingerprintWarmer.isPublished(new Path("/app/src/Main.java"), published, true));
+		assertFalse(ContentFingerprintWarmer.isPublished(new Path("/app/WebContent/notes.txt"), published, true));
+
+		// Folders are visited if they contain published resources
+		assertTrue(ContentFingerprintWarmer.isPublished(new Path("/app"), published, false));
+		assertTrue(ContentFingerprintWarmer.isPublished(new Path("/app/WebContent"), published, false));
+		assertFalse(ContentFingerprintWarmer.isPublished(new Path("/app/src"), published, false));
+	}
+
+	public void testGetPublishedFiles() throws Exception {
+		Map<String, List<IPath>> published = new HashMap<String, List<IPath>>();
+		published.put("app", Arrays.<IPath> asList(new Path("/app/bin")));
+		File classFile = new File(folder, "Main.class");
+		Map<IPath, File> changed = new LinkedHashMap<IPath, File>();
+		changed.put(new Path("/app/bin/Main.class"), classFile);
+		changed.put(new Path("/app/src/Main.java"), new File(folder, "Main.java"));
+		changed.put(new Path("/other/bin/Main.class"), new File(folder, "Other.class"));
+
+		assertEquals(Collections.singletonList(classFile), ContentFingerprintWarmer.getPublishedFiles(changed,
+				published));
+	}
+
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.DeployedResourceCache.CachedDeployedApplication;
+import org.cloudfoundry.ide.eclipse.internal.server.core.DeployedResourceCache.DeployedResourceEntry;
+
+public class DeployedResourceCacheStoreTest extends TestCase {
+
+	private File indexFile;
+
+	private final CachedDeployedApplication app = new CachedDeployedApplication("server", "testapp");
+
+	@Override
+	protected void setUp() throws Exception {
+		indexFile = File.createTempFile("deployedResources", ".idx");
+		indexFile.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		indexFile.delete();
+	}
+
+	public void testSaveAndLoad() throws Exception {
+		DeployedResourceCache cache = new DeployedResourceCache();
+		byte[] sha1 = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20 };
+		cache.add(app, new DeployedResourceEntry(sha1, 100, 5000, "WEB-INF/web.xml"));
+		// Entries without a fingerprint are not persisted
+		cache.add(app, new DeployedResourceEntry(sha1, 100, "index.html"));
+		assertTrue(cache.isDirty());
+
+		new DeployedResourceCacheStore(indexFile).save(cache);
+		assertFalse(cache.isDirty());
+		assertTrue(indexFile.exists());
+
+		DeployedResourceCache loaded = new DeployedResourceCache();
+		new DeployedResourceCacheStore(indexFile).load(loaded);
+		assertFalse(loaded.isDirty());
+
+		DeployedResourceEntry entry = loaded.getEntry(app, "WEB-INF/web.xml");
+		assertNotNull(entry);
+		assertTrue(Arrays.equals(sha1, entry.getSha1()));
+		assertTrue(entry.matches(100, 5000));
+		assertFalse(entry.matches(100, 5001));
+		assertNull(loaded.getEntry(app, "index.html"));
+	}
+
+	public void testApplicationsOfServersSeparate() throws Exception {
+		CachedDeployedApplication otherServerApp = new CachedDeployedApplication("other", "testapp");
+		DeployedResourceCache cache = new DeployedResourceCache();
+		cache.add(app, new DeployedResourceEntry(new byte[20], 100, 5000, "WEB-INF/web.xml"));
+		assertNull(cache.getEntry(otherServerApp, "WEB-INF/web.xml"));
+
+		new DeployedResourceCacheStore(indexFile).save(cache);
+		DeployedResourceCache loaded = new DeployedResourceCache();
+		new DeployedResourceCacheStore(indexFile).load(loaded);
+		assertNotNull(loaded.getEntry(app, "WEB-INF/web.xml"));
+		assertNull(loaded.getEntry(otherServerApp, "WEB-INF/web.xml"));
+	}
+
+	public void testCorruptIndexDiscarded() throws Exception {
+		DeployedResourceCache cache = new DeployedResourceCache();
+		cache.add(app, new DeployedResourceEntry(new byte[20], 100, 5000, "WEB-INF/web.xml"));
+		new DeployedResourceCacheStore(indexFile).save(cache);
+
+		RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+		try {
+			raf.seek(20);
+			raf.write(0xFF);
+		}
+		finally {
+			raf.close();
+		}
+
+		DeployedResourceCache loaded = new DeployedResourceCache();
+		new DeployedResourceCacheStore(indexFile).load(loaded);
+		assertNull(loaded.getEntry(app, "WEB-INF/web.xml"));
+		assertFalse(indexFile.exists());
+	}
+
+	public void testCompact() throws Exception {
+		DeployedResourceCache cache = new DeployedResourceCache();
+		cache.add(app, new DeployedResourceEntry(new byte[20], 100, 5000, "WEB-INF/web.xml"));
+		assertEquals(0, cache.compact(60 * 1000));
+		assertEquals(1, cache.compact(-60 * 1000));
+		assertNull(cache.getEntry(app, "WEB-INF/web.xml"));
+	}
+
+}
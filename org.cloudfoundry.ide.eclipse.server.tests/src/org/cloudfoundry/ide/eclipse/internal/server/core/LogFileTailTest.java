@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.LogFileTail;
+
+public class LogFileTailTest extends TestCase {
+
+	/** Allowed delay between reading and checking the next poll time */
+	private static final long TOLERANCE = 1000;
+
+	private final LogFileTail tail = new LogFileTail("logs/stdout.log");
+
+	public void testOffsetAdvancesByBytes() throws Exception {
+		assertEquals(0, tail.getOffset());
+		assertEquals(LogFileTail.MAX_RANGE_SIZE - 1, tail.getRangeEnd());
+
+		// Two bytes for each accented character
+		assertEquals("d\u00e9j\u00e0 vu\n", tail.read("d\u00e9j\u00e0 vu\n".getBytes("UTF-8")));
+		assertEquals(10, tail.getOffset());
+		assertEquals(10 + LogFileTail.MAX_RANGE_SIZE - 1, tail.getRangeEnd());
+
+		assertEquals("", tail.read(null));
+		assertEquals(10, tail.getOffset());
+	}
+
+	public void testSequenceSplitAcrossRanges() throws Exception {
+		byte[] euro = "\u20ac".getBytes("UTF-8");
+		assertEquals(3, euro.length);
+
+		assertEquals("a", tail.read(new byte[] { 'a', euro[0] }));
+		assertEquals("", tail.read(new byte[] { euro[1] }));
+		assertEquals("\u20acb", tail.read(new byte[] { euro[2], 'b' }));
+		assertEquals(5, tail.getOffset());
+	}
+
+	public void testResetDiscardsPartialSequence() throws Exception {
+		byte[] euro = "\u20ac".getBytes("UTF-8");
+		tail.read(new byte[] { euro[0], euro[1] });
+
+		tail.reset();
+		assertEquals(0, tail.getOffset());
+		assertTrue(tail.isDue(System.currentTimeMillis()));
+		assertEquals("b", tail.read(new byte[] { 'b' }));
+	}
+
+	public void testIntervalBacksOffWithoutContent() throws Exception {
+		assertTrue(tail.isDue(System.currentTimeMillis()));
+
+		long expected = LogFileTail.MIN_INTERVAL;
+		for (int i = 0; i < 6; i++) {
+			expected = Math.min(expected * 2, LogFileTail.MAX_INTERVAL);
+			assertInterval(expected, null);
+		}
+		assertEquals(LogFileTail.MAX_INTERVAL, expected);
+
+		// New content resets the interval
+		assertInterval(LogFileTail.MIN_INTERVAL, new byte[] { 'a' });
+		assertInterval(2 * LogFileTail.MIN_INTERVAL, null);
+	}
+
+	public void testFullRangeDueImmediately() throws Exception {
+		tail.read(null);
+		assertFalse(tail.isDue(System.currentTimeMillis()));
+
+		tail.read(new byte[LogFileTail.MAX_RANGE_SIZE]);
+		assertTrue(tail.isDue(System.currentTimeMillis()));
+		assertEquals(LogFileTail.MAX_RANGE_SIZE, tail.getOffset());
+
+		// Back to the minimum interval once the rest is read
+		assertInterval(LogFileTail.MIN_INTERVAL, new byte[] { 'a' });
+	}
+
+	private void assertInterval(long expected, byte[] bytes) {
+		long before = System.currentTimeMillis();
+		tail.read(bytes);
+		long interval = tail.getNextPollTime() - before;
+		assertTrue("Expected " + expected + " but was " + interval, interval >= expected
+				&& interval <= expected + TOLERANCE);
+		assertFalse(tail.isDue(before + expected - 1));
+	}
+
+}
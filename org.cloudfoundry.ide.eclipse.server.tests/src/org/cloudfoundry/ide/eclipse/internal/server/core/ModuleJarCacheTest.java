@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+
+public class ModuleJarCacheTest extends TestCase {
+
+	private File directory;
+
+	private ModuleJarCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = File.createTempFile("moduleJars", "");
+		directory.delete();
+		directory.mkdirs();
+		cache = new ModuleJarCache(directory);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ContentFingerprintStoreTest.delete(directory);
+	}
+
+	public void testRemoveModule() throws Exception {
+		File jar = cache.getJar("module", "WEB-INF/lib/module.jar", new IModuleResource[0]);
+		File otherJar = cache.getJar("module2", "WEB-INF/lib/module2.jar", new IModuleResource[0]);
+		assertTrue(jar.isFile());
+		cache.release(jar);
+		cache.release(otherJar);
+
+		cache.removeModule("module");
+		assertFalse(jar.getParentFile().exists());
+		assertTrue(otherJar.isFile());
+	}
+
+	public void testJarInUseKept() throws Exception {
+		File jar = cache.getJar("module", "WEB-INF/lib/module.jar", new IModuleResource[0]);
+		File sameJar = cache.getJar("module", "WEB-INF/lib/module.jar", new IModuleResource[0]);
+		assertEquals(jar, sameJar);
+
+		// Not deleted while another publish adds it to a war
+		cache.removeModule("module");
+		cache.release(jar);
+		cache.removeModule("module");
+		assertTrue(jar.isFile());
+
+		cache.release(sameJar);
+		cache.removeModule("module");
+		assertFalse(jar.getParentFile().exists());
+	}
+
+	public void testOldJarDeletedOnceReleased() throws Exception {
+		File jar = cache.getJar("module", "WEB-INF/lib/module.jar", new IModuleResource[0]);
+		IModuleResource[] changed = new IModuleResource[] { new ModuleFile(ContentFingerprintStoreTest.write(
+				new File(directory, "Main.class"), "content"), "Main.class", new Path("")) };
+
+		// The old jar is still in use
+		File newJar = cache.getJar("module", "WEB-INF/lib/module.jar", changed);
+		assertFalse(newJar.equals(jar));
+		assertTrue(jar.isFile());
+
+		cache.release(jar);
+		cache.release(newJar);
+		changed[0] = new ModuleFile(ContentFingerprintStoreTest.write(new File(directory, "Other.class"),
+				"content"), "Other.class", new Path(""));
+		File latestJar = cache.getJar("module", "WEB-INF/lib/module.jar", changed);
+		assertFalse(jar.exists());
+		assertFalse(newJar.exists());
+		assertTrue(latestJar.isFile());
+	}
+
+	public void testPruneUnusedModules() throws Exception {
+		File jar = cache.getJar("module", "WEB-INF/lib/module.jar", new IModuleResource[0]);
+		File otherJar = cache.getJar("module2", "WEB-INF/lib/module2.jar", new IModuleResource[0]);
+		long unused = System.currentTimeMillis() - 2 * ModuleJarCache.MAX_UNUSED_AGE;
+		jar.getParentFile().setLastModified(unused);
+		otherJar.getParentFile().setLastModified(unused);
+
+		// Reusing a jar marks its module as used
+		assertEquals(otherJar, cache.getJar("module2", "WEB-INF/lib/module2.jar", new IModuleResource[0]));
+		cache.release(jar);
+		cache.release(otherJar);
+		cache.release(otherJar);
+
+		cache.prune(ModuleJarCache.MAX_UNUSED_AGE);
+		assertFalse(jar.getParentFile().exists());
+		assertTrue(otherJar.isFile());
+	}
+
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.wst.server.core.IModule;
+
+/**
+ * Runs the scheduler the way applications are deleted in a batch: each
+ * operation deletes the application and then clears the caches of its module.
+ */
+public class ModuleOperationSchedulerTest extends TestCase {
+
+	private static final int PARALLELISM = 2;
+
+	private final Set<String> deleted = Collections.synchronizedSet(new HashSet<String>());
+
+	private final Set<String> cachesCleared = Collections.synchronizedSet(new HashSet<String>());
+
+	private final ModuleOperationScheduler scheduler = new ModuleOperationScheduler("Deleting applications",
+			PARALLELISM);
+
+	public void testDeleteFailureReportedPerModule() throws Exception {
+		MultiStatus status = scheduler.run(createModules("app1", "missing", "app2"), new DeleteOperation() {
+			@Override
+			protected void deleteApplication(String name) throws CoreException {
+				if ("missing".equals(name)) {
+					throw new CoreException(CloudFoundryPlugin.getErrorStatus("Not found"));
+				}
+				super.deleteApplication(name);
+			}
+		}, new NullProgressMonitor());
+
+		assertEquals(IStatus.ERROR, status.getSeverity());
+		assertEquals(3, status.getChildren().length);
+		for (IStatus child : status.getChildren()) {
+			if (!child.isOK()) {
+				assertTrue(child.getMessage().startsWith("missing"));
+			}
+		}
+		assertEquals(2, deleted.size());
+		assertEquals(deleted, cachesCleared);
+	}
+
+	public void testCancelledDeleteLeavesQueuedApplications() throws Exception {
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		final CountDownLatch deleting = new CountDownLatch(PARALLELISM);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					deleting.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					// cancel anyway
+				}
+				monitor.setCanceled(true);
+			}
+		}.start();
+
+		try {
+			scheduler.run(createModules("app1", "app2", "app3", "app4", "app5"), new DeleteOperation() {
+				@Override
+				protected void deleteApplication(String name) throws CoreException {
+					deleting.countDown();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					super.deleteApplication(name);
+				}
+			}, monitor);
+			fail("Expected cancellation");
+		}
+		catch (OperationCanceledException e) {
+			// expected
+		}
+
+		// Deletes in progress complete, queued deletes never run
+		release.countDown();
+		Thread.sleep(2 * RequestCoalescer.CANCELLATION_CHECK_INTERVAL);
+		assertEquals(PARALLELISM, deleted.size());
+		assertEquals(deleted, cachesCleared);
+	}
+
+	private List<IModule[]> createModules(String... names) {
+		List<IModule[]> modules = new ArrayList<IModule[]>();
+		for (final String name : names) {
+			IModule module = (IModule) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { IModule.class }, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							if (method.getName().equals("getName")) {
+								return name;
+							}
+							return null;
+						}
+					});
+			modules.add(new IModule[] { module });
+		}
+		return modules;
+	}
+
+	private class DeleteOperation implements ModuleOperationScheduler.ModuleOperation {
+
+		public void run(IModule[] module, IProgressMonitor monitor) throws CoreException {
+			deleteApplication(module[0].getName());
+			cachesCleared.add(module[0].getName());
+		}
+
+		protected void deleteApplication(String name) throws CoreException {
+			deleted.add(name);
+		}
+
+	}
+
+}
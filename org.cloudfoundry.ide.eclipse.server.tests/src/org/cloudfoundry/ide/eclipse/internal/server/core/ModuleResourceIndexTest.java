@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+import org.eclipse.wst.server.core.util.ModuleFolder;
+
+public class ModuleResourceIndexTest extends TestCase {
+
+	public void testNamesAndOrder() {
+		ModuleFolder webInf = folder("WEB-INF", Path.EMPTY, file("web.xml", "WEB-INF"),
+				folder("classes", new Path("WEB-INF"), file("App.class", "WEB-INF/classes")));
+		IModuleResource[] members = new IModuleResource[] { file("index.html", ""), webInf,
+				file("lib.jar", "WEB-INF/lib") };
+		ModuleResourceIndex index = new ModuleResourceIndex(members, true);
+
+		List<String> names = new ArrayList<String>();
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < index.getEntryCount(); i++) {
+			int entry = index.getEntry(i);
+			names.add(index.getName(entry));
+			expected.add(CloudUtil.getZipRelativeName(index.getResource(entry)));
+		}
+		assertEquals(Arrays.asList("index.html", "WEB-INF/", "WEB-INF/web.xml", "WEB-INF/classes/",
+				"WEB-INF/classes/App.class", "WEB-INF/lib/lib.jar"), names);
+		assertEquals(expected, names);
+
+		// WEB-INF/lib is implied by the path of the jar, and is not an entry
+		assertEquals(-1, index.findName("WEB-INF/lib/"));
+		assertEquals(4, index.getFileNames().size());
+		assertTrue(index.getFileNames().contains("WEB-INF/classes/App.class"));
+		assertFalse(index.getFileNames().contains("WEB-INF/classes/"));
+		assertEquals(Arrays.asList("index.html", "WEB-INF/web.xml", "WEB-INF/classes/App.class",
+				"WEB-INF/lib/lib.jar"), new ArrayList<String>(index.getFileNames()));
+	}
+
+	public void testFind() {
+		ModuleResourceIndex index = new ModuleResourceIndex(new IModuleResource[] { folder("WEB-INF", Path.EMPTY,
+				file("web.xml", "WEB-INF")) }, true);
+
+		// Resources of a publish delta are distinct instances
+		int entry = index.find(file("web.xml", "WEB-INF"));
+		assertEquals("WEB-INF/web.xml", index.getName(entry));
+		assertEquals(entry, index.findName("WEB-INF/web.xml"));
+		assertEquals(-1, index.find(file("web.xml", "")));
+		assertEquals(-1, index.find(file("WEB-INF", "")));
+
+		assertFalse(index.isChanged(entry));
+		index.setChanged(entry);
+		assertTrue(index.isChanged(entry));
+	}
+
+	public void testPortableNames() {
+		IModuleResource[] members = new IModuleResource[] { file("a:b.txt", "lib") };
+		ModuleResourceIndex portable = new ModuleResourceIndex(members, true);
+		assertEquals("lib/a::b.txt", portable.getName(portable.getEntry(0)));
+		assertTrue(portable.getFileNames().contains("lib/a::b.txt"));
+
+		ModuleResourceIndex plain = new ModuleResourceIndex(members, false);
+		assertEquals("lib/a:b.txt", plain.getName(plain.getEntry(0)));
+		assertTrue(plain.getFileNames().contains("lib/a:b.txt"));
+	}
+
+	public void testFingerprint() {
+		ModuleResourceIndex index = new ModuleResourceIndex(new IModuleResource[] { file("index.html", "") }, true);
+		int entry = index.getEntry(0);
+		assertFalse(index.hasFingerprint(entry));
+		assertNull(index.getSha1(entry));
+
+		byte[] sha1 = new byte[20];
+		sha1[19] = 1;
+		index.setFingerprint(entry, sha1, 42);
+		assertTrue(index.hasFingerprint(entry));
+		assertTrue(Arrays.equals(sha1, index.getSha1(entry)));
+		assertEquals(42, index.getSize(entry));
+	}
+
+	public void testManyEntries() {
+		IModuleResource[] members = new IModuleResource[5000];
+		for (int i = 0; i < members.length; i++) {
+			members[i] = file("File" + i + ".class", "WEB-INF/classes/p" + (i % 50));
+		}
+		ModuleResourceIndex index = new ModuleResourceIndex(members, true);
+		assertEquals(members.length, index.getEntryCount());
+		for (int i = 0; i < members.length; i++) {
+			int entry = index.getEntry(i);
+			assertSame(members[i], index.getResource(entry));
+			assertEquals(entry, index.find(members[i]));
+		}
+	}
+
+	private static ModuleFile file(String name, String path) {
+		return new ModuleFile(new File(name), name, new Path(path));
+	}
+
+	private static ModuleFolder folder(String name, IPath path, IModuleResource... members) {
+		ModuleFolder folder = new ModuleFolder(null, name, path);
+		folder.setMembers(members);
+		return folder;
+	}
+
+}
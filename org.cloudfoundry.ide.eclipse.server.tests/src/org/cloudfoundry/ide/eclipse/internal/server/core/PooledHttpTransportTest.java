@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudCredentials;
+import org.cloudfoundry.client.lib.CloudFoundryClient;
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+
+/**
+ * Checks that the internals of the bundled Java client still match those
+ * replaced by the transport, so that clients do not silently fall back to
+ * opening new connections for every request.
+ */
+public class PooledHttpTransportTest extends TestCase {
+
+	private ServerSocket serverSocket;
+
+	private String info;
+
+	private CloudFoundryClientFactory factory;
+
+	private PooledHttpTransport transport;
+
+	@Override
+	protected void setUp() throws Exception {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		// Answers the info request sent when a client is created
+		Thread server = new Thread() {
+			@Override
+			public void run() {
+				while (!serverSocket.isClosed()) {
+					try {
+						respond(serverSocket.accept());
+					}
+					catch (IOException e) {
+						// Closed
+					}
+				}
+			}
+		};
+		server.setDaemon(true);
+		server.start();
+		factory = new CloudFoundryClientFactory();
+		transport = new PooledHttpTransport(5000, 5000, 2);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		serverSocket.close();
+		factory.dispose();
+		transport.shutdown();
+	}
+
+	public void testConfigureClient() throws Exception {
+		info = "{\"version\":\"2\",\"authorization_endpoint\":\"" + getUrl() + "/uaa\"}";
+		CloudFoundryOperations operations = factory.getCloudFoundryOperations(new CloudCredentials("user",
+				"password"), getUrl(), null);
+
+		assertTrue(operations instanceof CloudFoundryClient);
+		assertTrue(transport.configure(operations, null));
+	}
+
+	public void testConfigureV1Client() throws Exception {
+		info = "{\"version\":\"0.999\"}";
+		CloudFoundryOperations operations = factory.getCloudFoundryOperations(new CloudCredentials("user",
+				"password"), getUrl(), null);
+
+		assertTrue(operations instanceof CloudFoundryClient);
+		assertTrue(transport.configure(operations, null));
+	}
+
+	private URL getUrl() throws Exception {
+		return new URL("http://127.0.0.1:" + serverSocket.getLocalPort());
+	}
+
+	private void respond(Socket socket) throws IOException {
+		try {
+			socket.setSoTimeout(5000);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			String line;
+			while ((line = reader.readLine()) != null && line.length() > 0) {
+				// Skip the request headers
+			}
+			byte[] body = info.getBytes("UTF-8");
+			OutputStream out = socket.getOutputStream();
+			out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length
+					+ "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+			out.write(body);
+			out.flush();
+		}
+		finally {
+			socket.close();
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.ProcessLauncher.OutputRingBuffer;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ProcessLauncher.ProcessOutputListener;
+import org.eclipse.core.runtime.CoreException;
+
+public class ProcessLauncherTest extends TestCase {
+
+	public void testRingBufferKeepsEnd() {
+		OutputRingBuffer buffer = new OutputRingBuffer(4);
+		char[] chars = "ab\ncdef".toCharArray();
+		buffer.append(chars, 0, 3);
+		assertEquals("ab ", buffer.toString());
+		assertFalse(buffer.isTruncated());
+		buffer.append(chars, 3, 4);
+		assertTrue(buffer.isTruncated());
+		assertEquals(7, buffer.length());
+		assertEquals("...cdef", buffer.toString());
+	}
+
+	public void testDrainsBothStreams() throws Exception {
+		if (!isShellAvailable()) {
+			return;
+		}
+		final AtomicInteger outputLines = new AtomicInteger();
+		final AtomicInteger errorLines = new AtomicInteger();
+		// Fills the error pipe before writing output, which blocks the
+		// process unless both streams are read concurrently
+		TestLauncher launcher = new TestLauncher(
+				"i=0; while [ $i -lt 5000 ]; do echo error line $i >&2; echo output line $i; i=$((i+1)); done",
+				new ProcessOutputListener() {
+					public void outputReceived(String line, boolean error) {
+						(error ? errorLines : outputLines).incrementAndGet();
+					}
+				}, 30000);
+		try {
+			launcher.run();
+			fail("Expected error output to fail the launch");
+		}
+		catch (CoreException e) {
+			String message = e.getStatus().getMessage();
+			assertTrue(message, message.endsWith("error line 4999 "));
+			assertTrue(message.length() < ProcessLauncher.OUTPUT_BUFFER_SIZE + 200);
+		}
+		assertEquals(5000, outputLines.get());
+		assertEquals(5000, errorLines.get());
+	}
+
+	public void testTimeout() throws Exception {
+		if (!isShellAvailable()) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			new TestLauncher("sleep 30", null, 500).run();
+			fail("Expected timeout");
+		}
+		catch (CoreException e) {
+			assertTrue(e.getStatus().getMessage().contains("did not exit"));
+		}
+		assertTrue(System.currentTimeMillis() - start < 10000);
+	}
+
+	private static boolean isShellAvailable() {
+		return new File("/bin/sh").exists();
+	}
+
+	private static class TestLauncher extends ProcessLauncher {
+
+		private final String script;
+
+		private final ProcessOutputListener listener;
+
+		private final long timeout;
+
+		TestLauncher(String script, ProcessOutputListener listener, long timeout) {
+			this.script = script;
+			this.listener = listener;
+			this.timeout = timeout;
+		}
+
+		@Override
+		protected String getLaunchName() {
+			return "test";
+		}
+
+		@Override
+		protected List<String> getProcessArguments() throws CoreException {
+			return Arrays.asList("/bin/sh", "-c", script);
+		}
+
+		@Override
+		protected Map<String, String> getEnvironmentVariables() throws CoreException {
+			return null;
+		}
+
+		@Override
+		protected ProcessOutputListener getOutputListener() {
+			return listener;
+		}
+
+		@Override
+		protected long getTimeout() {
+			return timeout;
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.PublishProfile.Phase;
+
+public class PublishProfileStoreTest extends TestCase {
+
+	private File indexFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		indexFile = File.createTempFile("publishProfiles", ".idx");
+		indexFile.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		indexFile.delete();
+	}
+
+	public void testProfilePhases() throws Exception {
+		PublishProfile profile = new PublishProfile();
+		assertEquals(PublishProfile.NOT_MEASURED, profile.getDuration(Phase.UPLOAD));
+
+		// Stopping a phase that was not started has no effect
+		profile.stop(Phase.UPLOAD);
+		assertEquals(PublishProfile.NOT_MEASURED, profile.getDuration(Phase.UPLOAD));
+
+		profile.start(Phase.ASSEMBLY);
+		assertTrue(profile.isRunning(Phase.ASSEMBLY));
+		profile.stop(Phase.ASSEMBLY);
+		assertFalse(profile.isRunning(Phase.ASSEMBLY));
+		assertTrue(profile.getDuration(Phase.ASSEMBLY) >= 0);
+
+		profile.setDuration(Phase.ASSEMBLY, 10);
+		profile.setDuration(Phase.START, 5);
+		assertEquals(15, profile.getTotalDuration());
+	}
+
+	public void testSaveAndLoad() throws Exception {
+		PublishProfileStore store = new PublishProfileStore(indexFile);
+		assertTrue(store.getProfiles("server", "app").isEmpty());
+
+		store.add("server", "app", createProfile(1, 100));
+		store.add("server", "app", createProfile(2, 200));
+		store.add("server", "other", createProfile(3, 300));
+		assertTrue(indexFile.exists());
+
+		List<PublishProfile> profiles = new PublishProfileStore(indexFile).getProfiles("server", "app");
+		assertEquals(2, profiles.size());
+
+		// Most recent first
+		PublishProfile profile = profiles.get(0);
+		assertEquals(2, profile.getTimestamp());
+		assertEquals(200, profile.getDuration(Phase.UPLOAD));
+		assertEquals(PublishProfile.NOT_MEASURED, profile.getDuration(Phase.HASHING));
+		assertEquals(2000, profile.getMatchedBytes());
+		assertEquals(20, profile.getUnmatchedBytes());
+		assertEquals(1, profiles.get(1).getTimestamp());
+
+		assertTrue(new PublishProfileStore(indexFile).getProfiles("other", "app").isEmpty());
+	}
+
+	public void testMaxProfiles() throws Exception {
+		PublishProfileStore store = new PublishProfileStore(indexFile);
+		for (int i = 0; i < PublishProfileStore.MAX_PROFILES + 5; i++) {
+			store.add("server", "app", createProfile(i, i));
+		}
+		List<PublishProfile> profiles = new PublishProfileStore(indexFile).getProfiles("server", "app");
+		assertEquals(PublishProfileStore.MAX_PROFILES, profiles.size());
+		assertEquals(PublishProfileStore.MAX_PROFILES + 4, profiles.get(0).getTimestamp());
+		assertEquals(5, profiles.get(profiles.size() - 1).getTimestamp());
+	}
+
+	public void testRemove() throws Exception {
+		PublishProfileStore store = new PublishProfileStore(indexFile);
+		store.add("server", "app", createProfile(1, 100));
+		store.add("server", "other", createProfile(2, 200));
+		store.add("server/2", "app", createProfile(3, 300));
+		store.add("deleted", "app", createProfile(4, 400));
+
+		store.remove("server", "app");
+		assertTrue(new PublishProfileStore(indexFile).getProfiles("server", "app").isEmpty());
+		assertEquals(1, store.getProfiles("server", "other").size());
+
+		store.retainServers(Collections.singletonList("server"));
+		assertTrue(new PublishProfileStore(indexFile).getProfiles("deleted", "app").isEmpty());
+		assertTrue(store.getProfiles("server/2", "app").isEmpty());
+		assertEquals(1, store.getProfiles("server", "other").size());
+
+		store.removeServer("server");
+		assertTrue(new PublishProfileStore(indexFile).getProfiles("server", "other").isEmpty());
+	}
+
+	public void testCorruptFileDiscarded() throws Exception {
+		new PublishProfileStore(indexFile).add("server", "app", createProfile(1, 100));
+
+		RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+		try {
+			file.seek(file.length() - 1);
+			int last = file.read();
+			file.seek(file.length() - 1);
+			file.write(last ^ 0xFF);
+		}
+		finally {
+			file.close();
+		}
+
+		assertTrue(new PublishProfileStore(indexFile).getProfiles("server", "app").isEmpty());
+		assertFalse(indexFile.exists());
+
+		FileOutputStream out = new FileOutputStream(indexFile);
+		try {
+			out.write(new byte[] { 1, 2, 3 });
+		}
+		finally {
+			out.close();
+		}
+		assertTrue(new PublishProfileStore(indexFile).getProfiles("server", "app").isEmpty());
+	}
+
+	private static PublishProfile createProfile(long timestamp, long uploadDuration) {
+		PublishProfile profile = new PublishProfile(timestamp);
+		profile.setDuration(Phase.UPLOAD, uploadDuration);
+		profile.setMatchedBytes(timestamp * 1000);
+		profile.setUnmatchedBytes(timestamp * 10);
+		return profile;
+	}
+
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.RefreshJob.InstanceStart;
+
+public class RefreshJobTest extends TestCase {
+
+	public void testMissingInstancesStopPollingAfterWindow() {
+		long now = 1000;
+		InstanceStart start = RefreshJob.getInstanceStart(null, 2, now);
+		assertTrue(start.isStarting(now));
+
+		// The same application still missing instances keeps its start
+		long later = now + RefreshJob.INSTANCE_START_WINDOW / 2;
+		assertSame(start, RefreshJob.getInstanceStart(start, 2, later));
+		assertTrue(start.isStarting(later));
+
+		// Crashed or under-provisioned applications are no longer polled
+		// quickly
+		assertFalse(start.isStarting(now + RefreshJob.INSTANCE_START_WINDOW));
+	}
+
+	public void testScaleStartsNewWindow() {
+		long now = 1000;
+		InstanceStart start = RefreshJob.getInstanceStart(null, 2, now);
+		long later = now + RefreshJob.INSTANCE_START_WINDOW;
+		assertFalse(start.isStarting(later));
+
+		InstanceStart scaled = RefreshJob.getInstanceStart(start, 3, later);
+		assertNotSame(start, scaled);
+		assertTrue(scaled.isStarting(later));
+	}
+
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+public class RequestCoalescerTest extends TestCase {
+
+	private final RequestCoalescer coalescer = new RequestCoalescer();
+
+	private ExecutorService executor;
+
+	@Override
+	protected void setUp() throws Exception {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdownNow();
+	}
+
+	public void testConcurrentCallsShared() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		final Callable<String> call = new Callable<String>() {
+			public String call() throws Exception {
+				calls.incrementAndGet();
+				started.countDown();
+				release.await();
+				return "result";
+			}
+		};
+
+		Future<String> first = executor.submit(new Callable<String>() {
+			public String call() throws Exception {
+				return coalescer.run("key", call, null);
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		Future<String> second = executor.submit(new Callable<String>() {
+			public String call() throws Exception {
+				return coalescer.run("key", call, null);
+			}
+		});
+		// Let the second caller join the call in progress
+		Thread.sleep(2 * RequestCoalescer.CANCELLATION_CHECK_INTERVAL);
+		release.countDown();
+
+		assertEquals("result", first.get(5, TimeUnit.SECONDS));
+		assertEquals("result", second.get(5, TimeUnit.SECONDS));
+		assertEquals(1, calls.get());
+
+		// Calls that are no longer in progress are not shared
+		assertEquals("result", coalescer.run("key", call, null));
+		assertEquals(2, calls.get());
+	}
+
+	public void testJoinedCallerRunsCancelledCall() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final NullProgressMonitor firstMonitor = new NullProgressMonitor();
+		Future<String> first = executor.submit(new Callable<String>() {
+			public String call() throws Exception {
+				return coalescer.run("key", new Callable<String>() {
+					public String call() throws Exception {
+						started.countDown();
+						while (!firstMonitor.isCanceled()) {
+							Thread.sleep(10);
+						}
+						throw new OperationCanceledException();
+					}
+				}, firstMonitor);
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		Future<String> second = executor.submit(new Callable<String>() {
+			public String call() throws Exception {
+				return coalescer.run("key", new Callable<String>() {
+					public String call() throws Exception {
+						return "second";
+					}
+				}, new NullProgressMonitor());
+			}
+		});
+		Thread.sleep(2 * RequestCoalescer.CANCELLATION_CHECK_INTERVAL);
+		firstMonitor.setCanceled(true);
+
+		try {
+			first.get(5, TimeUnit.SECONDS);
+			fail("Expected cancellation");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof OperationCanceledException);
+		}
+		assertEquals("second", second.get(5, TimeUnit.SECONDS));
+	}
+
+	public void testCheckedExceptionWrapped() throws Exception {
+		try {
+			coalescer.run("key", new Callable<String>() {
+				public String call() throws Exception {
+					throw new IOException("failed");
+				}
+			}, null);
+			fail("Expected CoreException");
+		}
+		catch (CoreException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.standalone.StandaloneMembersCache;
+import org.cloudfoundry.ide.eclipse.internal.server.core.standalone.StandaloneMembersCache.RuntimeClasspath;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+import org.eclipse.wst.server.core.util.ModuleFile;
+import org.eclipse.wst.server.core.util.ModuleFolder;
+
+public class StandaloneMembersCacheTest extends TestCase {
+
+	private StandaloneMembersCache cache;
+
+	private IProject project;
+
+	@Override
+	protected void setUp() throws Exception {
+		cache = new StandaloneMembersCache();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("standaloneMembersCacheTest");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.dispose();
+	}
+
+	public void testOverlaps() {
+		String root = File.separator + "workspace" + File.separator;
+		RuntimeClasspath classpath = new RuntimeClasspath(Arrays.asList(root + "app" + File.separator + "bin"),
+				Arrays.asList(root + "lib" + File.separator + "a.jar"));
+		assertTrue(classpath.overlaps(root + "app"));
+		assertTrue(classpath.overlaps(root + "app" + File.separator + "bin" + File.separator + "com"));
+		assertTrue(classpath.overlaps(root + "lib"));
+		assertFalse(classpath.overlaps(root + "ap"));
+		assertFalse(classpath.overlaps(root + "other"));
+	}
+
+	public void testContains() {
+		String root = File.separator + "workspace" + File.separator;
+		RuntimeClasspath classpath = new RuntimeClasspath(Arrays.asList(root + "app" + File.separator + "bin"),
+				Arrays.asList(root + "lib" + File.separator + "a.jar"));
+		assertTrue(classpath.contains(root + "app" + File.separator + "bin" + File.separator + "App.class"));
+		assertTrue(classpath.contains(root + "lib" + File.separator + "a.jar"));
+		assertFalse(classpath.contains(root + "app" + File.separator + "src" + File.separator + "App.java"));
+	}
+
+	public void testContentChangeRefreshesStamp() throws Exception {
+		File folder = File.createTempFile("standaloneMembers", "");
+		folder.delete();
+		folder.mkdirs();
+		try {
+			File jar = ContentFingerprintStoreTest.write(new File(folder, "a.jar"), "content");
+			ModuleFolder lib = new ModuleFolder(null, "lib", Path.EMPTY);
+			lib.setMembers(new IModuleResource[] { new ModuleFile(jar, jar.getName(), new Path("lib")) });
+			IModuleResource[] members = new IModuleResource[] { lib };
+
+			long generation = cache.getGeneration(project);
+			cache.setClasspath(project, generation, new RuntimeClasspath(Collections.<String> emptyList(),
+					Arrays.asList(jar.getAbsolutePath())));
+			cache.setMembers(project, generation, members);
+			long stamp = getJar(cache.getMembers(project)).getModificationStamp();
+
+			// As after a build that rewrites the jar
+			ContentFingerprintStoreTest.write(jar, "changed content");
+			jar.setLastModified(jar.lastModified() + 10000);
+			cache.refreshFiles(Collections.singleton(jar.getAbsolutePath()));
+
+			IModuleResource[] refreshed = cache.getMembers(project);
+			assertNotNull(refreshed);
+			assertFalse(stamp == getJar(refreshed).getModificationStamp());
+
+			// Members that may be in use are not modified
+			assertEquals(stamp, getJar(members).getModificationStamp());
+
+			// Members computed before the change are not cached
+			cache.setMembers(project, generation, members);
+			assertFalse(stamp == getJar(cache.getMembers(project)).getModificationStamp());
+		}
+		finally {
+			ContentFingerprintStoreTest.delete(folder);
+		}
+	}
+
+	private static IModuleFile getJar(IModuleResource[] members) {
+		return (IModuleFile) ((IModuleFolder) members[0]).members()[0];
+	}
+
+	public void testStaleMembersAreNotCached() {
+		long generation = cache.getGeneration(project);
+		cache.invalidateMembers(project);
+		cache.setMembers(project, generation, new IModuleResource[0]);
+		assertNull(cache.getMembers(project));
+
+		generation = cache.getGeneration(project);
+		cache.setMembers(project, generation, new IModuleResource[0]);
+		assertNotNull(cache.getMembers(project));
+	}
+
+	public void testInvalidateAllDiscardsClasspath() {
+		long generation = cache.getGeneration(project);
+		cache.setClasspath(project, generation,
+				new RuntimeClasspath(Collections.<String> emptyList(), Collections.<String> emptyList()));
+		cache.setMembers(project, generation, new IModuleResource[0]);
+		assertNotNull(cache.getClasspath(project));
+
+		cache.invalidateAll();
+		assertNull(cache.getClasspath(project));
+		assertNull(cache.getMembers(project));
+	}
+
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.caldecott.client.Tunnel;
+import org.cloudfoundry.caldecott.client.TunnelFactory;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelMetrics;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelRelay;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelRelayServer;
+
+public class TunnelMetricsTest extends TestCase {
+
+	public void testNoLatency() {
+		TunnelMetrics metrics = new TunnelMetrics();
+		assertEquals(-1, metrics.getLatencyPercentile(50));
+		assertEquals(TunnelMetrics.getLatencyBounds().length + 1, metrics.getLatencyHistogram().length);
+	}
+
+	public void testCSV() {
+		TunnelMetrics metrics = new TunnelMetrics();
+		String[] header = TunnelMetrics.getCSVHeader().split(",");
+		String[] row = metrics.toCSV("my,db").split(",");
+		// The service name is quoted, and contains a comma
+		assertEquals(header.length + 1, row.length);
+		assertEquals("\"my", row[0]);
+		assertEquals("db\"", row[1]);
+	}
+
+	public void testRelayedConnection() throws Exception {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		TunnelRelay relay = new TunnelRelay(executor);
+		// Sends one byte back for each request sending data
+		TunnelFactory factory = new TunnelFactory() {
+			public Tunnel createTunnel() {
+				return new Tunnel() {
+					private int pending;
+
+					public synchronized void write(byte[] bytes) {
+						pending++;
+						notifyAll();
+					}
+
+					public synchronized byte[] read(boolean retry) {
+						try {
+							if (pending == 0) {
+								wait(100);
+							}
+						}
+						catch (InterruptedException e) {
+							return null;
+						}
+						if (pending == 0) {
+							return new byte[0];
+						}
+						pending--;
+						return new byte[] { 1 };
+					}
+
+					public void close() {
+						// Nothing to close
+					}
+				};
+			}
+		};
+		TunnelRelayServer server = new TunnelRelayServer(new InetSocketAddress("127.0.0.1", 0), factory, relay);
+		server.start();
+		try {
+			Socket socket = new Socket();
+			socket.connect(new InetSocketAddress("127.0.0.1", server.getLocalPort()), 5000);
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(new byte[] { 1, 2, 3 });
+			assertEquals(1, socket.getInputStream().read());
+
+			TunnelMetrics metrics = server.getMetrics();
+			assertEquals(1, metrics.getActiveConnections());
+			assertEquals(1, metrics.getTotalConnections());
+			assertEquals(1, metrics.getBytesReceived());
+			assertTrue(metrics.getPollRequests() >= 1);
+			assertEquals(0, metrics.getErrors());
+
+			socket.close();
+			waitForConnections(server, 0);
+			assertEquals(0, metrics.getActiveConnections());
+			assertEquals(3, metrics.getBytesSent());
+			assertEquals(1, metrics.getSendRequests());
+			assertTrue(metrics.getLatencyPercentile(95) > 0);
+		}
+		finally {
+			server.stop();
+			relay.shutdown();
+			executor.shutdownNow();
+		}
+	}
+
+	private void waitForConnections(TunnelRelayServer server, int count) throws InterruptedException {
+		for (int i = 0; i < 50 && server.getConnectionCount() != count; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(count, server.getConnectionCount());
+	}
+
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelPortAllocator;
+
+public class TunnelPortAllocatorTest extends TestCase {
+
+	public void testAllocateInRotation() {
+		TunnelPortAllocator allocator = new TunnelPortAllocator(100, 102);
+		assertEquals(100, allocator.allocate());
+		assertEquals(101, allocator.allocate());
+		allocator.release(100);
+		assertEquals(102, allocator.allocate());
+		assertEquals(100, allocator.allocate());
+		assertEquals(-1, allocator.allocate());
+		assertEquals(3, allocator.getAllocatedCount());
+	}
+
+	public void testReleaseAll() {
+		TunnelPortAllocator allocator = new TunnelPortAllocator(100, 102);
+		allocator.allocate();
+		allocator.allocate();
+		allocator.release(100);
+		allocator.release(101);
+		allocator.release(101);
+		assertEquals(0, allocator.getAllocatedCount());
+	}
+
+	public void testUnavailablePortIsSkipped() {
+		TunnelPortAllocator allocator = new TunnelPortAllocator(100, 102);
+		int port = allocator.allocate();
+		allocator.markUnavailable(port);
+		assertEquals(0, allocator.getAllocatedCount());
+		assertEquals(101, allocator.allocate());
+		assertEquals(102, allocator.allocate());
+		assertEquals(-1, allocator.allocate());
+	}
+
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.caldecott.client.Tunnel;
+import org.cloudfoundry.caldecott.client.TunnelFactory;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelRelay;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelRelayServer;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+public class TunnelRelayTest extends TestCase {
+
+	private final AtomicInteger writeCount = new AtomicInteger();
+
+	/** Number of writes that time out before the next one succeeds */
+	private final AtomicInteger writeTimeouts = new AtomicInteger();
+
+	/** Number of reads that time out before the next one succeeds */
+	private final AtomicInteger readTimeouts = new AtomicInteger();
+
+	private ExecutorService executor;
+
+	private ExecutorService pollExecutor;
+
+	private TunnelRelay relay;
+
+	private TunnelRelayServer server;
+
+	@Override
+	protected void setUp() throws Exception {
+		executor = Executors.newCachedThreadPool();
+		pollExecutor = Executors.newCachedThreadPool();
+		relay = new TunnelRelay(executor, pollExecutor);
+		// Echoes the data sent through the tunnel
+		TunnelFactory factory = new TunnelFactory() {
+			public Tunnel createTunnel() {
+				return new Tunnel() {
+					private final BlockingQueue<byte[]> data = new LinkedBlockingQueue<byte[]>();
+
+					public void write(byte[] bytes) {
+						if (writeTimeouts.getAndDecrement() > 0) {
+							throw new ResourceAccessException("Timed out", new SocketTimeoutException());
+						}
+						writeCount.incrementAndGet();
+						data.add(bytes);
+					}
+
+					public byte[] read(boolean retry) {
+						if (readTimeouts.getAndDecrement() > 0) {
+							throw new HttpServerErrorException(HttpStatus.GATEWAY_TIMEOUT);
+						}
+						try {
+							byte[] bytes = data.poll(100, TimeUnit.MILLISECONDS);
+							return bytes != null ? bytes : new byte[0];
+						}
+						catch (InterruptedException e) {
+							return null;
+						}
+					}
+
+					public void close() {
+						// Nothing to close
+					}
+				};
+			}
+		};
+		server = new TunnelRelayServer(new InetSocketAddress("127.0.0.1", 0), factory, relay);
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop();
+		relay.shutdown();
+		executor.shutdownNow();
+		pollExecutor.shutdownNow();
+	}
+
+	public void testRelayLargeTransfer() throws Exception {
+		final byte[] sent = new byte[4 * 1024 * 1024];
+		new Random(1).nextBytes(sent);
+
+		final Socket socket = new Socket();
+		socket.connect(new InetSocketAddress("127.0.0.1", getPort()), 5000);
+		socket.setSoTimeout(10000);
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					OutputStream out = socket.getOutputStream();
+					for (int offset = 0; offset < sent.length; offset += 8192) {
+						out.write(sent, offset, Math.min(8192, sent.length - offset));
+					}
+					out.flush();
+				}
+				catch (Exception e) {
+					// Fails the comparison below
+				}
+			}
+		};
+		writer.start();
+
+		byte[] received = new byte[sent.length];
+		new DataInputStream(socket.getInputStream()).readFully(received);
+		socket.close();
+
+		assertTrue(Arrays.equals(sent, received));
+		// Data read from the socket while a request is sent is batched
+		assertTrue(writeCount.get() < sent.length / 8192);
+	}
+
+	public void testStopClosesConnections() throws Exception {
+		Socket socket = new Socket();
+		socket.connect(new InetSocketAddress("127.0.0.1", getPort()), 5000);
+		socket.setSoTimeout(5000);
+		socket.getOutputStream().write(1);
+		assertEquals(1, socket.getInputStream().read());
+
+		server.stop();
+		assertEquals(-1, socket.getInputStream().read());
+		assertEquals(0, server.getConnectionCount());
+		socket.close();
+	}
+
+	public void testTimedOutRequestsRetried() throws Exception {
+		writeTimeouts.set(2);
+		readTimeouts.set(3);
+
+		Socket socket = new Socket();
+		socket.connect(new InetSocketAddress("127.0.0.1", getPort()), 5000);
+		socket.setSoTimeout(5000);
+		socket.getOutputStream().write(1);
+		assertEquals(1, socket.getInputStream().read());
+		socket.close();
+
+		assertEquals(1, writeCount.get());
+		assertEquals(0, server.getMetrics().getErrors());
+		assertEquals(3, server.getMetrics().getPollRetries());
+	}
+
+	private int getPort() {
+		return server.getLocalPort();
+	}
+
+}
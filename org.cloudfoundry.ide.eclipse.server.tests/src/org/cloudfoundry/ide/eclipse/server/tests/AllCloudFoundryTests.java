@@ -13,7 +13,12 @@ package org.cloudfoundry.ide.eclipse.server.tests;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationStateWaiterTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.BoundedOperationSchedulerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CachingCloudFoundryOperationsTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CaldecottTunnelRuntimeTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CaldecottTunnelTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ChecksummedIndexFileTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryClientTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryConsoleTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryProxyTest;
@@ -21,8 +26,25 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServerBehav
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServerTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServicesTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudUtilTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ConsoleTailSchedulerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ContentFingerprintStoreTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ContentFingerprintWarmerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.DeployedResourceCacheStoreTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.DeploymentURLTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogFileTailTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ModuleJarCacheTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ModuleOperationSchedulerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ModuleResourceIndexTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PooledHttpTransportTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ProcessLauncherTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PublishProfileStoreTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RefreshJobTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RequestCoalescerTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ServerCredentialsStoreTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.StandaloneMembersCacheTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.TunnelMetricsTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.TunnelPortAllocatorTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.TunnelRelayTest;
 import org.cloudfoundry.ide.eclipse.server.tests.sts.util.ManagedTestSuite;
 
 /**
@@ -56,6 +78,28 @@ public class AllCloudFoundryTests {
 		// suite.addTestSuite(CloudFoundryMockServerTest.class);
 
 		suite.addTestSuite(CloudUtilTest.class);
+		suite.addTestSuite(DeployedResourceCacheStoreTest.class);
+		suite.addTestSuite(CachingCloudFoundryOperationsTest.class);
+		suite.addTestSuite(PooledHttpTransportTest.class);
+		suite.addTestSuite(ApplicationStateWaiterTest.class);
+		suite.addTestSuite(RequestCoalescerTest.class);
+		suite.addTestSuite(BoundedOperationSchedulerTest.class);
+		suite.addTestSuite(TunnelMetricsTest.class);
+		suite.addTestSuite(TunnelPortAllocatorTest.class);
+		suite.addTestSuite(TunnelRelayTest.class);
+		suite.addTestSuite(CaldecottTunnelRuntimeTest.class);
+		suite.addTestSuite(ProcessLauncherTest.class);
+		suite.addTestSuite(StandaloneMembersCacheTest.class);
+		suite.addTestSuite(ContentFingerprintStoreTest.class);
+		suite.addTestSuite(ContentFingerprintWarmerTest.class);
+		suite.addTestSuite(ModuleResourceIndexTest.class);
+		suite.addTestSuite(PublishProfileStoreTest.class);
+		suite.addTestSuite(ChecksummedIndexFileTest.class);
+		suite.addTestSuite(ModuleJarCacheTest.class);
+		suite.addTestSuite(ModuleOperationSchedulerTest.class);
+		suite.addTestSuite(RefreshJobTest.class);
+		suite.addTestSuite(LogFileTailTest.class);
+		suite.addTestSuite(ConsoleTailSchedulerTest.class);
 
 		suite.addTestSuite(DeploymentURLTest.class);
 		suite.addTestSuite(CloudFoundryServicesTest.class);
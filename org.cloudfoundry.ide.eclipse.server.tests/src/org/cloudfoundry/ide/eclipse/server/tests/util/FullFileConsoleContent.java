@@ -27,11 +27,29 @@ import org.eclipse.ui.console.MessageConsole;
  */
 public class FullFileConsoleContent extends ConsoleContent {
 
+	private int stderrOffset = 0;
+
+	private int stdoutOffset = 0;
+
 	public FullFileConsoleContent(CloudFoundryServer cloudServer, MessageConsole console, CloudApplication app,
 			int instanceIndex) {
 		super(cloudServer, console, app, instanceIndex);
 	}
 
+	@Override
+	public void reset() {
+		super.reset();
+		stderrOffset = 0;
+		stdoutOffset = 0;
+	}
+
+	@Override
+	public Result getFileContent(IProgressMonitor monitor) throws CoreException {
+		String errorContent = getStdErrorContent(monitor);
+		String outContent = getStdOurContent(monitor);
+		return new Result(errorContent, outContent, stderrOffset, stdoutOffset);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.ui;
 
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.ConsoleManager;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
@@ -32,6 +33,7 @@ public class CloudFoundryServerUiPlugin extends AbstractUIPlugin {
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		ConsoleManager.shutdown();
 		plugin = null;
 		super.stop(context);
 	}
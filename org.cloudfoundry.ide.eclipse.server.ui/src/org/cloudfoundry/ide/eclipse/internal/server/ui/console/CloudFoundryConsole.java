@@ -15,17 +15,16 @@ import java.io.IOException;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.ui.console.MessageConsole;
 
 /**
+ * Tails the logs of an application instance to a console. Polling is driven
+ * by a {@link ConsoleTailScheduler} that is shared by all consoles.
  * @author Steffen Pingel
  * @author Christian Dupuis
  */
-class CloudFoundryConsole extends Job {
+class CloudFoundryConsole implements ConsoleTailScheduler.TailedConsole {
 
 	static final String ATTRIBUTE_SERVER = "org.cloudfoundry.ide.eclipse.server.Server";
 
@@ -39,32 +38,50 @@ class CloudFoundryConsole extends Job {
 
 	private final ConsoleContent content;
 
-	/** How frequently to check for log changes; defaults to 1 seconds */
-	private long sampleInterval = 5000;
+	/** How long to wait before retrying after a failure to get log content */
+	private long retryInterval = 5000;
 
 	/** Is the tailer currently tailing? */
-	private boolean tailing = true;
+	private volatile boolean tailing = true;
+
+	/** Is a poll of this console scheduled or running? */
+	private boolean scheduled;
 
 	private final MessageConsole console;
 
-	public CloudFoundryConsole(CloudFoundryServer server, CloudApplication app, int instanceIndex,
-			MessageConsole console) {
-		super(getConsoleName(app));
+	private final CloudFoundryServer server;
+
+	private final ConsoleTailScheduler scheduler;
+
+	/** Cancelled when tailing is stopped, to abort a running poll */
+	private volatile NullProgressMonitor monitor = new NullProgressMonitor();
 
+	public CloudFoundryConsole(CloudFoundryServer server, CloudApplication app, int instanceIndex,
+			MessageConsole console, ConsoleTailScheduler scheduler) {
 		this.console = console;
+		this.server = server;
+		this.scheduler = scheduler;
 
 		content = new ConsoleContent(server, console, app, instanceIndex);
-
-		setSystem(true);
 	}
 
 	public void startTailing() {
-		tailing = true;
-		schedule();
+		synchronized (this) {
+			if (!tailing) {
+				monitor = new NullProgressMonitor();
+			}
+			tailing = true;
+		}
+		wake();
 	}
 
-	public void stopTailing() {
+	public synchronized void stopTailing() {
 		tailing = false;
+		monitor.setCanceled(true);
+	}
+
+	public boolean isTailing() {
+		return tailing;
 	}
 
 	public void resetConsole() {
@@ -72,29 +89,69 @@ class CloudFoundryConsole extends Job {
 		this.failureCount = 0;
 	}
 
-	@Override
-	protected IStatus run(IProgressMonitor monitor) {
-		if (this.tailing) {
-			try {
-				content.getFileContent(monitor);
+	/**
+	 * Schedules an immediate poll, unless a poll is already scheduled or
+	 * running.
+	 */
+	public void wake() {
+		synchronized (this) {
+			if (!tailing || scheduled) {
+				return;
 			}
-			catch (CoreException e) {
-				Throwable t = e.getCause();
-				if (t instanceof IOException) {
-					return Status.CANCEL_STATUS;
-				}
-				else {
-					failureCount++;
-				}
-			}
-			if (failureCount < 5) {
-				schedule(sampleInterval);
+			scheduled = true;
+		}
+		scheduler.schedule(this, 0);
+	}
+
+	/**
+	 * Called by the scheduler when it drops this console from its queue, for
+	 * example while the console is not visible. A later {@link #wake()}
+	 * schedules it again.
+	 */
+	public synchronized void unscheduled() {
+		scheduled = false;
+	}
+
+	/**
+	 *
+	 * @param time
+	 * @return number of requests the next poll makes if run at the given time
+	 */
+	public int getDueRequestCount(long time) {
+		return content.getDueLogCount(time);
+	}
+
+	/**
+	 * Fetches new log content. Must only be called by the scheduler.
+	 * @return delay until the next poll, or {@link #STOP}
+	 */
+	public long poll() {
+		if (!tailing) {
+			return STOP;
+		}
+		long delay = retryInterval;
+		try {
+			// The log files are polled at an interval that adapts to how
+			// frequently content is appended to them
+			delay = content.tail(monitor);
+		}
+		catch (CoreException e) {
+			Throwable t = e.getCause();
+			if (t instanceof IOException) {
+				stopTailing();
+				return STOP;
 			}
 			else {
-				stopTailing();
+				failureCount++;
 			}
 		}
-		return Status.OK_STATUS;
+		if (failureCount < 5) {
+			return delay;
+		}
+		else {
+			stopTailing();
+			return STOP;
+		}
 	}
 
 	static String getConsoleName(CloudApplication app) {
@@ -106,4 +163,16 @@ class CloudFoundryConsole extends Job {
 		return console;
 	}
 
+	public CloudFoundryServer getServer() {
+		return server;
+	}
+
+	public String getServerId() {
+		return server.getServer().getId();
+	}
+
+	public String getName() {
+		return console.getName();
+	}
+
 }
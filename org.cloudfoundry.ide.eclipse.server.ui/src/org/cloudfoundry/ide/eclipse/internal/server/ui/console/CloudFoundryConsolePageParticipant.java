@@ -11,6 +11,13 @@
 package org.cloudfoundry.ide.eclipse.internal.server.ui.console;
 
 import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPartReference;
 import org.eclipse.ui.console.IConsole;
 import org.eclipse.ui.console.IConsoleConstants;
 import org.eclipse.ui.console.IConsolePageParticipant;
@@ -18,6 +25,8 @@ import org.eclipse.ui.console.actions.CloseConsoleAction;
 import org.eclipse.ui.part.IPageBookViewPage;
 
 /**
+ * Adds console actions, and tracks whether the console is visible in its
+ * page so that logs are only tailed for consoles that are visible.
  * @author Steffen Pingel
  * @author Christian Dupuis
  */
@@ -25,16 +34,76 @@ public class CloudFoundryConsolePageParticipant implements IConsolePageParticipa
 
 	private CloseConsoleAction closeAction;
 
+	private IPageBookViewPage page;
+
+	private IConsole console;
+
+	private IWorkbenchPage workbenchPage;
+
+	private boolean disposed;
+
+	private final Listener visibilityListener = new Listener() {
+		public void handleEvent(Event event) {
+			updateVisibility();
+		}
+	};
+
+	private final IPartListener2 partListener = new IPartListener2() {
+
+		public void partVisible(IWorkbenchPartReference partRef) {
+			updateVisibility();
+		}
+
+		public void partHidden(IWorkbenchPartReference partRef) {
+			updateVisibility();
+		}
+
+		public void partBroughtToTop(IWorkbenchPartReference partRef) {
+			updateVisibility();
+		}
+
+		public void partOpened(IWorkbenchPartReference partRef) {
+			// ignore
+		}
+
+		public void partInputChanged(IWorkbenchPartReference partRef) {
+			// ignore
+		}
+
+		public void partDeactivated(IWorkbenchPartReference partRef) {
+			// ignore
+		}
+
+		public void partClosed(IWorkbenchPartReference partRef) {
+			// ignore
+		}
+
+		public void partActivated(IWorkbenchPartReference partRef) {
+			// ignore
+		}
+	};
+
 	public void activated() {
-		// ignore
+		updateVisibility();
 	}
 
 	public void deactivated() {
-		// ignore
+		updateVisibility();
 	}
 
 	public void dispose() {
-		// ignore
+		disposed = true;
+		Control control = page != null ? page.getControl() : null;
+		if (control != null && !control.isDisposed()) {
+			control.removeListener(SWT.Show, visibilityListener);
+			control.removeListener(SWT.Hide, visibilityListener);
+		}
+		if (workbenchPage != null) {
+			workbenchPage.removePartListener(partListener);
+		}
+		if (console != null) {
+			ConsoleManager.getInstance().setConsoleVisible(console, this, false);
+		}
 	}
 
 	public Object getAdapter(@SuppressWarnings("rawtypes") Class adapter) {
@@ -42,10 +111,52 @@ public class CloudFoundryConsolePageParticipant implements IConsolePageParticipa
 	}
 
 	public void init(IPageBookViewPage page, IConsole console) {
+		this.page = page;
+		this.console = console;
+
 		closeAction = new CloseConsoleAction(console);
 
 		IToolBarManager manager = page.getSite().getActionBars().getToolBarManager();
 		manager.appendToGroup(IConsoleConstants.LAUNCH_GROUP, closeAction);
+
+		Control control = page.getControl();
+		if (control != null) {
+			control.addListener(SWT.Show, visibilityListener);
+			control.addListener(SWT.Hide, visibilityListener);
+		}
+		workbenchPage = page.getSite().getPage();
+		if (workbenchPage != null) {
+			workbenchPage.addPartListener(partListener);
+		}
+		updateVisibility();
+	}
+
+	/**
+	 * The console is visible if its page is the page shown in the console
+	 * view, and the console view itself is visible. As visibility
+	 * notifications may be sent before the controls are shown or hidden, the
+	 * visibility is checked once pending UI events are processed. Must be
+	 * called on the UI thread.
+	 */
+	protected void updateVisibility() {
+		if (console == null) {
+			return;
+		}
+		final Control control = page.getControl();
+		if (control == null || control.isDisposed()) {
+			ConsoleManager.getInstance().setConsoleVisible(console, this, false);
+			return;
+		}
+		control.getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				if (disposed) {
+					return;
+				}
+				boolean visible = !control.isDisposed() && control.isVisible();
+				ConsoleManager.getInstance().setConsoleVisible(console, CloudFoundryConsolePageParticipant.this,
+						visible);
+			}
+		});
 	}
 
 }
@@ -31,6 +31,10 @@ import org.springframework.http.HttpStatus;
  * offsets for each log file are kept locally to keep track of what has already
  * be printed to the console, and only new content is fetched based on the
  * offsets.
+ * <p/>
+ * Offsets are byte offsets into the remote files, tracked by a
+ * {@link LogFileTail} for each file, which also determines how frequently each
+ * file is polled while tailing.
  * 
  */
 public class ConsoleContent {
@@ -45,16 +49,16 @@ public class ConsoleContent {
 
 	protected final int instanceIndex;
 
-	protected int stderrOffset = 0;
-
 	protected String stderrPath = "logs/stderr.log";
 
-	protected int stdoutOffset = 0;
-
 	protected String stdoutPath = "logs/stdout.log";
 
 	protected final MessageConsole console;
 
+	protected final LogFileTail stderrTail;
+
+	protected final LogFileTail stdoutTail;
+
 	public ConsoleContent(CloudFoundryServer cloudServer, MessageConsole console, CloudApplication app,
 			int instanceIndex) {
 		this.stdOut = console.newOutputStream();
@@ -63,6 +67,8 @@ public class ConsoleContent {
 		this.app = app;
 		this.instanceIndex = instanceIndex;
 		this.console = console;
+		this.stderrTail = new LogFileTail(stderrPath);
+		this.stdoutTail = new LogFileTail(stdoutPath);
 
 		if (stdError != null) {
 			Display.getDefault().asyncExec(new Runnable() {
@@ -82,11 +88,39 @@ public class ConsoleContent {
 	}
 
 	public void reset() {
-		stderrOffset = 0;
-		stdoutOffset = 0;
+		stderrTail.reset();
+		stdoutTail.reset();
 		console.clearConsole();
 	}
 
+	/**
+	 * 
+	 * @param time
+	 * @return number of log files that are due to be polled at the given time
+	 */
+	public int getDueLogCount(long time) {
+		return (stderrTail.isDue(time) ? 1 : 0) + (stdoutTail.isDue(time) ? 1 : 0);
+	}
+
+	/**
+	 * Fetches new content for the log files that are due to be polled, and
+	 * sends it to the console output.
+	 * @param monitor
+	 * @return delay in milliseconds until a log file is next due to be polled
+	 * @throws CoreException
+	 */
+	public long tail(IProgressMonitor monitor) throws CoreException {
+		long now = System.currentTimeMillis();
+		if (stderrTail.isDue(now)) {
+			getStdErrorContent(monitor);
+		}
+		if (stdoutTail.isDue(now)) {
+			getStdOurContent(monitor);
+		}
+		long nextPollTime = Math.min(stderrTail.getNextPollTime(), stdoutTail.getNextPollTime());
+		return Math.max(0, nextPollTime - System.currentTimeMillis());
+	}
+
 	/**
 	 * Gets the latest changes to the app's log files and sends those to the
 	 * console output. This is more efficient as only changes are fetched from
@@ -99,29 +133,38 @@ public class ConsoleContent {
 	public Result getFileContent(IProgressMonitor monitor) throws CoreException {
 		String errorContent = getStdErrorContent(monitor);
 		String outContent = getStdOurContent(monitor);
-		return new Result(errorContent, outContent, stderrOffset, stdoutOffset);
+		return new Result(errorContent, outContent, stderrTail.getOffset(), stdoutTail.getOffset());
 	}
 
 	protected String getStdErrorContent(IProgressMonitor monitor) throws CoreException {
-		String content = getContent(stdError, stderrPath, stderrOffset, monitor);
-		if (content != null) {
-			stderrOffset += content.length();
+		String content = getContent(stdError, stderrPath, stderrTail.getOffset(), monitor);
+		if (content == null) {
+			// no new content
+			stderrTail.read(null);
 		}
 		return content;
 	}
 
 	protected String getStdOurContent(IProgressMonitor monitor) throws CoreException {
-		String content = getContent(stdOut, stdoutPath, stdoutOffset, monitor);
-		if (content != null) {
-			stdoutOffset += content.length();
+		String content = getContent(stdOut, stdoutPath, stdoutTail.getOffset(), monitor);
+		if (content == null) {
+			// no new content
+			stdoutTail.read(null);
 		}
 		return content;
 	}
 
+	protected LogFileTail getTail(String path) {
+		return stderrPath.equals(path) ? stderrTail : stdoutTail;
+	}
+
 	protected String getAndWriteContentFromServer(IOConsoleOutputStream stream, String path, int offset,
 			IProgressMonitor monitor) throws CoreException, IOException {
-		String content = cloudServer.getBehaviour().getFile(app.getName(), instanceIndex, path, offset, monitor);
-		if (stream != null && content != null && content.length() > 0) {
+		LogFileTail tail = getTail(path);
+		byte[] bytes = cloudServer.getBehaviour().getFileBytes(app.getName(), instanceIndex, path, offset,
+				tail.getRangeEnd(), monitor);
+		String content = tail.read(bytes);
+		if (stream != null && content.length() > 0) {
 			stream.write(content);
 		}
 		return content;
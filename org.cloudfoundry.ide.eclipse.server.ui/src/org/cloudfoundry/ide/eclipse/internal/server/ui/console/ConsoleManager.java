@@ -11,8 +11,10 @@
 package org.cloudfoundry.ide.eclipse.internal.server.ui.console;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
@@ -53,14 +55,42 @@ public class ConsoleManager {
 		}
 	};
 
-	private static ConsoleManager instance = new ConsoleManager();
+	private static ConsoleManager instance;
 
-	public static ConsoleManager getInstance() {
+	public static synchronized ConsoleManager getInstance() {
+		if (instance == null) {
+			instance = new ConsoleManager();
+		}
 		return instance;
 	}
 
+	/**
+	 * Stops tailing all consoles and stops the threads that tail them, if the
+	 * console manager was created.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.stopConsoles();
+			instance.consoleManager.removeConsoleListener(instance.listener);
+			instance.scheduler.dispose();
+			instance = null;
+		}
+	}
+
 	Map<String, CloudFoundryConsole> consoleByUri;
 
+	/**
+	 * Console pages in which each console is currently visible
+	 */
+	private final Map<IConsole, Set<Object>> visiblePagesByConsole = new HashMap<IConsole, Set<Object>>();
+
+	private final ConsoleTailScheduler scheduler = new ConsoleTailScheduler(
+			new ConsoleTailScheduler.VisibilityProvider() {
+				public boolean isVisible(ConsoleTailScheduler.TailedConsole console) {
+					return isConsoleVisible(((CloudFoundryConsole) console).getConsole());
+				}
+			});
+
 	public ConsoleManager() {
 		consoleByUri = new HashMap<String, CloudFoundryConsole>();
 		consoleManager = ConsolePlugin.getDefault().getConsoleManager();
@@ -81,7 +111,7 @@ public class ConsoleManager {
 		CloudFoundryConsole serverLogTail = consoleByUri.get(appUrl);
 		if (serverLogTail == null && show) {
 			MessageConsole appConsole = getOrCreateConsole(server.getServer(), app, instanceIndex);
-			serverLogTail = new CloudFoundryConsole(server, app, instanceIndex, appConsole);
+			serverLogTail = new CloudFoundryConsole(server, app, instanceIndex, appConsole, scheduler);
 			consoleByUri.put(getConsoleId(server.getServer(), app, instanceIndex), serverLogTail);
 		}
 
@@ -110,6 +140,52 @@ public class ConsoleManager {
 		}
 	}
 
+	/**
+	 * Records whether a console is visible in the given console page. Logs
+	 * are only tailed for consoles that are visible in at least one page, and
+	 * tailing resumes as soon as a console becomes visible.
+	 * @param console
+	 * @param page
+	 * @param visible
+	 */
+	public void setConsoleVisible(IConsole console, Object page, boolean visible) {
+		boolean becameVisible;
+		synchronized (visiblePagesByConsole) {
+			Set<Object> pages = visiblePagesByConsole.get(console);
+			if (visible) {
+				if (pages == null) {
+					pages = new HashSet<Object>();
+					visiblePagesByConsole.put(console, pages);
+				}
+				becameVisible = pages.isEmpty();
+				pages.add(page);
+			}
+			else {
+				becameVisible = false;
+				if (pages != null) {
+					pages.remove(page);
+					if (pages.isEmpty()) {
+						visiblePagesByConsole.remove(console);
+					}
+				}
+			}
+		}
+
+		if (becameVisible) {
+			for (CloudFoundryConsole serverLogTail : consoleByUri.values()) {
+				if (serverLogTail.getConsole() == console) {
+					serverLogTail.wake();
+				}
+			}
+		}
+	}
+
+	public boolean isConsoleVisible(IConsole console) {
+		synchronized (visiblePagesByConsole) {
+			return visiblePagesByConsole.containsKey(console);
+		}
+	}
+
 	public static MessageConsole getOrCreateConsole(IServer server, CloudApplication app, int instanceIndex) {
 		MessageConsole appConsole = null;
 		String consoleName = getConsoleId(server, app, instanceIndex);
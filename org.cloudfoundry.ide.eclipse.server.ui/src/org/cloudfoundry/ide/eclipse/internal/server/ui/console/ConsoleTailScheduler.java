@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui.console;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Polls the logs of all tailing consoles on a small, fixed pool of worker
+ * threads.
+ * <p/>
+ * Each console has at most one poll queued or running at a time, and a
+ * console that needs to be polled again right away is queued behind the
+ * consoles that are already due, so that a console with a lot of output does
+ * not starve the others. Requests for log content are limited to
+ * {@link #MAX_REQUESTS_PER_SECOND} per Cloud Foundry server. Consoles that
+ * are not visible in a console view are not polled until they become visible
+ * again.
+ * <p/>
+ * The worker threads are started when a poll is queued, and stopped once no
+ * poll is queued or running.
+ *
+ */
+public class ConsoleTailScheduler {
+
+	private static final int WORKER_COUNT = 3;
+
+	/**
+	 * Sustained rate of log requests allowed per server, which is also the
+	 * size of the burst allowed after a period without requests.
+	 */
+	private static final int MAX_REQUESTS_PER_SECOND = 4;
+
+	/**
+	 * Decides whether a console should currently be polled.
+	 */
+	public interface VisibilityProvider {
+
+		public boolean isVisible(TailedConsole console);
+
+	}
+
+	/**
+	 * A console whose logs are polled by the scheduler.
+	 */
+	public interface TailedConsole {
+
+		/** Value returned by {@link #poll()} if tailing should not continue */
+		public static final long STOP = -1;
+
+		public boolean isTailing();
+
+		/**
+		 *
+		 * @param time
+		 * @return number of requests the next poll makes if run at the given
+		 * time
+		 */
+		public int getDueRequestCount(long time);
+
+		/**
+		 * Fetches new log content. Only called by the scheduler.
+		 * @return delay until the next poll, or {@link #STOP}
+		 */
+		public long poll();
+
+		/**
+		 * Called by the scheduler when it drops the console from its queue.
+		 */
+		public void unscheduled();
+
+		/**
+		 * Schedules an immediate poll, unless a poll is already scheduled or
+		 * running.
+		 */
+		public void wake();
+
+		/**
+		 *
+		 * @return id of the server whose requests are limited together
+		 */
+		public String getServerId();
+
+		public String getName();
+
+	}
+
+	/** Null while no poll is queued or running */
+	private ScheduledExecutorService executor;
+
+	/** Number of polls queued or running on the current executor */
+	private int scheduledCount;
+
+	private boolean disposed;
+
+	private final VisibilityProvider visibilityProvider;
+
+	private final Map<String, RequestRateLimiter> limiterByServer = new HashMap<String, RequestRateLimiter>();
+
+	public ConsoleTailScheduler(VisibilityProvider visibilityProvider) {
+		this.visibilityProvider = visibilityProvider;
+	}
+
+	/**
+	 * Queues a poll of the given console. Must only be called for a console
+	 * that has no other poll queued or running.
+	 * @param console
+	 * @param delay in milliseconds
+	 */
+	public synchronized void schedule(final TailedConsole console, long delay) {
+		if (disposed) {
+			console.unscheduled();
+			return;
+		}
+		if (executor == null) {
+			executor = new ScheduledThreadPoolExecutor(WORKER_COUNT, new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Cloud Foundry console");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		scheduledCount++;
+		final ScheduledExecutorService owner = executor;
+		executor.schedule(new Runnable() {
+			public void run() {
+				try {
+					poll(console);
+				}
+				finally {
+					polled(owner);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the worker threads once the last queued poll has run. A poll that
+	 * queues the next poll of its console does so before this is called.
+	 */
+	private synchronized void polled(ScheduledExecutorService owner) {
+		if (owner == executor && --scheduledCount == 0) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 *
+	 * @return number of polls queued or running. The worker threads are
+	 * running while this is not 0.
+	 */
+	public synchronized int getScheduledCount() {
+		return scheduledCount;
+	}
+
+	/**
+	 * Stops the worker threads and discards queued polls. No further polls
+	 * are run.
+	 */
+	public synchronized void dispose() {
+		disposed = true;
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		scheduledCount = 0;
+	}
+
+	protected void poll(TailedConsole console) {
+		try {
+			if (console.isTailing() && visibilityProvider.isVisible(console)) {
+				int requests = console.getDueRequestCount(System.currentTimeMillis());
+				long wait = requests > 0 ? getLimiter(console).tryAcquire(requests) : 0;
+				if (wait > 0) {
+					schedule(console, wait);
+					return;
+				}
+
+				long delay = console.poll();
+				if (delay != TailedConsole.STOP) {
+					schedule(console, delay);
+					return;
+				}
+			}
+		}
+		catch (OperationCanceledException e) {
+			// Tailing was stopped while the poll was running
+		}
+		catch (RuntimeException e) {
+			CloudFoundryPlugin.logError("Failed to update console " + console.getName(), e);
+		}
+
+		console.unscheduled();
+		// Tailing may have been restarted, or the console become visible,
+		// while this poll was deciding to stop
+		if (console.isTailing() && visibilityProvider.isVisible(console)) {
+			console.wake();
+		}
+	}
+
+	protected synchronized RequestRateLimiter getLimiter(TailedConsole console) {
+		String serverId = console.getServerId();
+		RequestRateLimiter limiter = limiterByServer.get(serverId);
+		if (limiter == null) {
+			limiter = new RequestRateLimiter(MAX_REQUESTS_PER_SECOND);
+			limiterByServer.put(serverId, limiter);
+		}
+		return limiter;
+	}
+
+	/**
+	 * Token bucket that allows a given number of requests per second.
+	 */
+	public static class RequestRateLimiter {
+
+		private final int requestsPerSecond;
+
+		private double tokens;
+
+		private long lastRefill;
+
+		public RequestRateLimiter(int requestsPerSecond) {
+			this(requestsPerSecond, System.currentTimeMillis());
+		}
+
+		public RequestRateLimiter(int requestsPerSecond, long time) {
+			this.requestsPerSecond = requestsPerSecond;
+			this.tokens = requestsPerSecond;
+			this.lastRefill = time;
+		}
+
+		/**
+		 * Takes the given number of requests from the allowance if available.
+		 * @param requests
+		 * @return 0 if the requests can be made, otherwise the time in
+		 * milliseconds until enough requests are available
+		 */
+		public long tryAcquire(int requests) {
+			return tryAcquire(requests, System.currentTimeMillis());
+		}
+
+		/**
+		 * Takes the given number of requests from the allowance if available
+		 * at the given time.
+		 * @param requests
+		 * @param now
+		 * @return 0 if the requests can be made, otherwise the time in
+		 * milliseconds until enough requests are available
+		 */
+		public synchronized long tryAcquire(int requests, long now) {
+			tokens = Math.min(requestsPerSecond, tokens + (now - lastRefill) * requestsPerSecond / 1000d);
+			lastRefill = now;
+
+			int needed = Math.min(requests, requestsPerSecond);
+			if (tokens >= needed) {
+				tokens -= needed;
+				return 0;
+			}
+			return (long) Math.ceil((needed - tokens) * 1000d / requestsPerSecond);
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui.console;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Tracks the tailing state of a remote log file: the byte offset up to which
+ * content has been read, and when the file should be polled next.
+ * <p/>
+ * Content is read as bytes, so that the offset advances by the number of bytes
+ * actually read, and decoded as UTF-8. Incomplete UTF-8 sequences at the end
+ * of a range are kept until the rest of the sequence is read.
+ * <p/>
+ * The file is polled every {@link #MIN_INTERVAL} while content is being
+ * appended, and immediately again if a read returned a full range. The
+ * interval doubles, up to {@link #MAX_INTERVAL}, while no new content is found.
+ *
+ */
+public class LogFileTail {
+
+	/**
+	 * Maximum number of bytes requested at once, so that large logs are read
+	 * and written to the console in bounded chunks.
+	 */
+	public static final int MAX_RANGE_SIZE = 64 * 1024;
+
+	public static final long MIN_INTERVAL = 2000;
+
+	public static final long MAX_INTERVAL = 30000;
+
+	private static final String UTF_8 = "UTF-8";
+
+	private final String path;
+
+	private final CharsetDecoder decoder = Charset.forName(UTF_8).newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private byte[] pendingBytes = new byte[0];
+
+	private int offset;
+
+	private long interval = MIN_INTERVAL;
+
+	private long nextPollTime;
+
+	public LogFileTail(String path) {
+		this.path = path;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 *
+	 * @return byte offset up to which content has been read
+	 */
+	public synchronized int getOffset() {
+		return offset;
+	}
+
+	/**
+	 *
+	 * @return byte offset of the last byte to request in the next range
+	 */
+	public synchronized int getRangeEnd() {
+		return offset + MAX_RANGE_SIZE - 1;
+	}
+
+	public synchronized void reset() {
+		offset = 0;
+		pendingBytes = new byte[0];
+		decoder.reset();
+		interval = MIN_INTERVAL;
+		nextPollTime = 0;
+	}
+
+	public synchronized boolean isDue(long time) {
+		return time >= nextPollTime;
+	}
+
+	public synchronized long getNextPollTime() {
+		return nextPollTime;
+	}
+
+	/**
+	 * Records the content read from the file at the current offset, and
+	 * advances the offset by the number of bytes read.
+	 * @param bytes content read from the file, or null if there is no new
+	 * content
+	 * @return decoded content to write to the console. Never null.
+	 */
+	public synchronized String read(byte[] bytes) {
+		if (bytes == null) {
+			bytes = new byte[0];
+		}
+		offset += bytes.length;
+
+		long now = System.currentTimeMillis();
+		if (bytes.length >= MAX_RANGE_SIZE) {
+			// more content is likely available
+			interval = MIN_INTERVAL;
+			nextPollTime = now;
+		}
+		else {
+			interval = bytes.length > 0 ? MIN_INTERVAL : Math.min(interval * 2, MAX_INTERVAL);
+			nextPollTime = now + interval;
+		}
+
+		return decode(bytes);
+	}
+
+	protected String decode(byte[] bytes) {
+		if (bytes.length == 0) {
+			return "";
+		}
+		ByteBuffer in = ByteBuffer.allocate(pendingBytes.length + bytes.length);
+		in.put(pendingBytes);
+		in.put(bytes);
+		in.flip();
+
+		CharBuffer out = CharBuffer.allocate((int) (in.remaining() * decoder.maxCharsPerByte()) + 1);
+		decoder.decode(in, out, false);
+
+		pendingBytes = new byte[in.remaining()];
+		in.get(pendingBytes);
+
+		out.flip();
+		return out.toString();
+	}
+
+}
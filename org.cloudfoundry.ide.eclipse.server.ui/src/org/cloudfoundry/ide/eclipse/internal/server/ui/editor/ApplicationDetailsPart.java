@@ -25,8 +25,10 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationAction;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationModule;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationPlan;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryBrandingExtensionPoint;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServerBehaviour;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PublishProfile;
 import org.cloudfoundry.ide.eclipse.internal.server.core.debug.CloudFoundryProperties;
 import org.cloudfoundry.ide.eclipse.internal.server.core.debug.DebugCommand;
 import org.cloudfoundry.ide.eclipse.internal.server.core.debug.DebugCommandBuilder;
@@ -63,6 +65,7 @@ import org.eclipse.jface.layout.GridDataFactory;
 import org.eclipse.jface.layout.GridLayoutFactory;
 import org.eclipse.jface.layout.RowLayoutFactory;
 import org.eclipse.jface.util.LocalSelectionTransfer;
+import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.TableViewer;
@@ -134,6 +137,10 @@ public class ApplicationDetailsPart extends AbstractFormPart implements IDetails
 
 	private Link mappedURIsLink;
 
+	private Section publishProfileSection;
+
+	private TableViewer publishProfileViewer;
+
 	private IModule module;
 
 	private ApplicationActionMenuControl restartAppButton;
@@ -215,6 +222,8 @@ public class ApplicationDetailsPart extends AbstractFormPart implements IDetails
 
 		createInstancesSection(parent);
 
+		createPublishProfileSection(parent);
+
 		if (provideServices) {
 			addDropSupport(generalSection);
 			addDropSupport(servicesSection);
@@ -525,6 +534,8 @@ public class ApplicationDetailsPart extends AbstractFormPart implements IDetails
 
 		instancesViewer.refresh(true);
 
+		publishProfileViewer.setInput(getPublishProfiles(appModule));
+
 		canUpdate = true;
 
 		if (appModule.getErrorMessage() != null) {
@@ -997,6 +1008,40 @@ public class ApplicationDetailsPart extends AbstractFormPart implements IDetails
 		}
 	}
 
+	private void createPublishProfileSection(Composite parent) {
+		publishProfileSection = toolkit.createSection(parent, Section.TITLE_BAR | Section.TWISTIE);
+		publishProfileSection.setLayout(new GridLayout());
+		GridDataFactory.fillDefaults().grab(true, true).applyTo(publishProfileSection);
+		publishProfileSection.setText("Publish Profile");
+		publishProfileSection.setExpanded(false);
+
+		Composite client = toolkit.createComposite(publishProfileSection);
+		client.setLayout(new GridLayout());
+		GridDataFactory.fillDefaults().applyTo(client);
+		publishProfileSection.setClient(client);
+
+		toolkit.createLabel(client,
+				"Time spent in each phase of recent publishes of the application, most recent first.");
+
+		Composite container = toolkit.createComposite(client);
+		GridLayoutFactory.fillDefaults().applyTo(container);
+		GridDataFactory.fillDefaults().grab(true, true).applyTo(container);
+
+		publishProfileViewer = createTableViewer(container, PublishProfileLabelProvider.COLUMN_NAMES,
+				PublishProfileLabelProvider.COLUMN_TOOLTIPS, PublishProfileLabelProvider.COLUMN_WIDTHS);
+		publishProfileViewer.setContentProvider(new ArrayContentProvider());
+		publishProfileViewer.setLabelProvider(new PublishProfileLabelProvider());
+	}
+
+	private List<PublishProfile> getPublishProfiles(ApplicationModule appModule) {
+		String appName = appModule.getApplicationId();
+		if (appName == null) {
+			return Collections.emptyList();
+		}
+		return CloudFoundryPlugin.getDefault().getPublishProfileStore()
+				.getProfiles(cloudServer.getServer().getId(), appName);
+	}
+
 	private Label createLabel(Composite parent, String value, int verticalAlign) {
 		Label label = toolkit.createLabel(parent, value);
 		GridDataFactory.fillDefaults().align(SWT.FILL, verticalAlign).applyTo(label);
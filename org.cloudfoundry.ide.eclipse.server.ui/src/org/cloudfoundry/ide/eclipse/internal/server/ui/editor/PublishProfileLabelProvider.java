@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui.editor;
+
+import java.text.DateFormat;
+import java.util.Date;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.PublishProfile;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PublishProfile.Phase;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * Shows the phases of a publish of an application, one publish per row.
+ */
+public class PublishProfileLabelProvider extends LabelProvider implements ITableLabelProvider {
+
+	public static final String[] COLUMN_NAMES = new String[] { "Published", Phase.ASSEMBLY.getLabel(),
+			Phase.HASHING.getLabel(), Phase.MATCHING.getLabel(), "Matched", "Unmatched", Phase.UPLOAD.getLabel(),
+			Phase.STAGING.getLabel(), Phase.START.getLabel(), "Total" };
+
+	public static final String[] COLUMN_TOOLTIPS = new String[] { "Time at which the publish started",
+			"Time spent assembling the war file or the changed resources",
+			"Time spent computing sha1 codes. Included in resource matching when a war file is uploaded",
+			"Time spent finding resources already on the server",
+			"Size of the resources already on the server, which were not uploaded",
+			"Size of the resources that were uploaded", "Time spent uploading the application",
+			"Time spent staging the application", "Time spent waiting for the application to start",
+			"Total time of the measured phases" };
+
+	public static final int[] COLUMN_WIDTHS = new int[] { 120, 85, 65, 110, 70, 75, 65, 65, 55, 65 };
+
+	private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+
+	public Image getColumnImage(Object element, int columnIndex) {
+		return null;
+	}
+
+	public String getColumnText(Object element, int columnIndex) {
+		if (element instanceof PublishProfile) {
+			PublishProfile profile = (PublishProfile) element;
+			switch (columnIndex) {
+			case 0:
+				return dateFormat.format(new Date(profile.getTimestamp()));
+			case 1:
+				return getFormattedDuration(profile.getDuration(Phase.ASSEMBLY));
+			case 2:
+				return getFormattedDuration(profile.getDuration(Phase.HASHING));
+			case 3:
+				return getFormattedDuration(profile.getDuration(Phase.MATCHING));
+			case 4:
+				return getFormattedSize(profile.getMatchedBytes());
+			case 5:
+				return getFormattedSize(profile.getUnmatchedBytes());
+			case 6:
+				return getFormattedDuration(profile.getDuration(Phase.UPLOAD));
+			case 7:
+				return getFormattedDuration(profile.getDuration(Phase.STAGING));
+			case 8:
+				return getFormattedDuration(profile.getDuration(Phase.START));
+			case 9:
+				return getFormattedDuration(profile.getTotalDuration());
+			}
+		}
+		return null;
+	}
+
+	/** Returns the duration in milliseconds below a second, in seconds otherwise */
+	private String getFormattedDuration(long duration) {
+		if (duration == PublishProfile.NOT_MEASURED) {
+			return "-"; //$NON-NLS-1$
+		}
+		if (duration < 1000) {
+			return duration + "ms"; //$NON-NLS-1$
+		}
+		return String.valueOf(Math.round(duration / 100.0) / 10.0) + "s"; //$NON-NLS-1$
+	}
+
+	private String getFormattedSize(long size) {
+		if (size == PublishProfile.NOT_MEASURED) {
+			return "-"; //$NON-NLS-1$
+		}
+		if (size < 1024) {
+			return size + "B"; //$NON-NLS-1$
+		}
+		if (size < 1024 * 1024) {
+			return String.valueOf(Math.round(size * 10 / 1024.0) / 10.0) + "K"; //$NON-NLS-1$
+		}
+		return String.valueOf(Math.round(size * 10 / (1024.0 * 1024)) / 10.0) + "M"; //$NON-NLS-1$
+	}
+
+}
@@ -27,6 +27,8 @@ public class CaldecottTunnelInfoDialog extends TitleAreaDialog {
 
 	private final List<String> servicesWithTunnels;
 
+	private static final int EXPORT_METRICS_ID = IDialogConstants.CLIENT_ID + 1;
+
 	private TunnelDisplayPart part;
 
 	public CaldecottTunnelInfoDialog(Shell shell, CloudFoundryServer cloudServer, List<String> servicesWithTunnels) {
@@ -79,7 +81,18 @@ public class CaldecottTunnelInfoDialog extends TitleAreaDialog {
 	 * .swt.widgets.Composite)
 	 */
 	protected void createButtonsForButtonBar(Composite parent) {
-		// Only OK button is needed as this is an info dialogue only
+		// Info dialogue only, apart from exporting the tunnel statistics
+		createButton(parent, EXPORT_METRICS_ID, TunnelDisplayPart.EXPORT_METRICS_LABEL, false);
 		createButton(parent, IDialogConstants.OK_ID, IDialogConstants.OK_LABEL, true);
 	}
+
+	@Override
+	protected void buttonPressed(int buttonId) {
+		if (buttonId == EXPORT_METRICS_ID) {
+			part.exportMetrics();
+		}
+		else {
+			super.buttonPressed(buttonId);
+		}
+	}
 }
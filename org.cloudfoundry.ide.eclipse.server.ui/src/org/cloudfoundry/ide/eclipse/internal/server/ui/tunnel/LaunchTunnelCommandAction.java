@@ -115,14 +115,19 @@ public class LaunchTunnelCommandAction extends CloudFoundryEditorAction {
 								// options
 								// are filled
 								// in.
+								ProcessConsoleOutput output = new ProcessConsoleOutput(resolvedCommand
+										.getDisplayName());
 								try {
-									new LaunchTunnelCommandManager(resolvedCommand).run(monitor);
+									new LaunchTunnelCommandManager(resolvedCommand, output).run(monitor);
 								}
 								catch (CoreException e) {
 									IStatus errorStatus = CloudFoundryPlugin.getErrorStatus(e);
 									CloudFoundryPlugin.logError(errorStatus);
 									return errorStatus;
 								}
+								finally {
+									output.close();
+								}
 								return Status.OK_STATUS;
 							}
 						};
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2013 VMware, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     VMware, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui.tunnel;
+
+import java.io.IOException;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.ProcessLauncher.ProcessOutputListener;
+import org.eclipse.ui.console.ConsolePlugin;
+import org.eclipse.ui.console.IConsole;
+import org.eclipse.ui.console.IConsoleManager;
+import org.eclipse.ui.console.MessageConsole;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+/**
+ * Streams the output of a launched external application to a console. The
+ * console is only created once the application writes output, so that
+ * applications running in their own terminal do not leave empty consoles.
+ * <p/>
+ * Each command has a single console, which later launches of the command
+ * reuse instead of adding a console per launch.
+ */
+public class ProcessConsoleOutput implements ProcessOutputListener {
+
+	static final String CONSOLE_TYPE = "org.cloudfoundry.ide.eclipse.server.tunnelcommand";
+
+	private final String name;
+
+	private MessageConsoleStream stream;
+
+	public ProcessConsoleOutput(String name) {
+		this.name = name;
+	}
+
+	public void outputReceived(String line, boolean error) {
+		getStream().println(error ? "[stderr] " + line : line);
+	}
+
+	/**
+	 * Closes the stream of this launch, once the application has exited. The
+	 * console is kept for later launches of the command.
+	 */
+	public synchronized void close() {
+		if (stream != null) {
+			try {
+				stream.close();
+			}
+			catch (IOException e) {
+				// ignore
+			}
+			stream = null;
+		}
+	}
+
+	protected synchronized MessageConsoleStream getStream() {
+		if (stream == null) {
+			stream = getOrCreateConsole(name).newMessageStream();
+		}
+		return stream;
+	}
+
+	protected static synchronized MessageConsole getOrCreateConsole(String name) {
+		IConsoleManager consoleManager = ConsolePlugin.getDefault().getConsoleManager();
+		for (IConsole console : consoleManager.getConsoles()) {
+			if (console instanceof MessageConsole && CONSOLE_TYPE.equals(console.getType())
+					&& console.getName().equals(name)) {
+				return (MessageConsole) console;
+			}
+		}
+		MessageConsole console = new MessageConsole(name, CONSOLE_TYPE, null, true);
+		consoleManager.addConsoles(new IConsole[] { console });
+		return console;
+	}
+
+}
@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.ui.tunnel;
 
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -19,6 +22,7 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.internal.server.core.TunnelBehaviour;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelDescriptor;
+import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.TunnelMetrics;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.CloudFoundryImages;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.TableResizeHelper;
 import org.eclipse.jface.action.Action;
@@ -26,6 +30,7 @@ import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.action.IMenuListener;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.MenuManager;
+import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.layout.GridDataFactory;
 import org.eclipse.jface.layout.GridLayoutFactory;
 import org.eclipse.jface.resource.ImageDescriptor;
@@ -42,13 +47,22 @@ import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.ISharedImages;
+import org.eclipse.ui.PlatformUI;
 
 public class TunnelDisplayPart {
 
+	static final String EXPORT_METRICS_LABEL = "Export Metrics...";
+
+	/** Interval in milliseconds at which tunnel statistics are refreshed */
+	private static final int REFRESH_INTERVAL = 1000;
+
 	private TableViewer servicesViewer;
 
 	private final Shell shell;
@@ -64,7 +78,7 @@ public class TunnelDisplayPart {
 	}
 
 	enum ViewColumn {
-		ServiceName(100), Vendor(100), Name(100), UserName(100), Password(100), Port(50);
+		ServiceName(100), Vendor(100), Name(100), UserName(100), Password(100), Port(50), Connections(80), Sent(80), Received(80), Requests(70), Errors(50), Latency(80);
 		private int width;
 
 		private ViewColumn(int width) {
@@ -123,7 +137,8 @@ public class TunnelDisplayPart {
 
 		setInput();
 
-		
+		scheduleRefresh();
+
 		return tableArea;
 
 	}
@@ -152,6 +167,68 @@ public class TunnelDisplayPart {
 
 	}
 
+	/**
+	 * Refreshes the tunnel statistics periodically, until the table is
+	 * disposed.
+	 */
+	protected void scheduleRefresh() {
+		final Display display = shell.getDisplay();
+		display.timerExec(REFRESH_INTERVAL, new Runnable() {
+			public void run() {
+				if (servicesViewer != null && !servicesViewer.getTable().isDisposed()) {
+					servicesViewer.refresh(true);
+					display.timerExec(REFRESH_INTERVAL, this);
+				}
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	protected List<CaldecottTunnelDescriptor> getDescriptors() {
+		List<CaldecottTunnelDescriptor> descriptors = new ArrayList<CaldecottTunnelDescriptor>();
+		Object input = servicesViewer != null ? servicesViewer.getInput() : null;
+		if (input instanceof Collection) {
+			descriptors.addAll((Collection<CaldecottTunnelDescriptor>) input);
+		}
+		return descriptors;
+	}
+
+	/**
+	 * Prompts for a file, and writes the statistics of all displayed tunnels
+	 * to it as comma separated values.
+	 */
+	public void exportMetrics() {
+		FileDialog fileDialog = new FileDialog(shell, SWT.SAVE);
+		fileDialog.setText("Export Tunnel Metrics");
+		fileDialog.setFilterExtensions(new String[] { "*.csv" });
+		fileDialog.setFileName("tunnel-metrics.csv");
+		fileDialog.setOverwrite(true);
+		String path = fileDialog.open();
+		if (path == null) {
+			return;
+		}
+		PrintWriter writer = null;
+		try {
+			writer = new PrintWriter(new FileWriter(path));
+			writer.println(TunnelMetrics.getCSVHeader());
+			for (CaldecottTunnelDescriptor descriptor : getDescriptors()) {
+				writer.println(descriptor.getMetrics().toCSV(descriptor.getServiceName()));
+			}
+			if (writer.checkError()) {
+				throw new IOException("Failed to write " + path);
+			}
+		}
+		catch (IOException e) {
+			CloudFoundryPlugin.logError(e);
+			MessageDialog.openError(shell, "Export Tunnel Metrics", "Failed to export tunnel metrics: " + e.getMessage());
+		}
+		finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
+	}
+
 	public void configureViewer(final TableViewer tableViewer) {
 
 		final Table table = tableViewer.getTable();
@@ -237,6 +314,26 @@ public class TunnelDisplayPart {
 					case Name:
 						result = descriptor.getDatabaseName();
 						break;
+					case Connections:
+						result = descriptor.getMetrics().getActiveConnections() + " ("
+								+ descriptor.getMetrics().getTotalConnections() + ")";
+						break;
+					case Sent:
+						result = formatBytes(descriptor.getMetrics().getBytesSent());
+						break;
+					case Received:
+						result = formatBytes(descriptor.getMetrics().getBytesReceived());
+						break;
+					case Requests:
+						result = (descriptor.getMetrics().getSendRequests() + descriptor.getMetrics()
+								.getPollRequests()) + "";
+						break;
+					case Errors:
+						result = descriptor.getMetrics().getErrors() + "";
+						break;
+					case Latency:
+						result = formatLatency(descriptor.getMetrics());
+						break;
 					}
 				}
 			}
@@ -245,6 +342,36 @@ public class TunnelDisplayPart {
 
 	}
 
+	protected static String formatBytes(long bytes) {
+		if (bytes < 1024) {
+			return bytes + " B";
+		}
+		if (bytes < 1024 * 1024) {
+			return String.format("%.1f KB", bytes / 1024.0);
+		}
+		return String.format("%.1f MB", bytes / (1024.0 * 1024));
+	}
+
+	/**
+	 * @return median and 95th percentile of the round-trip latency, as upper
+	 * bounds of histogram buckets
+	 */
+	protected static String formatLatency(TunnelMetrics metrics) {
+		long median = metrics.getLatencyPercentile(50);
+		if (median < 0) {
+			return "";
+		}
+		return formatLatencyBound(median) + " / " + formatLatencyBound(metrics.getLatencyPercentile(95));
+	}
+
+	private static String formatLatencyBound(long bound) {
+		if (bound == Long.MAX_VALUE) {
+			long[] bounds = TunnelMetrics.getLatencyBounds();
+			return ">" + bounds[bounds.length - 1] + "ms";
+		}
+		return "<=" + bound + "ms";
+	}
+
 	public List<CaldecottTunnelDescriptor> getSelectedCaldecotTunnelDescriptors() {
 		IStructuredSelection selection = (IStructuredSelection) servicesViewer.getSelection();
 		List<CaldecottTunnelDescriptor> descriptors = new ArrayList<CaldecottTunnelDescriptor>();
@@ -292,10 +419,32 @@ public class TunnelDisplayPart {
 				actions.add(new CopyURL());
 			}
 		}
+		if (!getDescriptors().isEmpty()) {
+			actions.add(new ExportMetrics());
+		}
 
 		return actions;
 	}
 
+	protected class ExportMetrics extends Action {
+
+		public ExportMetrics() {
+			// Metrics are saved to a file chosen by the user
+			super(EXPORT_METRICS_LABEL, PlatformUI.getWorkbench().getSharedImages()
+					.getImageDescriptor(ISharedImages.IMG_ETOOL_SAVEAS_EDIT));
+		}
+
+		@Override
+		public String getToolTipText() {
+			return "Export tunnel metrics as comma separated values";
+		}
+
+		public void run() {
+			exportMetrics();
+		}
+
+	}
+
 	protected abstract class CopyTunnelInformation extends Action {
 
 		public CopyTunnelInformation(String actionName, ImageDescriptor actionImage) {